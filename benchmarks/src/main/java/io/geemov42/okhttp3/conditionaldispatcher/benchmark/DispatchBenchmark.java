@@ -0,0 +1,175 @@
+package io.geemov42.okhttp3.conditionaldispatcher.benchmark;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import io.geemov42.okhttp3.conditionaldispatcher.response.MatchingCondition;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.GET;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.*;
+
+/**
+ * @author geemov42
+ * Cost of ConditionalDispatcher.dispatch on synthetic requests.
+ * Rules are spread between the GET list and the COMMON list, each one identified by a person identifier.
+ * Run it with the gc profiler (the default of BenchmarkRunner) to get allocation rates.
+ * Large bodies share their padding and get a smaller request pool, so every case fits in the fixed heap of the fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class DispatchBenchmark {
+
+    private static final int REQUEST_COUNT = 4096;
+    // bytes of request bodies kept in the pool at most
+    private static final long BODY_BUDGET = 256L << 20;
+    private static final int PATH_COUNT = 64;
+    private static final String TENANT_HEADER = "X-Tenant";
+
+    /**
+     * Number of registered conditional mock responses
+     */
+    @Param({"10", "1000", "100000"})
+    public int ruleCount;
+
+    /**
+     * Percentage of matched requests served by the COMMON list instead of the GET list
+     */
+    @Param({"0", "50"})
+    public int commonHitPercent;
+
+    /**
+     * Request parts tested by each rule
+     */
+    @Param({"PARAMETER", "HEADER", "BODY", "MIXED"})
+    public String conditionMix;
+
+    /**
+     * Padding bytes before the tested body field
+     */
+    @Param({"0", "1024", "1048576"})
+    public int bodySize;
+
+    /**
+     * Percentage of requests matching no rule, served by the queue
+     */
+    @Param({"0", "10"})
+    public int missPercent;
+
+    private ConditionalDispatcher conditionalDispatcher;
+    private RecordedRequest[] recordedRequests;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Setup
+    public void setUp() {
+
+        List<ConditionalMockResponse> getResponses = new ArrayList<>();
+        List<ConditionalMockResponse> commonResponses = new ArrayList<>();
+        int getRuleCount = Math.max(1, this.ruleCount / 2);
+
+        for (int id = 0; id < this.ruleCount; id++) {
+            ConditionalMockResponse conditionalMockResponse = conditionalMockResponse("rule_" + id, "^" + path(id), new MockResponse().setBody(String.valueOf(id)))
+                    .addConditions(this.conditions(id));
+
+            (id < getRuleCount ? getResponses : commonResponses).add(conditionalMockResponse);
+        }
+
+        this.conditionalDispatcher = new ConditionalDispatcher()
+                .addResponseForMethod(GET, getResponses)
+                .addResponse(commonResponses)
+                .setQueueFailFast(new MockResponse().setResponseCode(404));
+
+        SplittableRandom random = new SplittableRandom(42);
+        Buffer padding = new Buffer().writeUtf8("x".repeat(this.bodySize));
+        int requestCount = (int) Math.min(REQUEST_COUNT, BODY_BUDGET / Math.max(1, this.bodySize));
+        this.recordedRequests = new RecordedRequest[requestCount];
+
+        for (int i = 0; i < requestCount; i++) {
+            int id;
+
+            if (random.nextInt(100) < this.missPercent) {
+                id = this.ruleCount + random.nextInt(1_000_000);
+            } else if (random.nextInt(100) < this.commonHitPercent && this.ruleCount > getRuleCount) {
+                id = getRuleCount + random.nextInt(this.ruleCount - getRuleCount);
+            } else {
+                id = random.nextInt(getRuleCount);
+            }
+
+            // the clone shares the segments of the padding instead of copying it
+            Buffer body = new Buffer().writeUtf8("{\"padding\":\"");
+            body.write(padding.clone(), padding.size());
+            body.writeUtf8("\",\"personIdentifier\":\"" + id + "\"}");
+
+            this.recordedRequests[i] = RecordedRequests.recordedRequest(
+                    "GET",
+                    path(id) + "?personIdentifier=" + id,
+                    Headers.of(TENANT_HEADER, "tenant-" + id),
+                    body
+            );
+        }
+    }
+
+    private MatchingCondition[] conditions(int id) {
+
+        switch (this.conditionMix) {
+            case "PARAMETER":
+                return new MatchingCondition[]{param("personIdentifier", "^" + id + "$")};
+            case "HEADER":
+                return new MatchingCondition[]{header(TENANT_HEADER, "^tenant-" + id + "$")};
+            case "BODY":
+                return new MatchingCondition[]{body("\"personIdentifier\":\"" + id + "\"")};
+            default:
+                return new MatchingCondition[]{
+                        header(TENANT_HEADER, "^tenant-\\d+$"),
+                        param("personIdentifier", "^" + id + "$"),
+                        body("\"personIdentifier\":\"" + id + "\"")
+                };
+        }
+    }
+
+    private static String path(int id) {
+        return "/api/resource" + (id % PATH_COUNT) + "/items";
+    }
+
+    private MockResponse dispatchNext(Cursor cursor) throws InterruptedException {
+
+        RecordedRequest recordedRequest = this.recordedRequests[cursor.next];
+        cursor.next = (cursor.next + 1) % this.recordedRequests.length;
+
+        return this.conditionalDispatcher.dispatch(recordedRequest);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MockResponse dispatch(Cursor cursor) throws InterruptedException {
+        return this.dispatchNext(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public MockResponse dispatch4Threads(Cursor cursor) throws InterruptedException {
+        return this.dispatchNext(cursor);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MockResponse dispatchAllCores(Cursor cursor) throws InterruptedException {
+        return this.dispatchNext(cursor);
+    }
+}
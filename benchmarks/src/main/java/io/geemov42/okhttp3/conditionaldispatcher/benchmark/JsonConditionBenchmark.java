@@ -0,0 +1,83 @@
+package io.geemov42.okhttp3.conditionaldispatcher.benchmark;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.benchmark.RecordedRequests.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.POST;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.body;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.conditionalMockResponse;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.jsonPath;
+
+/**
+ * @author geemov42
+ * Rules telling POST requests apart by fields of a json body: a regex scanning the body per rule,
+ * against json path conditions whose values are extracted once per dispatch and shared by every rule.
+ * The customer fields are written first, so the extraction stops long before the end of a large body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonConditionBenchmark {
+
+    private static final int RULE_COUNT = 32;
+
+    /**
+     * Number of items of the body, about 60 bytes each
+     */
+    @Param({"10", "10000"})
+    public int itemCount;
+
+    private ConditionalDispatcher regexConditionalDispatcher;
+    private ConditionalDispatcher jsonPathConditionalDispatcher;
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        StringBuilder jsonBuilder = new StringBuilder("{\"customer\": {\"id\": \"" + (RULE_COUNT - 1) + "\", \"tier\": \"gold\"}, \"items\": [");
+        for (int i = 0; i < this.itemCount; i++) {
+            jsonBuilder.append(i == 0 ? "" : ",").append("{\"sku\": \"SKU-").append(i).append("\", \"quantity\": 1, \"label\": \"item\"}");
+        }
+        this.json = jsonBuilder.append("]}").toString();
+
+        List<ConditionalMockResponse> regexConditionalMockResponses = new ArrayList<>();
+        List<ConditionalMockResponse> jsonPathConditionalMockResponses = new ArrayList<>();
+        for (int id = 0; id < RULE_COUNT; id++) {
+            MockResponse mockResponse = new MockResponse().setBody("order " + id);
+            regexConditionalMockResponses.add(conditionalMockResponse("post_order_" + id, "^/orders", mockResponse)
+                    .addCondition(body("\"customer\"\\s*:\\s*\\{[^}]*\"id\"\\s*:\\s*\"" + id + "\"")));
+            jsonPathConditionalMockResponses.add(conditionalMockResponse("post_order_" + id, "^/orders", mockResponse)
+                    .addCondition(jsonPath("$.customer.id", String.valueOf(id))));
+        }
+
+        this.regexConditionalDispatcher = new ConditionalDispatcher().addResponseForMethod(POST, regexConditionalMockResponses);
+        this.jsonPathConditionalDispatcher = new ConditionalDispatcher().addResponseForMethod(POST, jsonPathConditionalMockResponses);
+    }
+
+    private RecordedRequest request() {
+        return recordedRequest("POST", "/orders", Headers.of("Content-Type", "application/json"), new Buffer().writeUtf8(this.json));
+    }
+
+    @Benchmark
+    public MockResponse regexBodyConditions() throws InterruptedException {
+        return this.regexConditionalDispatcher.dispatch(this.request());
+    }
+
+    @Benchmark
+    public MockResponse jsonPathConditions() throws InterruptedException {
+        return this.jsonPathConditionalDispatcher.dispatch(this.request());
+    }
+}
@@ -0,0 +1,35 @@
+package io.geemov42.okhttp3.conditionaldispatcher.benchmark;
+
+import okhttp3.Headers;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Collections;
+
+/**
+ * @author geemov42
+ * Synthetic recorded requests, built without a connection to call the dispatcher directly
+ */
+public class RecordedRequests {
+
+    private static final Socket LOCAL_SOCKET = new Socket() {
+        @Override
+        public InetAddress getLocalAddress() {
+            return InetAddress.getLoopbackAddress();
+        }
+
+        @Override
+        public int getLocalPort() {
+            return 8080;
+        }
+    };
+
+    private RecordedRequests(){}
+
+    public static RecordedRequest recordedRequest(String method, String path, Headers headers, Buffer body) {
+
+        return new RecordedRequest(method + " " + path + " HTTP/1.1", headers, Collections.emptyList(), body.size(), body, 0, LOCAL_SOCKET);
+    }
+}
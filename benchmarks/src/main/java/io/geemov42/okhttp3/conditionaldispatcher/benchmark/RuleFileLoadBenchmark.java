@@ -0,0 +1,100 @@
+package io.geemov42.okhttp3.conditionaldispatcher.benchmark;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.loader.RuleFileLoader;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import okhttp3.mockwebserver.MockResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.GET;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.conditionalMockResponse;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.param;
+
+/**
+ * @author geemov42
+ * Startup and reload cost of a rule catalog: loading a json rule file, with lazily compiled regexes,
+ * against building the same rules in Java, and reloading the file into a dispatcher that swaps its rules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RuleFileLoadBenchmark {
+
+    private static final int PATH_COUNT = 64;
+
+    /**
+     * Number of rules of the catalog
+     */
+    @Param({"1000", "100000"})
+    public int ruleCount;
+
+    private Path ruleFile;
+    private ConditionalDispatcher conditionalDispatcher;
+    private int layerDepth;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        this.ruleFile = Files.createTempFile("rules", ".json");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(this.ruleFile, StandardCharsets.UTF_8)) {
+            writer.write("{\"rules\": [");
+
+            for (int id = 0; id < this.ruleCount; id++) {
+                writer.write((id == 0 ? "" : ",") + "{\"id\": \"rule_" + id + "\", \"method\": \"GET\", \"path\": \"^" + path(id) + "\","
+                        + " \"conditions\": [{\"part\": \"PARAMETER\", \"field\": \"personIdentifier\", \"regex\": \"^" + id + "(-\\\\w+)?$\"}],"
+                        + " \"response\": {\"status\": 200, \"headers\": {\"Content-Type\": \"application/json\"}, \"body\": \"{\\\"id\\\":" + id + "}\"}}\n");
+            }
+
+            writer.write("]}");
+        }
+
+        this.conditionalDispatcher = new ConditionalDispatcher().pushLayer();
+        this.layerDepth = this.conditionalDispatcher.getLayerDepth();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.ruleFile);
+    }
+
+    private static String path(int id) {
+        return "/api/resource" + (id % PATH_COUNT) + "/items";
+    }
+
+    @Benchmark
+    public Map<HttpMethodEnum, List<ConditionalMockResponse>> loadRuleFile() throws IOException {
+        return RuleFileLoader.load(this.ruleFile);
+    }
+
+    @Benchmark
+    public ConditionalDispatcher reloadRuleFile() throws IOException {
+        return this.conditionalDispatcher.replaceResponses(this.layerDepth, RuleFileLoader.load(this.ruleFile));
+    }
+
+    @Benchmark
+    public ConditionalDispatcher buildWithBuilders() {
+
+        List<ConditionalMockResponse> conditionalMockResponses = new ArrayList<>(this.ruleCount);
+        for (int id = 0; id < this.ruleCount; id++) {
+            conditionalMockResponses.add(conditionalMockResponse("rule_" + id, "^" + path(id), new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"id\":" + id + "}"))
+                    .addConditions(param("personIdentifier", "^" + id + "(-\\w+)?$")));
+        }
+
+        return new ConditionalDispatcher().addResponseForMethod(GET, conditionalMockResponses);
+    }
+}
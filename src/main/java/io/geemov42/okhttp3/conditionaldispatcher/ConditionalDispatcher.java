@@ -1,126 +1,330 @@
 package io.geemov42.okhttp3.conditionaldispatcher;
 
+import io.geemov42.okhttp3.conditionaldispatcher.diagnostics.MissDiagnostics;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.DispatchOutcomeEnum;
 import io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum;
-import io.geemov42.okhttp3.conditionaldispatcher.response.MatchingCondition;
+import io.geemov42.okhttp3.conditionaldispatcher.latency.LatencyProfile;
+import io.geemov42.okhttp3.conditionaldispatcher.metrics.CompositeDispatchListener;
+import io.geemov42.okhttp3.conditionaldispatcher.metrics.DispatchListener;
+import io.geemov42.okhttp3.conditionaldispatcher.ratelimit.RateLimiter;
+import io.geemov42.okhttp3.conditionaldispatcher.ratelimit.RateLimiterStats;
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
 import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import io.geemov42.okhttp3.conditionaldispatcher.routing.AdaptiveOrdering;
+import io.geemov42.okhttp3.conditionaldispatcher.routing.DecisionCache;
+import io.geemov42.okhttp3.conditionaldispatcher.routing.DecisionCacheStats;
+import io.geemov42.okhttp3.conditionaldispatcher.routing.RuleLayer;
+import io.geemov42.okhttp3.conditionaldispatcher.routing.RuleSet;
+import io.geemov42.okhttp3.conditionaldispatcher.routing.RuleTable;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.QueueDispatcher;
 import okhttp3.mockwebserver.RecordedRequest;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.DispatchOutcomeEnum.*;
 import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.COMMON;
-import static io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum.*;
 import static java.util.Objects.isNull;
 import static java.util.Objects.requireNonNull;
 
 /**
  * @author geemov42
- * Transportable class to add mock response with conditions
+ * Transportable class to add mock response with conditions.
+ * MockWebServer dispatches from one thread per connection: registrations swap an immutable rule layer
+ * so the dispatch path reads it without lock.
  */
 @Slf4j
 public class ConditionalDispatcher extends Dispatcher {
 
-    private QueueDispatcher queueDispatcher = new QueueDispatcher();
-    private final Map<HttpMethodEnum, List<ConditionalMockResponse>> mockResponseMap = new EnumMap<>(HttpMethodEnum.class);
+    private volatile QueueDispatcher queueDispatcher = new QueueDispatcher();
+    private volatile Dispatcher missDispatcher;
+    private volatile Map<HttpMethodEnum, LatencyProfile> latencyProfilesByMethod = new EnumMap<>(HttpMethodEnum.class);
+    private final AtomicReference<RuleLayer> ruleLayer;
+    private final int baseDepth;
+    private volatile long bodyScanLimit = RequestContext.UNLIMITED_BODY_SCAN;
+    private volatile MockResponse queueFailFastResponse;
+    private volatile DispatchListener dispatchListener = DispatchListener.NOOP;
+    private volatile long beyondLimitLogIntervalNanos = Duration.ofSeconds(1).toNanos();
+    private final AtomicLong nextBeyondLimitLogNanos = new AtomicLong(System.nanoTime());
+    private final LongAdder suppressedBeyondLimitLogs = new LongAdder();
+    private volatile RecordedRequestTaker recordedRequestTaker;
+    private final AtomicReference<DecisionCache> decisionCache = new AtomicReference<>();
+    private volatile AdaptiveOrdering adaptiveOrdering;
+    private volatile MissDiagnostics missDiagnostics;
+
+    public ConditionalDispatcher() {
+
+        this.ruleLayer = new AtomicReference<>(RuleLayer.root());
+        this.baseDepth = 0;
+    }
+
+    /**
+     * A dispatcher whose responses are added on top of a shared rule set, which it never changes.
+     * Creating it is constant time, whatever the size of the rule set.
+     * @param baseRuleSet the shared responses, checked after the ones of this dispatcher
+     */
+    public ConditionalDispatcher(RuleSet baseRuleSet) {
 
+        this.ruleLayer = new AtomicReference<>(baseRuleSet.getRuleLayer().push());
+        this.baseDepth = this.ruleLayer.get().getDepth();
+    }
+
+    /**
+     * The matching path does not allocate beyond what the matched response itself needs:
+     * the request context is reused by the thread and rules are searched with indexed loops.
+     * A method outside {@link HttpMethodEnum}, like PROPFIND, is only matched by COMMON responses.
+     */
     @Override
     public MockResponse dispatch(RecordedRequest recordedRequest) throws InterruptedException {
+        return this.dispatch(recordedRequest, null);
+    }
+
+    /**
+     * Dispatch as if the path did not start with the prefix, for a dispatcher mounted under a path segment.
+     * Listeners and the queue still get the recorded request as is.
+     * @param recordedRequest the request
+     * @param pathPrefix a leading path segment, like "/tenant", null to match the whole path
+     * @return the mock response
+     */
+    public MockResponse dispatch(RecordedRequest recordedRequest, String pathPrefix) throws InterruptedException {
 
-        if (isNull(recordedRequest.getMethod())) {
-            return this.queueDispatcher.dispatch(recordedRequest);
+        this.discardRecordedRequest();
+
+        DispatchListener currentDispatchListener = this.dispatchListener;
+        // the clock is only read for a listener
+        long start = currentDispatchListener == DispatchListener.NOOP ? 0 : System.nanoTime();
+
+        if (isNull(recordedRequest.getMethod()) || isNull(recordedRequest.getPath())) {
+            currentDispatchListener.onQueueFallback(recordedRequest);
+            return this.dispatchFromQueue(recordedRequest, currentDispatchListener, start);
         }
 
-        HttpMethodEnum requestHttpMethod = HttpMethodEnum.valueOf(recordedRequest.getMethod().toUpperCase());
+        HttpMethodEnum requestHttpMethod = HttpMethodEnum.fromMethod(recordedRequest.getMethod());
+        RuleLayer currentRuleLayer = this.ruleLayer.get();
+        MockResponse mockResponse = null;
+
+        if (!currentRuleLayer.isEmpty()) {
+            // parsed lazily, at most once, whatever the number of conditions evaluated
+            RequestContext requestContext = RequestContext.acquire(recordedRequest, this.bodyScanLimit, currentDispatchListener, pathPrefix);
+            requestContext.setJsonPaths(currentRuleLayer.getJsonPaths());
+            AdaptiveOrdering currentAdaptiveOrdering = this.adaptiveOrdering;
+            requestContext.setConditionProfiled(!isNull(currentAdaptiveOrdering));
+
+            try {
+                DecisionCache currentDecisionCache = this.currentDecisionCache(currentRuleLayer);
+
+                if (isNull(currentDecisionCache)) {
+                    mockResponse = this.findMockResponseForRequest(currentRuleLayer, requestHttpMethod, requestContext, null, null, start);
+                } else {
+                    String decisionKey = currentDecisionCache.key(requestContext);
+                    DecisionCache.Decision decision = currentDecisionCache.get(decisionKey);
+
+                    if (isNull(decision)) {
+                        mockResponse = this.findMockResponseForRequest(currentRuleLayer, requestHttpMethod, requestContext, currentDecisionCache, decisionKey, start);
+                    } else if (!isNull(decision.getConditionalMockResponse())) {
+                        mockResponse = this.serve(currentRuleLayer, decision.getHttpMethodEnum(), decision.getConditionalMockResponse(), requestContext, start);
+                    }
+                }
+            } finally {
+                requestContext.release();
+            }
 
-        if (!this.mockResponseMap.containsKey(requestHttpMethod) && !this.mockResponseMap.containsKey(COMMON)) {
-            return this.queueDispatcher.dispatch(recordedRequest);
+            if (!isNull(currentAdaptiveOrdering) && currentAdaptiveOrdering.isPassDue()) {
+                currentAdaptiveOrdering.runPass(() -> this.reorder(currentAdaptiveOrdering));
+            }
+        }
+
+        if (!isNull(mockResponse)) {
+            return mockResponse;
         }
 
-        Optional<MockResponse> mockResponseOptional = this.findMockResponseForRequest(requestHttpMethod, recordedRequest);
-        if (mockResponseOptional.isPresent()) {
-            return mockResponseOptional.get();
+        MissDiagnostics currentMissDiagnostics = this.missDiagnostics;
+        if (!isNull(currentMissDiagnostics)) {
+            this.diagnoseMiss(currentMissDiagnostics, currentRuleLayer, recordedRequest, pathPrefix);
         }
 
-        mockResponseOptional = this.findMockResponseForRequest(COMMON, recordedRequest);
-        if (mockResponseOptional.isPresent()) {
-            return mockResponseOptional.get();
+        if (currentDispatchListener != DispatchListener.NOOP) {
+            currentDispatchListener.onMiss(recordedRequest, System.nanoTime() - start);
+            currentDispatchListener.onQueueFallback(recordedRequest);
         }
 
-        return this.queueDispatcher.dispatch(recordedRequest);
+        return this.dispatchFromQueue(recordedRequest, currentDispatchListener, start);
     }
 
-    private Optional<MockResponse> findMockResponseForRequest(HttpMethodEnum methodDispatcher, RecordedRequest recordedRequest) {
+    /**
+     * Evaluate the rules of the dispatch again, with a fresh request context that notifies no listener
+     */
+    private void diagnoseMiss(MissDiagnostics currentMissDiagnostics, RuleLayer currentRuleLayer, RecordedRequest recordedRequest, String pathPrefix) {
+
+        RequestContext requestContext = RequestContext.acquire(recordedRequest, this.bodyScanLimit, DispatchListener.NOOP, pathPrefix);
+        requestContext.setJsonPaths(currentRuleLayer.getJsonPaths());
 
-        if (!this.mockResponseMap.containsKey(methodDispatcher) || isNull(recordedRequest.getPath())) {
-            return Optional.empty();
+        try {
+            currentMissDiagnostics.diagnose(currentRuleLayer, requestContext);
+        } finally {
+            requestContext.release();
         }
+    }
 
-        List<ConditionalMockResponse> conditionalMockResponses = this.mockResponseMap.get(methodDispatcher);
+    private MockResponse dispatchFromQueue(RecordedRequest recordedRequest, DispatchListener currentDispatchListener, long start) throws InterruptedException {
 
-        return conditionalMockResponses.stream()
-                .filter(conditionalMockResponse -> conditionalMockResponse.getPathRegexPattern().matcher(recordedRequest.getPath()).find())
-                .filter(conditionalMockResponse -> {
-                    for (MatchingCondition matchingCondition : conditionalMockResponse.getMatchingConditions()) {
-                        if (!this.matchCondition(recordedRequest, matchingCondition)) {
-                            return false;
-                        }
-                    }
+        Dispatcher currentMissDispatcher = this.missDispatcher;
+        MockResponse mockResponse = isNull(currentMissDispatcher) ? this.queueDispatcher.dispatch(recordedRequest) : currentMissDispatcher.dispatch(recordedRequest);
 
-                    return true;
-                })
-                .map(conditionalMockResponse -> {
-                    MockResponse mockResponse = conditionalMockResponse.getMockResponse();
-
-                    if (conditionalMockResponse.isBeyondOfLimit()) {
-                        log.error("[{}] {} is beyond the limit define {}/{}",
-                                methodDispatcher,
-                                conditionalMockResponse.getId(),
-                                conditionalMockResponse.getFetchCounter(),
-                                conditionalMockResponse.getLimitFetch()
-                        );
-                    }
+        if (currentDispatchListener != DispatchListener.NOOP) {
+            // the queue dispatcher serves the fail fast response itself when it is empty
+            DispatchOutcomeEnum dispatchOutcome = !isNull(currentMissDispatcher) ? FALLBACK
+                    : !isNull(mockResponse) && mockResponse == this.queueFailFastResponse ? MISS : QUEUE;
+            currentDispatchListener.onDispatched(recordedRequest, dispatchOutcome, null, System.nanoTime() - start);
+        }
 
-                    return mockResponse;
-                })
-                .findFirst();
+        return mockResponse;
     }
 
-    private boolean matchCondition(RecordedRequest recordedRequest, MatchingCondition matchingCondition) {
-        try {
-            if (matchingCondition.getRequestPartToTest() == HEADER) {
-                String headerField = this.getHeaderValue(recordedRequest, matchingCondition.getField());
-                return matchingCondition.getValuePattern().matcher(headerField).find();
+    /**
+     * Search each layer from the top, the method list then the COMMON list,
+     * and memoize the decision when a decision cache is given
+     * @return the mock response or null to fall through to the queue
+     */
+    private MockResponse findMockResponseForRequest(RuleLayer currentRuleLayer, HttpMethodEnum requestHttpMethod, RequestContext requestContext,
+                                                    DecisionCache currentDecisionCache, String decisionKey, long start) {
+
+        HttpMethodEnum methodDispatcher = null;
+        ConditionalMockResponse conditionalMockResponse = null;
+
+        for (RuleLayer layer = currentRuleLayer; !isNull(layer) && isNull(conditionalMockResponse); layer = layer.getParent()) {
+            methodDispatcher = requestHttpMethod;
+            conditionalMockResponse = isNull(requestHttpMethod) ? null : layer.findFirst(requestHttpMethod, requestContext, currentRuleLayer);
+
+            if (isNull(conditionalMockResponse)) {
+                methodDispatcher = COMMON;
+                conditionalMockResponse = layer.findFirst(COMMON, requestContext, currentRuleLayer);
             }
+        }
+
+        if (!isNull(currentDecisionCache)) {
+            currentDecisionCache.put(decisionKey, methodDispatcher, conditionalMockResponse, requestContext.isDecisionCacheable());
+        }
+
+        return isNull(conditionalMockResponse) ? null : this.serve(currentRuleLayer, methodDispatcher, conditionalMockResponse, requestContext, start);
+    }
+
+    private MockResponse serve(RuleLayer currentRuleLayer, HttpMethodEnum methodDispatcher, ConditionalMockResponse conditionalMockResponse,
+                               RequestContext requestContext, long start) {
+
+        DispatchListener currentDispatchListener = requestContext.getDispatchListener();
+        RateLimiter rateLimiter = conditionalMockResponse.getRateLimiter();
+        RateLimiter.Admission admission = isNull(rateLimiter) ? null : rateLimiter.admit(requestContext);
+
+        // a rejected request is answered at once, without using the response
+        if (!isNull(admission) && !admission.isAdmitted()) {
+            if (currentDispatchListener != DispatchListener.NOOP) {
+                currentDispatchListener.onRateLimited(conditionalMockResponse);
+                currentDispatchListener.onDispatched(requestContext.getRecordedRequest(), RULE, conditionalMockResponse, System.nanoTime() - start);
+            }
+
+            return rateLimiter.rejectionOf(admission);
+        }
+
+        MockResponse mockResponse;
+        try {
+            mockResponse = conditionalMockResponse.getMockResponse(requestContext);
+            currentRuleLayer.recordFetch(conditionalMockResponse);
 
-            if (matchingCondition.getRequestPartToTest() == PARAMETER) {
-                String requestParameterValue = this.getRequestParameterValue(recordedRequest, matchingCondition.getField());
-                return matchingCondition.getValuePattern().matcher(requestParameterValue).find();
+            LatencyProfile latencyProfile = conditionalMockResponse.getLatencyProfile();
+            if (isNull(latencyProfile)) {
+                latencyProfile = this.latencyProfilesByMethod.get(methodDispatcher);
             }
+            if (!isNull(latencyProfile)) {
+                mockResponse = latencyProfile.applyTo(mockResponse);
+            }
+        } catch (RuntimeException e) {
+            // a response that fails, like a missing file, must not keep its concurrency slot reserved
+            if (!isNull(admission)) {
+                admission.release();
+            }
+            throw e;
+        }
+
+        if (!isNull(admission)) {
+            admission.hold(mockResponse);
+        }
+
+        if (currentDispatchListener != DispatchListener.NOOP) {
+            long matchNanos = System.nanoTime() - start;
+            currentDispatchListener.onHit(methodDispatcher, conditionalMockResponse, matchNanos);
+            currentDispatchListener.onDispatched(requestContext.getRecordedRequest(), RULE, conditionalMockResponse, matchNanos);
+        }
+
+        // the limit applies to the fetches of the current layer, not to the ones of other layers or dispatchers sharing the response
+        if (conditionalMockResponse.getLimitFetch() > 0) {
+            int layerFetchCount = currentRuleLayer.getFetchCounter(conditionalMockResponse.getId());
 
-            if (matchingCondition.getRequestPartToTest() == BODY) {
-                return matchingCondition.getValuePattern().matcher(recordedRequest.getBody().toString()).find();
+            if (conditionalMockResponse.isBeyondOfLimit(layerFetchCount)) {
+                currentDispatchListener.onBeyondLimit(conditionalMockResponse);
+                this.logBeyondLimit(methodDispatcher, conditionalMockResponse, layerFetchCount);
             }
+        }
+
+        return mockResponse;
+    }
+
+    /**
+     * The cache of a previous rule layer, or of conditions since changed, is replaced by an empty one on the first dispatch after a change
+     */
+    private DecisionCache currentDecisionCache(RuleLayer currentRuleLayer) {
+
+        DecisionCache currentDecisionCache = this.decisionCache.get();
 
-        } catch (NullPointerException ignored) {
-            return false;
+        if (isNull(currentDecisionCache) || currentDecisionCache.isCurrent(currentRuleLayer)) {
+            return currentDecisionCache;
         }
 
-        return false;
+        DecisionCache renewedDecisionCache = currentDecisionCache.withRuleLayer(currentRuleLayer);
+        this.decisionCache.compareAndSet(currentDecisionCache, renewedDecisionCache);
+
+        return renewedDecisionCache;
     }
 
-    private String getHeaderValue(RecordedRequest recordedRequest, String field) {
+    /**
+     * MockWebServer records every request before dispatching it, so one recorded request is discarded per dispatch
+     */
+    private void discardRecordedRequest() throws InterruptedException {
 
-        return requireNonNull(recordedRequest.getHeader(field));
+        RecordedRequestTaker currentRecordedRequestTaker = this.recordedRequestTaker;
+        if (!isNull(currentRecordedRequestTaker)) {
+            currentRecordedRequestTaker.takeRequest(0, TimeUnit.NANOSECONDS);
+        }
     }
 
-    private String getRequestParameterValue(RecordedRequest recordedRequest, String field) {
+    /**
+     * At most one log per interval, so that a test hammering a limited response does not flood the logs
+     */
+    private void logBeyondLimit(HttpMethodEnum methodDispatcher, ConditionalMockResponse conditionalMockResponse, int layerFetchCount) {
+
+        long now = System.nanoTime();
+        long nextLog = this.nextBeyondLimitLogNanos.get();
+
+        if (now - nextLog < 0 || !this.nextBeyondLimitLogNanos.compareAndSet(nextLog, now + this.beyondLimitLogIntervalNanos)) {
+            this.suppressedBeyondLimitLogs.increment();
+            return;
+        }
 
-        requireNonNull(recordedRequest.getRequestUrl());
-        return requireNonNull(recordedRequest.getRequestUrl().queryParameter(field));
+        log.error("[{}] {} is beyond the limit define {}/{} ({} similar messages suppressed)",
+                methodDispatcher,
+                conditionalMockResponse.getId(),
+                layerFetchCount,
+                conditionalMockResponse.getLimitFetch(),
+                this.suppressedBeyondLimitLogs.sumThenReset()
+        );
     }
 
     public ConditionalDispatcher addResponseForMethod(HttpMethodEnum methodDispatcher, List<ConditionalMockResponse> conditionalMockResponses) {
@@ -134,19 +338,139 @@ public class ConditionalDispatcher extends Dispatcher {
             return this;
         }
 
-        List<ConditionalMockResponse> internConditionalMockResponses = this.mockResponseMap.get(methodDispatcher);
+        List<ConditionalMockResponse> addedConditionalMockResponses = conditionalMockResponses;
+        this.ruleLayer.updateAndGet(currentRuleLayer -> currentRuleLayer.withAdded(methodDispatcher, addedConditionalMockResponses));
+
+        return this;
+    }
+
+    /**
+     * Replace the responses with the same id, in the current layer and in the layers below, like a shared rule set
+     * @param methodDispatcher the http method list of the new response
+     * @param conditionalMockResponse the new response
+     * @return this
+     */
+    public ConditionalDispatcher overrideResponseForMethod(HttpMethodEnum methodDispatcher, ConditionalMockResponse conditionalMockResponse) {
+
+        requireNonNull(methodDispatcher);
+        requireNonNull(conditionalMockResponse);
+
+        this.ruleLayer.updateAndGet(currentRuleLayer -> currentRuleLayer.withOverride(methodDispatcher, conditionalMockResponse));
+        return this;
+    }
+
+    /**
+     * Remove the responses with this id from the current layer, and hide the ones of the layers below
+     * @param id the response id
+     * @return this
+     */
+    public ConditionalDispatcher removeResponse(String id) {
+
+        requireNonNull(id);
+
+        this.ruleLayer.updateAndGet(currentRuleLayer -> currentRuleLayer.withRemoved(id));
+        return this;
+    }
+
+    /**
+     * Start a new layer, typically for one test: its responses are checked first and its fetch counts start at 0
+     * @return this
+     */
+    public ConditionalDispatcher pushLayer() {
+
+        this.pushLayerAndGetDepth();
+        return this;
+    }
+
+    /**
+     * Start a new layer, like {@link #pushLayer()}
+     * @return the depth of the new layer, even when other layers are pushed concurrently
+     */
+    public int pushLayerAndGetDepth() {
+        return this.ruleLayer.updateAndGet(RuleLayer::push).getDepth();
+    }
+
+    /**
+     * Discard the current layer, with its responses, removals and fetch counts, in constant time
+     * @return this
+     */
+    public ConditionalDispatcher popLayer() {
+
+        this.ruleLayer.updateAndGet(currentRuleLayer -> {
+            if (currentRuleLayer.getDepth() <= this.baseDepth) {
+                throw new IllegalStateException("No pushed layer to discard");
+            }
+
+            return currentRuleLayer.pop();
+        });
+
+        return this;
+    }
+
+    /**
+     * Discard the current layer, only if it is the one at this depth
+     * @param layerDepth the depth of the layer, see {@link #pushLayerAndGetDepth()}
+     * @return this
+     */
+    public ConditionalDispatcher popLayer(int layerDepth) {
+
+        this.ruleLayer.updateAndGet(currentRuleLayer -> {
+            if (currentRuleLayer.getDepth() != layerDepth || layerDepth <= this.baseDepth) {
+                throw new IllegalStateException("The current layer is not the pushed layer " + layerDepth);
+            }
+
+            return currentRuleLayer.pop();
+        });
+
+        return this;
+    }
+
+    /**
+     * @return the depth of the current layer, to replace its responses later
+     */
+    public int getLayerDepth() {
+        return this.ruleLayer.get().getDepth();
+    }
+
+    /**
+     * Replace every response of a layer at once, like the rules of a reloaded file.
+     * The new table is built before the swap: dispatches in flight end with the previous responses.
+     * @param layerDepth the depth of the layer, see {@link #getLayerDepth()}
+     * @param conditionalMockResponsesByMethod the new responses of the layer, by http method list
+     * @return this
+     */
+    public ConditionalDispatcher replaceResponses(int layerDepth, Map<HttpMethodEnum, List<ConditionalMockResponse>> conditionalMockResponsesByMethod) {
 
-        if (isNull(internConditionalMockResponses)) {
+        RuleTable ruleTable = RuleTable.EMPTY;
+        for (Map.Entry<HttpMethodEnum, List<ConditionalMockResponse>> entry : conditionalMockResponsesByMethod.entrySet()) {
+            ruleTable = ruleTable.withAdded(requireNonNull(entry.getKey()), entry.getValue());
+        }
 
-            internConditionalMockResponses = new ArrayList<>();
-            this.mockResponseMap.put(methodDispatcher, internConditionalMockResponses);
+        if (layerDepth < this.baseDepth) {
+            throw new IllegalStateException("The layers of the base rule set cannot be replaced");
         }
 
-        internConditionalMockResponses.addAll(conditionalMockResponses);
+        RuleTable replacingRuleTable = ruleTable;
+        this.ruleLayer.updateAndGet(currentRuleLayer -> currentRuleLayer.withRuleTableAt(layerDepth, replacingRuleTable));
 
         return this;
     }
 
+    /**
+     * @return the current rules, frozen, to be shared as the base of other dispatchers
+     */
+    public RuleSet toRuleSet() {
+        return new RuleSet(this.ruleLayer.get());
+    }
+
+    /**
+     * @param id the response id
+     * @return the number of fetches of the response in the current layer, whatever the layer of the response
+     */
+    public int getLayerFetchCounter(String id) {
+        return this.ruleLayer.get().getFetchCounter(id);
+    }
+
     public ConditionalDispatcher addResponse(List<ConditionalMockResponse> conditionalMockResponses) {
 
         return this.addResponseForMethod(COMMON, conditionalMockResponses);
@@ -167,18 +491,245 @@ public class ConditionalDispatcher extends Dispatcher {
 
         requireNonNull(httpMethodEnum);
 
-        List<ConditionalMockResponse> conditionalMockResponses = this.mockResponseMap.get(httpMethodEnum);
+        // the response of the upper layer wins when several layers use the same id
+        return this.ruleLayer.get().getVisibleResponses(httpMethodEnum).stream()
+                .collect(Collectors.toMap(ConditionalMockResponse::getId, conditionalMockResponse -> conditionalMockResponse, (upper, lower) -> upper));
+    }
+
+    /**
+     * Body conditions only look at the first bytes of the body, to bound their cost on large uploads
+     * @param bodyScanLimit the maximum number of body bytes scanned
+     * @return this
+     */
+    public ConditionalDispatcher setBodyScanLimit(long bodyScanLimit) {
+
+        if (bodyScanLimit < 0) {
+            throw new IllegalArgumentException("Body scan limit should not be negative");
+        }
+
+        this.bodyScanLimit = bodyScanLimit;
+        return this;
+    }
+
+    /**
+     * By default, a request that matches nothing waits for a response in the queue.
+     * With a fail fast response, it gets this response when the queue is empty, also after a reset.
+     * @param queueFailFastResponse the response served when the queue is empty, null to wait again
+     * @return this
+     */
+    public synchronized ConditionalDispatcher setQueueFailFast(MockResponse queueFailFastResponse) {
+
+        this.queueFailFastResponse = queueFailFastResponse;
+        this.queueDispatcher.setFailFast(queueFailFastResponse);
+        return this;
+    }
+
+    /**
+     * By default, a request that matches nothing is served by the queue.
+     * A miss dispatcher serves it instead, like a {@link io.geemov42.okhttp3.conditionaldispatcher.recording.RecordingDispatcher}
+     * forwarding it to the real service.
+     * @param missDispatcher the dispatcher of the requests no response matches, null to use the queue again
+     * @return this
+     */
+    public ConditionalDispatcher setMissDispatcher(Dispatcher missDispatcher) {
+
+        this.missDispatcher = missDispatcher;
+        return this;
+    }
+
+    /**
+     * Delay the responses of a method list which have no latency profile of their own
+     * @param methodDispatcher the method list, COMMON included
+     * @param latencyProfile the profile, null to remove it
+     * @return this
+     */
+    public synchronized ConditionalDispatcher setLatencyProfile(HttpMethodEnum methodDispatcher, LatencyProfile latencyProfile) {
+
+        requireNonNull(methodDispatcher);
+
+        // copied on write, the dispatch path reads the map without lock
+        Map<HttpMethodEnum, LatencyProfile> profiles = new EnumMap<>(this.latencyProfilesByMethod);
+        if (isNull(latencyProfile)) {
+            profiles.remove(methodDispatcher);
+        } else {
+            profiles.put(methodDispatcher, latencyProfile);
+        }
+        this.latencyProfilesByMethod = profiles;
+
+        return this;
+    }
+
+    /**
+     * Listeners are called from the dispatching threads, in registration order
+     * @param dispatchListener the listener to add, like a {@link io.geemov42.okhttp3.conditionaldispatcher.metrics.DispatchMetrics}
+     * @return this
+     */
+    public synchronized ConditionalDispatcher addDispatchListener(DispatchListener dispatchListener) {
+
+        this.dispatchListener = CompositeDispatchListener.with(this.dispatchListener, requireNonNull(dispatchListener));
+        return this;
+    }
+
+    public synchronized ConditionalDispatcher removeDispatchListener(DispatchListener dispatchListener) {
+
+        this.dispatchListener = CompositeDispatchListener.without(this.dispatchListener, dispatchListener);
+        return this;
+    }
+
+    /**
+     * @param beyondLimitLogInterval the minimum interval between two logs of responses fetched beyond their limit
+     * @return this
+     */
+    public ConditionalDispatcher setBeyondLimitLogInterval(Duration beyondLimitLogInterval) {
+
+        if (beyondLimitLogInterval.isNegative()) {
+            throw new IllegalArgumentException("Beyond limit log interval should not be negative");
+        }
+
+        this.beyondLimitLogIntervalNanos = beyondLimitLogInterval.toNanos();
+        return this;
+    }
+
+    /**
+     * MockWebServer keeps every recorded request until it is taken, which fills the heap on long runs.
+     * Once set, the requests are discarded as they are dispatched: use a {@link io.geemov42.okhttp3.conditionaldispatcher.journal.RequestJournal}
+     * instead of takeRequest.
+     * @param recordedRequestTaker the takeRequest method of the server using this dispatcher, like mockWebServer::takeRequest,
+     *                             null to keep the recorded requests again
+     * @return this
+     */
+    public ConditionalDispatcher discardRecordedRequestsOf(RecordedRequestTaker recordedRequestTaker) {
+
+        this.recordedRequestTaker = recordedRequestTaker;
+        return this;
+    }
+
+    /**
+     * Memoize dispatch decisions for requests hitting the same urls again and again.
+     * A decision is keyed on the method, the path with its query string and the headers referenced by conditions.
+     * Responses with body conditions, with a fetch limit or keyed are not memoized, nor any decision reached after evaluating one of them.
+     * Registrations invalidate the cache. On a cache hit, candidate and condition events are not notified to listeners.
+     * @param maximumSize the maximum number of decisions kept
+     * @return this
+     */
+    public ConditionalDispatcher enableDecisionCache(int maximumSize) {
+
+        this.decisionCache.set(new DecisionCache(this.ruleLayer.get(), maximumSize));
+        return this;
+    }
 
-        if (isNull(conditionalMockResponses)) {
-            return Collections.emptyMap();
+    public ConditionalDispatcher disableDecisionCache() {
+
+        this.decisionCache.set(null);
+        return this;
+    }
+
+    /**
+     * @return the decision cache counters, or null if the cache is not enabled
+     */
+    public DecisionCacheStats getDecisionCacheStats() {
+
+        DecisionCache currentDecisionCache = this.decisionCache.get();
+        return isNull(currentDecisionCache) ? null : currentDecisionCache.getStats();
+    }
+
+    /**
+     * @return the counters of the rate limiters of the visible responses, by response id
+     */
+    public Map<String, RateLimiterStats> getRateLimiterStats() {
+
+        Map<String, RateLimiterStats> rateLimiterStats = new HashMap<>();
+        RuleLayer currentRuleLayer = this.ruleLayer.get();
+
+        for (HttpMethodEnum httpMethodEnum : HttpMethodEnum.values()) {
+            for (ConditionalMockResponse conditionalMockResponse : currentRuleLayer.getVisibleResponses(httpMethodEnum)) {
+                RateLimiter rateLimiter = conditionalMockResponse.getRateLimiter();
+
+                if (!isNull(rateLimiter)) {
+                    rateLimiterStats.putIfAbsent(conditionalMockResponse.getId(), rateLimiter.getStats());
+                }
+            }
         }
 
-        return conditionalMockResponses.stream()
-                .filter(Objects::nonNull)
-                .collect(Collectors.toMap(ConditionalMockResponse::getId, conditionalMockResponse -> conditionalMockResponse));
+        return rateLimiterStats;
     }
 
-    public void resetResponseQueue() {
-        this.queueDispatcher = new QueueDispatcher();
+    /**
+     * Adapt the evaluation order of the responses of this dispatcher to the traffic, without changing any outcome.
+     * The outcome of each condition evaluated is then recorded, and its cost sampled.
+     * The responses of a base rule set are left in their order.
+     * @param adaptiveOrdering the ordering, null to evaluate conditions and responses in their declared order again
+     * @return this
+     */
+    public synchronized ConditionalDispatcher setAdaptiveOrdering(AdaptiveOrdering adaptiveOrdering) {
+
+        this.adaptiveOrdering = adaptiveOrdering;
+
+        if (isNull(adaptiveOrdering)) {
+            AdaptiveOrdering.restoreConditions(this.ruleLayer.get(), this.baseDepth);
+            this.ruleLayer.updateAndGet(currentRuleLayer -> AdaptiveOrdering.restoreResponses(currentRuleLayer, this.baseDepth));
+        }
+
+        return this;
+    }
+
+    /**
+     * Run a pass of the adaptive ordering now, on the calling thread, rather than in the background at the end of its interval
+     * @return this
+     */
+    public ConditionalDispatcher reorderNow() {
+
+        AdaptiveOrdering currentAdaptiveOrdering = this.adaptiveOrdering;
+        if (!isNull(currentAdaptiveOrdering)) {
+            this.reorder(currentAdaptiveOrdering);
+        }
+
+        return this;
+    }
+
+    /**
+     * Synchronized with setAdaptiveOrdering: a pass started before the ordering was disabled or replaced is dropped,
+     * so that it does not publish its orders after the declared ones were restored
+     */
+    private synchronized void reorder(AdaptiveOrdering currentAdaptiveOrdering) {
+
+        if (this.adaptiveOrdering != currentAdaptiveOrdering) {
+            return;
+        }
+
+        currentAdaptiveOrdering.reorderConditions(this.ruleLayer.get(), this.baseDepth);
+        currentAdaptiveOrdering.hoistResponses(this.ruleLayer, this.baseDepth);
+    }
+
+    /**
+     * Explain the requests that match no response, before they fall through to the queue.
+     * Matched requests do not pay for it.
+     * @param missDiagnostics the diagnostics, null to stop explaining misses
+     * @return this
+     */
+    public ConditionalDispatcher setMissDiagnostics(MissDiagnostics missDiagnostics) {
+
+        this.missDiagnostics = missDiagnostics;
+        return this;
+    }
+
+    /**
+     * Synchronized with {@link #setQueueFailFast(MockResponse)}, so the new queue fails fast with the current response
+     */
+    public synchronized void resetResponseQueue() {
+
+        QueueDispatcher newQueueDispatcher = new QueueDispatcher();
+        newQueueDispatcher.setFailFast(this.queueFailFastResponse);
+        this.queueDispatcher = newQueueDispatcher;
+    }
+
+    /**
+     * The takeRequest method of a MockWebServer, taken as a method reference so that this library does not depend on
+     * the junit 4 classes MockWebServer extends
+     */
+    @FunctionalInterface
+    public interface RecordedRequestTaker {
+
+        RecordedRequest takeRequest(long timeout, TimeUnit unit) throws InterruptedException;
     }
 }
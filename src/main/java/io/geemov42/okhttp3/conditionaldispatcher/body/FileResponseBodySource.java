@@ -0,0 +1,70 @@
+package io.geemov42.okhttp3.conditionaldispatcher.body;
+
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Body read from a file each time it is served, so a fixture of any size costs nothing on the heap until it is served.
+ * The file is memory mapped and copied once, from the page cache to the segments of the served buffer.
+ */
+public class FileResponseBodySource extends ResponseBodySource {
+
+    /**
+     * A mapping is bounded to 2 GB, large files are mapped in several regions
+     */
+    private static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+
+    private final Path path;
+
+    FileResponseBodySource(Path path) {
+
+        this.path = requireNonNull(path);
+
+        if (!Files.isRegularFile(path)) {
+            throw new IllegalArgumentException("No file " + path);
+        }
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * @return the current size of the file, which is read again when served
+     */
+    @Override
+    public long size() {
+
+        try {
+            return Files.size(this.path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+
+        try (FileChannel fileChannel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+
+            for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+                MappedByteBuffer region = fileChannel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+
+                while (region.hasRemaining()) {
+                    sink.write(region);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package io.geemov42.okhttp3.conditionaldispatcher.body;
+
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.util.function.LongFunction;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * A stream of newline delimited json records, each one built while written.
+ */
+public class NdjsonResponseBodySource extends ResponseBodySource {
+
+    private final long recordCount;
+    private final LongFunction<String> recordFactory;
+
+    /**
+     * @param recordCount the number of records
+     * @param recordFactory the json of the record at an index, on a single line
+     */
+    NdjsonResponseBodySource(long recordCount, LongFunction<String> recordFactory) {
+
+        if (recordCount < 0) {
+            throw new IllegalArgumentException("Record count should not be negative");
+        }
+
+        this.recordCount = recordCount;
+        this.recordFactory = requireNonNull(recordFactory);
+    }
+
+    /**
+     * @return -1, the size of the records is only known once built
+     */
+    @Override
+    public long size() {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+
+        for (long index = 0; index < this.recordCount; index++) {
+            sink.writeUtf8(this.recordFactory.apply(index)).writeByte('\n');
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.geemov42.okhttp3.conditionaldispatcher.body;
+
+import okio.BufferedSink;
+import okio.ByteString;
+
+import java.io.IOException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * A pattern repeated up to any size, the last repetition being truncated, generated while written.
+ */
+public class PatternResponseBodySource extends ResponseBodySource {
+
+    private static final int GENERATED_CHUNK_SIZE = 8192;
+
+    private final ByteString pattern;
+    private final long size;
+
+    PatternResponseBodySource(ByteString pattern, long size) {
+
+        this.pattern = requireNonNull(pattern);
+
+        if (pattern.size() == 0) {
+            throw new IllegalArgumentException("Pattern should not be empty");
+        }
+
+        if (size < 0) {
+            throw new IllegalArgumentException("Size should not be negative");
+        }
+
+        this.size = size;
+    }
+
+    @Override
+    public long size() {
+        return this.size;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+
+        // whole repetitions only, so each chunk starts at the beginning of the pattern
+        int repetitions = Math.max(1, GENERATED_CHUNK_SIZE / this.pattern.size());
+        byte[] chunk = new byte[repetitions * this.pattern.size()];
+        for (int i = 0; i < repetitions; i++) {
+            this.pattern.copyInto(0, chunk, i * this.pattern.size(), this.pattern.size());
+        }
+
+        for (long remaining = this.size; remaining > 0; ) {
+            int length = (int) Math.min(chunk.length, remaining);
+
+            sink.write(chunk, 0, length);
+            remaining -= length;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.geemov42.okhttp3.conditionaldispatcher.body;
+
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+/**
+ * @author geemov42
+ * Pseudo-random bytes of any size, the same for a given seed, generated while written.
+ */
+public class RandomResponseBodySource extends ResponseBodySource {
+
+    /**
+     * A multiple of 8, so that the bytes do not depend on how the body is split
+     */
+    private static final int GENERATED_CHUNK_SIZE = 8192;
+
+    private final long size;
+    private final long seed;
+
+    RandomResponseBodySource(long size, long seed) {
+
+        if (size < 0) {
+            throw new IllegalArgumentException("Size should not be negative");
+        }
+
+        this.size = size;
+        this.seed = seed;
+    }
+
+    @Override
+    public long size() {
+        return this.size;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+
+        SplittableRandom random = new SplittableRandom(this.seed);
+        byte[] chunk = new byte[(int) Math.min(GENERATED_CHUNK_SIZE, Math.max(8, this.size))];
+
+        for (long remaining = this.size; remaining > 0; ) {
+            int length = (int) Math.min(chunk.length, remaining);
+
+            for (int i = 0; i < length; i += 8) {
+                long value = random.nextLong();
+
+                for (int b = 0; b < 8 && i + b < length; b++) {
+                    chunk[i + b] = (byte) (value >>> (8 * b));
+                }
+            }
+
+            sink.write(chunk, 0, length);
+            remaining -= length;
+        }
+    }
+}
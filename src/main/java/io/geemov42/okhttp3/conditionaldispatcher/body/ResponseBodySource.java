@@ -0,0 +1,46 @@
+package io.geemov42.okhttp3.conditionaldispatcher.body;
+
+import okio.Buffer;
+import okio.BufferedSink;
+
+import java.io.IOException;
+
+/**
+ * @author geemov42
+ * Body of a mock response produced when the response is served, instead of being held by the mock response.
+ * MockWebServer writes a response body from a buffer: only the bodies being served are on the heap.
+ * Use {@link ResponseBodySources} to create one.
+ */
+public abstract class ResponseBodySource {
+
+    /**
+     * @return the body size in bytes, or -1 if it is only known once produced
+     */
+    public abstract long size();
+
+    /**
+     * Write the whole body, piece by piece: the sink is the served buffer, or the stream of a streamed body
+     * @param sink where to write the body
+     * @throws IOException if the body cannot be read or written
+     */
+    public abstract void writeTo(BufferedSink sink) throws IOException;
+
+    /**
+     * @return the buffer of one serve of the body
+     * @throws IOException if the body cannot be read
+     */
+    public Buffer open() throws IOException {
+
+        Buffer buffer = new Buffer();
+        this.writeTo(buffer);
+
+        return buffer;
+    }
+
+    /**
+     * @return the Content-Encoding of the bytes, like gzip, or null if they are not encoded
+     */
+    public String getContentEncoding() {
+        return null;
+    }
+}
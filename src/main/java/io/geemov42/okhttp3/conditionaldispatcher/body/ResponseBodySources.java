@@ -0,0 +1,115 @@
+package io.geemov42.okhttp3.conditionaldispatcher.body;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.GzipSink;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.function.LongFunction;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Factory of response body sources.
+ */
+public class ResponseBodySources {
+
+    private static final String GZIP_CONTENT_ENCODING = "gzip";
+
+    private ResponseBodySources(){}
+
+    /**
+     * @param path a file read each time the body is served
+     * @return a source costing no heap until served
+     */
+    public static ResponseBodySource file(Path path) {
+        return new FileResponseBodySource(path);
+    }
+
+    /**
+     * @param bytes the body, copied once
+     * @return a source to share between responses
+     */
+    public static ResponseBodySource shared(ByteString bytes) {
+        return new SharedResponseBodySource(new Buffer().write(requireNonNull(bytes)), null);
+    }
+
+    public static ResponseBodySource shared(String utf8) {
+        return new SharedResponseBodySource(new Buffer().writeUtf8(requireNonNull(utf8)), null);
+    }
+
+    /**
+     * @param responseBodySource a source, like a file, read once now
+     * @return a source to share between responses, holding the bytes of the given source
+     */
+    public static ResponseBodySource shared(ResponseBodySource responseBodySource) {
+
+        try {
+            return new SharedResponseBodySource(responseBodySource.open(), responseBodySource.getContentEncoding());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param size the body size, up to gigabytes as only a small chunk is generated at once
+     * @param seed the same seed gives the same bytes
+     * @return a source of pseudo-random bytes
+     */
+    public static ResponseBodySource random(long size, long seed) {
+        return new RandomResponseBodySource(size, seed);
+    }
+
+    /**
+     * @param pattern the repeated bytes
+     * @param size the body size
+     * @return a source repeating the pattern
+     */
+    public static ResponseBodySource pattern(ByteString pattern, long size) {
+        return new PatternResponseBodySource(pattern, size);
+    }
+
+    public static ResponseBodySource pattern(String utf8Pattern, long size) {
+        return pattern(ByteString.encodeUtf8(requireNonNull(utf8Pattern)), size);
+    }
+
+    /**
+     * @param recordCount the number of records
+     * @param recordFactory the single line json of the record at an index
+     * @return a source of newline delimited json
+     */
+    public static ResponseBodySource ndjson(long recordCount, LongFunction<String> recordFactory) {
+        return new NdjsonResponseBodySource(recordCount, recordFactory);
+    }
+
+    /**
+     * Pre-encode a body once, rather than compressing it on each serve.
+     * The served responses get the Content-Encoding: gzip header.
+     * @param responseBodySource a source read and compressed once now
+     * @return a source to share between responses, holding the compressed bytes
+     */
+    public static ResponseBodySource gzip(ResponseBodySource responseBodySource) {
+
+        if (GZIP_CONTENT_ENCODING.equals(responseBodySource.getContentEncoding())) {
+            return responseBodySource;
+        }
+
+        if (responseBodySource.getContentEncoding() != null) {
+            throw new IllegalArgumentException("Body already encoded with " + responseBodySource.getContentEncoding());
+        }
+
+        Buffer compressed = new Buffer();
+        try (BufferedSink gzipSink = Okio.buffer(new GzipSink(compressed))) {
+            gzipSink.writeAll(responseBodySource.open());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return new SharedResponseBodySource(compressed, GZIP_CONTENT_ENCODING);
+    }
+}
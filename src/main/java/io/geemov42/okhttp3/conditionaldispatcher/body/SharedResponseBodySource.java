@@ -0,0 +1,49 @@
+package io.geemov42.okhttp3.conditionaldispatcher.body;
+
+import okio.Buffer;
+import okio.BufferedSink;
+
+import java.io.IOException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Immutable body held once on the heap, whatever the number of responses pointing to it.
+ * Each serve is a clone of the buffer, which shares its segments instead of copying the bytes.
+ */
+public class SharedResponseBodySource extends ResponseBodySource {
+
+    private final Buffer bytes;
+    private final String contentEncoding;
+
+    /**
+     * @param bytes the body, owned by this source from now on
+     * @param contentEncoding the encoding of the bytes, null if not encoded
+     */
+    SharedResponseBodySource(Buffer bytes, String contentEncoding) {
+
+        this.bytes = requireNonNull(bytes);
+        this.contentEncoding = contentEncoding;
+    }
+
+    @Override
+    public long size() {
+        return this.bytes.size();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        sink.write(this.bytes.clone(), this.bytes.size());
+    }
+
+    @Override
+    public Buffer open() {
+        return this.bytes.clone();
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return this.contentEncoding;
+    }
+}
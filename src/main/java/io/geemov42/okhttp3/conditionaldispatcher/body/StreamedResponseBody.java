@@ -0,0 +1,109 @@
+package io.geemov42.okhttp3.conditionaldispatcher.body;
+
+import okhttp3.internal.http2.Http2Stream;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.internal.duplex.DuplexResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+import okio.Sink;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Body written straight to an HTTP/2 stream while it is generated, in constant memory:
+ * the writer is held back by the flow control of the client.
+ * MockWebServer only hands the stream to duplex bodies, so it does not throttle them: the throttle of the mock response
+ * is applied here instead.
+ */
+public class StreamedResponseBody implements DuplexResponseBody {
+
+    private final ResponseBodySource responseBodySource;
+    private final int chunkSize;
+    private final long throttleBytesPerPeriod;
+    private final long throttlePeriodNanos;
+
+    /**
+     * @param responseBodySource the body
+     * @param chunkSize the bytes flushed at once, 0 to let the stream decide
+     * @param throttleBytesPerPeriod the bytes written per period, Long.MAX_VALUE for no throttle
+     * @param throttlePeriod the pause after each period
+     * @param throttlePeriodUnit the unit of the pause
+     */
+    public StreamedResponseBody(ResponseBodySource responseBodySource, int chunkSize, long throttleBytesPerPeriod, long throttlePeriod, TimeUnit throttlePeriodUnit) {
+
+        this.responseBodySource = requireNonNull(responseBodySource);
+
+        if (chunkSize < 0 || throttleBytesPerPeriod <= 0 || throttlePeriod < 0) {
+            throw new IllegalArgumentException("Chunk size and throttle should be positive");
+        }
+
+        this.chunkSize = chunkSize;
+        this.throttleBytesPerPeriod = throttleBytesPerPeriod;
+        this.throttlePeriodNanos = throttlePeriodUnit.toNanos(throttlePeriod);
+    }
+
+    @Override
+    public void onRequest(RecordedRequest recordedRequest, Http2Stream http2Stream) throws IOException {
+
+        try (BufferedSink sink = Okio.buffer(new PacingSink(http2Stream.getSink()))) {
+            this.responseBodySource.writeTo(sink);
+        }
+    }
+
+    /**
+     * Split the writes in chunks, flushed one by one, and pause after each throttle period
+     */
+    private class PacingSink extends ForwardingSink {
+
+        private long bytesInChunk;
+        private long bytesInPeriod;
+
+        private PacingSink(Sink delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+
+            while (byteCount > 0) {
+                long pieceSize = Math.min(byteCount, StreamedResponseBody.this.throttleBytesPerPeriod - this.bytesInPeriod);
+                if (StreamedResponseBody.this.chunkSize > 0) {
+                    pieceSize = Math.min(pieceSize, StreamedResponseBody.this.chunkSize - this.bytesInChunk);
+                }
+
+                super.write(source, pieceSize);
+                byteCount -= pieceSize;
+                this.bytesInChunk += pieceSize;
+                this.bytesInPeriod += pieceSize;
+
+                if (this.bytesInChunk == StreamedResponseBody.this.chunkSize) {
+                    this.flush();
+                    this.bytesInChunk = 0;
+                }
+
+                if (this.bytesInPeriod == StreamedResponseBody.this.throttleBytesPerPeriod) {
+                    this.flush();
+                    this.bytesInPeriod = 0;
+                    this.pause();
+                }
+            }
+        }
+
+        private void pause() throws InterruptedIOException {
+
+            try {
+                TimeUnit.NANOSECONDS.sleep(StreamedResponseBody.this.throttlePeriodNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttling the body");
+            }
+        }
+    }
+}
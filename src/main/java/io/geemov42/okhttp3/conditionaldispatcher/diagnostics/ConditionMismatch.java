@@ -0,0 +1,26 @@
+package io.geemov42.okhttp3.conditionaldispatcher.diagnostics;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum;
+import lombok.Data;
+
+/**
+ * @author geemov42
+ * A matching condition that rejected the request, with what it expected and what the request had
+ */
+@Data
+public class ConditionMismatch {
+
+    private final RequestPartToTestEnum requestPartToTest;
+    /**
+     * The header or parameter name, or the json path
+     */
+    private final String field;
+    /**
+     * The value matcher, like EXACT(^\Q85047\E\z)
+     */
+    private final String expected;
+    /**
+     * The value of the request, shortened, or null if the request has none
+     */
+    private final String actual;
+}
@@ -0,0 +1,231 @@
+package io.geemov42.okhttp3.conditionaldispatcher.diagnostics;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.MatcherKindEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.MissReasonEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import io.geemov42.okhttp3.conditionaldispatcher.response.MatchingCondition;
+import io.geemov42.okhttp3.conditionaldispatcher.routing.RuleLayer;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.COMMON;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.MissReasonEnum.*;
+import static java.util.Objects.isNull;
+
+/**
+ * @author geemov42
+ * Explain the requests that no conditional mock response matched, computed only on a miss:
+ * matched requests are dispatched as before, without any extra cost.
+ * On a miss, every visible response is evaluated again against the request, without notifying listeners,
+ * to report the nearest ones and why they did not match, down to each failed condition with its expected and actual values.
+ * Reports are kept in a bounded buffer, dropping the oldest, and passed to a callback on the dispatching thread.
+ */
+@Slf4j
+public class MissDiagnostics {
+
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final int DEFAULT_NEAR_MISS_COUNT = 3;
+    private static final int MAX_VALUE_LENGTH = 256;
+
+    // the closest paths first, a matched path whatever the method: a wrong method is a common mistake,
+    // then the responses of the method of the request, and the fewest failed conditions
+    private static final Comparator<NearMiss> NEAREST_FIRST = Comparator.comparingInt(NearMiss::getPathDistance)
+            .thenComparing(Comparator.comparingInt((NearMiss nearMiss) -> nearMiss.getReason().ordinal()).reversed())
+            .thenComparingInt(nearMiss -> nearMiss.getConditionMismatches().size());
+
+    private final int capacity;
+    private final int nearMissCount;
+    private final Consumer<MissReport> callback;
+    private final ArrayDeque<MissReport> reports = new ArrayDeque<>();
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    /**
+     * @param capacity the number of reports kept, 64 by default
+     * @param nearMissCount the number of responses reported per miss, 3 by default
+     * @param callback called with each report, none by default
+     */
+    @Builder
+    public MissDiagnostics(Integer capacity, Integer nearMissCount, Consumer<MissReport> callback) {
+
+        this.capacity = isNull(capacity) ? DEFAULT_CAPACITY : capacity;
+        this.nearMissCount = isNull(nearMissCount) ? DEFAULT_NEAR_MISS_COUNT : nearMissCount;
+        this.callback = callback;
+
+        if (this.capacity <= 0 || this.nearMissCount <= 0) {
+            throw new IllegalArgumentException("Capacity and near miss count should be positive");
+        }
+    }
+
+    /**
+     * @param ruleLayer the rules the request was dispatched with
+     * @param requestContext the request, with a listener that is not notified of the evaluations
+     * @return the report, also kept and passed to the callback
+     */
+    public MissReport diagnose(RuleLayer ruleLayer, RequestContext requestContext) {
+
+        HttpMethodEnum requestHttpMethod = HttpMethodEnum.fromMethod(requestContext.getRecordedRequest().getMethod());
+        String path = requestContext.getPath();
+        List<NearMiss> nearMisses = new ArrayList<>();
+        int evaluatedResponses = 0;
+
+        for (HttpMethodEnum methodDispatcher : HttpMethodEnum.values()) {
+            for (ConditionalMockResponse conditionalMockResponse : ruleLayer.getVisibleResponses(methodDispatcher)) {
+                evaluatedResponses++;
+
+                NearMiss nearMiss = this.explain(methodDispatcher, conditionalMockResponse, requestHttpMethod, requestContext, path);
+                if (!isNull(nearMiss)) {
+                    nearMisses.add(nearMiss);
+                }
+            }
+        }
+
+        nearMisses.sort(NEAREST_FIRST);
+        MissReport missReport = new MissReport(this.nextSequence.getAndIncrement(), System.currentTimeMillis(),
+                requestContext.getRecordedRequest().getMethod(), path, evaluatedResponses,
+                List.copyOf(nearMisses.subList(0, Math.min(this.nearMissCount, nearMisses.size()))));
+
+        synchronized (this.reports) {
+            if (this.reports.size() == this.capacity) {
+                this.reports.removeFirst();
+            }
+            this.reports.addLast(missReport);
+        }
+
+        if (!isNull(this.callback)) {
+            try {
+                this.callback.accept(missReport);
+            } catch (RuntimeException e) {
+                log.warn("Miss diagnostics callback failed for {} {}", missReport.getMethod(), missReport.getPath(), e);
+            }
+        }
+
+        return missReport;
+    }
+
+    /**
+     * @return the reports kept, oldest first
+     */
+    public List<MissReport> getReports() {
+
+        synchronized (this.reports) {
+            return new ArrayList<>(this.reports);
+        }
+    }
+
+    /**
+     * @return the number of misses diagnosed, dropped reports included
+     */
+    public long getMissCount() {
+        return this.nextSequence.get();
+    }
+
+    public void clear() {
+
+        synchronized (this.reports) {
+            this.reports.clear();
+        }
+    }
+
+    /**
+     * @return why the response did not match, or null if it matches now, like a keyed response given its key since
+     */
+    private NearMiss explain(HttpMethodEnum methodDispatcher, ConditionalMockResponse conditionalMockResponse, HttpMethodEnum requestHttpMethod,
+                             RequestContext requestContext, String path) {
+
+        ValueMatcher pathMatcher = conditionalMockResponse.getPathMatcher();
+        boolean pathMatched = pathMatcher.matches(path);
+        List<ConditionMismatch> conditionMismatches = pathMatched ? conditionMismatches(conditionalMockResponse, requestContext) : List.of();
+
+        MissReasonEnum reason;
+        if (methodDispatcher != COMMON && methodDispatcher != requestHttpMethod) {
+            reason = METHOD;
+        } else if (!pathMatched) {
+            reason = PATH;
+        } else if (!conditionMismatches.isEmpty()) {
+            reason = CONDITION;
+        } else if (!conditionalMockResponse.matchConditions(requestContext)) {
+            reason = RESPONSE;
+        } else {
+            return null;
+        }
+
+        return new NearMiss(conditionalMockResponse.getId(), methodDispatcher, reason, pathMatcher.toString(),
+                pathMatched ? 0 : pathDistance(pathMatcher, path), conditionMismatches);
+    }
+
+    private static List<ConditionMismatch> conditionMismatches(ConditionalMockResponse conditionalMockResponse, RequestContext requestContext) {
+
+        List<ConditionMismatch> conditionMismatches = new ArrayList<>();
+
+        // every condition, in declared order, not only the first failing one
+        for (MatchingCondition matchingCondition : conditionalMockResponse.getMatchingConditions()) {
+            if (!matchingCondition.matches(requestContext)) {
+                conditionMismatches.add(new ConditionMismatch(matchingCondition.getRequestPartToTest(), matchingCondition.getField(),
+                        matchingCondition.getValueMatcher().toString(), shorten(matchingCondition.getTestedValue(requestContext))));
+            }
+        }
+
+        return conditionMismatches;
+    }
+
+    /**
+     * Edit distance between the path, without query string, and the literal the path matcher requires, or its regex.
+     * A prefix is compared to the start of the path only.
+     */
+    private static int pathDistance(ValueMatcher pathMatcher, String path) {
+
+        int queryStart = path.indexOf('?');
+        String comparedPath = queryStart < 0 ? path : path.substring(0, queryStart);
+        String literal = pathMatcher.getRequiredLiteral();
+        String expected = isNull(literal) ? pathMatcher.getPattern().pattern() : literal;
+
+        if (!isNull(literal) && pathMatcher.getKind() == MatcherKindEnum.PREFIX && comparedPath.length() > expected.length()) {
+            comparedPath = comparedPath.substring(0, expected.length());
+        }
+
+        return Math.max(1, editDistance(shorten(expected), shorten(comparedPath)));
+    }
+
+    private static int editDistance(String first, String second) {
+
+        int[] previous = new int[second.length() + 1];
+        int[] current = new int[second.length() + 1];
+        for (int j = 0; j <= second.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= first.length(); i++) {
+            current[0] = i;
+
+            for (int j = 1; j <= second.length(); j++) {
+                int substitution = previous[j - 1] + (first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return previous[second.length()];
+    }
+
+    private static String shorten(CharSequence value) {
+
+        if (isNull(value)) {
+            return null;
+        }
+
+        return value.length() <= MAX_VALUE_LENGTH ? value.toString() : value.subSequence(0, MAX_VALUE_LENGTH) + "...";
+    }
+}
@@ -0,0 +1,29 @@
+package io.geemov42.okhttp3.conditionaldispatcher.diagnostics;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * @author geemov42
+ * Explanation of a request that no conditional mock response matched
+ */
+@Data
+public class MissReport {
+
+    /**
+     * Miss order, starting at 0, gaps show reports dropped from the buffer
+     */
+    private final long sequence;
+    private final long timestampMillis;
+    private final String method;
+    private final String path;
+    /**
+     * The number of visible responses evaluated, in every http method list
+     */
+    private final int evaluatedResponses;
+    /**
+     * The nearest responses first: same method before other methods, conditions failed before paths, then by path distance
+     */
+    private final List<NearMiss> nearMisses;
+}
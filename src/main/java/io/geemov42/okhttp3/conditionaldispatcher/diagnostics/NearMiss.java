@@ -0,0 +1,31 @@
+package io.geemov42.okhttp3.conditionaldispatcher.diagnostics;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.MissReasonEnum;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * @author geemov42
+ * A conditional mock response close to a request it did not match, and why it did not
+ */
+@Data
+public class NearMiss {
+
+    private final String id;
+    private final HttpMethodEnum methodDispatcher;
+    private final MissReasonEnum reason;
+    /**
+     * The path matcher of the response, like PREFIX(^\Q/persons\E)
+     */
+    private final String expectedPath;
+    /**
+     * The edit distance between the path of the request and the literal of the path matcher, 0 when the path matched
+     */
+    private final int pathDistance;
+    /**
+     * Every condition that rejected the request, in declared order, when the path matched, whatever the method
+     */
+    private final List<ConditionMismatch> conditionMismatches;
+}
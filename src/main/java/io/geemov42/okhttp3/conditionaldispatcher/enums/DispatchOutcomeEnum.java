@@ -0,0 +1,27 @@
+package io.geemov42.okhttp3.conditionaldispatcher.enums;
+
+/**
+ * @author geemov42
+ * How a request was served by the conditional dispatcher
+ */
+public enum DispatchOutcomeEnum {
+    /**
+     * A conditional mock response matched
+     */
+    RULE,
+
+    /**
+     * No conditional mock response matched, a response added in the queue was served
+     */
+    QUEUE,
+
+    /**
+     * No conditional mock response matched and the queue was empty, the fail fast response was served
+     */
+    MISS,
+
+    /**
+     * No conditional mock response matched, the miss dispatcher served the request instead of the queue
+     */
+    FALLBACK
+}
@@ -1,5 +1,10 @@
 package io.geemov42.okhttp3.conditionaldispatcher.enums;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+
 /**
  * @author geemov42
  * This class contain http method for mock response classification
@@ -52,5 +57,42 @@ public enum HttpMethodEnum {
     /**
      * If you want to create response independent of http method you can use COMMON
      */
-    COMMON
+    COMMON;
+
+    // values() copies its array on each call
+    private static final HttpMethodEnum[] VALUES = values();
+    private static final Map<String, HttpMethodEnum> METHODS_BY_NAME = new HashMap<>();
+
+    static {
+        for (HttpMethodEnum httpMethodEnum : VALUES) {
+            if (httpMethodEnum != COMMON) {
+                METHODS_BY_NAME.put(httpMethodEnum.name(), httpMethodEnum);
+            }
+        }
+    }
+
+    /**
+     * Lookup of a request method without allocation, the exact upper case name being the usual case
+     * @param method the request method, case insensitive
+     * @return the http method or null if the method is not one of the known ones, like PROPFIND
+     */
+    public static HttpMethodEnum fromMethod(String method) {
+
+        if (isNull(method)) {
+            return null;
+        }
+
+        HttpMethodEnum httpMethodEnum = METHODS_BY_NAME.get(method);
+        if (!isNull(httpMethodEnum)) {
+            return httpMethodEnum;
+        }
+
+        for (HttpMethodEnum candidate : VALUES) {
+            if (candidate != COMMON && candidate.name().equalsIgnoreCase(method)) {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
 }
@@ -0,0 +1,42 @@
+package io.geemov42.okhttp3.conditionaldispatcher.enums;
+
+/**
+ * @author geemov42
+ * How a value matcher tests a request value
+ */
+public enum MatcherKindEnum {
+    /**
+     * The regex is found somewhere in the value
+     */
+    REGEX,
+
+    /**
+     * The value is the literal
+     */
+    EXACT,
+
+    /**
+     * The value starts with the literal
+     */
+    PREFIX,
+
+    /**
+     * The value ends with the literal
+     */
+    SUFFIX,
+
+    /**
+     * The value contains the literal
+     */
+    CONTAINS,
+
+    /**
+     * The value is the literal, ignoring case
+     */
+    EQUALS_IGNORE_CASE,
+
+    /**
+     * The value is one of a set of literals, tested with a hash lookup
+     */
+    ONE_OF
+}
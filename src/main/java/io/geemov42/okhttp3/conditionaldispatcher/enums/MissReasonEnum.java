@@ -0,0 +1,27 @@
+package io.geemov42.okhttp3.conditionaldispatcher.enums;
+
+/**
+ * @author geemov42
+ * Why a conditional mock response did not match a request
+ */
+public enum MissReasonEnum {
+    /**
+     * The response is in the list of another http method
+     */
+    METHOD,
+
+    /**
+     * The path matcher of the response rejected the path
+     */
+    PATH,
+
+    /**
+     * The method and path matched, at least one matching condition did not
+     */
+    CONDITION,
+
+    /**
+     * The method, path and conditions matched, the response itself declined the request, like a keyed response without the key
+     */
+    RESPONSE
+}
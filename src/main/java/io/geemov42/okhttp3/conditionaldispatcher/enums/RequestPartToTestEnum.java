@@ -1,5 +1,15 @@
 package io.geemov42.okhttp3.conditionaldispatcher.enums;
 
 public enum RequestPartToTestEnum {
-    HEADER, PARAMETER, BODY
+    HEADER, PARAMETER, BODY,
+
+    /**
+     * The percent-decoded path, without query string
+     */
+    PATH,
+
+    /**
+     * A value of a json body, the field being its json path like $.customer.id
+     */
+    JSON_PATH
 }
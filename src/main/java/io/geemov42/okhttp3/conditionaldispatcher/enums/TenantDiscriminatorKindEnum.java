@@ -0,0 +1,17 @@
+package io.geemov42.okhttp3.conditionaldispatcher.enums;
+
+/**
+ * @author geemov42
+ * Where a tenant dispatcher reads the tenant of a request
+ */
+public enum TenantDiscriminatorKindEnum {
+    /**
+     * The value of a header, like X-Test-Id
+     */
+    HEADER,
+
+    /**
+     * The first path segment, stripped before the tenant rules are matched
+     */
+    PATH_PREFIX
+}
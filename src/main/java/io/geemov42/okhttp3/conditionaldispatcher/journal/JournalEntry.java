@@ -0,0 +1,32 @@
+package io.geemov42.okhttp3.conditionaldispatcher.journal;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * @author geemov42
+ * Copy of one journal slot, detached from the ring buffer
+ */
+@Data
+public class JournalEntry {
+
+    /**
+     * Dispatch order, starting at 0, gaps show overwritten entries
+     */
+    private final long sequence;
+    private final long timestampMillis;
+    private final String method;
+    private final String path;
+    /**
+     * Values of the recorded headers present in the request
+     */
+    private final Map<String, String> headers;
+    private final String bodyPrefix;
+    private final long bodySize;
+    /**
+     * The id of the conditional mock response served, or "queue" or "miss"
+     */
+    private final String outcome;
+    private final long dispatchNanos;
+}
@@ -0,0 +1,278 @@
+package io.geemov42.okhttp3.conditionaldispatcher.journal;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.DispatchOutcomeEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.metrics.DispatchListener;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import lombok.Builder;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNullElseGet;
+
+/**
+ * @author geemov42
+ * Journal of the last dispatched requests, with the rule that served them, in a fixed memory budget.
+ * Slots are allocated up front and overwritten in a ring: recording copies a few references and the body prefix bytes,
+ * without allocation. Each slot is a seqlock, so readers copy consistent entries without blocking the dispatching threads.
+ */
+public class RequestJournal implements DispatchListener {
+
+    public static final String QUEUE_OUTCOME = "queue";
+    public static final String MISS_OUTCOME = "miss";
+    public static final String FALLBACK_OUTCOME = "fallback";
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int DEFAULT_BODY_PREFIX_LENGTH = 64;
+
+    private final Slot[] slots;
+    private final int mask;
+    private final String[] recordedHeaders;
+    private final int bodyPrefixLength;
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    /**
+     * @param capacity the number of entries kept, rounded up to a power of two, 1024 by default
+     * @param recordedHeaders the names of the headers kept in the entries, none by default
+     * @param bodyPrefixLength the number of body bytes kept in the entries, 64 by default
+     */
+    @Builder
+    public RequestJournal(Integer capacity, List<String> recordedHeaders, Integer bodyPrefixLength) {
+
+        int requestedCapacity = isNull(capacity) ? DEFAULT_CAPACITY : capacity;
+        this.bodyPrefixLength = isNull(bodyPrefixLength) ? DEFAULT_BODY_PREFIX_LENGTH : bodyPrefixLength;
+
+        if (requestedCapacity <= 0 || requestedCapacity > 1 << 30) {
+            throw new IllegalArgumentException("Journal capacity should be between 1 and 2^30");
+        }
+
+        if (this.bodyPrefixLength < 0) {
+            throw new IllegalArgumentException("Body prefix length should not be negative");
+        }
+
+        this.recordedHeaders = requireNonNullElseGet(recordedHeaders, List::<String>of).toArray(new String[0]);
+
+        int slotCount = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.slots = new Slot[Math.max(1, slotCount)];
+        this.mask = this.slots.length - 1;
+
+        for (int i = 0; i < this.slots.length; i++) {
+            this.slots[i] = new Slot(this.recordedHeaders.length, this.bodyPrefixLength);
+        }
+    }
+
+    @Override
+    public void onDispatched(RecordedRequest recordedRequest, DispatchOutcomeEnum dispatchOutcome, ConditionalMockResponse conditionalMockResponse, long dispatchNanos) {
+
+        long sequence = this.nextSequence.getAndIncrement();
+        Slot slot = this.slots[(int) (sequence & this.mask)];
+
+        long version = slot.acquire();
+        try {
+            // a writer lapped by a faster one does not overwrite the newer entry
+            if (slot.sequence > sequence) {
+                return;
+            }
+
+            slot.sequence = sequence;
+            slot.timestampMillis = System.currentTimeMillis();
+            slot.method = recordedRequest.getMethod();
+            slot.path = recordedRequest.getPath();
+            slot.outcome = outcomeOf(dispatchOutcome, conditionalMockResponse);
+            slot.dispatchNanos = dispatchNanos;
+
+            for (int i = 0; i < this.recordedHeaders.length; i++) {
+                slot.headerValues[i] = firstHeader(recordedRequest.getHeaders(), this.recordedHeaders[i]);
+            }
+
+            Buffer body = recordedRequest.getBody();
+            slot.bodySize = body.size();
+            slot.bodyPrefixSize = (int) Math.min(this.bodyPrefixLength, body.size());
+            for (int i = 0; i < slot.bodyPrefixSize; i++) {
+                slot.bodyPrefix[i] = body.getByte(i);
+            }
+        } finally {
+            slot.release(version);
+        }
+    }
+
+    private static String outcomeOf(DispatchOutcomeEnum dispatchOutcome, ConditionalMockResponse conditionalMockResponse) {
+
+        switch (dispatchOutcome) {
+            case RULE:
+                return conditionalMockResponse.getId();
+            case MISS:
+                return MISS_OUTCOME;
+            case FALLBACK:
+                return FALLBACK_OUTCOME;
+            default:
+                return QUEUE_OUTCOME;
+        }
+    }
+
+    private static String firstHeader(Headers headers, String name) {
+
+        // Headers.get allocates a progression per call
+        for (int i = 0; i < headers.size(); i++) {
+            if (headers.name(i).equalsIgnoreCase(name)) {
+                return headers.value(i);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the entries still in the journal, oldest first
+     */
+    public List<JournalEntry> getEntries() {
+        return this.find(null, null);
+    }
+
+    /**
+     * @param outcome a conditional mock response id, "queue", "miss" or "fallback"
+     * @return the entries still in the journal with this outcome, oldest first
+     */
+    public List<JournalEntry> findByOutcome(String outcome) {
+        return this.find(outcome, null);
+    }
+
+    /**
+     * @param path the raw request path, query string included
+     * @return the entries still in the journal with this path, oldest first
+     */
+    public List<JournalEntry> findByPath(String path) {
+        return this.find(null, path);
+    }
+
+    /**
+     * @return the number of dispatches recorded since the creation of the journal, overwritten ones included
+     */
+    public long getRecordedCount() {
+        return this.nextSequence.get();
+    }
+
+    private List<JournalEntry> find(String outcome, String path) {
+
+        List<JournalEntry> journalEntries = new ArrayList<>();
+
+        for (Slot slot : this.slots) {
+            JournalEntry journalEntry = this.read(slot, outcome, path);
+
+            if (!isNull(journalEntry)) {
+                journalEntries.add(journalEntry);
+            }
+        }
+
+        journalEntries.sort(Comparator.comparingLong(JournalEntry::getSequence));
+        return journalEntries;
+    }
+
+    private JournalEntry read(Slot slot, String outcome, String path) {
+
+        while (true) {
+            long version = slot.version.get();
+
+            // written now: retry, the writer only copies a few fields
+            if ((version & 1) == 1) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            if (version == 0) {
+                return null;
+            }
+
+            // the filters are read before copying, so a query allocates only its results
+            if ((!isNull(outcome) && !outcome.equals(slot.outcome)) || (!isNull(path) && !path.equals(slot.path))) {
+                VarHandle.acquireFence();
+                if (slot.version.get() == version) {
+                    return null;
+                }
+                continue;
+            }
+
+            JournalEntry journalEntry = this.copy(slot);
+
+            // the plain field reads above must not move after the version check
+            VarHandle.acquireFence();
+            if (slot.version.get() == version) {
+                return journalEntry;
+            }
+        }
+    }
+
+    private JournalEntry copy(Slot slot) {
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (int i = 0; i < this.recordedHeaders.length; i++) {
+            String value = slot.headerValues[i];
+
+            if (!isNull(value)) {
+                headers.put(this.recordedHeaders[i], value);
+            }
+        }
+
+        int bodyPrefixSize = Math.min(slot.bodyPrefixSize, slot.bodyPrefix.length);
+
+        return new JournalEntry(
+                slot.sequence,
+                slot.timestampMillis,
+                slot.method,
+                slot.path,
+                Collections.unmodifiableMap(headers),
+                new String(slot.bodyPrefix, 0, bodyPrefixSize, StandardCharsets.UTF_8),
+                slot.bodySize,
+                slot.outcome,
+                slot.dispatchNanos
+        );
+    }
+
+    /**
+     * Even version: stable, odd version: being written, 0: never written
+     */
+    private static class Slot {
+
+        private final AtomicLong version = new AtomicLong();
+        private final String[] headerValues;
+        private final byte[] bodyPrefix;
+
+        private long sequence = -1;
+        private long timestampMillis;
+        private String method;
+        private String path;
+        private String outcome;
+        private long dispatchNanos;
+        private long bodySize;
+        private int bodyPrefixSize;
+
+        private Slot(int headerCount, int bodyPrefixLength) {
+
+            this.headerValues = new String[headerCount];
+            this.bodyPrefix = new byte[bodyPrefixLength];
+        }
+
+        private long acquire() {
+
+            while (true) {
+                long current = this.version.get();
+
+                if ((current & 1) == 0 && this.version.compareAndSet(current, current + 1)) {
+                    return current;
+                }
+
+                Thread.onSpinWait();
+            }
+        }
+
+        private void release(long acquiredVersion) {
+            this.version.set(acquiredVersion + 2);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package io.geemov42.okhttp3.conditionaldispatcher.latency;
+
+import io.geemov42.okhttp3.conditionaldispatcher.metrics.HistogramSnapshot;
+import io.geemov42.okhttp3.conditionaldispatcher.metrics.LatencyHistogram;
+import lombok.Builder;
+import okhttp3.mockwebserver.MockResponse;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNullElse;
+
+/**
+ * @author geemov42
+ * Latency and bandwidth of a mocked upstream: each serve waits a delay drawn from a distribution before sending the headers,
+ * then sends the body at the given bandwidth.
+ * The distribution is defined by percentiles, like p50 = 20 ms and p99 = 250 ms, or by a histogram,
+ * and values between two percentiles are interpolated linearly.
+ * Draws are a pure function of the seed and the draw number, so a run serving requests in the same order replays the same delays.
+ * The delays applied are recorded in a histogram, to compare with what the client saw.
+ */
+public class LatencyProfile {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double UNIT = 0x1.0p-53;
+    private static final long THROTTLE_PERIOD_MILLIS = 100;
+
+    private final double[] percentilePoints;
+    private final long[] nanosPoints;
+    private final long jitterNanos;
+    private final long bytesPerSecond;
+    private final long seed;
+    private final AtomicLong drawCount = new AtomicLong();
+    private final LatencyHistogram appliedDelays = new LatencyHistogram();
+
+    /**
+     * Exactly one of percentiles or histogram is expected.
+     * Below the lowest percentile given, delays are interpolated from 0: give the percentile 0 for a minimum delay.
+     * Above the highest one, the delay of the highest one is used.
+     * @param percentiles delay by percentile, between 0 and 100
+     * @param histogram number of samples by upper bound, the first bucket starting at 0
+     * @param jitter a uniform noise, between -jitter and +jitter, added to each delay, never below 0
+     * @param bytesPerSecond the bandwidth of the body, 0 for no throttle
+     * @param seed the seed of the draws
+     */
+    @Builder
+    public LatencyProfile(Map<Double, Duration> percentiles, Map<Duration, Long> histogram, Duration jitter, long bytesPerSecond, long seed) {
+
+        if (isNull(percentiles) == isNull(histogram)) {
+            throw new IllegalArgumentException("Either percentiles or a histogram should be defined");
+        }
+
+        if (bytesPerSecond < 0 || requireNonNullElse(jitter, Duration.ZERO).isNegative()) {
+            throw new IllegalArgumentException("Bandwidth and jitter should not be negative");
+        }
+
+        TreeMap<Double, Duration> points = new TreeMap<>(isNull(percentiles) ? toPercentiles(histogram) : percentiles);
+        if (points.isEmpty() || points.firstKey() < 0 || points.lastKey() > 100) {
+            throw new IllegalArgumentException("Percentiles should be between 0 and 100");
+        }
+
+        if (points.firstKey() > 0) {
+            points.put(0.0, Duration.ZERO);
+        }
+
+        this.percentilePoints = new double[points.size()];
+        this.nanosPoints = new long[points.size()];
+        int i = 0;
+        for (Map.Entry<Double, Duration> point : points.entrySet()) {
+            this.percentilePoints[i] = point.getKey();
+            this.nanosPoints[i] = point.getValue().toNanos();
+
+            if (this.nanosPoints[i] < 0 || (i > 0 && this.nanosPoints[i] < this.nanosPoints[i - 1])) {
+                throw new IllegalArgumentException("Delays should be positive and grow with percentiles");
+            }
+            i++;
+        }
+
+        this.jitterNanos = requireNonNullElse(jitter, Duration.ZERO).toNanos();
+        this.bytesPerSecond = bytesPerSecond;
+        this.seed = seed;
+    }
+
+    private static Map<Double, Duration> toPercentiles(Map<Duration, Long> histogram) {
+
+        TreeMap<Duration, Long> buckets = new TreeMap<>(histogram);
+        long total = buckets.values().stream().mapToLong(Long::longValue).sum();
+
+        if (total <= 0 || buckets.values().stream().anyMatch(count -> count < 0)) {
+            throw new IllegalArgumentException("Histogram counts should be positive");
+        }
+
+        Map<Double, Duration> percentiles = new TreeMap<>();
+        long cumulated = 0;
+        for (Map.Entry<Duration, Long> bucket : buckets.entrySet()) {
+            cumulated += bucket.getValue();
+            percentiles.put(100.0 * cumulated / total, bucket.getKey());
+        }
+
+        return percentiles;
+    }
+
+    /**
+     * @return the next delay of the distribution, jitter included
+     */
+    public long nextDelayNanos() {
+
+        long draw = this.drawCount.getAndIncrement();
+        long first = mix(this.seed + draw * GOLDEN_GAMMA);
+        long delay = this.valueAtPercentile((first >>> 11) * UNIT * 100);
+
+        if (this.jitterNanos > 0) {
+            long second = mix(first);
+            delay += (long) (((second >>> 11) * UNIT * 2 - 1) * this.jitterNanos);
+        }
+
+        return Math.max(0, delay);
+    }
+
+    /**
+     * Delay the headers and throttle the body of a copy of the response, recording the delay.
+     * MockWebServer waits the delay on the thread of the connection, which would otherwise wait for the next request.
+     * @param mockResponse the response to serve, unchanged
+     * @return the delayed copy
+     */
+    public MockResponse applyTo(MockResponse mockResponse) {
+
+        long delayNanos = this.nextDelayNanos();
+        MockResponse delayedMockResponse = mockResponse.clone().setHeadersDelay(delayNanos, TimeUnit.NANOSECONDS);
+
+        if (this.bytesPerSecond > 0) {
+            delayedMockResponse.throttleBody(Math.max(1, this.bytesPerSecond * THROTTLE_PERIOD_MILLIS / 1000), THROTTLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        this.appliedDelays.record(delayNanos);
+
+        return delayedMockResponse;
+    }
+
+    /**
+     * @return the delays applied to the responses served with this profile
+     */
+    public HistogramSnapshot getAppliedDelays() {
+        return this.appliedDelays.snapshot();
+    }
+
+    public long getBytesPerSecond() {
+        return this.bytesPerSecond;
+    }
+
+    private long valueAtPercentile(double percentile) {
+
+        int high = 1;
+        while (high < this.percentilePoints.length && this.percentilePoints[high] <= percentile) {
+            high++;
+        }
+
+        if (high == this.percentilePoints.length) {
+            return this.nanosPoints[high - 1];
+        }
+
+        int low = high - 1;
+        double ratio = (percentile - this.percentilePoints[low]) / (this.percentilePoints[high] - this.percentilePoints[low]);
+
+        return this.nanosPoints[low] + (long) (ratio * (this.nanosPoints[high] - this.nanosPoints[low]));
+    }
+
+    /**
+     * SplitMix64 finalizer
+     */
+    private static long mix(long value) {
+
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,304 @@
+package io.geemov42.okhttp3.conditionaldispatcher.loader;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import io.geemov42.okhttp3.conditionaldispatcher.body.ResponseBodySource;
+import io.geemov42.okhttp3.conditionaldispatcher.body.ResponseBodySources;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatchers;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import io.geemov42.okhttp3.conditionaldispatcher.response.MatchingCondition;
+import io.geemov42.okhttp3.conditionaldispatcher.response.TemplatedConditionalMockResponse;
+import okhttp3.mockwebserver.MockResponse;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Read conditional mock responses from a json rule file:
+ * <pre>
+ * {"rules": [{
+ *     "id": "get_hasConsent", "method": "GET", "path": "^/hasConsent", "limitFetch": 2,
+ *     "conditions": [{"part": "PARAMETER", "field": "personIdentifier", "regex": "^85047$"}, {"part": "BODY", "literal": "consent"}],
+ *     "response": {"status": 200, "headers": {"Content-Type": "application/json"}, "body": "{}"}
+ * }]}
+ * </pre>
+ * The method defaults to COMMON. A response has at most one of body, bodyFile (a file relative to the rule file,
+ * read when served and shared by the rules naming it) or bodyTemplate (see {@link io.geemov42.okhttp3.conditionaldispatcher.template.ResponseTemplate}).
+ * The file is streamed straight into responses, without an intermediate tree, and regexes are compiled on first use.
+ */
+public class RuleFileLoader {
+
+    private RuleFileLoader(){}
+
+    /**
+     * @param ruleFile the json rule file
+     * @return the responses by http method list, in file order
+     * @throws IOException if the file cannot be read or is not json
+     * @throws IllegalArgumentException if a rule is invalid
+     */
+    public static Map<HttpMethodEnum, List<ConditionalMockResponse>> load(Path ruleFile) throws IOException {
+
+        Path baseDirectory = requireNonNull(ruleFile).toAbsolutePath().getParent();
+
+        try (Reader reader = Files.newBufferedReader(ruleFile, StandardCharsets.UTF_8)) {
+            return load(reader, baseDirectory);
+        }
+    }
+
+    /**
+     * @param reader the json rules
+     * @param baseDirectory the directory of the body files
+     * @return the responses by http method list, in reading order
+     * @throws IOException if the rules cannot be read or are not json
+     */
+    public static Map<HttpMethodEnum, List<ConditionalMockResponse>> load(Reader reader, Path baseDirectory) throws IOException {
+
+        JsonReader jsonReader = new JsonReader(reader);
+        Loading loading = new Loading(jsonReader, baseDirectory);
+
+        if (jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+            loading.readRules();
+        } else {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                String name = jsonReader.nextName();
+
+                if ("rules".equals(name)) {
+                    loading.readRules();
+                } else {
+                    throw loading.invalid("Unknown member " + name);
+                }
+            }
+            jsonReader.endObject();
+        }
+
+        return loading.conditionalMockResponsesByMethod;
+    }
+
+    /**
+     * State of one load: body files named by several rules share the same source
+     */
+    private static class Loading {
+
+        private final JsonReader jsonReader;
+        private final Path baseDirectory;
+        private final Map<HttpMethodEnum, List<ConditionalMockResponse>> conditionalMockResponsesByMethod = new EnumMap<>(HttpMethodEnum.class);
+        private final Map<Path, ResponseBodySource> bodySourcesByPath = new HashMap<>();
+
+        private Loading(JsonReader jsonReader, Path baseDirectory) {
+
+            this.jsonReader = jsonReader;
+            this.baseDirectory = baseDirectory;
+        }
+
+        private void readRules() throws IOException {
+
+            this.jsonReader.beginArray();
+            while (this.jsonReader.hasNext()) {
+                this.readRule();
+            }
+            this.jsonReader.endArray();
+        }
+
+        private void readRule() throws IOException {
+
+            String id = null;
+            HttpMethodEnum httpMethodEnum = HttpMethodEnum.COMMON;
+            String path = null;
+            int limitFetch = -1;
+            List<MatchingCondition> matchingConditions = new ArrayList<>();
+            ResponseDefinition responseDefinition = new ResponseDefinition();
+
+            this.jsonReader.beginObject();
+            while (this.jsonReader.hasNext()) {
+                String name = this.jsonReader.nextName();
+
+                switch (name) {
+                    case "id":
+                        id = this.jsonReader.nextString();
+                        break;
+                    case "method":
+                        httpMethodEnum = this.readMethod();
+                        break;
+                    case "path":
+                        path = this.jsonReader.nextString();
+                        break;
+                    case "limitFetch":
+                        limitFetch = this.jsonReader.nextInt();
+                        break;
+                    case "conditions":
+                        this.readConditions(matchingConditions);
+                        break;
+                    case "response":
+                        responseDefinition = this.readResponse();
+                        break;
+                    default:
+                        throw this.invalid("Unknown member " + name);
+                }
+            }
+            this.jsonReader.endObject();
+
+            if (isNull(id) || isNull(path)) {
+                throw this.invalid("A rule needs an id and a path");
+            }
+
+            this.conditionalMockResponsesByMethod.computeIfAbsent(httpMethodEnum, key -> new ArrayList<>())
+                    .add(this.toConditionalMockResponse(id, path, limitFetch, matchingConditions, responseDefinition));
+        }
+
+        private ConditionalMockResponse toConditionalMockResponse(String id, String path, int limitFetch, List<MatchingCondition> matchingConditions,
+                                                                  ResponseDefinition responseDefinition) {
+
+            if (!isNull(responseDefinition.bodyTemplate)) {
+                return TemplatedConditionalMockResponse.templatedBuilder()
+                        .id(id)
+                        .limitFetch(limitFetch)
+                        .pathMatcher(ValueMatchers.lazyRegex(path))
+                        .mockResponse(responseDefinition.mockResponse)
+                        .bodyTemplate(responseDefinition.bodyTemplate)
+                        .matchingConditions(matchingConditions)
+                        .build();
+            }
+
+            return ConditionalMockResponse.builder()
+                    .id(id)
+                    .limitFetch(limitFetch)
+                    .pathMatcher(ValueMatchers.lazyRegex(path))
+                    .mockResponse(responseDefinition.mockResponse)
+                    .responseBodySource(isNull(responseDefinition.bodyFile) ? null
+                            : this.bodySourcesByPath.computeIfAbsent(this.baseDirectory.resolve(responseDefinition.bodyFile).normalize(), ResponseBodySources::file))
+                    .matchingConditions(matchingConditions)
+                    .build();
+        }
+
+        private HttpMethodEnum readMethod() throws IOException {
+
+            String method = this.jsonReader.nextString();
+            HttpMethodEnum httpMethodEnum = "COMMON".equalsIgnoreCase(method) ? HttpMethodEnum.COMMON : HttpMethodEnum.fromMethod(method);
+
+            if (isNull(httpMethodEnum)) {
+                throw this.invalid("Unknown method " + method);
+            }
+
+            return httpMethodEnum;
+        }
+
+        private void readConditions(List<MatchingCondition> matchingConditions) throws IOException {
+
+            this.jsonReader.beginArray();
+            while (this.jsonReader.hasNext()) {
+                MatchingCondition.MatchingConditionBuilder builder = MatchingCondition.builder();
+
+                this.jsonReader.beginObject();
+                while (this.jsonReader.hasNext()) {
+                    String name = this.jsonReader.nextName();
+
+                    switch (name) {
+                        case "part":
+                            builder.requestPartToTest(this.readRequestPart());
+                            break;
+                        case "field":
+                            builder.field(this.jsonReader.nextString());
+                            break;
+                        case "regex":
+                            builder.valueMatcher(ValueMatchers.lazyRegex(this.jsonReader.nextString()));
+                            break;
+                        case "literal":
+                            builder.valueLiteral(this.jsonReader.nextString());
+                            break;
+                        default:
+                            throw this.invalid("Unknown member " + name);
+                    }
+                }
+
+                try {
+                    matchingConditions.add(builder.build());
+                } catch (RuntimeException e) {
+                    throw this.invalid("Invalid condition: " + e.getMessage());
+                }
+
+                this.jsonReader.endObject();
+            }
+            this.jsonReader.endArray();
+        }
+
+        private RequestPartToTestEnum readRequestPart() throws IOException {
+
+            String part = this.jsonReader.nextString();
+            try {
+                return RequestPartToTestEnum.valueOf(part);
+            } catch (IllegalArgumentException e) {
+                throw this.invalid("Unknown request part " + part);
+            }
+        }
+
+        private ResponseDefinition readResponse() throws IOException {
+
+            ResponseDefinition responseDefinition = new ResponseDefinition();
+            MockResponse mockResponse = responseDefinition.mockResponse;
+            String body = null;
+
+            this.jsonReader.beginObject();
+            while (this.jsonReader.hasNext()) {
+                String name = this.jsonReader.nextName();
+
+                switch (name) {
+                    case "status":
+                        mockResponse.setResponseCode(this.jsonReader.nextInt());
+                        break;
+                    case "headers":
+                        this.jsonReader.beginObject();
+                        while (this.jsonReader.hasNext()) {
+                            mockResponse.setHeader(this.jsonReader.nextName(), this.jsonReader.nextString());
+                        }
+                        this.jsonReader.endObject();
+                        break;
+                    case "body":
+                        body = this.jsonReader.nextString();
+                        break;
+                    case "bodyFile":
+                        responseDefinition.bodyFile = this.jsonReader.nextString();
+                        break;
+                    case "bodyTemplate":
+                        responseDefinition.bodyTemplate = this.jsonReader.nextString();
+                        break;
+                    default:
+                        throw this.invalid("Unknown member " + name);
+                }
+            }
+            this.jsonReader.endObject();
+
+            if (Stream.of(body, responseDefinition.bodyFile, responseDefinition.bodyTemplate).filter(Objects::nonNull).count() > 1) {
+                throw this.invalid("A response has at most one of body, bodyFile or bodyTemplate");
+            }
+
+            if (!isNull(body)) {
+                mockResponse.setBody(body);
+            }
+
+            return responseDefinition;
+        }
+
+        private IllegalArgumentException invalid(String message) {
+            return new IllegalArgumentException(message + " at " + this.jsonReader.getPath());
+        }
+    }
+
+    private static class ResponseDefinition {
+
+        private final MockResponse mockResponse = new MockResponse();
+        private String bodyFile;
+        private String bodyTemplate;
+    }
+}
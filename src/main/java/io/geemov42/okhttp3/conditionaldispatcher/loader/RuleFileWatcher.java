@@ -0,0 +1,161 @@
+package io.geemov42.okhttp3.conditionaldispatcher.loader;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Keep the rules of a dispatcher in sync with a rule file.
+ * The rules of the file are loaded in a new layer of the dispatcher, whose table is swapped at once on each change:
+ * dispatches in flight end with the previous rules, and a file that does not load leaves the previous rules in place.
+ * Fetch counts of the layer survive reloads.
+ */
+@Slf4j
+public class RuleFileWatcher implements Closeable {
+
+    /**
+     * Editors write a file in several steps: events are gathered for this long before reloading
+     */
+    private static final Duration SETTLE_DELAY = Duration.ofMillis(50);
+
+    private final ConditionalDispatcher conditionalDispatcher;
+    private final Path ruleFile;
+    private final int layerDepth;
+    private final WatchService watchService;
+    private final Thread watchThread;
+    private final AtomicLong reloadCount = new AtomicLong();
+    private volatile long lastReloadNanos;
+    private volatile Exception lastFailure;
+
+    private RuleFileWatcher(ConditionalDispatcher conditionalDispatcher, Path ruleFile) throws IOException {
+
+        this.conditionalDispatcher = requireNonNull(conditionalDispatcher);
+        this.ruleFile = requireNonNull(ruleFile).toAbsolutePath();
+        this.layerDepth = conditionalDispatcher.pushLayerAndGetDepth();
+
+        try {
+            this.reload();
+
+            this.watchService = this.ruleFile.getFileSystem().newWatchService();
+            this.ruleFile.getParent().register(this.watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | RuntimeException e) {
+            // the caller gets no watcher to close: the layer is not left behind
+            conditionalDispatcher.popLayer(this.layerDepth);
+            throw e;
+        }
+
+        this.watchThread = new Thread(this::watch, "rule-file-watcher-" + this.ruleFile.getFileName());
+        this.watchThread.setDaemon(true);
+        this.watchThread.start();
+    }
+
+    /**
+     * @param conditionalDispatcher the dispatcher, which gets a new layer for the rules of the file
+     * @param ruleFile the json rule file, see {@link RuleFileLoader}
+     * @return the started watcher, to close at the end
+     * @throws IOException if the file cannot be loaded a first time
+     */
+    public static RuleFileWatcher watch(ConditionalDispatcher conditionalDispatcher, Path ruleFile) throws IOException {
+        return new RuleFileWatcher(conditionalDispatcher, ruleFile);
+    }
+
+    /**
+     * Load the file and swap the rules of the layer
+     * @throws IOException if the file cannot be read, the rules are then unchanged
+     */
+    public void reload() throws IOException {
+
+        long start = System.nanoTime();
+
+        this.conditionalDispatcher.replaceResponses(this.layerDepth, RuleFileLoader.load(this.ruleFile));
+
+        this.lastReloadNanos = System.nanoTime() - start;
+        this.reloadCount.incrementAndGet();
+    }
+
+    private void watch() {
+
+        try {
+            while (true) {
+                WatchKey watchKey = this.watchService.take();
+                boolean changed = this.pollRuleFileChanged(watchKey);
+
+                // gather the events of the same write
+                for (watchKey = this.watchService.poll(SETTLE_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+                     watchKey != null;
+                     watchKey = this.watchService.poll(SETTLE_DELAY.toMillis(), TimeUnit.MILLISECONDS)) {
+                    changed |= this.pollRuleFileChanged(watchKey);
+                }
+
+                if (changed) {
+                    this.reloadQuietly();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private boolean pollRuleFileChanged(WatchKey watchKey) {
+
+        boolean changed = false;
+        for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+            changed |= watchEvent.kind() == StandardWatchEventKinds.OVERFLOW || this.ruleFile.getFileName().equals(watchEvent.context());
+        }
+
+        watchKey.reset();
+        return changed;
+    }
+
+    private void reloadQuietly() {
+
+        try {
+            this.reload();
+            this.lastFailure = null;
+            log.info("Reloaded {} in {} ms", this.ruleFile, TimeUnit.NANOSECONDS.toMillis(this.lastReloadNanos));
+        } catch (IOException | RuntimeException e) {
+            this.lastFailure = e;
+            log.error("Cannot reload {}, the previous rules are kept", this.ruleFile, e);
+        }
+    }
+
+    public long getReloadCount() {
+        return this.reloadCount.get();
+    }
+
+    /**
+     * @return the duration of the last successful load and swap, in nanoseconds
+     */
+    public long getLastReloadNanos() {
+        return this.lastReloadNanos;
+    }
+
+    /**
+     * @return the error of the last reload, null if it succeeded
+     */
+    public Exception getLastFailure() {
+        return this.lastFailure;
+    }
+
+    /**
+     * Stop watching, the loaded rules stay in the dispatcher
+     */
+    @Override
+    public void close() throws IOException {
+
+        this.watchService.close();
+        this.watchThread.interrupt();
+    }
+}
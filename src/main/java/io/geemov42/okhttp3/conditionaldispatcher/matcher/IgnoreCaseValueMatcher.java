@@ -0,0 +1,62 @@
+package io.geemov42.okhttp3.conditionaldispatcher.matcher;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.MatcherKindEnum;
+
+import java.util.regex.Pattern;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * The value is the literal, ignoring case.
+ * When it replaces a (?i) regex, only ascii letters are folded, as the regex does.
+ */
+public class IgnoreCaseValueMatcher extends ValueMatcher {
+
+    private final String literal;
+    private final boolean asciiOnly;
+
+    IgnoreCaseValueMatcher(String literal, boolean asciiOnly, boolean finalLineTerminatorAllowed) {
+
+        super(MatcherKindEnum.EQUALS_IGNORE_CASE, finalLineTerminatorAllowed);
+        this.literal = requireNonNull(literal);
+        this.asciiOnly = asciiOnly;
+    }
+
+    @Override
+    protected boolean test(CharSequence value) {
+
+        if (value.length() != this.literal.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            if (!this.equalsIgnoreCase(value.charAt(i), this.literal.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean equalsIgnoreCase(char left, char right) {
+
+        if (left == right) {
+            return true;
+        }
+
+        if (left < 128 && right < 128) {
+            return Character.isLetter(left) && (left ^ 0x20) == right;
+        }
+
+        return !this.asciiOnly
+                && (Character.toUpperCase(left) == Character.toUpperCase(right) || Character.toLowerCase(left) == Character.toLowerCase(right));
+    }
+
+    @Override
+    protected String toRegex() {
+
+        String flags = this.asciiOnly ? "(?i)" : "(?iu)";
+        return flags + "^" + Pattern.quote(this.literal) + this.endAnchor();
+    }
+}
@@ -0,0 +1,112 @@
+package io.geemov42.okhttp3.conditionaldispatcher.matcher;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.MatcherKindEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+import okio.ByteString;
+
+import java.util.regex.Pattern;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.MatcherKindEnum.*;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Compare the value to a literal: exact, prefix, suffix or contains.
+ * Contains on a body is a byte search, without decoding the body.
+ */
+public class LiteralValueMatcher extends ValueMatcher {
+
+    private final String literal;
+    private final ByteString literalBytes;
+
+    LiteralValueMatcher(MatcherKindEnum kind, String literal, boolean finalLineTerminatorAllowed) {
+
+        super(kind, finalLineTerminatorAllowed);
+
+        if (kind != EXACT && kind != PREFIX && kind != SUFFIX && kind != CONTAINS) {
+            throw new IllegalArgumentException("Kind " + kind + " is not a literal comparison");
+        }
+
+        this.literal = requireNonNull(literal);
+        this.literalBytes = ByteString.encodeUtf8(literal);
+    }
+
+    public String getLiteral() {
+        return this.literal;
+    }
+
+    @Override
+    protected boolean test(CharSequence value) {
+
+        int length = this.literal.length();
+
+        switch (this.getKind()) {
+            case EXACT:
+                return value.length() == length && regionEquals(value, 0, this.literal);
+            case PREFIX:
+                return value.length() >= length && regionEquals(value, 0, this.literal);
+            case SUFFIX:
+                return value.length() >= length && regionEquals(value, value.length() - length, this.literal);
+            default:
+                return indexOf(value, this.literal) >= 0;
+        }
+    }
+
+    @Override
+    public boolean matchesBody(RequestContext requestContext) {
+
+        if (this.getKind() == CONTAINS) {
+            return requestContext.bodyContains(this.literalBytes);
+        }
+
+        return super.matchesBody(requestContext);
+    }
+
+    @Override
+    public String getRequiredLiteral() {
+        return this.literal;
+    }
+
+    @Override
+    protected String toRegex() {
+
+        String quoted = Pattern.quote(this.literal);
+
+        switch (this.getKind()) {
+            case EXACT:
+                return "^" + quoted + this.endAnchor();
+            case PREFIX:
+                return "^" + quoted;
+            case SUFFIX:
+                return quoted + this.endAnchor();
+            default:
+                return quoted;
+        }
+    }
+
+    private static boolean regionEquals(CharSequence value, int offset, String literal) {
+
+        for (int i = 0; i < literal.length(); i++) {
+            if (value.charAt(offset + i) != literal.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int indexOf(CharSequence value, String literal) {
+
+        if (value instanceof String) {
+            return ((String) value).indexOf(literal);
+        }
+
+        for (int i = 0; i + literal.length() <= value.length(); i++) {
+            if (regionEquals(value, i, literal)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
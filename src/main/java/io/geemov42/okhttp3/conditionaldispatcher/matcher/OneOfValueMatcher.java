@@ -0,0 +1,42 @@
+package io.geemov42.okhttp3.conditionaldispatcher.matcher;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.MatcherKindEnum;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * The value is one of a set of literals, tested with a hash lookup whatever the size of the set
+ */
+public class OneOfValueMatcher extends ValueMatcher {
+
+    private final Set<String> values;
+
+    OneOfValueMatcher(Set<String> values, boolean finalLineTerminatorAllowed) {
+
+        super(MatcherKindEnum.ONE_OF, finalLineTerminatorAllowed);
+        this.values = new HashSet<>(requireNonNull(values));
+    }
+
+    public Set<String> getValues() {
+        return this.values;
+    }
+
+    @Override
+    protected boolean test(CharSequence value) {
+        return this.values.contains(value.toString());
+    }
+
+    @Override
+    protected String toRegex() {
+
+        return this.values.stream()
+                .map(Pattern::quote)
+                .collect(Collectors.joining("|", "^(?:", ")" + this.endAnchor()));
+    }
+}
@@ -0,0 +1,69 @@
+package io.geemov42.okhttp3.conditionaldispatcher.matcher;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.MatcherKindEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.utils.RegexUtils;
+
+import java.util.regex.Pattern;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * The regex is found somewhere in the value.
+ * A lazy matcher compiles its regex on first use, so that loading many rules does not pay for the ones never tested.
+ */
+public class RegexValueMatcher extends ValueMatcher {
+
+    private final String regex;
+    private volatile Pattern pattern;
+    private final String requiredLiteral;
+
+    RegexValueMatcher(Pattern pattern) {
+
+        this(requireNonNull(pattern).pattern());
+        this.pattern = pattern;
+    }
+
+    /**
+     * @param regex the regex, compiled on first use: a syntax error is only reported then
+     */
+    RegexValueMatcher(String regex) {
+
+        super(MatcherKindEnum.REGEX, false);
+        this.regex = requireNonNull(regex);
+        this.requiredLiteral = RegexUtils.requiredLiteral(regex);
+    }
+
+    @Override
+    protected boolean test(CharSequence value) {
+        return this.getPattern().matcher(value).find();
+    }
+
+    @Override
+    public String getRequiredLiteral() {
+        return this.requiredLiteral;
+    }
+
+    @Override
+    public Pattern getPattern() {
+
+        // compiling twice on a race is harmless, both patterns are equivalent
+        Pattern currentPattern = this.pattern;
+        if (isNull(currentPattern)) {
+            currentPattern = Pattern.compile(this.regex);
+            this.pattern = currentPattern;
+        }
+
+        return currentPattern;
+    }
+
+    public boolean isCompiled() {
+        return !isNull(this.pattern);
+    }
+
+    @Override
+    protected String toRegex() {
+        return this.regex;
+    }
+}
@@ -0,0 +1,110 @@
+package io.geemov42.okhttp3.conditionaldispatcher.matcher;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.MatcherKindEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+
+import java.util.regex.Pattern;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Test a request value (path, header, parameter or body).
+ * Use {@link ValueMatchers} to create one.
+ */
+public abstract class ValueMatcher {
+
+    private final MatcherKindEnum kind;
+    private final boolean finalLineTerminatorAllowed;
+    private volatile Pattern pattern;
+
+    /**
+     * @param kind the kind of test
+     * @param finalLineTerminatorAllowed true to also accept the value without its final line terminator,
+     *                                   like a regex ending with $ does
+     */
+    protected ValueMatcher(MatcherKindEnum kind, boolean finalLineTerminatorAllowed) {
+
+        this.kind = requireNonNull(kind);
+        this.finalLineTerminatorAllowed = finalLineTerminatorAllowed;
+    }
+
+    public MatcherKindEnum getKind() {
+        return this.kind;
+    }
+
+    public boolean matches(CharSequence value) {
+
+        if (isNull(value)) {
+            return false;
+        }
+
+        if (this.test(value)) {
+            return true;
+        }
+
+        if (this.finalLineTerminatorAllowed) {
+            int terminatorLength = finalLineTerminatorLength(value);
+            return terminatorLength > 0 && this.test(value.subSequence(0, value.length() - terminatorLength));
+        }
+
+        return false;
+    }
+
+    /**
+     * Test the body of the request, limited to its scan window
+     * @param requestContext the request
+     * @return true if the body matches
+     */
+    public boolean matchesBody(RequestContext requestContext) {
+        return this.matches(requestContext.getBodyCharSequence());
+    }
+
+    /**
+     * @return a literal that every matching value contains, or null, used to index the matcher
+     */
+    public String getRequiredLiteral() {
+        return null;
+    }
+
+    /**
+     * @return an equivalent regex, compiled on first call
+     */
+    public Pattern getPattern() {
+
+        if (isNull(this.pattern)) {
+            this.pattern = Pattern.compile(this.toRegex());
+        }
+
+        return this.pattern;
+    }
+
+    protected abstract boolean test(CharSequence value);
+
+    protected abstract String toRegex();
+
+    protected String endAnchor() {
+        return this.finalLineTerminatorAllowed ? "$" : "\\z";
+    }
+
+    private static int finalLineTerminatorLength(CharSequence value) {
+
+        int length = value.length();
+        if (length == 0) {
+            return 0;
+        }
+
+        char last = value.charAt(length - 1);
+        if (last == '\n') {
+            return length > 1 && value.charAt(length - 2) == '\r' ? 2 : 1;
+        }
+
+        return last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029' ? 1 : 0;
+    }
+
+    @Override
+    public String toString() {
+        return this.kind + "(" + this.toRegex() + ")";
+    }
+}
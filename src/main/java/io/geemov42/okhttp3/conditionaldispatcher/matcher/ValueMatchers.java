@@ -0,0 +1,117 @@
+package io.geemov42.okhttp3.conditionaldispatcher.matcher;
+
+import io.geemov42.okhttp3.conditionaldispatcher.utils.RegexUtils;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.MatcherKindEnum.*;
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Factory of value matchers.
+ * A regex that is really a literal (anchored or not, alternation of literals, (?i) literal) is downgraded
+ * to the cheap matcher giving the same result.
+ */
+public class ValueMatchers {
+
+    private static final String IGNORE_CASE_FLAG = "(?i)";
+
+    private ValueMatchers(){}
+
+    public static ValueMatcher regex(String regex) {
+
+        requireNonNull(regex);
+
+        ValueMatcher downgraded = downgrade(regex);
+        return isNull(downgraded) ? new RegexValueMatcher(Pattern.compile(regex)) : downgraded;
+    }
+
+    /**
+     * Like {@link #regex(String)}, but a regex that is not a literal is only compiled when first tested
+     * @param regex the regex
+     * @return the matcher
+     */
+    public static ValueMatcher lazyRegex(String regex) {
+
+        requireNonNull(regex);
+
+        ValueMatcher downgraded = downgrade(regex);
+        return isNull(downgraded) ? new RegexValueMatcher(regex) : downgraded;
+    }
+
+    public static ValueMatcher exact(String value) {
+        return new LiteralValueMatcher(EXACT, value, false);
+    }
+
+    public static ValueMatcher prefix(String value) {
+        return new LiteralValueMatcher(PREFIX, value, false);
+    }
+
+    public static ValueMatcher suffix(String value) {
+        return new LiteralValueMatcher(SUFFIX, value, false);
+    }
+
+    public static ValueMatcher contains(String value) {
+        return new LiteralValueMatcher(CONTAINS, value, false);
+    }
+
+    public static ValueMatcher equalsIgnoreCase(String value) {
+        return new IgnoreCaseValueMatcher(value, false, false);
+    }
+
+    public static ValueMatcher oneOf(Collection<String> values) {
+        return new OneOfValueMatcher(new HashSet<>(requireNonNull(values)), false);
+    }
+
+    public static ValueMatcher oneOf(String... values) {
+        return oneOf(Arrays.asList(values));
+    }
+
+    private static ValueMatcher downgrade(String regex) {
+
+        String body = regex;
+        boolean ignoreCase = body.startsWith(IGNORE_CASE_FLAG);
+        if (ignoreCase) {
+            body = body.substring(IGNORE_CASE_FLAG.length());
+        }
+
+        // anchors inside a quoted section are literals, keep the analysis simple
+        boolean startAnchor = !body.contains("\\Q") && body.startsWith("^");
+        boolean endAnchor = !body.contains("\\Q") && body.endsWith("$") && !RegexUtils.isEscaped(body, body.length() - 1);
+        body = body.substring(startAnchor ? 1 : 0, Math.max(startAnchor ? 1 : 0, body.length() - (endAnchor ? 1 : 0)));
+
+        if (ignoreCase) {
+            String literal = RegexUtils.literalOf(body);
+            boolean ascii = !isNull(literal) && literal.chars().allMatch(c -> c < 128);
+
+            return startAnchor && endAnchor && ascii ? new IgnoreCaseValueMatcher(literal, true, true) : null;
+        }
+
+        if (startAnchor && endAnchor) {
+            List<String> alternatives = RegexUtils.literalAlternatives(body);
+            if (!isNull(alternatives) && alternatives.size() > 1) {
+                return new OneOfValueMatcher(new HashSet<>(alternatives), true);
+            }
+        }
+
+        String literal = RegexUtils.literalOf(body);
+        if (isNull(literal)) {
+            return null;
+        }
+
+        if (startAnchor && endAnchor) {
+            return new LiteralValueMatcher(EXACT, literal, true);
+        }
+        if (startAnchor) {
+            return new LiteralValueMatcher(PREFIX, literal, false);
+        }
+        if (endAnchor) {
+            return new LiteralValueMatcher(SUFFIX, literal, true);
+        }
+
+        return new LiteralValueMatcher(CONTAINS, literal, false);
+    }
+}
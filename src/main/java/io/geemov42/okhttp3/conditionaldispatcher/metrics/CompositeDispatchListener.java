@@ -0,0 +1,139 @@
+package io.geemov42.okhttp3.conditionaldispatcher.metrics;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.DispatchOutcomeEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Immutable list of listeners called in registration order
+ */
+public class CompositeDispatchListener implements DispatchListener {
+
+    private final DispatchListener[] dispatchListeners;
+
+    private CompositeDispatchListener(DispatchListener[] dispatchListeners) {
+        this.dispatchListeners = dispatchListeners;
+    }
+
+    /**
+     * @param current the current listener, possibly composite or NOOP
+     * @param added the listener to add
+     * @return a listener calling both
+     */
+    public static DispatchListener with(DispatchListener current, DispatchListener added) {
+
+        requireNonNull(added);
+
+        List<DispatchListener> dispatchListeners = new ArrayList<>(toList(current));
+        dispatchListeners.add(added);
+
+        return of(dispatchListeners);
+    }
+
+    /**
+     * @param current the current listener, possibly composite or NOOP
+     * @param removed the listener to remove
+     * @return a listener calling the others
+     */
+    public static DispatchListener without(DispatchListener current, DispatchListener removed) {
+
+        List<DispatchListener> dispatchListeners = new ArrayList<>(toList(current));
+        dispatchListeners.remove(removed);
+
+        return of(dispatchListeners);
+    }
+
+    private static List<DispatchListener> toList(DispatchListener dispatchListener) {
+
+        if (dispatchListener instanceof CompositeDispatchListener) {
+            return Arrays.asList(((CompositeDispatchListener) dispatchListener).dispatchListeners);
+        }
+
+        return dispatchListener == NOOP ? List.of() : List.of(dispatchListener);
+    }
+
+    private static DispatchListener of(List<DispatchListener> dispatchListeners) {
+
+        if (dispatchListeners.isEmpty()) {
+            return NOOP;
+        }
+
+        // a single listener is called without indirection
+        return dispatchListeners.size() == 1
+                ? dispatchListeners.get(0)
+                : new CompositeDispatchListener(dispatchListeners.toArray(new DispatchListener[0]));
+    }
+
+    @Override
+    public void onCandidateEvaluated(ConditionalMockResponse conditionalMockResponse) {
+
+        for (DispatchListener dispatchListener : this.dispatchListeners) {
+            dispatchListener.onCandidateEvaluated(conditionalMockResponse);
+        }
+    }
+
+    @Override
+    public void onConditionFailed(ConditionalMockResponse conditionalMockResponse, RequestPartToTestEnum requestPartToTest) {
+
+        for (DispatchListener dispatchListener : this.dispatchListeners) {
+            dispatchListener.onConditionFailed(conditionalMockResponse, requestPartToTest);
+        }
+    }
+
+    @Override
+    public void onHit(HttpMethodEnum httpMethodEnum, ConditionalMockResponse conditionalMockResponse, long matchNanos) {
+
+        for (DispatchListener dispatchListener : this.dispatchListeners) {
+            dispatchListener.onHit(httpMethodEnum, conditionalMockResponse, matchNanos);
+        }
+    }
+
+    @Override
+    public void onBeyondLimit(ConditionalMockResponse conditionalMockResponse) {
+
+        for (DispatchListener dispatchListener : this.dispatchListeners) {
+            dispatchListener.onBeyondLimit(conditionalMockResponse);
+        }
+    }
+
+    @Override
+    public void onRateLimited(ConditionalMockResponse conditionalMockResponse) {
+
+        for (DispatchListener dispatchListener : this.dispatchListeners) {
+            dispatchListener.onRateLimited(conditionalMockResponse);
+        }
+    }
+
+    @Override
+    public void onMiss(RecordedRequest recordedRequest, long matchNanos) {
+
+        for (DispatchListener dispatchListener : this.dispatchListeners) {
+            dispatchListener.onMiss(recordedRequest, matchNanos);
+        }
+    }
+
+    @Override
+    public void onQueueFallback(RecordedRequest recordedRequest) {
+
+        for (DispatchListener dispatchListener : this.dispatchListeners) {
+            dispatchListener.onQueueFallback(recordedRequest);
+        }
+    }
+
+    @Override
+    public void onDispatched(RecordedRequest recordedRequest, DispatchOutcomeEnum dispatchOutcome, ConditionalMockResponse conditionalMockResponse, long dispatchNanos) {
+
+        for (DispatchListener dispatchListener : this.dispatchListeners) {
+            dispatchListener.onDispatched(recordedRequest, dispatchOutcome, conditionalMockResponse, dispatchNanos);
+        }
+    }
+}
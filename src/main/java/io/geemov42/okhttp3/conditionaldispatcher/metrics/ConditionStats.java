@@ -0,0 +1,56 @@
+package io.geemov42.okhttp3.conditionaldispatcher.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author geemov42
+ * Evaluations, rejections and sampled cost of a matching condition, recorded while an adaptive ordering is enabled.
+ * A condition is only evaluated when the conditions before it matched, so the rates are conditional on them.
+ * Recording is a few increments and does not allocate.
+ */
+public class ConditionStats {
+
+    private final LongAdder evaluated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder costSamples = new LongAdder();
+    private final LongAdder sampledCostNanos = new LongAdder();
+
+    /**
+     * @param rejected true if the condition did not match
+     * @param costNanos the time of the evaluation, negative when not sampled
+     */
+    public void record(boolean rejected, long costNanos) {
+
+        this.evaluated.increment();
+
+        if (rejected) {
+            this.rejected.increment();
+        }
+
+        if (costNanos >= 0) {
+            this.costSamples.increment();
+            this.sampledCostNanos.add(costNanos);
+        }
+    }
+
+    public long getEvaluated() {
+        return this.evaluated.sum();
+    }
+
+    public long getRejected() {
+        return this.rejected.sum();
+    }
+
+    public long getCostSamples() {
+        return this.costSamples.sum();
+    }
+
+    /**
+     * @return the mean time of the sampled evaluations, or -1 if none was sampled
+     */
+    public double getAverageCostNanos() {
+
+        long samples = this.costSamples.sum();
+        return samples == 0 ? -1 : (double) this.sampledCostNanos.sum() / samples;
+    }
+}
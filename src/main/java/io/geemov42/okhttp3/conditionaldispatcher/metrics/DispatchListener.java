@@ -0,0 +1,79 @@
+package io.geemov42.okhttp3.conditionaldispatcher.metrics;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.DispatchOutcomeEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * @author geemov42
+ * Events of the rule evaluation, called from the dispatching threads.
+ * Implementations must be thread safe and cheap: they run on the dispatch path of every request.
+ */
+public interface DispatchListener {
+
+    DispatchListener NOOP = new DispatchListener() {
+    };
+
+    /**
+     * The path of the response matched, its conditions are about to be evaluated
+     * @param conditionalMockResponse the candidate
+     */
+    default void onCandidateEvaluated(ConditionalMockResponse conditionalMockResponse) {
+    }
+
+    /**
+     * @param conditionalMockResponse the candidate
+     * @param requestPartToTest the request part of the first condition that did not match
+     */
+    default void onConditionFailed(ConditionalMockResponse conditionalMockResponse, RequestPartToTestEnum requestPartToTest) {
+    }
+
+    /**
+     * @param httpMethodEnum the list of the response, COMMON included
+     * @param conditionalMockResponse the response served
+     * @param matchNanos time spent to find the response
+     */
+    default void onHit(HttpMethodEnum httpMethodEnum, ConditionalMockResponse conditionalMockResponse, long matchNanos) {
+    }
+
+    /**
+     * The response matched after its fetch limit
+     * @param conditionalMockResponse the response served
+     */
+    default void onBeyondLimit(ConditionalMockResponse conditionalMockResponse) {
+    }
+
+    /**
+     * The response matched but its rate limiter rejected the request, which gets the rejection response
+     * @param conditionalMockResponse the response matched
+     */
+    default void onRateLimited(ConditionalMockResponse conditionalMockResponse) {
+    }
+
+    /**
+     * No conditional mock response matched the request, it is about to be served by the queue
+     * @param recordedRequest the request
+     * @param matchNanos time spent to search a response
+     */
+    default void onMiss(RecordedRequest recordedRequest, long matchNanos) {
+    }
+
+    /**
+     * The request is served by the queue, or the miss dispatcher, after a miss or because it has no method or path
+     * @param recordedRequest the request
+     */
+    default void onQueueFallback(RecordedRequest recordedRequest) {
+    }
+
+    /**
+     * Last event of every dispatch
+     * @param recordedRequest the request
+     * @param dispatchOutcome how it was served
+     * @param conditionalMockResponse the response served for a RULE outcome, null otherwise
+     * @param dispatchNanos time spent in the dispatcher, waiting for the queue included
+     */
+    default void onDispatched(RecordedRequest recordedRequest, DispatchOutcomeEnum dispatchOutcome, ConditionalMockResponse conditionalMockResponse, long dispatchNanos) {
+    }
+}
@@ -0,0 +1,134 @@
+package io.geemov42.okhttp3.conditionaldispatcher.metrics;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.isNull;
+
+/**
+ * @author geemov42
+ * Built-in dispatch listener counting events per conditional mock response id.
+ * Counters are LongAdders, so threads dispatching the same rule do not contend,
+ * and an event allocates only the first time a rule is seen.
+ */
+public class DispatchMetrics implements DispatchListener {
+
+    private static final RequestPartToTestEnum[] REQUEST_PARTS = RequestPartToTestEnum.values();
+
+    private final Map<String, RuleMetrics> ruleMetricsById = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder queueFallbacks = new LongAdder();
+    private final LatencyHistogram missTime = new LatencyHistogram();
+
+    @Override
+    public void onCandidateEvaluated(ConditionalMockResponse conditionalMockResponse) {
+        this.ruleMetrics(conditionalMockResponse).candidateEvaluations.increment();
+    }
+
+    @Override
+    public void onConditionFailed(ConditionalMockResponse conditionalMockResponse, RequestPartToTestEnum requestPartToTest) {
+        this.ruleMetrics(conditionalMockResponse).conditionFailures[requestPartToTest.ordinal()].increment();
+    }
+
+    @Override
+    public void onHit(HttpMethodEnum httpMethodEnum, ConditionalMockResponse conditionalMockResponse, long matchNanos) {
+
+        RuleMetrics ruleMetrics = this.ruleMetrics(conditionalMockResponse);
+        ruleMetrics.hits.increment();
+        ruleMetrics.matchTime.record(matchNanos);
+        this.hits.increment();
+    }
+
+    @Override
+    public void onBeyondLimit(ConditionalMockResponse conditionalMockResponse) {
+        this.ruleMetrics(conditionalMockResponse).beyondLimitHits.increment();
+    }
+
+    @Override
+    public void onMiss(RecordedRequest recordedRequest, long matchNanos) {
+
+        this.misses.increment();
+        this.missTime.record(matchNanos);
+    }
+
+    @Override
+    public void onQueueFallback(RecordedRequest recordedRequest) {
+        this.queueFallbacks.increment();
+    }
+
+    /**
+     * Counters keep running while the snapshot is taken, so it is exact only once dispatching stopped
+     * @return the current counters, rules sorted by id
+     */
+    public DispatchMetricsSnapshot snapshot() {
+
+        Map<String, RuleMetricsSnapshot> rules = new TreeMap<>();
+        this.ruleMetricsById.forEach((id, ruleMetrics) -> rules.put(id, ruleMetrics.snapshot(id)));
+
+        return new DispatchMetricsSnapshot(
+                this.hits.sum(),
+                this.misses.sum(),
+                this.queueFallbacks.sum(),
+                this.missTime.snapshot(),
+                Collections.unmodifiableMap(rules)
+        );
+    }
+
+    private RuleMetrics ruleMetrics(ConditionalMockResponse conditionalMockResponse) {
+
+        // get first: computeIfAbsent would allocate its lambda on every event
+        RuleMetrics ruleMetrics = this.ruleMetricsById.get(conditionalMockResponse.getId());
+        if (isNull(ruleMetrics)) {
+            ruleMetrics = this.ruleMetricsById.computeIfAbsent(conditionalMockResponse.getId(), id -> new RuleMetrics());
+        }
+
+        return ruleMetrics;
+    }
+
+    private static class RuleMetrics {
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder candidateEvaluations = new LongAdder();
+        private final LongAdder[] conditionFailures = new LongAdder[REQUEST_PARTS.length];
+        private final LongAdder beyondLimitHits = new LongAdder();
+        private final LatencyHistogram matchTime = new LatencyHistogram();
+
+        private RuleMetrics() {
+
+            for (int i = 0; i < this.conditionFailures.length; i++) {
+                this.conditionFailures[i] = new LongAdder();
+            }
+        }
+
+        private RuleMetricsSnapshot snapshot(String id) {
+
+            Map<RequestPartToTestEnum, Long> failures = new EnumMap<>(RequestPartToTestEnum.class);
+            for (RequestPartToTestEnum requestPart : REQUEST_PARTS) {
+                long failureCount = this.conditionFailures[requestPart.ordinal()].sum();
+
+                if (failureCount > 0) {
+                    failures.put(requestPart, failureCount);
+                }
+            }
+
+            return new RuleMetricsSnapshot(
+                    id,
+                    this.hits.sum(),
+                    this.candidateEvaluations.sum(),
+                    Collections.unmodifiableMap(failures),
+                    this.beyondLimitHits.sum(),
+                    this.matchTime.snapshot()
+            );
+        }
+    }
+}
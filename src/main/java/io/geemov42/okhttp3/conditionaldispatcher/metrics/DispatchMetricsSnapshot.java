@@ -0,0 +1,19 @@
+package io.geemov42.okhttp3.conditionaldispatcher.metrics;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * @author geemov42
+ * Counters of a dispatcher, to be exported or asserted at the end of a test run
+ */
+@Data
+public class DispatchMetricsSnapshot {
+
+    private final long hits;
+    private final long misses;
+    private final long queueFallbacks;
+    private final HistogramSnapshot missTime;
+    private final Map<String, RuleMetricsSnapshot> rules;
+}
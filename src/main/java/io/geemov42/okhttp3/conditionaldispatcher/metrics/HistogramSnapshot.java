@@ -0,0 +1,19 @@
+package io.geemov42.okhttp3.conditionaldispatcher.metrics;
+
+import lombok.Data;
+
+/**
+ * @author geemov42
+ * Durations in nanoseconds recorded by a latency histogram at the time of the snapshot
+ */
+@Data
+public class HistogramSnapshot {
+
+    private final long count;
+    private final double mean;
+    private final long max;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+}
@@ -0,0 +1,144 @@
+package io.geemov42.okhttp3.conditionaldispatcher.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author geemov42
+ * Concurrent histogram of durations in nanoseconds, with log linear buckets like HdrHistogram:
+ * each power of two is split in 8 sub buckets, so a reported percentile is at most 12.5% above the recorded value.
+ * Recording is a few atomic increments and does not allocate.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // values above 2^41 ns, about 36 minutes, are counted in the last bucket
+    private static final int MAX_MAGNITUDE = 41;
+    private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param nanos the duration, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+
+        long value = Math.max(0, nanos);
+
+        this.counts.incrementAndGet(bucketIndex(value));
+        this.count.increment();
+        this.sum.add(value);
+        this.max.accumulate(value);
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the highest value of the bucket holding the percentile, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile should be between 0 and 100");
+        }
+
+        long[] snapshotCounts = this.snapshotCounts();
+        return valueAtPercentile(snapshotCounts, total(snapshotCounts), percentile, this.max.get());
+    }
+
+    public HistogramSnapshot snapshot() {
+
+        long[] snapshotCounts = this.snapshotCounts();
+        long total = total(snapshotCounts);
+        long maxValue = this.max.get();
+
+        return new HistogramSnapshot(
+                total,
+                total == 0 ? 0 : this.sum.sum() / (double) total,
+                maxValue,
+                valueAtPercentile(snapshotCounts, total, 50, maxValue),
+                valueAtPercentile(snapshotCounts, total, 90, maxValue),
+                valueAtPercentile(snapshotCounts, total, 99, maxValue),
+                valueAtPercentile(snapshotCounts, total, 99.9, maxValue)
+        );
+    }
+
+    private long[] snapshotCounts() {
+
+        long[] snapshotCounts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshotCounts[i] = this.counts.get(i);
+        }
+
+        return snapshotCounts;
+    }
+
+    private static long total(long[] counts) {
+
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+
+        return total;
+    }
+
+    private static long valueAtPercentile(long[] counts, long total, double percentile, long maxValue) {
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long cumulated = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            cumulated += counts[i];
+
+            if (cumulated >= rank) {
+                return Math.min(highestValueOf(i), maxValue);
+            }
+        }
+
+        return maxValue;
+    }
+
+    static int bucketIndex(long value) {
+
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int magnitude = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_MAGNITUDE);
+        if (magnitude == MAX_MAGNITUDE) {
+            return BUCKET_COUNT - 1;
+        }
+
+        int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long highestValueOf(int bucketIndex) {
+
+        if (bucketIndex < SUB_BUCKET_COUNT) {
+            return bucketIndex;
+        }
+
+        if (bucketIndex == BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+
+        int shift = bucketIndex / SUB_BUCKET_COUNT - 1;
+        long lowest = (long) (SUB_BUCKET_COUNT + bucketIndex % SUB_BUCKET_COUNT) << shift;
+
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,21 @@
+package io.geemov42.okhttp3.conditionaldispatcher.metrics;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum;
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * @author geemov42
+ * Counters of one conditional mock response, by id
+ */
+@Data
+public class RuleMetricsSnapshot {
+
+    private final String id;
+    private final long hits;
+    private final long candidateEvaluations;
+    private final Map<RequestPartToTestEnum, Long> conditionFailures;
+    private final long beyondLimitHits;
+    private final HistogramSnapshot matchTime;
+}
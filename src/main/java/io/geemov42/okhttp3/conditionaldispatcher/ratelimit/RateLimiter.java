@@ -0,0 +1,304 @@
+package io.geemov42.okhttp3.conditionaldispatcher.ratelimit;
+
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+import io.geemov42.okhttp3.conditionaldispatcher.response.KeyPart;
+import lombok.Builder;
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNullElse;
+
+/**
+ * @author geemov42
+ * Rate limit and concurrency cap of a conditional mock response, for one bucket per rule or per key, like a header value.
+ * The rate is a token bucket kept as a theoretical arrival time (GCRA): taking a token is one compare and set, without lock.
+ * A request holds one of the concurrency slots until its response is sent, as estimated from the delays and throttle of the response,
+ * since MockWebServer does not tell when a response is written.
+ * A rejected request gets the rejection response, 429 by default, with a Retry-After header.
+ */
+public class RateLimiter {
+
+    private static final long FREE = Long.MIN_VALUE;
+    private static final long RESERVED = Long.MAX_VALUE;
+    private static final String NO_KEY = "";
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final int maxConcurrent;
+    private final KeyPart keyPart;
+    private final MockResponse rejectionResponse;
+    private final ConcurrentHashMap<String, KeyBucket> bucketsByKey = new ConcurrentHashMap<>();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder concurrencyLimited = new LongAdder();
+
+    /**
+     * At least a rate or a concurrency cap is expected.
+     * @param permits the number of requests per period, 0 for no rate limit
+     * @param period the period of the rate, one second by default
+     * @param burst the number of requests accepted at once after an idle time, the permits by default
+     * @param maxConcurrent the number of requests in flight, 0 for no cap
+     * @param keyPart the request part of the bucket key, null for one bucket per rule
+     * @param rejectionResponse the response of a rejected request, like a 503 or a degraded response, 429 by default
+     */
+    @Builder
+    public RateLimiter(long permits, Duration period, int burst, int maxConcurrent, KeyPart keyPart, MockResponse rejectionResponse) {
+
+        if (permits < 0 || burst < 0 || maxConcurrent < 0) {
+            throw new IllegalArgumentException("Permits, burst and concurrency should not be negative");
+        }
+
+        if (permits == 0 && maxConcurrent == 0) {
+            throw new IllegalArgumentException("Either a rate or a concurrency cap should be defined");
+        }
+
+        long periodNanos = requireNonNullElse(period, Duration.ofSeconds(1)).toNanos();
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("Period should be positive");
+        }
+
+        this.emissionIntervalNanos = permits == 0 ? 0 : Math.max(1, periodNanos / permits);
+        this.burstToleranceNanos = permits == 0 ? 0 : this.emissionIntervalNanos * ((burst == 0 ? permits : burst) - 1);
+        this.maxConcurrent = maxConcurrent;
+        this.keyPart = keyPart;
+        this.rejectionResponse = isNull(rejectionResponse) ? new MockResponse().setResponseCode(429) : rejectionResponse.clone();
+    }
+
+    /**
+     * Take a token and a concurrency slot of the bucket of the request
+     * @param requestContext the request
+     * @return the admission, to hold with the served response when admitted
+     */
+    public Admission admit(RequestContext requestContext) {
+
+        String key = isNull(this.keyPart) ? NO_KEY : requireNonNullElse(this.keyPart.extractValue(requestContext), NO_KEY);
+        KeyBucket keyBucket = this.bucketsByKey.get(key);
+        if (isNull(keyBucket)) {
+            keyBucket = this.bucketsByKey.computeIfAbsent(key, k -> new KeyBucket(this.maxConcurrent, System.nanoTime()));
+        }
+
+        long now = System.nanoTime();
+        int slot = keyBucket.tryReserveSlot(now);
+        if (slot == KeyBucket.FULL) {
+            this.concurrencyLimited.increment();
+            return new Admission(null, KeyBucket.FULL, keyBucket.nextSlotFreedNanos(now));
+        }
+
+        long retryAfterNanos = this.emissionIntervalNanos == 0 ? 0 : keyBucket.tryTakeToken(now, this.emissionIntervalNanos, this.burstToleranceNanos);
+        if (retryAfterNanos > 0) {
+            keyBucket.releaseSlot(slot);
+            this.rateLimited.increment();
+            return new Admission(null, KeyBucket.FULL, retryAfterNanos);
+        }
+
+        this.admitted.increment();
+        return slot == KeyBucket.UNCAPPED ? Admission.ADMITTED : new Admission(keyBucket, slot, 0);
+    }
+
+    /**
+     * @param admission a rejected admission
+     * @return a copy of the rejection response, with the time to wait before a retry
+     */
+    public MockResponse rejectionOf(Admission admission) {
+
+        MockResponse rejection = this.rejectionResponse.clone();
+        if (isNull(rejection.getHeaders().get("Retry-After"))) {
+            // whole seconds, rounded up so that a client retrying on time is admitted
+            rejection.setHeader("Retry-After", (admission.retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        }
+
+        return rejection;
+    }
+
+    public RateLimiterStats getStats() {
+
+        long now = System.nanoTime();
+        int inFlight = 0;
+        for (KeyBucket keyBucket : this.bucketsByKey.values()) {
+            inFlight += keyBucket.inFlight(now);
+        }
+
+        return new RateLimiterStats(this.admitted.sum(), this.rateLimited.sum(), this.concurrencyLimited.sum(), this.bucketsByKey.size(), inFlight);
+    }
+
+    /**
+     * Outcome of one admission
+     */
+    public static class Admission {
+
+        private static final Admission ADMITTED = new Admission(null, KeyBucket.UNCAPPED, 0);
+
+        private final KeyBucket keyBucket;
+        private final int slot;
+        private final long retryAfterNanos;
+
+        private Admission(KeyBucket keyBucket, int slot, long retryAfterNanos) {
+
+            this.keyBucket = keyBucket;
+            this.slot = slot;
+            this.retryAfterNanos = retryAfterNanos;
+        }
+
+        public boolean isAdmitted() {
+            return this.slot != KeyBucket.FULL;
+        }
+
+        public long getRetryAfterNanos() {
+            return this.retryAfterNanos;
+        }
+
+        /**
+         * Keep the concurrency slot until the served response is expected to be sent
+         * @param mockResponse the served response, with its delays and throttle
+         */
+        public void hold(MockResponse mockResponse) {
+
+            if (isNull(this.keyBucket)) {
+                return;
+            }
+
+            long holdNanos = mockResponse.getHeadersDelay(TimeUnit.NANOSECONDS) + mockResponse.getBodyDelay(TimeUnit.NANOSECONDS);
+            if (mockResponse.getThrottleBytesPerPeriod() != Long.MAX_VALUE) {
+                holdNanos += bodySize(mockResponse) / mockResponse.getThrottleBytesPerPeriod() * mockResponse.getThrottlePeriod(TimeUnit.NANOSECONDS);
+            }
+
+            this.keyBucket.holdSlot(this.slot, System.nanoTime() + holdNanos);
+        }
+
+        /**
+         * Give the concurrency slot back at once, when the response could not be served
+         */
+        public void release() {
+
+            if (!isNull(this.keyBucket)) {
+                this.keyBucket.releaseSlot(this.slot);
+            }
+        }
+
+        /**
+         * The size is read from the Content-Length header set with the body: getBody() returns a copy of the body.
+         * Only a chunked response, without that header, is copied.
+         */
+        private static long bodySize(MockResponse mockResponse) {
+
+            String contentLength = mockResponse.getHeaders().get("Content-Length");
+            if (!isNull(contentLength)) {
+                try {
+                    return Long.parseLong(contentLength.trim());
+                } catch (NumberFormatException e) {
+                    // a hand written header, fall back to the body
+                }
+            }
+
+            Buffer body = mockResponse.getBody();
+            return isNull(body) ? 0 : body.size();
+        }
+    }
+
+    private static class KeyBucket {
+
+        private static final int UNCAPPED = -1;
+        private static final int FULL = -2;
+
+        private final AtomicLong theoreticalArrivalNanos;
+        private final AtomicLongArray busyUntilNanos;
+
+        private KeyBucket(int maxConcurrent, long now) {
+
+            // a new bucket is full: its whole burst is available at once
+            this.theoreticalArrivalNanos = new AtomicLong(now);
+            this.busyUntilNanos = maxConcurrent == 0 ? null : new AtomicLongArray(maxConcurrent);
+
+            for (int i = 0; i < maxConcurrent; i++) {
+                this.busyUntilNanos.set(i, FREE);
+            }
+        }
+
+        /**
+         * @return 0 if a token was taken, otherwise the time until the next token
+         */
+        private long tryTakeToken(long now, long emissionIntervalNanos, long burstToleranceNanos) {
+
+            while (true) {
+                long theoreticalArrival = this.theoreticalArrivalNanos.get();
+                long base = theoreticalArrival - now > 0 ? theoreticalArrival : now;
+                long allowedAt = base - burstToleranceNanos;
+
+                if (allowedAt - now > 0) {
+                    return allowedAt - now;
+                }
+
+                if (this.theoreticalArrivalNanos.compareAndSet(theoreticalArrival, base + emissionIntervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+
+        private int tryReserveSlot(long now) {
+
+            if (isNull(this.busyUntilNanos)) {
+                return UNCAPPED;
+            }
+
+            for (int i = 0; i < this.busyUntilNanos.length(); i++) {
+                long busyUntil = this.busyUntilNanos.get(i);
+
+                if (isFree(busyUntil, now) && this.busyUntilNanos.compareAndSet(i, busyUntil, RESERVED)) {
+                    return i;
+                }
+            }
+
+            return FULL;
+        }
+
+        private void holdSlot(int slot, long busyUntil) {
+            this.busyUntilNanos.set(slot, busyUntil);
+        }
+
+        private void releaseSlot(int slot) {
+
+            if (slot >= 0) {
+                this.busyUntilNanos.set(slot, FREE);
+            }
+        }
+
+        /**
+         * @return the time until a held slot is freed, 0 if the slots are reserved by requests being served
+         */
+        private long nextSlotFreedNanos(long now) {
+
+            long next = Long.MAX_VALUE;
+            for (int i = 0; i < this.busyUntilNanos.length(); i++) {
+                long busyUntil = this.busyUntilNanos.get(i);
+
+                if (!isFree(busyUntil, now) && busyUntil != RESERVED) {
+                    next = Math.min(next, busyUntil - now);
+                }
+            }
+
+            return next == Long.MAX_VALUE ? 0 : next;
+        }
+
+        private int inFlight(long now) {
+
+            int inFlight = 0;
+            for (int i = 0; !isNull(this.busyUntilNanos) && i < this.busyUntilNanos.length(); i++) {
+                inFlight += isFree(this.busyUntilNanos.get(i), now) ? 0 : 1;
+            }
+
+            return inFlight;
+        }
+
+        private static boolean isFree(long busyUntil, long now) {
+            return busyUntil == FREE || (busyUntil != RESERVED && busyUntil - now <= 0);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package io.geemov42.okhttp3.conditionaldispatcher.ratelimit;
+
+import lombok.Data;
+
+/**
+ * @author geemov42
+ * Counters of a rate limiter since its creation, and its requests in flight at the time of the snapshot
+ */
+@Data
+public class RateLimiterStats {
+
+    private final long admitted;
+    /**
+     * Rejected because the bucket had no token left
+     */
+    private final long rateLimited;
+    /**
+     * Rejected because every concurrency slot of the bucket was held
+     */
+    private final long concurrencyLimited;
+    private final int keyCount;
+    private final int inFlight;
+}
@@ -0,0 +1,198 @@
+package io.geemov42.okhttp3.conditionaldispatcher.recording;
+
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Read only index of a capture file written by a {@link CaptureWriter}.
+ * The file is memory mapped: opening it only reads the key of each record and skips the responses,
+ * which are decoded from the mapping when served, so a large capture starts fast and stays off the heap.
+ * The responses of a key are served in recording order, the last one being repeated.
+ * An incomplete last record, left by an interrupted recording, is ignored.
+ */
+public class CaptureIndex {
+
+    private final Path path;
+    private final ByteBuffer mappedCapture;
+    private final Map<String, Entry> entriesByKey;
+    private final int recordCount;
+
+    private CaptureIndex(Path path, ByteBuffer mappedCapture, Map<String, Entry> entriesByKey, int recordCount) {
+
+        this.path = path;
+        this.mappedCapture = mappedCapture;
+        this.entriesByKey = entriesByKey;
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * @param path a capture file, up to 2 GB as it is mapped in one region
+     * @return the index of the records of the file at this time
+     */
+    public static CaptureIndex open(Path path) throws IOException {
+
+        requireNonNull(path);
+
+        ByteBuffer mappedCapture;
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (fileChannel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(path + " is over 2 GB");
+            }
+
+            // the mapping stays valid once the channel is closed
+            mappedCapture = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+        }
+
+        ByteBuffer reader = mappedCapture.duplicate();
+        if (reader.remaining() < CaptureWriter.MAGIC.size() || !readByteString(reader, CaptureWriter.MAGIC.size()).equals(CaptureWriter.MAGIC)) {
+            throw new IllegalArgumentException(path + " is not a capture file");
+        }
+
+        Map<String, Entry> entriesByKey = new HashMap<>();
+        int recordCount = 0;
+
+        while (reader.remaining() >= Integer.BYTES) {
+            int recordLength = reader.getInt();
+            int recordEnd = reader.position() + recordLength;
+
+            if (recordLength < 0 || recordEnd > reader.limit()) {
+                break;
+            }
+
+            String method = readString(reader);
+            String requestPath = readString(reader);
+            long contentHash = reader.getLong();
+
+            entriesByKey.computeIfAbsent(CaptureKey.key(method, requestPath, contentHash), key -> new Entry()).add(reader.position());
+            recordCount++;
+
+            reader.position(recordEnd);
+        }
+
+        entriesByKey.values().forEach(Entry::trim);
+
+        return new CaptureIndex(path, mappedCapture, entriesByKey, recordCount);
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    public int getRecordCount() {
+        return this.recordCount;
+    }
+
+    public int getKeyCount() {
+        return this.entriesByKey.size();
+    }
+
+    /**
+     * @param requestContext the request to replay
+     * @return true if a response was recorded for the request
+     */
+    public boolean contains(RequestContext requestContext) {
+        return this.entriesByKey.containsKey(CaptureKey.of(requestContext));
+    }
+
+    /**
+     * @param requestContext the request to replay
+     * @return the next recorded response of the request, or null if none was recorded
+     */
+    public MockResponse serve(RequestContext requestContext) {
+
+        Entry entry = this.entriesByKey.get(CaptureKey.of(requestContext));
+        if (isNull(entry)) {
+            return null;
+        }
+
+        int served = entry.served.getAndIncrement();
+        return this.responseAt(entry.positions[Math.min(Math.max(served, 0), entry.positions.length - 1)]);
+    }
+
+    private MockResponse responseAt(int position) {
+
+        // a duplicate per serve: the positions of the shared mapping are not thread safe
+        ByteBuffer reader = this.mappedCapture.duplicate();
+        reader.position(position);
+
+        int status = reader.getInt();
+        int headerCount = reader.getInt();
+        Headers.Builder headers = new Headers.Builder();
+        for (int i = 0; i < headerCount; i++) {
+            headers.addUnsafeNonAscii(readString(reader), readString(reader));
+        }
+
+        int bodyLength = reader.getInt();
+        reader.limit(reader.position() + bodyLength);
+        Buffer body = new Buffer();
+        try {
+            while (reader.hasRemaining()) {
+                body.write(reader);
+            }
+        } catch (IOException e) {
+            // a buffer does not fail on write
+            throw new UncheckedIOException(e);
+        }
+
+        return new MockResponse()
+                .setResponseCode(status)
+                .setHeaders(headers.build())
+                .setBody(body);
+    }
+
+    private static String readString(ByteBuffer reader) {
+
+        int length = reader.getInt();
+        String value = StandardCharsets.UTF_8.decode(reader.slice().limit(length)).toString();
+        reader.position(reader.position() + length);
+
+        return value;
+    }
+
+    private static ByteString readByteString(ByteBuffer reader, int length) {
+
+        byte[] bytes = new byte[length];
+        reader.get(bytes);
+
+        return ByteString.of(bytes);
+    }
+
+    private static class Entry {
+
+        private int[] positions = new int[1];
+        private int size;
+        private final AtomicInteger served = new AtomicInteger();
+
+        private void add(int position) {
+
+            if (this.size == this.positions.length) {
+                this.positions = Arrays.copyOf(this.positions, this.size * 2);
+            }
+
+            this.positions[this.size++] = position;
+        }
+
+        private void trim() {
+            this.positions = Arrays.copyOf(this.positions, this.size);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package io.geemov42.okhttp3.conditionaldispatcher.recording;
+
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Objects.isNull;
+
+/**
+ * @author geemov42
+ * Key of a captured exchange: the method, the path without query string, and a hash of the normalized query and body.
+ * The query is normalized by sorting its decoded parameters, so the order of the parameters does not change the key.
+ */
+final class CaptureKey {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private CaptureKey() {
+    }
+
+    static String key(String method, String path, long contentHash) {
+        return method + ' ' + path + ' ' + Long.toHexString(contentHash);
+    }
+
+    /**
+     * @param recordedRequest the request forwarded to the upstream
+     * @return the key of the request as recorded
+     */
+    static String of(RecordedRequest recordedRequest) {
+        return key(recordedRequest.getMethod(), pathOf(recordedRequest.getPath()), contentHash(recordedRequest));
+    }
+
+    /**
+     * @param requestContext the request to replay, without its path prefix
+     * @return the key of the request as replayed
+     */
+    static String of(RequestContext requestContext) {
+
+        RecordedRequest recordedRequest = requestContext.getRecordedRequest();
+        return key(recordedRequest.getMethod(), pathOf(requestContext.getPath()), contentHash(recordedRequest));
+    }
+
+    static String pathOf(String rawPath) {
+
+        int queryStart = rawPath.indexOf('?');
+        return queryStart < 0 ? rawPath : rawPath.substring(0, queryStart);
+    }
+
+    /**
+     * FNV-1a of the sorted query parameters, then of the body bytes read in place
+     */
+    static long contentHash(RecordedRequest recordedRequest) {
+
+        long hash = FNV_OFFSET_BASIS;
+        HttpUrl requestUrl = recordedRequest.getRequestUrl();
+
+        if (!isNull(requestUrl) && requestUrl.querySize() > 0) {
+            List<String> parameters = new ArrayList<>(requestUrl.querySize());
+            for (int i = 0; i < requestUrl.querySize(); i++) {
+                String value = requestUrl.queryParameterValue(i);
+                parameters.add(requestUrl.queryParameterName(i) + (isNull(value) ? "" : "=" + value));
+            }
+            Collections.sort(parameters);
+
+            for (String parameter : parameters) {
+                for (byte b : parameter.getBytes(StandardCharsets.UTF_8)) {
+                    hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+                }
+                hash = (hash ^ '&') * FNV_PRIME;
+            }
+        }
+
+        // separates the query from the body, so moving bytes from one to the other changes the hash
+        hash = (hash ^ 0xff) * FNV_PRIME;
+
+        try (Buffer.UnsafeCursor cursor = recordedRequest.getBody().readUnsafe()) {
+            for (int length = cursor.seek(0); length != -1; length = cursor.next()) {
+                for (int i = cursor.start; i < cursor.end; i++) {
+                    hash = (hash ^ (cursor.data[i] & 0xff)) * FNV_PRIME;
+                }
+            }
+        }
+
+        return hash;
+    }
+}
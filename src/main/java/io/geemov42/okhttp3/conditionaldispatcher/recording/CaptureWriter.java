@@ -0,0 +1,115 @@
+package io.geemov42.okhttp3.conditionaldispatcher.recording;
+
+import okhttp3.Headers;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Append only capture file of request and response pairs.
+ * The file starts with a magic number, then each record is its length followed by:
+ * the method, the path without query, the hash of the normalized query and body, then the status, the headers and the body.
+ * Strings are an int length and utf-8 bytes; numbers are big endian.
+ * A record is encoded in memory and appended in one write, so a crash leaves at most an incomplete last record.
+ */
+public class CaptureWriter implements Closeable {
+
+    static final ByteString MAGIC = ByteString.encodeUtf8("CDCAP001");
+
+    private final Path path;
+    private final BufferedSink sink;
+    private long recordCount;
+
+    private CaptureWriter(Path path, BufferedSink sink) {
+
+        this.path = path;
+        this.sink = sink;
+    }
+
+    /**
+     * @param path the capture file, created if absent, appended to otherwise
+     * @return the writer
+     */
+    public static CaptureWriter open(Path path) throws IOException {
+
+        requireNonNull(path);
+
+        boolean empty = !Files.exists(path) || Files.size(path) == 0;
+        if (!empty) {
+            try (BufferedSource source = Okio.buffer(Okio.source(path))) {
+                if (!source.request(MAGIC.size()) || !source.readByteString(MAGIC.size()).equals(MAGIC)) {
+                    throw new IllegalArgumentException(path + " is not a capture file");
+                }
+            }
+        }
+
+        BufferedSink sink = Okio.buffer(Okio.sink(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+        if (empty) {
+            sink.write(MAGIC).flush();
+        }
+
+        return new CaptureWriter(path, sink);
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    public synchronized long getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * @param method the request method
+     * @param path the request path without query string
+     * @param contentHash the hash of the normalized query and body of the request
+     * @param status the response status code
+     * @param headers the response headers
+     * @param body the response body
+     */
+    public void append(String method, String path, long contentHash, int status, Headers headers, ByteString body) throws IOException {
+
+        Buffer record = new Buffer();
+        writeString(record, requireNonNull(method));
+        writeString(record, requireNonNull(path));
+        record.writeLong(contentHash);
+        record.writeInt(status);
+        record.writeInt(headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            writeString(record, headers.name(i));
+            writeString(record, headers.value(i));
+        }
+        record.writeInt(body.size());
+        record.write(body);
+
+        synchronized (this) {
+            this.sink.writeInt((int) record.size());
+            this.sink.writeAll(record);
+            this.sink.flush();
+            this.recordCount++;
+        }
+    }
+
+    private static void writeString(Buffer buffer, String value) {
+
+        ByteString bytes = ByteString.encodeUtf8(value);
+        buffer.writeInt(bytes.size());
+        buffer.write(bytes);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.sink.close();
+    }
+}
@@ -0,0 +1,147 @@
+package io.geemov42.okhttp3.conditionaldispatcher.recording;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.ByteString;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Forwards each request to an upstream service and appends the exchange to a capture file, to be replayed later
+ * by a {@link ReplayConditionalMockResponse}. Set as the miss dispatcher of a conditional dispatcher,
+ * it only records the requests no conditional mock response matches.
+ * An upstream that cannot be reached gets a 502 response, which is not recorded.
+ */
+@Slf4j
+public class RecordingDispatcher extends Dispatcher implements Closeable {
+
+    /**
+     * Headers of one connection, which the client and the mock web server set themselves
+     */
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of("host", "connection", "keep-alive", "proxy-connection",
+            "transfer-encoding", "te", "trailer", "upgrade", "content-length");
+
+    private final HttpUrl upstreamUrl;
+    private final CaptureWriter captureWriter;
+    private final OkHttpClient okHttpClient;
+    private final boolean ownedOkHttpClient;
+
+    /**
+     * @param upstreamUrl the service the requests are forwarded to
+     * @param captureFile the capture file, appended to when it exists
+     */
+    public RecordingDispatcher(HttpUrl upstreamUrl, Path captureFile) throws IOException {
+        this(upstreamUrl, captureFile, new OkHttpClient.Builder().followRedirects(false).followSslRedirects(false).build(), true);
+    }
+
+    /**
+     * @param upstreamUrl the service the requests are forwarded to
+     * @param captureFile the capture file, appended to when it exists
+     * @param okHttpClient the client forwarding the requests, which should not follow redirects so that they are recorded as is
+     */
+    public RecordingDispatcher(HttpUrl upstreamUrl, Path captureFile, OkHttpClient okHttpClient) throws IOException {
+        this(upstreamUrl, captureFile, okHttpClient, false);
+    }
+
+    private RecordingDispatcher(HttpUrl upstreamUrl, Path captureFile, OkHttpClient okHttpClient, boolean ownedOkHttpClient) throws IOException {
+
+        this.upstreamUrl = requireNonNull(upstreamUrl);
+        this.okHttpClient = requireNonNull(okHttpClient);
+        this.captureWriter = CaptureWriter.open(captureFile);
+        this.ownedOkHttpClient = ownedOkHttpClient;
+    }
+
+    public long getRecordCount() {
+        return this.captureWriter.getRecordCount();
+    }
+
+    public Path getCaptureFile() {
+        return this.captureWriter.getPath();
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest recordedRequest) {
+
+        // the request target is resolved against the upstream url, its path replacing the upstream one
+        HttpUrl url = isNull(recordedRequest.getPath()) ? null : this.upstreamUrl.resolve(recordedRequest.getPath());
+        if (isNull(url) || isNull(recordedRequest.getMethod())) {
+            return new MockResponse().setResponseCode(502).setBody("Cannot forward " + recordedRequest.getRequestLine());
+        }
+
+        Request request = new Request.Builder()
+                .url(url)
+                .headers(withoutHopByHopHeaders(recordedRequest.getHeaders()))
+                .method(recordedRequest.getMethod(), requestBodyOf(recordedRequest))
+                .build();
+
+        try (Response response = this.okHttpClient.newCall(request).execute()) {
+            ResponseBody responseBody = response.body();
+            ByteString body = isNull(responseBody) ? ByteString.EMPTY : responseBody.byteString();
+            Headers headers = withoutHopByHopHeaders(response.headers());
+
+            this.captureWriter.append(recordedRequest.getMethod(), CaptureKey.pathOf(recordedRequest.getPath()), CaptureKey.contentHash(recordedRequest),
+                    response.code(), headers, body);
+
+            return new MockResponse()
+                    .setResponseCode(response.code())
+                    .setHeaders(headers)
+                    .setBody(new Buffer().write(body));
+        } catch (IOException e) {
+            log.warn("Cannot forward {} to {}", recordedRequest.getRequestLine(), this.upstreamUrl, e);
+            return new MockResponse().setResponseCode(502).setBody("Cannot forward " + recordedRequest.getRequestLine() + ": " + e.getMessage());
+        }
+    }
+
+    private static RequestBody requestBodyOf(RecordedRequest recordedRequest) {
+
+        String method = recordedRequest.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            return null;
+        }
+
+        String contentType = recordedRequest.getHeader("Content-Type");
+        return RequestBody.create(recordedRequest.getBody().snapshot(), isNull(contentType) ? null : MediaType.parse(contentType));
+    }
+
+    private static Headers withoutHopByHopHeaders(Headers headers) {
+
+        Headers.Builder builder = new Headers.Builder();
+        for (int i = 0; i < headers.size(); i++) {
+            if (!HOP_BY_HOP_HEADERS.contains(headers.name(i).toLowerCase(Locale.ROOT))) {
+                builder.addUnsafeNonAscii(headers.name(i), headers.value(i));
+            }
+        }
+
+        return builder.build();
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        this.captureWriter.close();
+
+        if (this.ownedOkHttpClient) {
+            this.okHttpClient.dispatcher().executorService().shutdown();
+            this.okHttpClient.connectionPool().evictAll();
+        }
+    }
+}
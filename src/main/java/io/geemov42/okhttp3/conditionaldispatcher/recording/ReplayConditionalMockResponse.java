@@ -0,0 +1,65 @@
+package io.geemov42.okhttp3.conditionaldispatcher.recording;
+
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import io.geemov42.okhttp3.conditionaldispatcher.response.MatchingCondition;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import okhttp3.mockwebserver.MockResponse;
+
+import java.util.List;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * One conditional mock response replaying a capture file: a request matches when the capture has a response
+ * for its method, path and normalized query and body, found with a hash lookup whatever the size of the capture.
+ * A request that was not recorded does not match, so the dispatcher goes on with the next responses.
+ */
+@Getter
+@ToString(callSuper = true, onlyExplicitlyIncluded = true)
+@EqualsAndHashCode(callSuper = true, onlyExplicitlyIncluded = true)
+public class ReplayConditionalMockResponse extends ConditionalMockResponse {
+
+    private static final String ANY_PATH_REGEX = "^/";
+
+    @ToString.Include
+    private final CaptureIndex captureIndex;
+
+    /**
+     * Without path regex nor path matcher, every recorded path is replayed
+     */
+    @Builder(builderMethodName = "replayBuilder")
+    public ReplayConditionalMockResponse(String id, int limitFetch, String pathRegex, ValueMatcher pathMatcher, CaptureIndex captureIndex, List<MatchingCondition> matchingConditions) {
+
+        super(id, limitFetch, isNull(pathRegex) && isNull(pathMatcher) ? ANY_PATH_REGEX : pathRegex, pathMatcher, matchingConditions);
+        this.captureIndex = requireNonNull(captureIndex);
+    }
+
+    @Override
+    public boolean matchConditions(RequestContext requestContext) {
+        return super.matchConditions(requestContext) && this.captureIndex.contains(requestContext);
+    }
+
+    /**
+     * The key depends on the body, and a key with several recorded responses serves them in sequence
+     */
+    @Override
+    public boolean isDecisionCacheable() {
+        return false;
+    }
+
+    @Override
+    public MockResponse getMockResponse(RequestContext requestContext) {
+
+        MockResponse mockResponse = requireNonNull(this.captureIndex.serve(requestContext));
+        this.use();
+
+        return mockResponse;
+    }
+}
@@ -0,0 +1,94 @@
+package io.geemov42.okhttp3.conditionaldispatcher.request;
+
+import okio.Buffer;
+
+import java.nio.charset.StandardCharsets;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Read only char sequence over a range of an okio buffer, one char per byte, without copying the bytes.
+ * It is the exact text of the range as long as the range is ascii.
+ * Access is cheap when it is mostly sequential, as it is for a regex scan: the current segment is kept by a cursor.
+ */
+public class BufferCharSequence implements CharSequence {
+
+    private Buffer buffer;
+    private long start;
+    private int length;
+    private final Buffer.UnsafeCursor cursor = new Buffer.UnsafeCursor();
+
+    public BufferCharSequence(Buffer buffer, long start, int length) {
+        this.reset(requireNonNull(buffer), start, length);
+    }
+
+    /**
+     * An empty sequence, to be reset on a buffer by the request context that reuses it
+     */
+    BufferCharSequence() {
+        this.reset(null, 0, 0);
+    }
+
+    void reset(Buffer buffer, long start, int length) {
+
+        if (start < 0 || length < 0 || start + length > (buffer == null ? 0 : buffer.size())) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + (start + length) + ") out of buffer");
+        }
+
+        if (this.cursor.buffer != null) {
+            this.cursor.close();
+        }
+
+        this.buffer = buffer;
+        this.start = start;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+
+        if (index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of length " + this.length);
+        }
+
+        long offset = this.start + index;
+
+        if (this.cursor.buffer == null) {
+            this.buffer.readUnsafe(this.cursor);
+            this.cursor.seek(offset);
+        } else if (offset < this.cursor.offset || offset >= this.cursor.offset + (this.cursor.end - this.cursor.start)) {
+            this.cursor.seek(offset);
+        }
+
+        return (char) (this.cursor.data[this.cursor.start + (int) (offset - this.cursor.offset)] & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+
+        if (start < 0 || end > this.length || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of length " + this.length);
+        }
+
+        return new BufferCharSequence(this.buffer, this.start + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+
+        if (this.length == 0) {
+            return "";
+        }
+
+        Buffer copy = new Buffer();
+        this.buffer.copyTo(copy, this.start, this.length);
+
+        return copy.readString(StandardCharsets.ISO_8859_1);
+    }
+}
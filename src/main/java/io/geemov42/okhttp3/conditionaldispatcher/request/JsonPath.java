@@ -0,0 +1,542 @@
+package io.geemov42.okhttp3.conditionaldispatcher.request;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.StringUtils.requireNonNullAndNotBlank;
+import static java.util.Objects.isNull;
+
+/**
+ * @author geemov42
+ * Dotted path to a value of a json document, like person.identifiers[0].value, compiled once.
+ * The value is found in a single pass over the text, without building a tree: members and elements
+ * out of the path are skipped as they are read.
+ */
+public class JsonPath {
+
+    /**
+     * The paths extracted together fit in the bits of a long
+     */
+    public static final int MAX_EXTRACTED_TOGETHER = Long.SIZE;
+
+    private final String expression;
+    private final Object[] steps;
+
+    private JsonPath(String expression, Object[] steps) {
+
+        this.expression = expression;
+        this.steps = steps;
+    }
+
+    /**
+     * @param expression member names separated by dots, array indexes between brackets, optionally after the root $
+     * @return the compiled path
+     */
+    public static JsonPath compile(String expression) {
+
+        requireNonNullAndNotBlank(expression);
+
+        List<Object> steps = new ArrayList<>();
+        int start = expression.startsWith("$") ? 1 : 0;
+        int position = start;
+
+        while (position < expression.length()) {
+            char current = expression.charAt(position);
+
+            if (current == '[') {
+                int end = expression.indexOf(']', position);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed index in json path " + expression);
+                }
+
+                try {
+                    steps.add(Integer.parseInt(expression.substring(position + 1, end)));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid index in json path " + expression, e);
+                }
+
+                position = end + 1;
+            } else if (current == '.') {
+                if ((position == 0 && start == 0) || position + 1 == expression.length() || ".[".indexOf(expression.charAt(position + 1)) >= 0) {
+                    throw new IllegalArgumentException("Empty member name in json path " + expression);
+                }
+
+                position++;
+            } else {
+                int end = position;
+                while (end < expression.length() && expression.charAt(end) != '.' && expression.charAt(end) != '[') {
+                    end++;
+                }
+
+                if (end == position) {
+                    throw new IllegalArgumentException("Empty member name in json path " + expression);
+                }
+
+                steps.add(expression.substring(position, end));
+                position = end;
+            }
+        }
+
+        if (steps.isEmpty()) {
+            throw new IllegalArgumentException("Empty json path " + expression);
+        }
+
+        return new JsonPath(expression, steps.toArray());
+    }
+
+    public String getExpression() {
+        return this.expression;
+    }
+
+    /**
+     * @param json the document
+     * @return the unescaped string, the text of any other scalar or the json of an object or array; null if absent, null or not json
+     */
+    public String extract(CharSequence json) {
+
+        if (isNull(json)) {
+            return null;
+        }
+
+        try {
+            Reader reader = new Reader(json);
+            reader.skipWhitespace();
+
+            for (Object step : this.steps) {
+                if (!(step instanceof String ? reader.enterMember((String) step) : reader.enterElement((Integer) step))) {
+                    return null;
+                }
+            }
+
+            return reader.readValue();
+        } catch (IllegalArgumentException | IllegalStateException | IndexOutOfBoundsException e) {
+            // a malformed document does not contain the value
+            return null;
+        }
+    }
+
+    /**
+     * Extract several paths in a single pass, which stops as soon as every path is found
+     * @param json the document
+     * @param jsonPaths the paths, at most {@link #MAX_EXTRACTED_TOGETHER}
+     * @param values receives the value of each path, as returned by {@link #extract(CharSequence)}
+     */
+    public static void extractAll(CharSequence json, JsonPath[] jsonPaths, String[] values) {
+
+        if (jsonPaths.length > MAX_EXTRACTED_TOGETHER || values.length < jsonPaths.length) {
+            throw new IllegalArgumentException("At most " + MAX_EXTRACTED_TOGETHER + " json paths, and one value per path, are expected");
+        }
+
+        Arrays.fill(values, 0, jsonPaths.length, null);
+
+        if (isNull(json) || jsonPaths.length == 0) {
+            return;
+        }
+
+        long allPaths = jsonPaths.length == Long.SIZE ? -1L : (1L << jsonPaths.length) - 1;
+
+        try {
+            Reader reader = new Reader(json);
+            reader.pending = allPaths;
+            reader.skipWhitespace();
+            reader.walk(jsonPaths, allPaths, 0, values);
+        } catch (IllegalArgumentException | IllegalStateException | IndexOutOfBoundsException e) {
+            // a malformed document only has the values read before the error
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.expression;
+    }
+
+    private static class Reader {
+
+        private final CharSequence json;
+        private int position;
+        /**
+         * Bits of the paths not found yet, when extracting several paths
+         */
+        private long pending;
+
+        private Reader(CharSequence json) {
+            this.json = json;
+        }
+
+        /**
+         * Read the value the reader is on, for the candidate paths whose first steps lead to it
+         */
+        private void walk(JsonPath[] jsonPaths, long candidates, int depth, String[] values) {
+
+            long ending = 0;
+            for (long bits = candidates; bits != 0; bits &= bits - 1) {
+                int i = Long.numberOfTrailingZeros(bits);
+                ending |= jsonPaths[i].steps.length == depth ? 1L << i : 0;
+            }
+
+            long continuing = candidates & ~ending;
+            int start = this.position;
+            char current = this.peek();
+            boolean walked = false;
+
+            if (continuing != 0 && current == '{') {
+                this.walkObject(jsonPaths, continuing, depth, values);
+                walked = true;
+            } else if (continuing != 0 && current == '[') {
+                this.walkArray(jsonPaths, continuing, depth, values);
+                walked = true;
+            }
+
+            if (ending == 0) {
+                if (!walked) {
+                    this.skipValue();
+                }
+                return;
+            }
+
+            // a path ending here is pending, so a walked container was read up to its end
+            String value = walked ? this.json.subSequence(start, this.position).toString() : this.readValue();
+            for (long bits = ending; bits != 0; bits &= bits - 1) {
+                values[Long.numberOfTrailingZeros(bits)] = value;
+            }
+            this.pending &= ~ending;
+        }
+
+        private void walkObject(JsonPath[] jsonPaths, long candidates, int depth, String[] values) {
+
+            this.position++;
+            this.skipWhitespace();
+
+            if (this.peek() == '}') {
+                this.position++;
+                return;
+            }
+
+            do {
+                long children = this.readMemberCandidates(jsonPaths, candidates, depth);
+                this.skipWhitespace();
+                this.expect(':');
+                this.skipWhitespace();
+
+                if (children == 0) {
+                    this.skipValue();
+                } else {
+                    this.walk(jsonPaths, children, depth + 1, values);
+                }
+
+                if (this.pending == 0) {
+                    return;
+                }
+            } while (this.nextInContainer('}'));
+        }
+
+        private void walkArray(JsonPath[] jsonPaths, long candidates, int depth, String[] values) {
+
+            this.position++;
+            this.skipWhitespace();
+
+            if (this.peek() == ']') {
+                this.position++;
+                return;
+            }
+
+            int index = 0;
+            do {
+                long children = 0;
+                for (long bits = candidates; bits != 0; bits &= bits - 1) {
+                    int i = Long.numberOfTrailingZeros(bits);
+                    Object step = jsonPaths[i].steps[depth];
+                    children |= step instanceof Integer && (Integer) step == index ? 1L << i : 0;
+                }
+
+                if (children == 0) {
+                    this.skipValue();
+                } else {
+                    this.walk(jsonPaths, children, depth + 1, values);
+                }
+
+                if (this.pending == 0) {
+                    return;
+                }
+
+                index++;
+            } while (this.nextInContainer(']'));
+        }
+
+        /**
+         * Read a member name and compare it in place to the steps of the candidates
+         * @return the bits of the candidates whose step is this name
+         */
+        private long readMemberCandidates(JsonPath[] jsonPaths, long candidates, int depth) {
+
+            this.expect('"');
+            int start = this.position;
+            boolean escaped = false;
+
+            while (this.json.charAt(this.position) != '"') {
+                escaped |= this.json.charAt(this.position) == '\\';
+                this.position += this.json.charAt(this.position) == '\\' ? 2 : 1;
+            }
+
+            int end = this.position;
+            this.position++;
+
+            String name = null;
+            if (escaped) {
+                this.position = start - 1;
+                name = this.readString();
+            }
+
+            long children = 0;
+            for (long bits = candidates; bits != 0; bits &= bits - 1) {
+                int i = Long.numberOfTrailingZeros(bits);
+                Object step = jsonPaths[i].steps[depth];
+
+                if (step instanceof String && (escaped ? step.equals(name) : this.regionEquals(start, end, (String) step))) {
+                    children |= 1L << i;
+                }
+            }
+
+            return children;
+        }
+
+        private boolean regionEquals(int start, int end, String expected) {
+
+            if (end - start != expected.length()) {
+                return false;
+            }
+
+            for (int i = 0; i < expected.length(); i++) {
+                if (this.json.charAt(start + i) != expected.charAt(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Move to the value of the member, the reader being on an object
+         */
+        private boolean enterMember(String name) {
+
+            if (this.peek() != '{') {
+                return false;
+            }
+
+            this.position++;
+            this.skipWhitespace();
+
+            while (this.peek() != '}') {
+                boolean found = this.readStringEquals(name);
+                this.skipWhitespace();
+                this.expect(':');
+                this.skipWhitespace();
+
+                if (found) {
+                    return true;
+                }
+
+                this.skipValue();
+                if (!this.nextInContainer('}')) {
+                    return false;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Move to the element at the index, the reader being on an array
+         */
+        private boolean enterElement(int index) {
+
+            if (this.peek() != '[') {
+                return false;
+            }
+
+            this.position++;
+            this.skipWhitespace();
+
+            for (int i = 0; this.peek() != ']'; i++) {
+                if (i == index) {
+                    return true;
+                }
+
+                this.skipValue();
+                if (!this.nextInContainer(']')) {
+                    return false;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * @return true if there is a next member or element
+         */
+        private boolean nextInContainer(char closing) {
+
+            this.skipWhitespace();
+
+            if (this.peek() == ',') {
+                this.position++;
+                this.skipWhitespace();
+                return true;
+            }
+
+            this.expect(closing);
+            return false;
+        }
+
+        private String readValue() {
+
+            char current = this.peek();
+
+            if (current == '"') {
+                return this.readString();
+            }
+
+            int start = this.position;
+            this.skipValue();
+            String value = this.json.subSequence(start, this.position).toString();
+
+            return current == 'n' && "null".equals(value) ? null : value;
+        }
+
+        private void skipValue() {
+
+            char current = this.peek();
+
+            if (current == '"') {
+                this.skipString();
+            } else if (current == '{' || current == '[') {
+                this.skipContainer();
+            } else {
+                while (this.position < this.json.length() && ",}] \t\r\n".indexOf(this.json.charAt(this.position)) < 0) {
+                    this.position++;
+                }
+            }
+        }
+
+        private void skipContainer() {
+
+            int depth = 0;
+            do {
+                char current = this.peek();
+
+                if (current == '"') {
+                    this.skipString();
+                    continue;
+                }
+
+                if (current == '{' || current == '[') {
+                    depth++;
+                } else if (current == '}' || current == ']') {
+                    depth--;
+                }
+
+                this.position++;
+            } while (depth > 0);
+        }
+
+        private void skipString() {
+
+            this.position++;
+            this.skipStringRest();
+        }
+
+        private void skipStringRest() {
+
+            while (this.json.charAt(this.position) != '"') {
+                this.position += this.json.charAt(this.position) == '\\' ? 2 : 1;
+            }
+
+            this.position++;
+        }
+
+        /**
+         * Compare a member name without building it, as long as it has no escape
+         */
+        private boolean readStringEquals(String expected) {
+
+            this.expect('"');
+            int start = this.position;
+
+            for (int i = 0; ; i++) {
+                char current = this.json.charAt(this.position);
+
+                if (current == '\\') {
+                    this.position = start - 1;
+                    return expected.equals(this.readString());
+                }
+
+                this.position++;
+
+                if (current == '"') {
+                    return i == expected.length();
+                }
+
+                if (i >= expected.length() || expected.charAt(i) != current) {
+                    this.skipStringRest();
+                    return false;
+                }
+            }
+        }
+
+        private String readString() {
+
+            this.expect('"');
+            StringBuilder value = new StringBuilder();
+
+            for (char current = this.json.charAt(this.position++); current != '"'; current = this.json.charAt(this.position++)) {
+                if (current != '\\') {
+                    value.append(current);
+                    continue;
+                }
+
+                char escaped = this.json.charAt(this.position++);
+                switch (escaped) {
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'u':
+                        value.append((char) Integer.parseInt(this.json.subSequence(this.position, this.position + 4).toString(), 16));
+                        this.position += 4;
+                        break;
+                    default: value.append(escaped);
+                }
+            }
+
+            return value.toString();
+        }
+
+        private void skipWhitespace() {
+
+            while (this.position < this.json.length() && Character.isWhitespace(this.json.charAt(this.position))) {
+                this.position++;
+            }
+        }
+
+        private char peek() {
+
+            if (this.position >= this.json.length()) {
+                throw new IllegalStateException("Unexpected end of json");
+            }
+
+            return this.json.charAt(this.position);
+        }
+
+        private void expect(char expected) {
+
+            if (this.peek() != expected) {
+                throw new IllegalStateException("Expected " + expected + " at " + this.position);
+            }
+
+            this.position++;
+        }
+    }
+}
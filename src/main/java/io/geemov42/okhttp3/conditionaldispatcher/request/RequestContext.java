@@ -0,0 +1,452 @@
+package io.geemov42.okhttp3.conditionaldispatcher.request;
+
+import io.geemov42.okhttp3.conditionaldispatcher.metrics.DispatchListener;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.ByteString;
+
+import java.util.*;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * View of a recorded request shared by every matching condition of one dispatch.
+ * Each request part is decoded at most once, the first time a condition needs it.
+ * It is confined to the dispatching thread, which reuses the same instance from one dispatch to the next.
+ */
+public class RequestContext {
+
+    public static final long UNLIMITED_BODY_SCAN = Long.MAX_VALUE;
+
+    private static final JsonPath[] NO_JSON_PATHS = new JsonPath[0];
+    private static final int CONDITION_COST_SAMPLE_INTERVAL = 16;
+
+    private static final ThreadLocal<RequestContext> THREAD_CONTEXT = ThreadLocal.withInitial(RequestContext::new);
+
+    private RecordedRequest recordedRequest;
+    private long bodyScanLimit;
+    private DispatchListener dispatchListener = DispatchListener.NOOP;
+    private boolean decisionCacheable;
+    private boolean acquired;
+    private String pathPrefix;
+
+    private String path;
+    private String decodedPath;
+    private Map<String, List<String>> queryParameters;
+    private String bodyText;
+    private CharSequence bodyCharSequence;
+    private final BufferCharSequence bodyView = new BufferCharSequence();
+    private final Buffer.UnsafeCursor bodyCursor = new Buffer.UnsafeCursor();
+
+    private JsonPath[] jsonPaths = NO_JSON_PATHS;
+    private boolean jsonValuesExtracted;
+    private String[] jsonValues = new String[0];
+    private final List<JsonPath> otherJsonPaths = new ArrayList<>();
+    private final List<String> otherJsonValues = new ArrayList<>();
+    private boolean conditionProfiled;
+    // kept across dispatches, so that samples spread over every condition
+    private int conditionCostSampleCountdown;
+
+    private RequestContext() {
+    }
+
+    public RequestContext(RecordedRequest recordedRequest) {
+        this(recordedRequest, UNLIMITED_BODY_SCAN);
+    }
+
+    /**
+     * @param recordedRequest the request to view
+     * @param bodyScanLimit the maximum number of body bytes scanned by body conditions
+     */
+    public RequestContext(RecordedRequest recordedRequest, long bodyScanLimit) {
+        this.reset(requireNonNull(recordedRequest), bodyScanLimit);
+    }
+
+    /**
+     * The context of the current thread, to be released at the end of the dispatch.
+     * A nested dispatch on the same thread gets its own context.
+     * @param recordedRequest the request to view
+     * @param bodyScanLimit the maximum number of body bytes scanned by body conditions
+     * @return the reset context
+     */
+    public static RequestContext acquire(RecordedRequest recordedRequest, long bodyScanLimit) {
+        return acquire(recordedRequest, bodyScanLimit, DispatchListener.NOOP);
+    }
+
+    /**
+     * @param recordedRequest the request to view
+     * @param bodyScanLimit the maximum number of body bytes scanned by body conditions
+     * @param dispatchListener notified of the rule evaluation of this dispatch
+     * @return the reset context
+     */
+    public static RequestContext acquire(RecordedRequest recordedRequest, long bodyScanLimit, DispatchListener dispatchListener) {
+        return acquire(recordedRequest, bodyScanLimit, dispatchListener, null);
+    }
+
+    /**
+     * @param recordedRequest the request to view
+     * @param bodyScanLimit the maximum number of body bytes scanned by body conditions
+     * @param dispatchListener notified of the rule evaluation of this dispatch
+     * @param pathPrefix a leading path segment, like "/tenant", conditions do not see; null to keep the whole path
+     * @return the reset context
+     */
+    public static RequestContext acquire(RecordedRequest recordedRequest, long bodyScanLimit, DispatchListener dispatchListener, String pathPrefix) {
+
+        RequestContext requestContext = THREAD_CONTEXT.get();
+        if (requestContext.acquired) {
+            requestContext = new RequestContext();
+        }
+
+        requestContext.reset(requireNonNull(recordedRequest), bodyScanLimit);
+        requestContext.dispatchListener = requireNonNull(dispatchListener);
+        requestContext.pathPrefix = pathPrefix;
+        requestContext.acquired = true;
+
+        return requestContext;
+    }
+
+    /**
+     * Forget the request, so that the thread does not retain its body until the next dispatch
+     */
+    public void release() {
+
+        this.reset(null, UNLIMITED_BODY_SCAN);
+        this.dispatchListener = DispatchListener.NOOP;
+        this.acquired = false;
+    }
+
+    private void reset(RecordedRequest recordedRequest, long bodyScanLimit) {
+
+        if (bodyScanLimit < 0) {
+            throw new IllegalArgumentException("Body scan limit should not be negative");
+        }
+
+        this.recordedRequest = recordedRequest;
+        this.bodyScanLimit = bodyScanLimit;
+        this.decisionCacheable = true;
+        this.pathPrefix = null;
+        this.path = null;
+        this.decodedPath = null;
+        this.queryParameters = null;
+        this.bodyText = null;
+        this.bodyCharSequence = null;
+        this.bodyView.reset(null, 0, 0);
+        this.jsonPaths = NO_JSON_PATHS;
+        this.jsonValuesExtracted = false;
+        Arrays.fill(this.jsonValues, null);
+        this.otherJsonPaths.clear();
+        this.otherJsonValues.clear();
+        this.conditionProfiled = false;
+    }
+
+    public RecordedRequest getRecordedRequest() {
+        return this.recordedRequest;
+    }
+
+    public DispatchListener getDispatchListener() {
+        return this.dispatchListener;
+    }
+
+    /**
+     * @return false once a response whose decision depends on more than the method, path and headers was evaluated
+     */
+    public boolean isDecisionCacheable() {
+        return this.decisionCacheable;
+    }
+
+    public void markDecisionNotCacheable() {
+        this.decisionCacheable = false;
+    }
+
+    /**
+     * @return true if the conditions evaluated for this dispatch record their outcome, for an adaptive ordering
+     */
+    public boolean isConditionProfiled() {
+        return this.conditionProfiled;
+    }
+
+    public void setConditionProfiled(boolean conditionProfiled) {
+        this.conditionProfiled = conditionProfiled;
+    }
+
+    /**
+     * The clock is only read for one condition evaluation out of {@value #CONDITION_COST_SAMPLE_INTERVAL} on a thread
+     * @return true if the cost of the next evaluation should be measured
+     */
+    public boolean sampleConditionCost() {
+
+        if (--this.conditionCostSampleCountdown > 0) {
+            return false;
+        }
+
+        this.conditionCostSampleCountdown = CONDITION_COST_SAMPLE_INTERVAL;
+        return true;
+    }
+
+    /**
+     * @return the raw request target, query string included, as tested by path regex, without the path prefix
+     */
+    public String getPath() {
+
+        if (isNull(this.pathPrefix)) {
+            return this.recordedRequest.getPath();
+        }
+
+        if (isNull(this.path)) {
+            this.path = stripPathPrefix(this.recordedRequest.getPath(), this.pathPrefix);
+        }
+
+        return this.path;
+    }
+
+    /**
+     * @return the percent-decoded path without query string nor path prefix, or null if the request has no url
+     */
+    public String getDecodedPath() {
+
+        HttpUrl requestUrl = this.recordedRequest.getRequestUrl();
+
+        if (isNull(this.decodedPath) && !isNull(requestUrl)) {
+            List<String> pathSegments = requestUrl.pathSegments();
+
+            if (hasPathPrefix(this.recordedRequest.getPath(), this.pathPrefix)) {
+                pathSegments = pathSegments.subList(1, pathSegments.size());
+            }
+
+            this.decodedPath = "/" + String.join("/", pathSegments);
+        }
+
+        return this.decodedPath;
+    }
+
+    private static boolean hasPathPrefix(String rawPath, String pathPrefix) {
+
+        if (isNull(pathPrefix) || !rawPath.startsWith(pathPrefix)) {
+            return false;
+        }
+
+        // the prefix is a whole segment: "/tenant" is not a prefix of "/tenants"
+        return rawPath.length() == pathPrefix.length()
+                || rawPath.charAt(pathPrefix.length()) == '/'
+                || rawPath.charAt(pathPrefix.length()) == '?';
+    }
+
+    private static String stripPathPrefix(String rawPath, String pathPrefix) {
+
+        if (!hasPathPrefix(rawPath, pathPrefix)) {
+            return rawPath;
+        }
+
+        String strippedPath = rawPath.substring(pathPrefix.length());
+        return strippedPath.isEmpty() || strippedPath.charAt(0) == '?' ? "/" + strippedPath : strippedPath;
+    }
+
+    /**
+     * Read in the url, decoded when the request was recorded, without building the parameter map.
+     * HttpUrl.queryParameter is not used as it allocates a range per call.
+     * @param name the query parameter name
+     * @return the first decoded value or null
+     */
+    public String getQueryParameter(String name) {
+
+        HttpUrl requestUrl = this.recordedRequest.getRequestUrl();
+        if (isNull(requestUrl)) {
+            return null;
+        }
+
+        for (int i = 0; i < requestUrl.querySize(); i++) {
+            if (requestUrl.queryParameterName(i).equals(name)) {
+                return requestUrl.queryParameterValue(i);
+            }
+        }
+
+        return null;
+    }
+
+    public Map<String, List<String>> getQueryParameters() {
+
+        if (isNull(this.queryParameters)) {
+            this.queryParameters = parseQueryParameters(this.recordedRequest.getRequestUrl());
+        }
+
+        return this.queryParameters;
+    }
+
+    /**
+     * @param name the header name, case insensitive
+     * @return the first value or null
+     */
+    public String getHeader(String name) {
+
+        // requests have a handful of headers, a scan is cheaper than a map and does not allocate
+        Headers headers = this.recordedRequest.getHeaders();
+        for (int i = 0; i < headers.size(); i++) {
+            if (headers.name(i).equalsIgnoreCase(name)) {
+                return headers.value(i);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the utf-8 body, decoded without consuming the recorded body
+     */
+    public String getBodyText() {
+
+        if (isNull(this.bodyText)) {
+            this.bodyText = this.recordedRequest.getBody().clone().readUtf8();
+        }
+
+        return this.bodyText;
+    }
+
+    /**
+     * Search the literal in the scan window of the body, directly in the buffer segments
+     * @param literal the bytes to find
+     * @return true if the whole literal is inside the scan window
+     */
+    public boolean bodyContains(ByteString literal) {
+
+        Buffer body = this.recordedRequest.getBody();
+        long window = this.getBodyScanWindow();
+
+        if (literal.size() == 0) {
+            return true;
+        }
+
+        long lastStart = window - literal.size();
+        byte first = literal.getByte(0);
+        long position = 0;
+
+        while (position <= lastStart) {
+            position = body.indexOf(first, position, lastStart + 1);
+
+            if (position < 0) {
+                return false;
+            }
+
+            if (body.rangeEquals(position, literal)) {
+                return true;
+            }
+
+            position++;
+        }
+
+        return false;
+    }
+
+    /**
+     * The scan window of the body as text, for regex conditions.
+     * An ascii body is viewed in place, without copy; any other body is decoded once as utf-8.
+     * @return the body text limited to the scan window
+     */
+    public CharSequence getBodyCharSequence() {
+
+        if (isNull(this.bodyCharSequence)) {
+            Buffer body = this.recordedRequest.getBody();
+            int window = (int) Math.min(this.getBodyScanWindow(), Integer.MAX_VALUE);
+
+            if (this.isAscii(body, window)) {
+                this.bodyView.reset(body, 0, window);
+                this.bodyCharSequence = this.bodyView;
+            } else {
+                Buffer copy = new Buffer();
+                body.copyTo(copy, 0, window);
+                this.bodyCharSequence = copy.readUtf8();
+            }
+        }
+
+        return this.bodyCharSequence;
+    }
+
+    /**
+     * Declare the json paths the conditions of this dispatch may read,
+     * so that the first json condition extracts them all in a single pass over the body
+     * @param jsonPaths at most {@link JsonPath#MAX_EXTRACTED_TOGETHER} paths
+     */
+    public void setJsonPaths(JsonPath[] jsonPaths) {
+
+        this.jsonPaths = requireNonNull(jsonPaths);
+
+        if (this.jsonValues.length < jsonPaths.length) {
+            this.jsonValues = new String[jsonPaths.length];
+        }
+    }
+
+    /**
+     * The body is parsed at most once for the declared paths, whatever the number of conditions reading them.
+     * A path that was not declared is extracted on its own, once.
+     * @param jsonPath the path of the value in the scan window of the body
+     * @return the value as extracted by {@link JsonPath#extract(CharSequence)}
+     */
+    public String getJsonValue(JsonPath jsonPath) {
+
+        if (!this.jsonValuesExtracted) {
+            JsonPath.extractAll(this.getBodyCharSequence(), this.jsonPaths, this.jsonValues);
+            this.jsonValuesExtracted = true;
+        }
+
+        for (int i = 0; i < this.jsonPaths.length; i++) {
+            if (this.jsonPaths[i] == jsonPath || this.jsonPaths[i].getExpression().equals(jsonPath.getExpression())) {
+                return this.jsonValues[i];
+            }
+        }
+
+        for (int i = 0; i < this.otherJsonPaths.size(); i++) {
+            if (this.otherJsonPaths.get(i).getExpression().equals(jsonPath.getExpression())) {
+                return this.otherJsonValues.get(i);
+            }
+        }
+
+        String value = jsonPath.extract(this.getBodyCharSequence());
+        this.otherJsonPaths.add(jsonPath);
+        this.otherJsonValues.add(value);
+
+        return value;
+    }
+
+    private long getBodyScanWindow() {
+        return Math.min(this.recordedRequest.getBody().size(), this.bodyScanLimit);
+    }
+
+    private boolean isAscii(Buffer body, long window) {
+
+        try (Buffer.UnsafeCursor cursor = body.readUnsafe(this.bodyCursor)) {
+            long remaining = window;
+
+            for (int length = cursor.seek(0); length != -1 && remaining > 0; length = cursor.next()) {
+                int end = cursor.start + (int) Math.min(length, remaining);
+
+                for (int i = cursor.start; i < end; i++) {
+                    if (cursor.data[i] < 0) {
+                        return false;
+                    }
+                }
+
+                remaining -= length;
+            }
+        }
+
+        return true;
+    }
+
+    private static Map<String, List<String>> parseQueryParameters(HttpUrl requestUrl) {
+
+        if (isNull(requestUrl) || requestUrl.querySize() == 0) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, List<String>> parameters = new HashMap<>();
+        for (int i = 0; i < requestUrl.querySize(); i++) {
+            parameters.computeIfAbsent(requestUrl.queryParameterName(i), name -> new ArrayList<>(1))
+                    .add(requestUrl.queryParameterValue(i));
+        }
+
+        return parameters;
+    }
+}
@@ -1,14 +1,37 @@
 package io.geemov42.okhttp3.conditionaldispatcher.response;
 
-import lombok.Builder;
-import lombok.Data;
+import io.geemov42.okhttp3.conditionaldispatcher.body.ResponseBodySource;
+import io.geemov42.okhttp3.conditionaldispatcher.body.StreamedResponseBody;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.latency.LatencyProfile;
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatchers;
+import io.geemov42.okhttp3.conditionaldispatcher.ratelimit.RateLimiter;
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+import lombok.*;
 import okhttp3.mockwebserver.MockResponse;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 import static io.geemov42.okhttp3.conditionaldispatcher.utils.StringUtils.requireNonNullAndNotBlank;
+import static java.util.Objects.isNull;
 import static java.util.Objects.requireNonNull;
 import static java.util.Objects.requireNonNullElseGet;
 
@@ -16,47 +39,322 @@ import static java.util.Objects.requireNonNullElseGet;
 public class ConditionalMockResponse {
 
     private String id;
-    private int fetchCounter = 0;
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final LongAdder fetchCounter = new LongAdder();
     @Builder.Default
     private int limitFetch = -1;
 
-    private Pattern pathRegexPattern;
+    private ValueMatcher pathMatcher;
     private MockResponse mockResponse;
+    private ResponseBodySource responseBodySource;
+    private int bodyChunkSize;
+    private boolean bodyStreamed;
+    private volatile LatencyProfile latencyProfile;
+    private volatile RateLimiter rateLimiter;
     @Builder.Default
-    private List<MatchingCondition> matchingConditions = new ArrayList<>();
+    private volatile List<MatchingCondition> matchingConditions = new ArrayList<>();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final List<MatchingCondition> matchingConditionsView = new MatchingConditionsView();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile List<MatchingCondition> evaluationOrder;
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final Set<AtomicLong> conditionsVersions = Collections.newSetFromMap(new WeakHashMap<>());
 
+    /**
+     * Exactly one of pathRegex (downgraded to a cheaper matcher when it is a literal) or pathMatcher is expected.
+     * The path is tested with its query string.
+     * With a response body source, the mock response gives the status, headers and throttle, and should not have a body.
+     * The body of the source is then sent in chunks of bodyChunkSize bytes when it is positive: with chunked transfer encoding over HTTP/1,
+     * flushed chunk by chunk when streamed.
+     * A streamed body is written to the HTTP/2 stream while generated, instead of being held in a buffer:
+     * the mock web server must serve HTTP/2 only, as HTTP/1 responses would have no body.
+     * A latency profile delays each serve, in place of the one of the method list.
+     * A rate limiter serves its rejection response instead, once its rate or concurrency is exceeded.
+     */
     @Builder
-    public ConditionalMockResponse(String id, int limitFetch, String pathRegex, MockResponse mockResponse, List<MatchingCondition> matchingConditions) {
+    public ConditionalMockResponse(String id, int limitFetch, String pathRegex, ValueMatcher pathMatcher, MockResponse mockResponse,
+                                   ResponseBodySource responseBodySource, int bodyChunkSize, boolean bodyStreamed, LatencyProfile latencyProfile,
+                                   RateLimiter rateLimiter, List<MatchingCondition> matchingConditions) {
 
-        this.id = requireNonNullAndNotBlank(id);
-        requireNonNullAndNotBlank(pathRegex);
-        this.pathRegexPattern = Pattern.compile(pathRegex);
+        this(id, limitFetch, pathRegex, pathMatcher, matchingConditions);
         this.mockResponse = requireNonNull(mockResponse).clone();
-        this.matchingConditions = requireNonNullElseGet(matchingConditions, ArrayList::new);
+        this.responseBodySource = responseBodySource;
+        this.bodyChunkSize = bodyChunkSize;
+        this.bodyStreamed = bodyStreamed;
+        this.latencyProfile = latencyProfile;
+        this.rateLimiter = rateLimiter;
+
+        if (!isNull(responseBodySource) && !isNull(this.mockResponse.getBody())) {
+            throw new IllegalArgumentException("Either a mock response body or a response body source should be defined");
+        }
+
+        if ((isNull(responseBodySource) && (bodyChunkSize != 0 || bodyStreamed)) || bodyChunkSize < 0) {
+            throw new IllegalArgumentException("Chunks and streaming need a response body source");
+        }
+    }
+
+    /**
+     * For responses that are not a single mock response, like keyed ones
+     */
+    protected ConditionalMockResponse(String id, int limitFetch, String pathRegex, ValueMatcher pathMatcher, List<MatchingCondition> matchingConditions) {
+
+        this.id = requireNonNullAndNotBlank(id);
+
+        if (isNull(pathRegex) == isNull(pathMatcher)) {
+            throw new IllegalArgumentException("Either a path regex or a path matcher should be defined");
+        }
+
+        this.pathMatcher = isNull(pathMatcher) ? ValueMatchers.regex(requireNonNullAndNotBlank(pathRegex)) : pathMatcher;
+        this.matchingConditions = List.copyOf(requireNonNullElseGet(matchingConditions, ArrayList::new));
+        this.evaluationOrder = this.matchingConditions;
         this.limitFetch = limitFetch;
     }
 
     public void use() {
-        this.fetchCounter++;
+        this.fetchCounter.increment();
+    }
+
+    public int getFetchCounter() {
+        return this.fetchCounter.intValue();
     }
 
     public MockResponse getMockResponse() {
+
         this.use();
-        return this.mockResponse;
+
+        if (isNull(this.responseBodySource)) {
+            return this.mockResponse;
+        }
+
+        return this.withBody(this.responseBodySource);
+    }
+
+    /**
+     * The body is produced for this serve only and released with it
+     */
+    private MockResponse withBody(ResponseBodySource currentResponseBodySource) {
+
+        MockResponse servedMockResponse = this.mockResponse.clone();
+        try {
+            if (this.bodyStreamed) {
+                servedMockResponse.setBody(new StreamedResponseBody(currentResponseBodySource, this.bodyChunkSize,
+                        servedMockResponse.getThrottleBytesPerPeriod(), servedMockResponse.getThrottlePeriod(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS));
+
+                // a mock response declares an empty body until one is set
+                long size = currentResponseBodySource.size();
+                if (size < 0) {
+                    servedMockResponse.removeHeader("Content-Length");
+                } else {
+                    servedMockResponse.setHeader("Content-Length", size);
+                }
+            } else if (this.bodyChunkSize > 0) {
+                servedMockResponse.setChunkedBody(currentResponseBodySource.open(), this.bodyChunkSize);
+            } else {
+                servedMockResponse.setBody(currentResponseBodySource.open());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the body of " + this.id, e);
+        }
+
+        if (!isNull(currentResponseBodySource.getContentEncoding())) {
+            servedMockResponse.setHeader("Content-Encoding", currentResponseBodySource.getContentEncoding());
+        }
+
+        return servedMockResponse;
     }
 
+    /**
+     * Called once the response matched the request
+     * @param requestContext the matched request
+     * @return the mock response to serve
+     */
+    public MockResponse getMockResponse(RequestContext requestContext) {
+        return this.getMockResponse();
+    }
+
+    /**
+     * @return a regex equivalent to the path matcher
+     */
+    public Pattern getPathRegexPattern() {
+        return this.pathMatcher.getPattern();
+    }
+
+    public boolean matchConditions(RequestContext requestContext) {
+
+        requestContext.getDispatchListener().onCandidateEvaluated(this);
+
+        if (!this.isDecisionCacheable()) {
+            requestContext.markDecisionNotCacheable();
+        }
+
+        // indexed loop: the lists are random access and an iterator would be allocated per request
+        List<MatchingCondition> conditions = this.evaluationOrder;
+        for (int i = 0; i < conditions.size(); i++) {
+            MatchingCondition matchingCondition = conditions.get(i);
+
+            if (!matchingCondition.matches(requestContext)) {
+                requestContext.getDispatchListener().onConditionFailed(this, matchingCondition.getRequestPartToTest());
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * A decision can be cached when it depends only on the method, the path and the headers:
+     * not on the body, nor on the fetch count of a limited response.
+     * @return true if the outcome of this response can be memoized by a decision cache
+     */
+    public boolean isDecisionCacheable() {
+
+        if (this.limitFetch > 0) {
+            return false;
+        }
+
+        List<MatchingCondition> conditions = this.matchingConditions;
+        for (int i = 0; i < conditions.size(); i++) {
+            RequestPartToTestEnum requestPartToTest = conditions.get(i).getRequestPartToTest();
+
+            if (requestPartToTest == RequestPartToTestEnum.BODY || requestPartToTest == RequestPartToTestEnum.JSON_PATH) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if this object was fetched more than its limit, counting every dispatcher and layer serving it
+     */
     public boolean isBeyondOfLimit() {
-        return this.limitFetch > 0 && this.fetchCounter > this.limitFetch;
+        return this.isBeyondOfLimit(this.getFetchCounter());
+    }
+
+    /**
+     * @param fetchCount the fetches to check, like the ones of the current layer of a dispatcher
+     * @return true if the fetch count is over the limit
+     */
+    public boolean isBeyondOfLimit(int fetchCount) {
+        return this.limitFetch > 0 && fetchCount > this.limitFetch;
     }
 
+    /**
+     * Conditions are copied on write, so a dispatching thread always iterates a complete list.
+     * The conditions are evaluated in the declared order again.
+     * @param matchingCondition the condition to add
+     * @return this
+     */
     public ConditionalMockResponse addCondition(MatchingCondition matchingCondition) {
 
         requireNonNull(matchingCondition);
-        this.matchingConditions.add(matchingCondition);
+        this.updateConditions(conditions -> conditions.add(matchingCondition));
 
         return this;
     }
 
+    /**
+     * The conditions are copied: changing the given list afterwards does not change them, change the returned view instead
+     * @param matchingConditions the new conditions
+     */
+    public synchronized void setMatchingConditions(List<MatchingCondition> matchingConditions) {
+
+        this.matchingConditions = List.copyOf(matchingConditions);
+        this.evaluationOrder = this.matchingConditions;
+        this.conditionsChanged();
+    }
+
+    /**
+     * A view of the conditions in the declared order. Adding, replacing or removing through it copies the conditions on write,
+     * like {@link #addCondition(MatchingCondition)}, and iterating it reads the conditions of the time the iteration starts.
+     * @return the conditions
+     */
+    public List<MatchingCondition> getMatchingConditions() {
+        return this.matchingConditionsView;
+    }
+
+    private synchronized <T> T updateConditions(Function<List<MatchingCondition>, T> change) {
+
+        List<MatchingCondition> conditions = new ArrayList<>(this.matchingConditions);
+        T result = change.apply(conditions);
+        conditions.forEach(Objects::requireNonNull);
+
+        this.matchingConditions = Collections.unmodifiableList(conditions);
+        this.evaluationOrder = this.matchingConditions;
+        this.conditionsChanged();
+
+        return result;
+    }
+
+    /**
+     * Called when the response is added to a rule layer: from then on, changing its conditions increments the version of the layer,
+     * which invalidates the decision caches of the dispatchers using it, and only them.
+     * Versions are weakly referenced, a discarded layer does not stay attached to the response.
+     * @param conditionsVersion the version of the conditions of the layer
+     */
+    public synchronized void markRegistered(AtomicLong conditionsVersion) {
+        this.conditionsVersions.add(requireNonNull(conditionsVersion));
+    }
+
+    /**
+     * Incremented after the change is visible, under the lock of the changes
+     */
+    private void conditionsChanged() {
+        this.conditionsVersions.forEach(AtomicLong::incrementAndGet);
+    }
+
+    /**
+     * @return the conditions in the order they are evaluated: the declared order, unless an adaptive ordering changed it
+     */
+    public List<MatchingCondition> getEvaluationOrder() {
+        return this.evaluationOrder;
+    }
+
+    /**
+     * Every condition is required, so evaluating them in another order gives the same outcome
+     * @param evaluationOrder the matching conditions in a new order
+     * @return false, and the order is unchanged, if the list is not a permutation of the current conditions
+     */
+    public synchronized boolean setEvaluationOrder(List<MatchingCondition> evaluationOrder) {
+
+        List<MatchingCondition> conditions = this.matchingConditions;
+        if (evaluationOrder.size() != conditions.size()) {
+            return false;
+        }
+
+        List<MatchingCondition> remaining = new ArrayList<>(conditions);
+        for (MatchingCondition matchingCondition : evaluationOrder) {
+            if (!removeSame(remaining, matchingCondition)) {
+                return false;
+            }
+        }
+
+        this.evaluationOrder = List.copyOf(evaluationOrder);
+        return true;
+    }
+
+    private static boolean removeSame(List<MatchingCondition> matchingConditions, MatchingCondition matchingCondition) {
+
+        for (int i = 0; i < matchingConditions.size(); i++) {
+            if (matchingConditions.get(i) == matchingCondition) {
+                matchingConditions.remove(i);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     public ConditionalMockResponse addConditions(MatchingCondition... matchingConditions) {
         requireNonNull(matchingConditions);
 
@@ -66,4 +364,72 @@ public class ConditionalMockResponse {
 
         return this;
     }
-}
\ No newline at end of file
+
+    private class MatchingConditionsView extends AbstractList<MatchingCondition> {
+
+        @Override
+        public MatchingCondition get(int index) {
+            return ConditionalMockResponse.this.matchingConditions.get(index);
+        }
+
+        @Override
+        public int size() {
+            return ConditionalMockResponse.this.matchingConditions.size();
+        }
+
+        @Override
+        public Iterator<MatchingCondition> iterator() {
+            return ConditionalMockResponse.this.matchingConditions.iterator();
+        }
+
+        @Override
+        public Spliterator<MatchingCondition> spliterator() {
+            return ConditionalMockResponse.this.matchingConditions.spliterator();
+        }
+
+        @Override
+        public boolean add(MatchingCondition matchingCondition) {
+
+            ConditionalMockResponse.this.addCondition(matchingCondition);
+            return true;
+        }
+
+        @Override
+        public void add(int index, MatchingCondition matchingCondition) {
+            ConditionalMockResponse.this.updateConditions(conditions -> {
+                conditions.add(index, matchingCondition);
+                return null;
+            });
+        }
+
+        @Override
+        public MatchingCondition set(int index, MatchingCondition matchingCondition) {
+            return ConditionalMockResponse.this.updateConditions(conditions -> conditions.set(index, matchingCondition));
+        }
+
+        @Override
+        public MatchingCondition remove(int index) {
+            return ConditionalMockResponse.this.updateConditions(conditions -> conditions.remove(index));
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends MatchingCondition> matchingConditions) {
+            return ConditionalMockResponse.this.updateConditions(conditions -> conditions.addAll(matchingConditions));
+        }
+
+        @Override
+        public boolean remove(Object matchingCondition) {
+            return ConditionalMockResponse.this.updateConditions(conditions -> conditions.remove(matchingCondition));
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super MatchingCondition> filter) {
+            return ConditionalMockResponse.this.updateConditions(conditions -> conditions.removeIf(filter));
+        }
+
+        @Override
+        public void clear() {
+            ConditionalMockResponse.this.setMatchingConditions(List.of());
+        }
+    }
+}
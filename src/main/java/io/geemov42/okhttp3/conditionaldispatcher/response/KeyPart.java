@@ -0,0 +1,67 @@
+package io.geemov42.okhttp3.conditionaldispatcher.response;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+import lombok.Data;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum.*;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.StringUtils.requireNonNullAndNotBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * A request part making up the key of a keyed conditional mock response
+ */
+@Data
+public class KeyPart {
+
+    private final RequestPartToTestEnum requestPart;
+    private final String field;
+
+    private KeyPart(RequestPartToTestEnum requestPart, String field) {
+
+        this.requestPart = requireNonNull(requestPart);
+        this.field = requestPart == PATH ? null : requireNonNullAndNotBlank(field);
+    }
+
+    /**
+     * @return the percent-decoded path, without query string
+     */
+    public static KeyPart path() {
+        return new KeyPart(PATH, null);
+    }
+
+    /**
+     * @param name the query parameter name
+     * @return its first value
+     */
+    public static KeyPart param(String name) {
+        return new KeyPart(PARAMETER, name);
+    }
+
+    /**
+     * @param name the header name, case insensitive
+     * @return its first value
+     */
+    public static KeyPart header(String name) {
+        return new KeyPart(HEADER, name);
+    }
+
+    /**
+     * @param requestContext the request
+     * @return the value of this part or null if the request does not have it
+     */
+    public String extractValue(RequestContext requestContext) {
+
+        switch (this.requestPart) {
+            case PATH:
+                return requestContext.getDecodedPath();
+            case PARAMETER:
+                return requestContext.getQueryParameter(this.field);
+            case HEADER:
+                return requestContext.getHeader(this.field);
+            default:
+                return null;
+        }
+    }
+}
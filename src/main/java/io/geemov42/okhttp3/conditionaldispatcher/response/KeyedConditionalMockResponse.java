@@ -0,0 +1,171 @@
+package io.geemov42.okhttp3.conditionaldispatcher.response;
+
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import okhttp3.mockwebserver.MockResponse;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * One conditional mock response serving a different mock response per key, the key being made of request parts
+ * (path, query parameters, headers). The response is found with a hash lookup whatever the number of keys.
+ * A request with an unknown key does not match, so the dispatcher goes on with the next responses.
+ */
+@Getter
+@ToString(callSuper = true, onlyExplicitlyIncluded = true)
+@EqualsAndHashCode(callSuper = true, onlyExplicitlyIncluded = true)
+public class KeyedConditionalMockResponse extends ConditionalMockResponse {
+
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    @ToString.Include
+    private final List<KeyPart> keyParts;
+    private final Map<String, KeyedEntry> entriesByKey = new ConcurrentHashMap<>();
+
+    @Builder(builderMethodName = "keyedBuilder")
+    public KeyedConditionalMockResponse(String id, int limitFetch, String pathRegex, ValueMatcher pathMatcher, List<KeyPart> keyParts, List<MatchingCondition> matchingConditions) {
+
+        super(id, limitFetch, pathRegex, pathMatcher, matchingConditions);
+
+        this.keyParts = List.copyOf(requireNonNull(keyParts));
+        if (this.keyParts.isEmpty()) {
+            throw new IllegalArgumentException("At least one key part should be defined");
+        }
+    }
+
+    /**
+     * @param mockResponse the response served for the key
+     * @param keyValues one value per key part, in the key parts order
+     * @return this
+     */
+    public KeyedConditionalMockResponse putResponse(MockResponse mockResponse, String... keyValues) {
+
+        requireNonNull(mockResponse);
+        this.entriesByKey.put(this.toKey(Arrays.asList(keyValues)), new KeyedEntry(mockResponse.clone()));
+
+        return this;
+    }
+
+    public KeyedConditionalMockResponse putResponses(Map<List<String>, MockResponse> mockResponsesByKey) {
+
+        requireNonNull(mockResponsesByKey);
+        mockResponsesByKey.forEach((keyValues, mockResponse) -> this.putResponse(mockResponse, keyValues.toArray(new String[0])));
+
+        return this;
+    }
+
+    @Override
+    public boolean matchConditions(RequestContext requestContext) {
+        return super.matchConditions(requestContext) && !isNull(this.findEntry(requestContext));
+    }
+
+    /**
+     * Keys can be added after registration, which would change decisions already cached
+     */
+    @Override
+    public boolean isDecisionCacheable() {
+        return false;
+    }
+
+    @Override
+    public MockResponse getMockResponse(RequestContext requestContext) {
+
+        KeyedEntry keyedEntry = requireNonNull(this.findEntry(requestContext));
+
+        this.use();
+        keyedEntry.fetchCounter.increment();
+
+        return keyedEntry.mockResponse;
+    }
+
+    /**
+     * @param keyValues one value per key part
+     * @return the fetch count of this key, by every dispatcher and layer serving this object, tenant partitions included
+     */
+    public int getFetchCounter(String... keyValues) {
+
+        KeyedEntry keyedEntry = this.entriesByKey.get(this.toKey(Arrays.asList(keyValues)));
+        return isNull(keyedEntry) ? 0 : keyedEntry.fetchCounter.intValue();
+    }
+
+    /**
+     * @return fetch count by key values, for the keys fetched at least once
+     */
+    public Map<List<String>, Integer> getFetchCountersByKey() {
+
+        Map<List<String>, Integer> fetchCounters = new HashMap<>();
+        this.entriesByKey.forEach((key, keyedEntry) -> {
+            int fetchCounter = keyedEntry.fetchCounter.intValue();
+
+            if (fetchCounter > 0) {
+                fetchCounters.put(this.fromKey(key), fetchCounter);
+            }
+        });
+
+        return fetchCounters;
+    }
+
+    public int getKeyCount() {
+        return this.entriesByKey.size();
+    }
+
+    private KeyedEntry findEntry(RequestContext requestContext) {
+
+        // a single part key is the value itself, without building a new string
+        if (this.keyParts.size() == 1) {
+            String value = this.keyParts.get(0).extractValue(requestContext);
+            return isNull(value) ? null : this.entriesByKey.get(value);
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < this.keyParts.size(); i++) {
+            String value = this.keyParts.get(i).extractValue(requestContext);
+
+            if (isNull(value)) {
+                return null;
+            }
+
+            if (i > 0) {
+                key.append(KEY_SEPARATOR);
+            }
+            key.append(value);
+        }
+
+        return this.entriesByKey.get(key.toString());
+    }
+
+    private String toKey(List<String> keyValues) {
+
+        if (keyValues.size() != this.keyParts.size()) {
+            throw new IllegalArgumentException("Expected " + this.keyParts.size() + " key values but got " + keyValues.size());
+        }
+
+        keyValues.forEach(Objects::requireNonNull);
+
+        return String.join(String.valueOf(KEY_SEPARATOR), keyValues);
+    }
+
+    private List<String> fromKey(String key) {
+        return List.of(key.split(String.valueOf(KEY_SEPARATOR), -1));
+    }
+
+    private static class KeyedEntry {
+
+        private final MockResponse mockResponse;
+        private final LongAdder fetchCounter = new LongAdder();
+
+        private KeyedEntry(MockResponse mockResponse) {
+            this.mockResponse = mockResponse;
+        }
+    }
+}
@@ -1,33 +1,143 @@
 package io.geemov42.okhttp3.conditionaldispatcher.response;
 
 import io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatchers;
+import io.geemov42.okhttp3.conditionaldispatcher.metrics.ConditionStats;
+import io.geemov42.okhttp3.conditionaldispatcher.request.JsonPath;
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 import java.util.regex.Pattern;
 
-import static io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum.HEADER;
-import static io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum.PARAMETER;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum.*;
 import static io.geemov42.okhttp3.conditionaldispatcher.utils.StringUtils.requireNonNullAndNotBlank;
+import static java.util.Objects.isNull;
 import static java.util.Objects.requireNonNull;
 
 @Data
 public class MatchingCondition {
     private RequestPartToTestEnum requestPartToTest;
     private String field;
-    private Pattern valuePattern;
+    private ValueMatcher valueMatcher;
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private JsonPath jsonPath;
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final ConditionStats stats = new ConditionStats();
 
-    @Builder
+    /**
+     * @param requestPartToTest the request part to test
+     * @param field the header or parameter name, the json path, or null for the path and the body
+     * @param valueRegex the regex found in the value
+     */
     public MatchingCondition(RequestPartToTestEnum requestPartToTest, String field, String valueRegex) {
+        this(requestPartToTest, field, requireNonNull(valueRegex), null, null);
+    }
+
+    /**
+     * Exactly one of valueRegex (found in the value, downgraded to a cheaper matcher when it is a literal),
+     * valueLiteral (contained in the value) or valueMatcher is expected.
+     * The field of a JSON_PATH condition is the json path, like $.customer.id, and the value it selects is tested.
+     */
+    @Builder
+    public MatchingCondition(RequestPartToTestEnum requestPartToTest, String field, String valueRegex, String valueLiteral, ValueMatcher valueMatcher) {
 
         this.requestPartToTest = requireNonNull(requestPartToTest);
-        requireNonNull(valueRegex);
-        this.valuePattern = Pattern.compile(valueRegex);
+
+        int definedValues = (isNull(valueRegex) ? 0 : 1) + (isNull(valueLiteral) ? 0 : 1) + (isNull(valueMatcher) ? 0 : 1);
+        if (definedValues != 1) {
+            throw new IllegalArgumentException("Exactly one of value regex, value literal or value matcher should be defined");
+        }
+
+        if (!isNull(valueRegex)) {
+            this.valueMatcher = ValueMatchers.regex(valueRegex);
+        } else if (!isNull(valueLiteral)) {
+            this.valueMatcher = ValueMatchers.contains(valueLiteral);
+        } else {
+            this.valueMatcher = valueMatcher;
+        }
 
         if (this.requestPartToTest == HEADER || this.requestPartToTest == PARAMETER) {
             this.field = requireNonNullAndNotBlank(field);
+        } else if (this.requestPartToTest == JSON_PATH) {
+            this.field = requireNonNullAndNotBlank(field);
+            this.jsonPath = JsonPath.compile(field);
         } else {
             this.field = field;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * @return a regex equivalent to the value matcher
+     */
+    public Pattern getValuePattern() {
+        return this.valueMatcher.getPattern();
+    }
+
+    /**
+     * While the dispatch is profiled, the outcome is recorded in the stats of the condition
+     * @param requestContext the request
+     * @return true if the request part matches
+     */
+    public boolean matches(RequestContext requestContext) {
+
+        if (!requestContext.isConditionProfiled()) {
+            return this.test(requestContext);
+        }
+
+        boolean sampled = requestContext.sampleConditionCost();
+        long start = sampled ? System.nanoTime() : 0;
+        boolean matches = this.test(requestContext);
+        this.stats.record(!matches, sampled ? System.nanoTime() - start : -1);
+
+        return matches;
+    }
+
+    private boolean test(RequestContext requestContext) {
+
+        if (this.requestPartToTest == BODY) {
+            return this.valueMatcher.matchesBody(requestContext);
+        }
+
+        return this.valueMatcher.matches(this.extractValue(requestContext));
+    }
+
+    /**
+     * @param requestContext the request
+     * @return the value the condition tests: the header, parameter, decoded path, json value or body scan window, null if absent
+     */
+    public CharSequence getTestedValue(RequestContext requestContext) {
+
+        if (this.requestPartToTest == BODY) {
+            return requestContext.getBodyCharSequence();
+        }
+
+        return this.extractValue(requestContext);
+    }
+
+    private String extractValue(RequestContext requestContext) {
+
+        if (this.requestPartToTest == HEADER) {
+            return requestContext.getHeader(this.field);
+        }
+
+        if (this.requestPartToTest == PARAMETER) {
+            return requestContext.getQueryParameter(this.field);
+        }
+
+        if (this.requestPartToTest == PATH) {
+            return requestContext.getDecodedPath();
+        }
+
+        if (this.requestPartToTest == JSON_PATH) {
+            return requestContext.getJsonValue(this.jsonPath);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,59 @@
+package io.geemov42.okhttp3.conditionaldispatcher.response;
+
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+import io.geemov42.okhttp3.conditionaldispatcher.template.ResponseTemplate;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * One conditional mock response whose body echoes parts of the request, like the identifier it was asked for,
+ * instead of one response per identifier.
+ * The template is compiled at registration, each serve renders it into a new buffer.
+ */
+@Getter
+@ToString(callSuper = true, onlyExplicitlyIncluded = true)
+@EqualsAndHashCode(callSuper = true, onlyExplicitlyIncluded = true)
+public class TemplatedConditionalMockResponse extends ConditionalMockResponse {
+
+    @ToString.Include
+    private final ResponseTemplate bodyTemplate;
+    private final MockResponse templateMockResponse;
+    private final Pattern pathPattern;
+
+    /**
+     * @param mockResponse the status and headers, without body
+     * @param bodyTemplate the body, see {@link ResponseTemplate} for the placeholders
+     */
+    @Builder(builderMethodName = "templatedBuilder")
+    public TemplatedConditionalMockResponse(String id, int limitFetch, String pathRegex, ValueMatcher pathMatcher, MockResponse mockResponse,
+                                            String bodyTemplate, List<MatchingCondition> matchingConditions) {
+
+        super(id, limitFetch, pathRegex, pathMatcher, matchingConditions);
+
+        this.templateMockResponse = requireNonNull(mockResponse).clone();
+        this.pathPattern = this.getPathRegexPattern();
+        this.bodyTemplate = ResponseTemplate.compile(bodyTemplate, this.pathPattern);
+    }
+
+    @Override
+    public MockResponse getMockResponse(RequestContext requestContext) {
+
+        this.use();
+
+        Buffer body = new Buffer();
+        this.bodyTemplate.render(requestContext, this.pathPattern, body);
+
+        return this.templateMockResponse.clone().setBody(body);
+    }
+}
@@ -0,0 +1,320 @@
+package io.geemov42.okhttp3.conditionaldispatcher.routing;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.MatcherKindEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.metrics.ConditionStats;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import io.geemov42.okhttp3.conditionaldispatcher.response.MatchingCondition;
+import lombok.Builder;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.Objects.isNull;
+
+/**
+ * @author geemov42
+ * Evaluation order adapted to the traffic, enabled on a dispatcher on demand.
+ * The conditions of each response are sorted so that the cheapest and most selective ones run first:
+ * every condition is required, so the outcome is the same.
+ * A response hit often moves ahead of the responses before it, but only past responses that provably never match the same request:
+ * the first matching response of every request stays the same.
+ * A condition is ranked by its sampled cost over its reject rate, with an assumed cost and rate until it has been evaluated enough.
+ * New orders are published with a copy on write, like registrations, and only when they are clearly better, so that noise does not flip them.
+ * Orders then depend on timing: disable the ordering to debug with the declared orders.
+ * A due pass runs on a background thread, one at a time, so that no request waits for it.
+ */
+public class AdaptiveOrdering {
+
+    private static final double ASSUMED_REJECT_RATE = 0.5;
+    private static final double MIN_REJECT_RATE = 0.001;
+    private static final long MIN_COST_SAMPLES = 8;
+    private static final double MAX_COST_RATIO = 0.9;
+    private static final int HOIST_HIT_RATIO = 2;
+    private static final int MAX_HOIST_DISTANCE = 64;
+    private static final Executor BACKGROUND_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "adaptive-ordering");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long interval;
+    private final long minEvaluations;
+    private final boolean keepResponseOrder;
+    private final Executor executor;
+    private final AtomicLong dispatchCount = new AtomicLong();
+    private final AtomicBoolean passRunning = new AtomicBoolean();
+    private final LongAdder reorderedResponses = new LongAdder();
+    private final LongAdder hoistedResponses = new LongAdder();
+
+    /**
+     * @param interval the number of dispatches between two passes, 10000 by default: the dispatch completing an interval runs the pass
+     * @param minEvaluations the evaluations of a condition, or the hits of a response, before its statistics are used, 100 by default
+     * @param keepResponseOrder true to only sort the conditions of each response
+     * @param executor where due passes run, a shared daemon thread by default
+     */
+    @Builder
+    public AdaptiveOrdering(long interval, long minEvaluations, boolean keepResponseOrder, Executor executor) {
+
+        if (interval < 0 || minEvaluations < 0) {
+            throw new IllegalArgumentException("Interval and minimum evaluations should not be negative");
+        }
+
+        this.interval = interval == 0 ? 10_000 : interval;
+        this.minEvaluations = minEvaluations == 0 ? 100 : minEvaluations;
+        this.keepResponseOrder = keepResponseOrder;
+        this.executor = isNull(executor) ? BACKGROUND_EXECUTOR : executor;
+    }
+
+    /**
+     * Count a dispatch
+     * @return true for the dispatch completing an interval
+     */
+    public boolean isPassDue() {
+        return this.dispatchCount.incrementAndGet() % this.interval == 0;
+    }
+
+    /**
+     * Run a due pass on the executor, unless a pass is already running
+     * @param pass the pass
+     */
+    public void runPass(Runnable pass) {
+
+        if (!this.passRunning.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            this.executor.execute(() -> {
+                try {
+                    pass.run();
+                } finally {
+                    this.passRunning.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.passRunning.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Sort the conditions of every response of the layers, from the top one down to the given depth
+     * @param ruleLayer the top layer
+     * @param fromDepth the depth of the lowest layer
+     */
+    public void reorderConditions(RuleLayer ruleLayer, int fromDepth) {
+        forEachResponse(ruleLayer, fromDepth, this::reorderConditions);
+    }
+
+    /**
+     * Publish a new version of the top layer with responses hit often moved ahead, unless no response moved.
+     * The moves are counted once the new version is published, not for each attempt lost to a registration.
+     * @param ruleLayer the published top layer
+     * @param fromDepth the depth of the lowest layer
+     */
+    public void hoistResponses(AtomicReference<RuleLayer> ruleLayer, int fromDepth) {
+
+        if (this.keepResponseOrder) {
+            return;
+        }
+
+        while (true) {
+            RuleLayer currentRuleLayer = ruleLayer.get();
+            long[] hoisted = new long[1];
+
+            RuleLayer hoistedRuleLayer = mapRouteIndexes(currentRuleLayer, fromDepth, routeIndex -> {
+                List<ConditionalMockResponse> evaluationOrder = this.hoist(routeIndex.getEvaluationOrder(), currentRuleLayer, hoisted);
+                return isNull(evaluationOrder) ? routeIndex : routeIndex.withEvaluationOrder(evaluationOrder);
+            });
+
+            if (hoistedRuleLayer == currentRuleLayer) {
+                return;
+            }
+
+            if (ruleLayer.compareAndSet(currentRuleLayer, hoistedRuleLayer)) {
+                this.hoistedResponses.add(hoisted[0]);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Evaluate the conditions of every response in their declared order again
+     */
+    public static void restoreConditions(RuleLayer ruleLayer, int fromDepth) {
+        forEachResponse(ruleLayer, fromDepth, conditionalMockResponse -> conditionalMockResponse.setEvaluationOrder(conditionalMockResponse.getMatchingConditions()));
+    }
+
+    /**
+     * @return a new version of the top layer evaluating responses in registration order, or the same layer if they already are
+     */
+    public static RuleLayer restoreResponses(RuleLayer ruleLayer, int fromDepth) {
+
+        return mapRouteIndexes(ruleLayer, fromDepth, routeIndex -> routeIndex.getEvaluationOrder().equals(routeIndex.getConditionalMockResponses())
+                ? routeIndex
+                : routeIndex.withEvaluationOrder(routeIndex.getConditionalMockResponses()));
+    }
+
+    /**
+     * @return the number of times the conditions of a response were reordered
+     */
+    public long getReorderedResponseCount() {
+        return this.reorderedResponses.sum();
+    }
+
+    /**
+     * @return the number of times a response moved ahead of another one
+     */
+    public long getHoistedResponseCount() {
+        return this.hoistedResponses.sum();
+    }
+
+    private void reorderConditions(ConditionalMockResponse conditionalMockResponse) {
+
+        List<MatchingCondition> evaluationOrder = conditionalMockResponse.getEvaluationOrder();
+        if (evaluationOrder.size() < 2) {
+            return;
+        }
+
+        double[] costs = new double[evaluationOrder.size()];
+        double[] rejectRates = new double[evaluationOrder.size()];
+        for (int i = 0; i < costs.length; i++) {
+            ConditionStats conditionStats = evaluationOrder.get(i).getStats();
+
+            costs[i] = conditionStats.getCostSamples() >= MIN_COST_SAMPLES ? conditionStats.getAverageCostNanos() : assumedCostNanos(evaluationOrder.get(i));
+            rejectRates[i] = conditionStats.getEvaluated() >= this.minEvaluations
+                    ? (double) conditionStats.getRejected() / conditionStats.getEvaluated()
+                    : ASSUMED_REJECT_RATE;
+        }
+
+        // a stable sort keeps the current order of equally ranked conditions
+        int[] sorted = IntStream.range(0, costs.length).boxed()
+                .sorted(Comparator.comparingDouble(i -> costs[i] / Math.max(rejectRates[i], MIN_REJECT_RATE)))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        if (expectedCost(sorted, costs, rejectRates) < MAX_COST_RATIO * expectedCost(IntStream.range(0, costs.length).toArray(), costs, rejectRates)
+                && conditionalMockResponse.setEvaluationOrder(Arrays.stream(sorted).mapToObj(evaluationOrder::get).collect(Collectors.toList()))) {
+            this.reorderedResponses.increment();
+        }
+    }
+
+    /**
+     * @return the mean cost of evaluating the conditions in this order, each one only running when the ones before it matched
+     */
+    private static double expectedCost(int[] order, double[] costs, double[] rejectRates) {
+
+        double expectedCost = 0;
+        double reached = 1;
+        for (int i : order) {
+            expectedCost += reached * costs[i];
+            reached *= 1 - rejectRates[i];
+        }
+
+        return expectedCost;
+    }
+
+    private static double assumedCostNanos(MatchingCondition matchingCondition) {
+
+        boolean regex = matchingCondition.getValueMatcher().getKind() == MatcherKindEnum.REGEX;
+
+        switch (matchingCondition.getRequestPartToTest()) {
+            case BODY:
+                return regex ? 20_000 : 2_000;
+            case JSON_PATH:
+                return 2_000;
+            default:
+                return regex ? 500 : 100;
+        }
+    }
+
+    /**
+     * Insertion sort by hits, where a response only passes the one before it when both are disjoint,
+     * so that two responses that can match the same request keep their order
+     * @param topRuleLayer the layer counting the hits of this dispatcher, not the ones of other dispatchers sharing a response
+     * @param hoisted incremented for each move
+     * @return the new order, or null if no response moved
+     */
+    private List<ConditionalMockResponse> hoist(List<ConditionalMockResponse> evaluationOrder, RuleLayer topRuleLayer, long[] hoisted) {
+
+        ConditionalMockResponse[] order = evaluationOrder.toArray(new ConditionalMockResponse[0]);
+        long[] hits = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            hits[i] = topRuleLayer.getFetchCounter(order[i].getId());
+        }
+
+        boolean moved = false;
+        for (int i = 1; i < order.length; i++) {
+            if (hits[i] < this.minEvaluations) {
+                continue;
+            }
+
+            for (int j = i; j > 0 && i - j < MAX_HOIST_DISTANCE && hits[j] > HOIST_HIT_RATIO * hits[j - 1] && Disjointness.disjoint(order[j], order[j - 1]); j--) {
+                ConditionalMockResponse conditionalMockResponse = order[j];
+                order[j] = order[j - 1];
+                order[j - 1] = conditionalMockResponse;
+
+                long hit = hits[j];
+                hits[j] = hits[j - 1];
+                hits[j - 1] = hit;
+
+                hoisted[0]++;
+                moved = true;
+            }
+        }
+
+        return moved ? Arrays.asList(order) : null;
+    }
+
+    private static void forEachResponse(RuleLayer ruleLayer, int fromDepth, Consumer<ConditionalMockResponse> action) {
+
+        for (RuleLayer layer = ruleLayer; !isNull(layer) && layer.getDepth() >= fromDepth; layer = layer.getParent()) {
+            for (HttpMethodEnum httpMethodEnum : HttpMethodEnum.values()) {
+                RouteIndex routeIndex = layer.getRuleTable().get(httpMethodEnum);
+
+                if (!isNull(routeIndex)) {
+                    routeIndex.getConditionalMockResponses().forEach(action);
+                }
+            }
+        }
+    }
+
+    private static RuleLayer mapRouteIndexes(RuleLayer ruleLayer, int fromDepth, UnaryOperator<RouteIndex> mapping) {
+
+        RuleLayer mappedRuleLayer = ruleLayer;
+
+        // the layers keep their depth, so the original chain still tells which table to replace
+        for (RuleLayer layer = ruleLayer; !isNull(layer) && layer.getDepth() >= fromDepth; layer = layer.getParent()) {
+            RuleTable ruleTable = layer.getRuleTable();
+            RuleTable mappedRuleTable = ruleTable;
+
+            for (HttpMethodEnum httpMethodEnum : HttpMethodEnum.values()) {
+                RouteIndex routeIndex = ruleTable.get(httpMethodEnum);
+                RouteIndex mappedRouteIndex = isNull(routeIndex) ? null : mapping.apply(routeIndex);
+
+                if (mappedRouteIndex != routeIndex) {
+                    mappedRuleTable = mappedRuleTable.withRouteIndex(httpMethodEnum, mappedRouteIndex);
+                }
+            }
+
+            if (mappedRuleTable != ruleTable) {
+                mappedRuleLayer = mappedRuleLayer.withRuleTableAt(layer.getDepth(), mappedRuleTable);
+            }
+        }
+
+        return mappedRuleLayer;
+    }
+}
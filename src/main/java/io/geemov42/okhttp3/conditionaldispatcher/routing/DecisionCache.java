@@ -0,0 +1,222 @@
+package io.geemov42.okhttp3.conditionaldispatcher.routing;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import io.geemov42.okhttp3.conditionaldispatcher.response.MatchingCondition;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum.HEADER;
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Bounded memo of the dispatch decisions of one rule layer snapshot: the response chosen for a request,
+ * or the fall through to the queue, keyed on the method, the raw path (query string included)
+ * and the values of the headers that the conditions of the snapshot reference.
+ * A new snapshot gets a new cache, so registrations invalidate it, and so do conditions changed on a response of the snapshot:
+ * the version of the conditions is kept per layer, so changes in other dispatchers leave this cache alone.
+ * Reads are lock free, insertions are serialized and evict with a clock (second chance) sweep.
+ */
+public class DecisionCache {
+
+    private static final char SEPARATOR = '\u0000';
+    private static final char ABSENT = '\u0001';
+
+    private final RuleLayer ruleLayer;
+    private final long conditionsVersion;
+    private final int maximumSize;
+    private final String[] referencedHeaders;
+    private final Map<String, Decision> decisionsByKey = new ConcurrentHashMap<>();
+    private final String[] clock;
+    private int hand;
+    private final Counters counters;
+
+    public DecisionCache(RuleLayer ruleLayer, int maximumSize) {
+        this(ruleLayer, maximumSize, new Counters());
+    }
+
+    private DecisionCache(RuleLayer ruleLayer, int maximumSize, Counters counters) {
+
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Decision cache maximum size should be positive");
+        }
+
+        this.ruleLayer = requireNonNull(ruleLayer);
+        // read before the conditions: a change made meanwhile renews this cache
+        this.conditionsVersion = ruleLayer.getConditionsVersion();
+        this.maximumSize = maximumSize;
+        this.referencedHeaders = referencedHeaders(ruleLayer);
+        this.clock = new String[maximumSize];
+        this.counters = counters;
+    }
+
+    /**
+     * @param ruleLayer the new snapshot
+     * @return an empty cache for the snapshot, counting in the same counters
+     */
+    public DecisionCache withRuleLayer(RuleLayer ruleLayer) {
+        return new DecisionCache(ruleLayer, this.maximumSize, this.counters);
+    }
+
+    public RuleLayer getRuleLayer() {
+        return this.ruleLayer;
+    }
+
+    /**
+     * @param ruleLayer the current snapshot
+     * @return true if the decisions of this cache hold for the snapshot, with the current conditions of its responses
+     */
+    public boolean isCurrent(RuleLayer ruleLayer) {
+        return this.ruleLayer == ruleLayer && this.conditionsVersion == ruleLayer.getConditionsVersion();
+    }
+
+    public String key(RequestContext requestContext) {
+
+        String method = requestContext.getRecordedRequest().getMethod();
+        String path = requestContext.getPath();
+
+        StringBuilder key = new StringBuilder(method.length() + path.length() + 1 + this.referencedHeaders.length * 16)
+                .append(method)
+                .append(SEPARATOR)
+                .append(path);
+
+        for (String referencedHeader : this.referencedHeaders) {
+            String value = requestContext.getHeader(referencedHeader);
+            key.append(SEPARATOR).append(isNull(value) ? String.valueOf(ABSENT) : value);
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * @param key the decision key
+     * @return the cached decision or null
+     */
+    public Decision get(String key) {
+
+        Decision decision = this.decisionsByKey.get(key);
+
+        if (isNull(decision)) {
+            this.counters.misses.increment();
+            return null;
+        }
+
+        this.counters.hits.increment();
+        if (!decision.referenced) {
+            decision.referenced = true;
+        }
+
+        return decision;
+    }
+
+    /**
+     * @param key the decision key
+     * @param httpMethodEnum the list of the chosen response
+     * @param conditionalMockResponse the chosen response, null to fall through to the queue
+     * @param cacheable false when a rule depending on more than the key was evaluated
+     */
+    public void put(String key, HttpMethodEnum httpMethodEnum, ConditionalMockResponse conditionalMockResponse, boolean cacheable) {
+
+        if (!cacheable) {
+            this.counters.uncacheable.increment();
+            return;
+        }
+
+        Decision decision = new Decision(httpMethodEnum, conditionalMockResponse);
+
+        synchronized (this) {
+            if (this.decisionsByKey.containsKey(key)) {
+                return;
+            }
+
+            // a full sweep clears every reference bit, so the loop ends within two turns
+            while (true) {
+                String candidate = this.clock[this.hand];
+
+                if (isNull(candidate)) {
+                    break;
+                }
+
+                Decision candidateDecision = this.decisionsByKey.get(candidate);
+                if (isNull(candidateDecision) || !candidateDecision.referenced) {
+                    this.decisionsByKey.remove(candidate);
+                    break;
+                }
+
+                candidateDecision.referenced = false;
+                this.hand = (this.hand + 1) % this.maximumSize;
+            }
+
+            this.clock[this.hand] = key;
+            this.decisionsByKey.put(key, decision);
+            this.hand = (this.hand + 1) % this.maximumSize;
+        }
+    }
+
+    public DecisionCacheStats getStats() {
+
+        return new DecisionCacheStats(
+                this.counters.hits.sum(),
+                this.counters.misses.sum(),
+                this.counters.uncacheable.sum(),
+                this.decisionsByKey.size(),
+                this.maximumSize
+        );
+    }
+
+    private static String[] referencedHeaders(RuleLayer ruleLayer) {
+
+        Set<String> referencedHeaders = new TreeSet<>();
+
+        for (HttpMethodEnum httpMethodEnum : HttpMethodEnum.values()) {
+            for (ConditionalMockResponse conditionalMockResponse : ruleLayer.getVisibleResponses(httpMethodEnum)) {
+                for (MatchingCondition matchingCondition : conditionalMockResponse.getMatchingConditions()) {
+                    if (matchingCondition.getRequestPartToTest() == HEADER) {
+                        referencedHeaders.add(matchingCondition.getField().toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+        }
+
+        return referencedHeaders.toArray(new String[0]);
+    }
+
+    /**
+     * A cached decision, the response being null for a fall through to the queue
+     */
+    public static class Decision {
+
+        private final HttpMethodEnum httpMethodEnum;
+        private final ConditionalMockResponse conditionalMockResponse;
+        private volatile boolean referenced;
+
+        private Decision(HttpMethodEnum httpMethodEnum, ConditionalMockResponse conditionalMockResponse) {
+
+            this.httpMethodEnum = httpMethodEnum;
+            this.conditionalMockResponse = conditionalMockResponse;
+        }
+
+        public HttpMethodEnum getHttpMethodEnum() {
+            return this.httpMethodEnum;
+        }
+
+        public ConditionalMockResponse getConditionalMockResponse() {
+            return this.conditionalMockResponse;
+        }
+    }
+
+    private static class Counters {
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder uncacheable = new LongAdder();
+    }
+}
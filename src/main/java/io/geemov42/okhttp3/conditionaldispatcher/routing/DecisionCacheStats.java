@@ -0,0 +1,26 @@
+package io.geemov42.okhttp3.conditionaldispatcher.routing;
+
+import lombok.Data;
+
+/**
+ * @author geemov42
+ * Counters of the decision cache since it was enabled, across rule table changes
+ */
+@Data
+public class DecisionCacheStats {
+
+    private final long hits;
+    private final long misses;
+    /**
+     * Misses whose decision depended on a rule that is not cacheable, so it was not stored
+     */
+    private final long uncacheable;
+    private final int size;
+    private final int maximumSize;
+
+    public double getHitRate() {
+
+        long lookups = this.hits + this.misses;
+        return lookups == 0 ? 0 : this.hits / (double) lookups;
+    }
+}
@@ -0,0 +1,113 @@
+package io.geemov42.okhttp3.conditionaldispatcher.routing;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.MatcherKindEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.LiteralValueMatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.OneOfValueMatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import io.geemov42.okhttp3.conditionaldispatcher.response.MatchingCondition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.MatcherKindEnum.EXACT;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.MatcherKindEnum.PREFIX;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum.BODY;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum.HEADER;
+import static java.util.Objects.isNull;
+
+/**
+ * @author geemov42
+ * Proof that two conditional mock responses never match the same request, so that their order does not change any outcome.
+ * The proof is conservative: false means that no proof was found, not that a request matches both.
+ * Two responses are disjoint when their path matchers, or two of their conditions on the same request part, accept no common value:
+ * a literal or a small set of literals that the other matcher rejects, or two prefixes that do not extend each other.
+ */
+class Disjointness {
+
+    private static final int MAX_ENUMERATED_VALUES = 64;
+    // a matcher accepting a final line terminator also accepts the value followed by one of them
+    private static final String[] LINE_TERMINATORS = {"", "\n", "\r\n", "\r", "\u0085", "\u2028", "\u2029"};
+
+    private Disjointness(){}
+
+    static boolean disjoint(ConditionalMockResponse first, ConditionalMockResponse second) {
+
+        if (disjoint(first.getPathMatcher(), second.getPathMatcher())) {
+            return true;
+        }
+
+        // iterated, so conditions changed meanwhile are seen as one consistent list
+        for (MatchingCondition firstCondition : first.getMatchingConditions()) {
+            for (MatchingCondition secondCondition : second.getMatchingConditions()) {
+                if (sameValue(firstCondition, secondCondition) && disjoint(firstCondition.getValueMatcher(), secondCondition.getValueMatcher())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Body conditions are left out: a byte search and a decoded window do not see exactly the same value
+     */
+    private static boolean sameValue(MatchingCondition firstCondition, MatchingCondition secondCondition) {
+
+        RequestPartToTestEnum requestPartToTest = firstCondition.getRequestPartToTest();
+        if (requestPartToTest != secondCondition.getRequestPartToTest() || requestPartToTest == BODY) {
+            return false;
+        }
+
+        return requestPartToTest == HEADER
+                ? firstCondition.getField().equalsIgnoreCase(secondCondition.getField())
+                : Objects.equals(firstCondition.getField(), secondCondition.getField());
+    }
+
+    static boolean disjoint(ValueMatcher first, ValueMatcher second) {
+
+        if (isLiteral(first, PREFIX) && isLiteral(second, PREFIX)) {
+            String firstPrefix = ((LiteralValueMatcher) first).getLiteral();
+            String secondPrefix = ((LiteralValueMatcher) second).getLiteral();
+
+            return !firstPrefix.startsWith(secondPrefix) && !secondPrefix.startsWith(firstPrefix);
+        }
+
+        return rejectsAll(second, acceptedValues(first)) || rejectsAll(first, acceptedValues(second));
+    }
+
+    /**
+     * @return every value the matcher accepts, or null if they are not few enough to be enumerated
+     */
+    private static List<String> acceptedValues(ValueMatcher valueMatcher) {
+
+        Collection<String> literals;
+        if (isLiteral(valueMatcher, EXACT)) {
+            literals = List.of(((LiteralValueMatcher) valueMatcher).getLiteral());
+        } else if (valueMatcher instanceof OneOfValueMatcher && ((OneOfValueMatcher) valueMatcher).getValues().size() <= MAX_ENUMERATED_VALUES) {
+            literals = ((OneOfValueMatcher) valueMatcher).getValues();
+        } else {
+            return null;
+        }
+
+        List<String> acceptedValues = new ArrayList<>(literals.size() * LINE_TERMINATORS.length);
+        for (String literal : literals) {
+            for (String lineTerminator : LINE_TERMINATORS) {
+                acceptedValues.add(literal + lineTerminator);
+            }
+        }
+
+        return acceptedValues;
+    }
+
+    private static boolean isLiteral(ValueMatcher valueMatcher, MatcherKindEnum kind) {
+        return valueMatcher instanceof LiteralValueMatcher && valueMatcher.getKind() == kind;
+    }
+
+    private static boolean rejectsAll(ValueMatcher valueMatcher, List<String> values) {
+        return !isNull(values) && values.stream().noneMatch(valueMatcher::matches);
+    }
+}
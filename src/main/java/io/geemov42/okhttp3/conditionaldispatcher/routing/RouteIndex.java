@@ -0,0 +1,407 @@
+package io.geemov42.okhttp3.conditionaldispatcher.routing;
+
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+
+import java.util.*;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Immutable route table of one http method list.
+ * Each conditional mock response is bucketed by a gram of the literal its path matcher requires,
+ * so a request only runs the full path matcher on the responses whose gram appears in its path.
+ * Candidates are evaluated in registration order, unless an adaptive ordering moved responses
+ * ahead of ones that never match the same request.
+ * A lookup does not allocate: grams are looked up in a primitive table and merged in per thread scratch arrays.
+ * An index is a length over a storage that only grows: appending to the latest index writes past its length,
+ * so registering responses one at a time does not copy the table each time.
+ */
+public class RouteIndex {
+
+    static final int GRAM_LENGTH = 3;
+
+    public static final RouteIndex EMPTY = new RouteIndex(null, 0);
+
+    private static final ThreadLocal<MergeScratch> MERGE_SCRATCH = ThreadLocal.withInitial(MergeScratch::new);
+
+    // shared with the indexes appended to this one, which only write past this length
+    private final Store store;
+    private final int length;
+
+    private RouteIndex(Store store, int length) {
+
+        this.store = store;
+        this.length = length;
+    }
+
+    /**
+     * Copy on write: this index is left untouched so readers never see a partially built table.
+     * The first append to an index writes in its storage, past its length; another append to the same index,
+     * like a retried update, copies the storage first.
+     * @param conditionalMockResponses responses appended after the existing ones, in registration and evaluation order
+     * @return a new index
+     */
+    public RouteIndex withAdded(List<ConditionalMockResponse> conditionalMockResponses) {
+
+        requireNonNull(conditionalMockResponses);
+        conditionalMockResponses.forEach(Objects::requireNonNull);
+
+        if (conditionalMockResponses.isEmpty()) {
+            return this;
+        }
+
+        Store target = this.store;
+        if (isNull(target) || !target.append(this.length, conditionalMockResponses, conditionalMockResponses)) {
+            target = new Store();
+            target.append(0, this.getEvaluationOrder(), this.getConditionalMockResponses());
+            target.append(this.length, conditionalMockResponses, conditionalMockResponses);
+        }
+
+        return new RouteIndex(target, this.length + conditionalMockResponses.size());
+    }
+
+    /**
+     * @param evaluationOrder the responses of this index in a new order
+     * @return a new index evaluating the responses in this order, with the same registration order
+     */
+    RouteIndex withEvaluationOrder(List<ConditionalMockResponse> evaluationOrder) {
+
+        if (evaluationOrder.size() != this.length) {
+            throw new IllegalArgumentException("The evaluation order should have every response of the index");
+        }
+
+        Store reordered = new Store();
+        reordered.append(0, evaluationOrder, this.getConditionalMockResponses());
+
+        return new RouteIndex(reordered, this.length);
+    }
+
+    /**
+     * @return the responses in registration order
+     */
+    public List<ConditionalMockResponse> getConditionalMockResponses() {
+        return isNull(this.store) ? List.of() : this.view(this.store.registeredResponses);
+    }
+
+    /**
+     * @return the responses in the order they are evaluated
+     */
+    public List<ConditionalMockResponse> getEvaluationOrder() {
+        return isNull(this.store) ? List.of() : this.view(this.store.conditionalMockResponses);
+    }
+
+    public boolean isEmpty() {
+        return this.length == 0;
+    }
+
+    private List<ConditionalMockResponse> view(ConditionalMockResponse[] responses) {
+        return Collections.unmodifiableList(Arrays.asList(responses).subList(0, this.length));
+    }
+
+    /**
+     * Find the first conditional mock response, in evaluation order, whose path matcher accepts the path
+     * and whose conditions match the request.
+     * @param requestContext the request
+     * @return the first matching response or null
+     */
+    public ConditionalMockResponse findFirst(RequestContext requestContext) {
+        return this.findFirst(requestContext, null, null);
+    }
+
+    /**
+     * @param requestContext the request
+     * @param topRuleLayer the layer dispatching, null without layers
+     * @param ownerRuleLayer the layer of this index: responses hidden by the layers above it are skipped
+     * @return the first matching and visible response or null
+     */
+    ConditionalMockResponse findFirst(RequestContext requestContext, RuleLayer topRuleLayer, RuleLayer ownerRuleLayer) {
+
+        if (isNull(this.store)) {
+            return null;
+        }
+
+        String path = requestContext.getPath();
+        ConditionalMockResponse[] responses = this.store.conditionalMockResponses;
+        GramTable gramTable = this.store.gramTable;
+        MergeScratch scratch = MERGE_SCRATCH.get();
+        int[][] candidates = scratch.candidates;
+        int candidateCount = 0;
+
+        int[] unindexed = this.store.unindexed.positions;
+        if (unindexed[0] < this.length) {
+            candidates[candidateCount++] = unindexed;
+        }
+
+        for (int i = 0; i + GRAM_LENGTH <= path.length(); i++) {
+            Bucket bucket = gramTable.get(gram(path, i));
+            // a bucket added after this index may not show its positions yet, they are past this index anyway
+            int[] positions = isNull(bucket) ? null : bucket.positions;
+
+            if (!isNull(positions) && positions[0] < this.length && !containsSame(candidates, candidateCount, positions)) {
+                if (candidateCount == candidates.length) {
+                    candidates = scratch.grow();
+                }
+                candidates[candidateCount++] = positions;
+            }
+        }
+
+        int[] cursors = scratch.cursors;
+        Arrays.fill(cursors, 0, candidateCount, 0);
+
+        try {
+            while (true) {
+                int selected = -1;
+                // positions appended after this index, or not written yet, are skipped
+                int position = this.length;
+
+                for (int i = 0; i < candidateCount; i++) {
+                    int[] positions = candidates[i];
+
+                    if (cursors[i] < positions.length && positions[cursors[i]] < position) {
+                        selected = i;
+                        position = positions[cursors[i]];
+                    }
+                }
+
+                if (selected < 0) {
+                    return null;
+                }
+
+                cursors[selected]++;
+
+                ConditionalMockResponse conditionalMockResponse = responses[position];
+                if (conditionalMockResponse.getPathMatcher().matches(path)
+                        && (isNull(topRuleLayer) || !topRuleLayer.hides(conditionalMockResponse.getId(), ownerRuleLayer))
+                        && conditionalMockResponse.matchConditions(requestContext)) {
+                    return conditionalMockResponse;
+                }
+            }
+        } finally {
+            // do not retain buckets of an index that may be replaced
+            Arrays.fill(candidates, 0, candidateCount, null);
+        }
+    }
+
+    private static boolean containsSame(int[][] candidates, int count, int[] positions) {
+
+        for (int i = 0; i < count; i++) {
+            if (candidates[i] == positions) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static int gram(CharSequence value, int offset) {
+
+        int hash = 0;
+        for (int i = offset; i < offset + GRAM_LENGTH; i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Storage shared by the indexes appended to each other, written by one appending thread at a time.
+     * Readers only read the positions below the length of their index, which were written before it was published.
+     */
+    private static class Store {
+
+        // grown by copy, so a reader keeps a complete array of the positions it reads
+        private volatile ConditionalMockResponse[] registeredResponses = new ConditionalMockResponse[8];
+        // in evaluation order, the order of the positions of the buckets
+        private volatile ConditionalMockResponse[] conditionalMockResponses = new ConditionalMockResponse[8];
+        private final GramTable gramTable = new GramTable();
+        private final Bucket unindexed = new Bucket();
+        // the length of the last index appended to this storage
+        private int length;
+
+        /**
+         * @param fromLength the length of the index appended to
+         * @return false if another index was already appended to the same one, the caller copies the storage then
+         */
+        private synchronized boolean append(int fromLength, List<ConditionalMockResponse> evaluated, List<ConditionalMockResponse> registered) {
+
+            if (this.length != fromLength) {
+                return false;
+            }
+
+            int appendedLength = fromLength + evaluated.size();
+            if (appendedLength > this.conditionalMockResponses.length) {
+                int capacity = Math.max(appendedLength, this.conditionalMockResponses.length * 2);
+                this.registeredResponses = Arrays.copyOf(this.registeredResponses, capacity);
+                this.conditionalMockResponses = Arrays.copyOf(this.conditionalMockResponses, capacity);
+            }
+
+            ConditionalMockResponse[] registeredResponses = this.registeredResponses;
+            ConditionalMockResponse[] conditionalMockResponses = this.conditionalMockResponses;
+            int position = fromLength;
+
+            for (int i = 0; i < evaluated.size(); i++) {
+                registeredResponses[position] = registered.get(i);
+                conditionalMockResponses[position] = evaluated.get(i);
+
+                Integer gram = this.selectGram(evaluated.get(i));
+                if (isNull(gram)) {
+                    this.unindexed.add(position);
+                } else {
+                    this.gramTable.getOrAdd(gram).add(position);
+                }
+
+                position++;
+            }
+
+            this.length = appendedLength;
+            return true;
+        }
+
+        private Integer selectGram(ConditionalMockResponse conditionalMockResponse) {
+
+            String literal = conditionalMockResponse.getPathMatcher().getRequiredLiteral();
+            if (isNull(literal) || literal.length() < GRAM_LENGTH) {
+                return null;
+            }
+
+            // the least crowded gram of the literal keeps buckets small
+            Integer selected = null;
+            int selectedSize = Integer.MAX_VALUE;
+            for (int i = 0; i + GRAM_LENGTH <= literal.length(); i++) {
+                int gram = gram(literal, i);
+                Bucket bucket = this.gramTable.get(gram);
+                int size = isNull(bucket) ? 0 : bucket.size;
+
+                if (size < selectedSize) {
+                    selected = gram;
+                    selectedSize = size;
+                }
+            }
+
+            return selected;
+        }
+    }
+
+    /**
+     * Positions of responses in evaluation order, the slots not written yet hold a position past any index
+     */
+    private static class Bucket {
+
+        private static final int UNWRITTEN = Integer.MAX_VALUE;
+
+        private volatile int[] positions = unwritten(new int[4], 0);
+        // written under the lock of the storage
+        private int size;
+
+        private void add(int position) {
+
+            if (this.size == this.positions.length) {
+                this.positions = unwritten(Arrays.copyOf(this.positions, this.size * 2), this.size);
+            }
+
+            this.positions[this.size++] = position;
+        }
+
+        private static int[] unwritten(int[] positions, int from) {
+
+            Arrays.fill(positions, from, positions.length, UNWRITTEN);
+            return positions;
+        }
+    }
+
+    /**
+     * Open addressing table from gram to bucket, read without boxing the gram.
+     * Grown by copy, so a reader keeps probing a complete table.
+     */
+    private static class GramTable {
+
+        private volatile Slots slots = new Slots(16);
+        // written under the lock of the storage
+        private int size;
+
+        private Bucket get(int gram) {
+
+            Slots slots = this.slots;
+            for (int slot = slots.slot(gram); !isNull(slots.buckets[slot]); slot = (slot + 1) & slots.mask) {
+                if (slots.grams[slot] == gram) {
+                    return slots.buckets[slot];
+                }
+            }
+
+            return null;
+        }
+
+        private Bucket getOrAdd(int gram) {
+
+            Bucket bucket = this.get(gram);
+            if (!isNull(bucket)) {
+                return bucket;
+            }
+
+            if ((this.size + 1) * 2 > this.slots.buckets.length) {
+                Slots grown = new Slots(this.slots.buckets.length * 2);
+                Slots slots = this.slots;
+                for (int slot = 0; slot < slots.buckets.length; slot++) {
+                    if (!isNull(slots.buckets[slot])) {
+                        grown.put(slots.grams[slot], slots.buckets[slot]);
+                    }
+                }
+                this.slots = grown;
+            }
+
+            bucket = new Bucket();
+            this.slots.put(gram, bucket);
+            this.size++;
+
+            return bucket;
+        }
+    }
+
+    private static class Slots {
+
+        private final int[] grams;
+        private final Bucket[] buckets;
+        private final int mask;
+
+        private Slots(int capacity) {
+
+            this.grams = new int[capacity];
+            this.buckets = new Bucket[capacity];
+            this.mask = capacity - 1;
+        }
+
+        private void put(int gram, Bucket bucket) {
+
+            int slot = this.slot(gram);
+            while (!isNull(this.buckets[slot])) {
+                slot = (slot + 1) & this.mask;
+            }
+
+            this.grams[slot] = gram;
+            this.buckets[slot] = bucket;
+        }
+
+        private int slot(int gram) {
+
+            int hash = gram * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & this.mask;
+        }
+    }
+
+    private static class MergeScratch {
+
+        private int[][] candidates = new int[16][];
+        private int[] cursors = new int[16];
+
+        private int[][] grow() {
+
+            this.candidates = Arrays.copyOf(this.candidates, this.candidates.length * 2);
+            this.cursors = new int[this.candidates.length];
+
+            return this.candidates;
+        }
+    }
+}
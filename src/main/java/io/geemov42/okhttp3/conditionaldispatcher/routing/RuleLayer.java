@@ -0,0 +1,334 @@
+package io.geemov42.okhttp3.conditionaldispatcher.routing;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.request.JsonPath;
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import io.geemov42.okhttp3.conditionaldispatcher.response.MatchingCondition;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Immutable stack of rule tables: the responses of a layer are checked before the ones of the layers below,
+ * which it can hide by id. Lower layers are shared, never copied: pushing or popping a layer is constant time,
+ * and changing a layer only rebuilds the table of that layer.
+ * Fetch counts are kept per layer, for the responses served while the layer is on top, whatever layer they come from.
+ */
+public class RuleLayer {
+
+    private static final JsonPath[] NO_JSON_PATHS = new JsonPath[0];
+
+    private final RuleLayer parent;
+    private final int depth;
+    private final RuleTable ruleTable;
+    private final Set<String> hiddenIds;
+    private final boolean empty;
+    // shared by the successive versions of the same layer
+    private final Map<String, LongAdder> fetchCounters;
+    // incremented when the conditions of a response of this layer change, shared by the successive versions of the same layer
+    private final AtomicLong conditionsVersion;
+    // the paths of the layers below followed by the new ones of this layer, carried forward when responses are added
+    private final JsonPath[] jsonPaths;
+
+    private RuleLayer(RuleLayer parent, RuleTable ruleTable, Set<String> hiddenIds, Map<String, LongAdder> fetchCounters, AtomicLong conditionsVersion,
+                      JsonPath[] jsonPaths) {
+
+        this.parent = parent;
+        this.depth = isNull(parent) ? 0 : parent.depth + 1;
+        this.ruleTable = ruleTable;
+        this.hiddenIds = hiddenIds;
+        this.empty = ruleTable.isEmpty() && (isNull(parent) || parent.empty);
+        this.fetchCounters = fetchCounters;
+        this.conditionsVersion = conditionsVersion;
+        this.jsonPaths = jsonPaths;
+    }
+
+    public static RuleLayer root() {
+        return new RuleLayer(null, RuleTable.EMPTY, Collections.emptySet(), new ConcurrentHashMap<>(), new AtomicLong(), NO_JSON_PATHS);
+    }
+
+    /**
+     * @return a new empty layer above this one, with its own fetch counts
+     */
+    public RuleLayer push() {
+        return new RuleLayer(this, RuleTable.EMPTY, Collections.emptySet(), new ConcurrentHashMap<>(), new AtomicLong(), this.jsonPaths);
+    }
+
+    /**
+     * @return the layer below, this layer being discarded
+     */
+    public RuleLayer pop() {
+
+        if (isNull(this.parent)) {
+            throw new IllegalStateException("The root layer cannot be discarded");
+        }
+
+        return this.parent;
+    }
+
+    public RuleLayer withAdded(HttpMethodEnum httpMethodEnum, List<ConditionalMockResponse> conditionalMockResponses) {
+
+        RuleTable newRuleTable = this.ruleTable.withAdded(httpMethodEnum, conditionalMockResponses);
+        conditionalMockResponses.forEach(conditionalMockResponse -> conditionalMockResponse.markRegistered(this.conditionsVersion));
+
+        return new RuleLayer(this.parent, newRuleTable, this.hiddenIds, this.fetchCounters, this.conditionsVersion,
+                withJsonPathsOf(this.jsonPaths, conditionalMockResponses));
+    }
+
+    /**
+     * Remove the responses with this id from this layer and hide the ones of the layers below
+     * @param id the response id
+     * @return the new version of this layer
+     */
+    public RuleLayer withRemoved(String id) {
+
+        requireNonNull(id);
+
+        Set<String> newHiddenIds = this.hiddenIds;
+        if (!isNull(this.parent) && !this.hiddenIds.contains(id)) {
+            newHiddenIds = new HashSet<>(this.hiddenIds);
+            newHiddenIds.add(id);
+            newHiddenIds = Collections.unmodifiableSet(newHiddenIds);
+        }
+
+        return new RuleLayer(this.parent, this.ruleTable.withRemoved(id), newHiddenIds, this.fetchCounters, this.conditionsVersion, this.jsonPaths);
+    }
+
+    /**
+     * Replace, in this layer and the layers below, the responses with the id of the given one
+     * @param httpMethodEnum the http method list of the new response
+     * @param conditionalMockResponse the new response
+     * @return the new version of this layer
+     */
+    public RuleLayer withOverride(HttpMethodEnum httpMethodEnum, ConditionalMockResponse conditionalMockResponse) {
+        return this.withRemoved(conditionalMockResponse.getId()).withAdded(httpMethodEnum, List.of(conditionalMockResponse));
+    }
+
+    /**
+     * Replace the whole table of the layer at the given depth, keeping its removals and fetch counts.
+     * The layers above are rebuilt on the new one, sharing their tables.
+     * @param depth the depth of the replaced layer, at most the depth of this layer
+     * @param ruleTable the new table
+     * @return the new version of this layer
+     */
+    public RuleLayer withRuleTableAt(int depth, RuleTable ruleTable) {
+
+        requireNonNull(ruleTable);
+
+        if (depth < 0 || depth > this.depth) {
+            throw new IllegalStateException("No layer at depth " + depth);
+        }
+
+        if (depth == this.depth) {
+            for (HttpMethodEnum httpMethodEnum : HttpMethodEnum.values()) {
+                RouteIndex routeIndex = ruleTable.get(httpMethodEnum);
+
+                if (!isNull(routeIndex)) {
+                    routeIndex.getConditionalMockResponses().forEach(conditionalMockResponse -> conditionalMockResponse.markRegistered(this.conditionsVersion));
+                }
+            }
+
+            return new RuleLayer(this.parent, ruleTable, this.hiddenIds, this.fetchCounters, this.conditionsVersion,
+                    this.sameOrNew(withJsonPathsOf(isNull(this.parent) ? NO_JSON_PATHS : this.parent.jsonPaths, ruleTable)));
+        }
+
+        RuleLayer newParent = this.parent.withRuleTableAt(depth, ruleTable);
+        // a reordered table below keeps the same paths, and this layer its own
+        JsonPath[] newJsonPaths = newParent.jsonPaths == this.parent.jsonPaths ? this.jsonPaths
+                : this.sameOrNew(withJsonPathsOf(newParent.jsonPaths, this.ruleTable));
+
+        return new RuleLayer(newParent, this.ruleTable, this.hiddenIds, this.fetchCounters, this.conditionsVersion, newJsonPaths);
+    }
+
+    public RuleLayer getParent() {
+        return this.parent;
+    }
+
+    public int getDepth() {
+        return this.depth;
+    }
+
+    public RuleTable getRuleTable() {
+        return this.ruleTable;
+    }
+
+    /**
+     * The json paths of the conditions of this layer and the layers below, at the time their responses are registered,
+     * to be extracted together from a json body. The paths of removed responses are kept, they are only extracted.
+     * Beyond {@link JsonPath#MAX_EXTRACTED_TOGETHER} paths, or for conditions added later, paths are extracted on their own.
+     * @return the distinct json paths, an empty array shared by the layers without json conditions
+     */
+    public JsonPath[] getJsonPaths() {
+        return this.jsonPaths;
+    }
+
+    private static JsonPath[] withJsonPathsOf(JsonPath[] jsonPaths, RuleTable ruleTable) {
+
+        JsonPath[] newJsonPaths = jsonPaths;
+        for (HttpMethodEnum httpMethodEnum : HttpMethodEnum.values()) {
+            RouteIndex routeIndex = ruleTable.get(httpMethodEnum);
+
+            if (!isNull(routeIndex)) {
+                newJsonPaths = withJsonPathsOf(newJsonPaths, routeIndex.getConditionalMockResponses());
+            }
+        }
+
+        return newJsonPaths;
+    }
+
+    /**
+     * @return the given paths followed by the new ones of the responses, the same array if there is none
+     */
+    private static JsonPath[] withJsonPathsOf(JsonPath[] jsonPaths, List<ConditionalMockResponse> conditionalMockResponses) {
+
+        List<JsonPath> addedJsonPaths = null;
+
+        for (ConditionalMockResponse conditionalMockResponse : conditionalMockResponses) {
+            for (MatchingCondition matchingCondition : conditionalMockResponse.getMatchingConditions()) {
+                if (matchingCondition.getRequestPartToTest() != RequestPartToTestEnum.JSON_PATH
+                        || jsonPaths.length + (isNull(addedJsonPaths) ? 0 : addedJsonPaths.size()) >= JsonPath.MAX_EXTRACTED_TOGETHER
+                        || contains(jsonPaths, matchingCondition.getField())
+                        || (!isNull(addedJsonPaths) && addedJsonPaths.stream().anyMatch(jsonPath -> jsonPath.getExpression().equals(matchingCondition.getField())))) {
+                    continue;
+                }
+
+                if (isNull(addedJsonPaths)) {
+                    addedJsonPaths = new ArrayList<>();
+                }
+                addedJsonPaths.add(matchingCondition.getJsonPath());
+            }
+        }
+
+        if (isNull(addedJsonPaths)) {
+            return jsonPaths;
+        }
+
+        JsonPath[] newJsonPaths = Arrays.copyOf(jsonPaths, jsonPaths.length + addedJsonPaths.size());
+        for (int i = 0; i < addedJsonPaths.size(); i++) {
+            newJsonPaths[jsonPaths.length + i] = addedJsonPaths.get(i);
+        }
+
+        return newJsonPaths;
+    }
+
+    private static boolean contains(JsonPath[] jsonPaths, String expression) {
+
+        for (JsonPath jsonPath : jsonPaths) {
+            if (jsonPath.getExpression().equals(expression)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the paths of this layer if they are the same, so the layers above can keep theirs
+     */
+    private JsonPath[] sameOrNew(JsonPath[] jsonPaths) {
+        return Arrays.equals(jsonPaths, this.jsonPaths) ? this.jsonPaths : jsonPaths;
+    }
+
+    /**
+     * @return a version that changes each time the conditions of a response of this layer or of the layers below change
+     */
+    public long getConditionsVersion() {
+
+        // the counters only grow, so their sum changes whenever one of them does
+        long version = 0;
+        for (RuleLayer ruleLayer = this; !isNull(ruleLayer); ruleLayer = ruleLayer.parent) {
+            version += ruleLayer.conditionsVersion.get();
+        }
+
+        return version;
+    }
+
+    /**
+     * @return true if neither this layer nor the layers below have a response
+     */
+    public boolean isEmpty() {
+        return this.empty;
+    }
+
+    /**
+     * @param httpMethodEnum the http method list of this layer only
+     * @param requestContext the request
+     * @param topRuleLayer the layer dispatching, whose hidden ids apply
+     * @return the first matching and visible response of this layer or null
+     */
+    public ConditionalMockResponse findFirst(HttpMethodEnum httpMethodEnum, RequestContext requestContext, RuleLayer topRuleLayer) {
+
+        RouteIndex routeIndex = this.ruleTable.get(httpMethodEnum);
+        return isNull(routeIndex) ? null : routeIndex.findFirst(requestContext, topRuleLayer == this ? null : topRuleLayer, this);
+    }
+
+    /**
+     * @param id a response id
+     * @param ownerRuleLayer the layer of the response
+     * @return true if a layer from this one down to the owner, excluded, hides the id
+     */
+    boolean hides(String id, RuleLayer ownerRuleLayer) {
+
+        for (RuleLayer ruleLayer = this; !isNull(ruleLayer) && ruleLayer != ownerRuleLayer; ruleLayer = ruleLayer.parent) {
+            if (!ruleLayer.hiddenIds.isEmpty() && ruleLayer.hiddenIds.contains(id)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param httpMethodEnum the http method list
+     * @return the visible responses of every layer, top layer first
+     */
+    public List<ConditionalMockResponse> getVisibleResponses(HttpMethodEnum httpMethodEnum) {
+
+        List<ConditionalMockResponse> visibleResponses = new ArrayList<>();
+
+        for (RuleLayer ruleLayer = this; !isNull(ruleLayer); ruleLayer = ruleLayer.parent) {
+            RouteIndex routeIndex = ruleLayer.ruleTable.get(httpMethodEnum);
+
+            if (isNull(routeIndex)) {
+                continue;
+            }
+
+            for (ConditionalMockResponse conditionalMockResponse : routeIndex.getConditionalMockResponses()) {
+                if (!this.hides(conditionalMockResponse.getId(), ruleLayer)) {
+                    visibleResponses.add(conditionalMockResponse);
+                }
+            }
+        }
+
+        return visibleResponses;
+    }
+
+    public void recordFetch(ConditionalMockResponse conditionalMockResponse) {
+
+        // get first: computeIfAbsent would allocate its lambda on every fetch
+        LongAdder fetchCounter = this.fetchCounters.get(conditionalMockResponse.getId());
+        if (isNull(fetchCounter)) {
+            fetchCounter = this.fetchCounters.computeIfAbsent(conditionalMockResponse.getId(), id -> new LongAdder());
+        }
+
+        fetchCounter.increment();
+    }
+
+    /**
+     * @param id the response id
+     * @return the number of fetches while this layer was on top
+     */
+    public int getFetchCounter(String id) {
+
+        LongAdder fetchCounter = this.fetchCounters.get(id);
+        return isNull(fetchCounter) ? 0 : fetchCounter.intValue();
+    }
+}
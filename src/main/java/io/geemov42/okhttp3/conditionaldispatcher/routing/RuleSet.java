@@ -0,0 +1,21 @@
+package io.geemov42.okhttp3.conditionaldispatcher.routing;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Frozen rules of a dispatcher, to be shared as the base of other dispatchers.
+ * Its responses, compiled once, are never copied: dispatchers add their own layer on top of it.
+ */
+public class RuleSet {
+
+    private final RuleLayer ruleLayer;
+
+    public RuleSet(RuleLayer ruleLayer) {
+        this.ruleLayer = requireNonNull(ruleLayer);
+    }
+
+    public RuleLayer getRuleLayer() {
+        return this.ruleLayer;
+    }
+}
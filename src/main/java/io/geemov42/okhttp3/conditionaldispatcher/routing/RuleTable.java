@@ -0,0 +1,102 @@
+package io.geemov42.okhttp3.conditionaldispatcher.routing;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.isNull;
+
+/**
+ * @author geemov42
+ * Immutable snapshot of every http method list.
+ * The dispatcher swaps a whole new table on each registration, so dispatching threads read it without lock.
+ */
+public class RuleTable {
+
+    public static final RuleTable EMPTY = new RuleTable(new RouteIndex[HttpMethodEnum.values().length]);
+
+    private final RouteIndex[] routeIndexes;
+
+    private RuleTable(RouteIndex[] routeIndexes) {
+        this.routeIndexes = routeIndexes;
+    }
+
+    public RuleTable withAdded(HttpMethodEnum httpMethodEnum, List<ConditionalMockResponse> conditionalMockResponses) {
+
+        RouteIndex[] copy = this.routeIndexes.clone();
+        copy[httpMethodEnum.ordinal()] = this.getOrEmpty(httpMethodEnum).withAdded(conditionalMockResponses);
+
+        return new RuleTable(copy);
+    }
+
+    /**
+     * @param httpMethodEnum the http method list
+     * @param routeIndex the new route index of the list, with responses
+     * @return a new table
+     */
+    RuleTable withRouteIndex(HttpMethodEnum httpMethodEnum, RouteIndex routeIndex) {
+
+        RouteIndex[] copy = this.routeIndexes.clone();
+        copy[httpMethodEnum.ordinal()] = routeIndex;
+
+        return new RuleTable(copy);
+    }
+
+    /**
+     * @param id the id of the responses to remove, from every http method list
+     * @return a new table, or this table if it has no response with this id
+     */
+    public RuleTable withRemoved(String id) {
+
+        RouteIndex[] copy = this.routeIndexes.clone();
+        boolean removed = false;
+
+        for (int i = 0; i < copy.length; i++) {
+            if (isNull(copy[i])) {
+                continue;
+            }
+
+            List<ConditionalMockResponse> kept = copy[i].getConditionalMockResponses().stream()
+                    .filter(conditionalMockResponse -> !id.equals(conditionalMockResponse.getId()))
+                    .collect(Collectors.toList());
+
+            if (kept.size() != copy[i].getConditionalMockResponses().size()) {
+                copy[i] = kept.isEmpty() ? null : RouteIndex.EMPTY.withAdded(kept);
+                removed = true;
+            }
+        }
+
+        return removed ? new RuleTable(copy) : this;
+    }
+
+    public boolean isEmpty() {
+
+        for (RouteIndex routeIndex : this.routeIndexes) {
+            if (!isNull(routeIndex)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param httpMethodEnum the http method list
+     * @return the route index or null if nothing was registered for this method
+     */
+    public RouteIndex get(HttpMethodEnum httpMethodEnum) {
+        return this.routeIndexes[httpMethodEnum.ordinal()];
+    }
+
+    public boolean contains(HttpMethodEnum httpMethodEnum) {
+        return !isNull(this.get(httpMethodEnum));
+    }
+
+    private RouteIndex getOrEmpty(HttpMethodEnum httpMethodEnum) {
+
+        RouteIndex routeIndex = this.get(httpMethodEnum);
+        return isNull(routeIndex) ? RouteIndex.EMPTY : routeIndex;
+    }
+}
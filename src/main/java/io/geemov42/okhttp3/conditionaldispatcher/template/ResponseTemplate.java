@@ -0,0 +1,202 @@
+package io.geemov42.okhttp3.conditionaldispatcher.template;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.request.JsonPath;
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+import okio.Buffer;
+import okio.ByteString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum.*;
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * Response body echoing request parts, parsed once into literal segments and placeholders:
+ * <ul>
+ *     <li>{{path.1}} or {{path.name}}: a group of the path regex</li>
+ *     <li>{{query.name}}: a query parameter</li>
+ *     <li>{{header.name}}: a header</li>
+ *     <li>{{body.person.id}}: a field of a json body, see {@link JsonPath}</li>
+ * </ul>
+ * Rendering copies the utf-8 bytes of the literals, encoded at compile time, and the values found in the request.
+ * A value absent from the request renders as an empty string. Values are not escaped.
+ */
+public class ResponseTemplate {
+
+    private static final String OPENING = "{{";
+    private static final String CLOSING = "}}";
+
+    private final String template;
+    private final Segment[] segments;
+    private final boolean pathGroupsUsed;
+
+    private ResponseTemplate(String template, Segment[] segments) {
+
+        this.template = template;
+        this.segments = segments;
+
+        boolean pathGroups = false;
+        for (Segment segment : segments) {
+            pathGroups |= segment.requestPart == PATH;
+        }
+        this.pathGroupsUsed = pathGroups;
+    }
+
+    /**
+     * @param template the body with placeholders
+     * @param pathPattern the path regex of the response, whose groups placeholders can refer to
+     * @return the compiled template
+     */
+    public static ResponseTemplate compile(String template, Pattern pathPattern) {
+
+        requireNonNull(template);
+        requireNonNull(pathPattern);
+
+        List<Segment> segments = new ArrayList<>();
+        int position = 0;
+
+        while (position < template.length()) {
+            int opening = template.indexOf(OPENING, position);
+
+            if (opening < 0) {
+                segments.add(Segment.literal(template.substring(position)));
+                break;
+            }
+
+            int closing = template.indexOf(CLOSING, opening + OPENING.length());
+            if (closing < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder at " + opening + " in template");
+            }
+
+            if (opening > position) {
+                segments.add(Segment.literal(template.substring(position, opening)));
+            }
+
+            segments.add(Segment.placeholder(template.substring(opening + OPENING.length(), closing).trim(), pathPattern));
+            position = closing + CLOSING.length();
+        }
+
+        return new ResponseTemplate(template, segments.toArray(new Segment[0]));
+    }
+
+    public String getTemplate() {
+        return this.template;
+    }
+
+    /**
+     * @param requestContext the request
+     * @param pathPattern the path regex given at compile time
+     * @param sink the buffer of the response body
+     */
+    public void render(RequestContext requestContext, Pattern pathPattern, Buffer sink) {
+
+        Matcher pathMatcher = null;
+        if (this.pathGroupsUsed) {
+            pathMatcher = pathPattern.matcher(requestContext.getPath());
+
+            if (!pathMatcher.find()) {
+                pathMatcher = null;
+            }
+        }
+
+        for (Segment segment : this.segments) {
+            if (!isNull(segment.literal)) {
+                sink.write(segment.literal);
+                continue;
+            }
+
+            String value = segment.extractValue(requestContext, pathMatcher);
+            if (!isNull(value)) {
+                sink.writeUtf8(value);
+            }
+        }
+    }
+
+    private static class Segment {
+
+        private final ByteString literal;
+        private final RequestPartToTestEnum requestPart;
+        private final String field;
+        private final int groupIndex;
+        private final JsonPath jsonPath;
+
+        private Segment(ByteString literal, RequestPartToTestEnum requestPart, String field, int groupIndex, JsonPath jsonPath) {
+
+            this.literal = literal;
+            this.requestPart = requestPart;
+            this.field = field;
+            this.groupIndex = groupIndex;
+            this.jsonPath = jsonPath;
+        }
+
+        private static Segment literal(String text) {
+            return new Segment(ByteString.encodeUtf8(text), null, null, -1, null);
+        }
+
+        private static Segment placeholder(String expression, Pattern pathPattern) {
+
+            int dot = expression.indexOf('.');
+            if (dot <= 0 || dot == expression.length() - 1) {
+                throw new IllegalArgumentException("Invalid placeholder {{" + expression + "}}, expected part.field");
+            }
+
+            String part = expression.substring(0, dot);
+            String field = expression.substring(dot + 1);
+
+            switch (part) {
+                case "query":
+                    return new Segment(null, PARAMETER, field, -1, null);
+                case "header":
+                    return new Segment(null, HEADER, field, -1, null);
+                case "body":
+                    return new Segment(null, BODY, field, -1, JsonPath.compile(field));
+                case "path":
+                    return pathGroup(expression, field, pathPattern);
+                default:
+                    throw new IllegalArgumentException("Unknown request part in placeholder {{" + expression + "}}, expected path, query, header or body");
+            }
+        }
+
+        private static Segment pathGroup(String expression, String field, Pattern pathPattern) {
+
+            if (!field.chars().allMatch(Character::isDigit)) {
+                if (!pathPattern.pattern().contains("(?<" + field + ">")) {
+                    throw new IllegalArgumentException("No group " + field + " in path regex for placeholder {{" + expression + "}}");
+                }
+
+                return new Segment(null, PATH, field, -1, null);
+            }
+
+            int groupIndex = Integer.parseInt(field);
+            if (groupIndex > pathPattern.matcher("").groupCount()) {
+                throw new IllegalArgumentException("No group " + groupIndex + " in path regex for placeholder {{" + expression + "}}");
+            }
+
+            return new Segment(null, PATH, null, groupIndex, null);
+        }
+
+        private String extractValue(RequestContext requestContext, Matcher pathMatcher) {
+
+            switch (this.requestPart) {
+                case PARAMETER:
+                    return requestContext.getQueryParameter(this.field);
+                case HEADER:
+                    return requestContext.getHeader(this.field);
+                case BODY:
+                    return requestContext.getJsonValue(this.jsonPath);
+                default:
+                    if (isNull(pathMatcher)) {
+                        return null;
+                    }
+
+                    return isNull(this.field) ? pathMatcher.group(this.groupIndex) : pathMatcher.group(this.field);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package io.geemov42.okhttp3.conditionaldispatcher.tenant;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.TenantDiscriminatorKindEnum;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.StringUtils.requireNonNullAndNotBlank;
+import static java.util.Objects.isNull;
+
+/**
+ * @author geemov42
+ * Read the tenant of a request, from a header or from the first path segment.
+ */
+public class TenantDiscriminator {
+
+    private final TenantDiscriminatorKindEnum kind;
+    private final String headerName;
+
+    private TenantDiscriminator(TenantDiscriminatorKindEnum kind, String headerName) {
+
+        this.kind = kind;
+        this.headerName = headerName;
+    }
+
+    /**
+     * @param headerName the header holding the tenant, case insensitive
+     * @return a discriminator reading the first value of the header
+     */
+    public static TenantDiscriminator header(String headerName) {
+        return new TenantDiscriminator(TenantDiscriminatorKindEnum.HEADER, requireNonNullAndNotBlank(headerName));
+    }
+
+    /**
+     * A request to /tenant/hasConsent belongs to "tenant" and is matched by its rules as /hasConsent
+     * @return a discriminator reading the first path segment, undecoded
+     */
+    public static TenantDiscriminator pathPrefix() {
+        return new TenantDiscriminator(TenantDiscriminatorKindEnum.PATH_PREFIX, null);
+    }
+
+    public TenantDiscriminatorKindEnum getKind() {
+        return this.kind;
+    }
+
+    /**
+     * @param recordedRequest the request
+     * @return the tenant, or null if the request does not carry one
+     */
+    public String tenantOf(RecordedRequest recordedRequest) {
+
+        return this.kind == TenantDiscriminatorKindEnum.HEADER
+                ? this.headerValue(recordedRequest.getHeaders())
+                : firstPathSegment(recordedRequest.getPath());
+    }
+
+    private String headerValue(Headers headers) {
+
+        // like the request context, a scan does not allocate
+        for (int i = 0; i < headers.size(); i++) {
+            if (headers.name(i).equalsIgnoreCase(this.headerName)) {
+                return headers.value(i);
+            }
+        }
+
+        return null;
+    }
+
+    private static String firstPathSegment(String path) {
+
+        if (isNull(path) || path.length() < 2 || path.charAt(0) != '/') {
+            return null;
+        }
+
+        int end = 1;
+        while (end < path.length() && path.charAt(end) != '/' && path.charAt(end) != '?') {
+            end++;
+        }
+
+        return end == 1 ? null : path.substring(1, end);
+    }
+}
@@ -0,0 +1,125 @@
+package io.geemov42.okhttp3.conditionaldispatcher.tenant;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.TenantDiscriminatorKindEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.routing.RuleSet;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.StringUtils.requireNonNullAndNotBlank;
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author geemov42
+ * One mock web server shared by parallel test workers: each request is dispatched to the partition of its tenant.
+ * A partition is a conditional dispatcher with its own responses, queue, listeners and fetch counts,
+ * layered on a shared rule set that all partitions read without copying it.
+ * Fetch limits are checked against the fetches of the partition. The counters held by a shared response object,
+ * its own fetch counter and the per key counts of a keyed response, count the fetches of every partition:
+ * read the counts of a partition with {@link ConditionalDispatcher#getLayerFetchCounter(String)}.
+ * Requests without tenant, or of a tenant without partition, go to the default partition.
+ * Partitions are created and removed without lock, while other tenants keep dispatching.
+ */
+public class TenantDispatcher extends Dispatcher {
+
+    private final TenantDiscriminator tenantDiscriminator;
+    private final RuleSet sharedRuleSet;
+    private final ConditionalDispatcher defaultPartition;
+    private final ConcurrentHashMap<String, Partition> partitionsByTenant = new ConcurrentHashMap<>();
+
+    public TenantDispatcher(TenantDiscriminator tenantDiscriminator) {
+        this(tenantDiscriminator, new ConditionalDispatcher().toRuleSet());
+    }
+
+    /**
+     * @param tenantDiscriminator reads the tenant of a request
+     * @param sharedRuleSet the responses of every partition, checked after the ones of the partition
+     */
+    public TenantDispatcher(TenantDiscriminator tenantDiscriminator, RuleSet sharedRuleSet) {
+
+        this.tenantDiscriminator = requireNonNull(tenantDiscriminator);
+        this.sharedRuleSet = requireNonNull(sharedRuleSet);
+        this.defaultPartition = new ConditionalDispatcher(sharedRuleSet);
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest recordedRequest) throws InterruptedException {
+
+        String tenant = this.tenantDiscriminator.tenantOf(recordedRequest);
+        Partition partition = isNull(tenant) ? null : this.partitionsByTenant.get(tenant);
+
+        if (isNull(partition)) {
+            return this.defaultPartition.dispatch(recordedRequest);
+        }
+
+        return partition.conditionalDispatcher.dispatch(recordedRequest, partition.pathPrefix);
+    }
+
+    /**
+     * Get the partition of the tenant, created on first use in constant time whatever the size of the shared rule set
+     * @param tenant the tenant
+     * @return the dispatcher of the tenant, to add its responses and read its counters
+     */
+    public ConditionalDispatcher partition(String tenant) {
+
+        requireNonNullAndNotBlank(tenant);
+
+        Partition partition = this.partitionsByTenant.get(tenant);
+        if (isNull(partition)) {
+            // built outside of the map, two racing workers of the same tenant simply keep the first one published
+            Partition created = new Partition(new ConditionalDispatcher(this.sharedRuleSet),
+                    this.tenantDiscriminator.getKind() == TenantDiscriminatorKindEnum.PATH_PREFIX ? "/" + tenant : null);
+            partition = this.partitionsByTenant.putIfAbsent(tenant, created);
+
+            if (isNull(partition)) {
+                partition = created;
+            }
+        }
+
+        return partition.conditionalDispatcher;
+    }
+
+    /**
+     * Requests of the tenant go to the default partition again; requests being dispatched end on the removed one
+     * @param tenant the tenant
+     * @return the removed dispatcher, or null if the tenant had no partition
+     */
+    public ConditionalDispatcher removePartition(String tenant) {
+
+        Partition partition = this.partitionsByTenant.remove(requireNonNull(tenant));
+        return isNull(partition) ? null : partition.conditionalDispatcher;
+    }
+
+    public Set<String> getTenants() {
+        return Collections.unmodifiableSet(this.partitionsByTenant.keySet());
+    }
+
+    /**
+     * @return the dispatcher of the requests without partition
+     */
+    public ConditionalDispatcher getDefaultPartition() {
+        return this.defaultPartition;
+    }
+
+    public RuleSet getSharedRuleSet() {
+        return this.sharedRuleSet;
+    }
+
+    private static class Partition {
+
+        private final ConditionalDispatcher conditionalDispatcher;
+        private final String pathPrefix;
+
+        private Partition(ConditionalDispatcher conditionalDispatcher, String pathPrefix) {
+
+            this.conditionalDispatcher = conditionalDispatcher;
+            this.pathPrefix = pathPrefix;
+        }
+    }
+}
@@ -1,9 +1,21 @@
 package io.geemov42.okhttp3.conditionaldispatcher.utils;
 
+import io.geemov42.okhttp3.conditionaldispatcher.body.ResponseBodySource;
+import io.geemov42.okhttp3.conditionaldispatcher.body.ResponseBodySources;
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatchers;
+import io.geemov42.okhttp3.conditionaldispatcher.recording.CaptureIndex;
+import io.geemov42.okhttp3.conditionaldispatcher.recording.ReplayConditionalMockResponse;
 import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import io.geemov42.okhttp3.conditionaldispatcher.response.KeyPart;
+import io.geemov42.okhttp3.conditionaldispatcher.response.KeyedConditionalMockResponse;
 import io.geemov42.okhttp3.conditionaldispatcher.response.MatchingCondition;
+import io.geemov42.okhttp3.conditionaldispatcher.response.TemplatedConditionalMockResponse;
 import okhttp3.mockwebserver.MockResponse;
 
+import java.nio.file.Path;
+import java.util.List;
+
 import static io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum.*;
 
 public class ConditionalMockResponseHelper {
@@ -19,6 +31,15 @@ public class ConditionalMockResponseHelper {
                 .build();
     }
 
+    public static MatchingCondition param(String field, ValueMatcher valueMatcher) {
+
+        return MatchingCondition.builder()
+                .requestPartToTest(PARAMETER)
+                .valueMatcher(valueMatcher)
+                .field(field)
+                .build();
+    }
+
     public static MatchingCondition header(String field, String valueRegex) {
 
         return MatchingCondition.builder()
@@ -28,6 +49,15 @@ public class ConditionalMockResponseHelper {
                 .build();
     }
 
+    public static MatchingCondition header(String field, ValueMatcher valueMatcher) {
+
+        return MatchingCondition.builder()
+                .requestPartToTest(HEADER)
+                .valueMatcher(valueMatcher)
+                .field(field)
+                .build();
+    }
+
     public static MatchingCondition body(String valueRegex) {
 
         return MatchingCondition.builder()
@@ -36,6 +66,39 @@ public class ConditionalMockResponseHelper {
                 .build();
     }
 
+    public static MatchingCondition body(ValueMatcher valueMatcher) {
+
+        return MatchingCondition.builder()
+                .requestPartToTest(BODY)
+                .valueMatcher(valueMatcher)
+                .build();
+    }
+
+    public static MatchingCondition bodyContains(String valueLiteral) {
+
+        return MatchingCondition.builder()
+                .requestPartToTest(BODY)
+                .valueLiteral(valueLiteral)
+                .build();
+    }
+
+    /**
+     * @param jsonPath the path of the value in a json body, like $.customer.id
+     * @param expectedValue the whole value, a string being compared unescaped
+     */
+    public static MatchingCondition jsonPath(String jsonPath, String expectedValue) {
+        return jsonPath(jsonPath, ValueMatchers.exact(expectedValue));
+    }
+
+    public static MatchingCondition jsonPath(String jsonPath, ValueMatcher valueMatcher) {
+
+        return MatchingCondition.builder()
+                .requestPartToTest(JSON_PATH)
+                .valueMatcher(valueMatcher)
+                .field(jsonPath)
+                .build();
+    }
+
     public static ConditionalMockResponse conditionalMockResponse(String uniqueId, String pathRegex, MockResponse mockedResponse) {
 
         return ConditionalMockResponse.builder()
@@ -54,4 +117,107 @@ public class ConditionalMockResponseHelper {
                 .mockResponse(mockedResponse)
                 .build();
     }
+
+    public static ConditionalMockResponse conditionalMockResponse(String uniqueId, ValueMatcher pathMatcher, MockResponse mockedResponse) {
+
+        return ConditionalMockResponse.builder()
+                .id(uniqueId)
+                .pathMatcher(pathMatcher)
+                .mockResponse(mockedResponse)
+                .build();
+    }
+
+    /**
+     * @param mockedResponse the status and headers, without body
+     * @param responseBodySource the body, produced when served
+     */
+    public static ConditionalMockResponse conditionalMockResponse(String uniqueId, String pathRegex, MockResponse mockedResponse, ResponseBodySource responseBodySource) {
+
+        return ConditionalMockResponse.builder()
+                .id(uniqueId)
+                .pathRegex(pathRegex)
+                .mockResponse(mockedResponse)
+                .responseBodySource(responseBodySource)
+                .build();
+    }
+
+    /**
+     * For a MockWebServer serving HTTP/2 only: the body is written to the stream while generated, in constant memory
+     * @param mockedResponse the status, headers and throttle, without body
+     * @param responseBodySource the body, generated when served
+     * @param chunkSize the bytes flushed at once, 0 to let the stream decide
+     */
+    public static ConditionalMockResponse streamedMockResponse(String uniqueId, String pathRegex, MockResponse mockedResponse, ResponseBodySource responseBodySource, int chunkSize) {
+
+        return ConditionalMockResponse.builder()
+                .id(uniqueId)
+                .pathRegex(pathRegex)
+                .mockResponse(mockedResponse)
+                .responseBodySource(responseBodySource)
+                .bodyChunkSize(chunkSize)
+                .bodyStreamed(true)
+                .build();
+    }
+
+    /**
+     * @param mockedResponse the status, headers and throttle, without body
+     * @param responseBodySource the body, generated when served
+     * @param chunkSize the maximum size of a chunk of the chunked transfer encoding
+     */
+    public static ConditionalMockResponse chunkedMockResponse(String uniqueId, String pathRegex, MockResponse mockedResponse, ResponseBodySource responseBodySource, int chunkSize) {
+
+        return ConditionalMockResponse.builder()
+                .id(uniqueId)
+                .pathRegex(pathRegex)
+                .mockResponse(mockedResponse)
+                .responseBodySource(responseBodySource)
+                .bodyChunkSize(chunkSize)
+                .build();
+    }
+
+    public static ResponseBodySource fileBody(Path path) {
+        return ResponseBodySources.file(path);
+    }
+
+    public static ResponseBodySource sharedBody(String utf8) {
+        return ResponseBodySources.shared(utf8);
+    }
+
+    public static ResponseBodySource gzipBody(ResponseBodySource responseBodySource) {
+        return ResponseBodySources.gzip(responseBodySource);
+    }
+
+    /**
+     * @param mockedResponse the status and headers, without body
+     * @param bodyTemplate the body, with placeholders like {{path.1}}, {{query.name}}, {{header.name}} or {{body.json.path}}
+     */
+    public static TemplatedConditionalMockResponse templatedMockResponse(String uniqueId, String pathRegex, MockResponse mockedResponse, String bodyTemplate) {
+
+        return TemplatedConditionalMockResponse.templatedBuilder()
+                .id(uniqueId)
+                .pathRegex(pathRegex)
+                .mockResponse(mockedResponse)
+                .bodyTemplate(bodyTemplate)
+                .build();
+    }
+
+    public static KeyedConditionalMockResponse keyedMockResponse(String uniqueId, String pathRegex, KeyPart... keyParts) {
+
+        return KeyedConditionalMockResponse.keyedBuilder()
+                .id(uniqueId)
+                .pathRegex(pathRegex)
+                .keyParts(List.of(keyParts))
+                .build();
+    }
+
+    /**
+     * @param captureIndex the capture file to replay, every recorded path being replayed
+     */
+    public static ReplayConditionalMockResponse replayMockResponse(String uniqueId, CaptureIndex captureIndex) {
+
+        return ReplayConditionalMockResponse.replayBuilder()
+                .id(uniqueId)
+                .captureIndex(captureIndex)
+                .build();
+    }
 }
@@ -0,0 +1,379 @@
+package io.geemov42.okhttp3.conditionaldispatcher.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.isNull;
+
+/**
+ * @author geemov42
+ * Static analysis helpers on regex sources, used to build indexes without running the regex
+ */
+public class RegexUtils {
+
+    private static final String ZERO_WIDTH_OR_ANY = ".^$";
+    private static final String QUANTIFIERS = "*+?{";
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    private RegexUtils(){}
+
+    /**
+     * Extract the longest literal that every text found by the regex must contain.
+     * The analysis is conservative: when in doubt (alternation, inline flags, ...) it returns null.
+     * @param regex the regex source
+     * @return the required literal or null if none can be proven
+     */
+    public static String requiredLiteral(String regex) {
+
+        if (isNull(regex) || regex.contains("(?") || hasTopLevelAlternation(regex)) {
+            return null;
+        }
+
+        String best = "";
+        StringBuilder current = new StringBuilder();
+        int length = regex.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = regex.charAt(i);
+            char literal;
+            int next;
+
+            if (c == '\\') {
+                if (i + 1 >= length) {
+                    break;
+                }
+
+                char escaped = regex.charAt(i + 1);
+                if (escaped == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    String quoted = end < 0 ? regex.substring(i + 2) : regex.substring(i + 2, end);
+                    next = end < 0 ? length : end + 2;
+
+                    if (quoted.isEmpty()) {
+                        i = next;
+                        continue;
+                    }
+
+                    current.append(quoted, 0, quoted.length() - 1);
+                    literal = quoted.charAt(quoted.length() - 1);
+                } else if (Character.isLetterOrDigit(escaped)) {
+                    best = longest(best, current);
+                    i = skipQuantifier(regex, skipEscape(regex, i));
+                    continue;
+                } else {
+                    literal = escaped;
+                    next = i + 2;
+                }
+            } else if (c == '[') {
+                best = longest(best, current);
+                i = skipQuantifier(regex, skipCharacterClass(regex, i));
+                continue;
+            } else if (c == '(') {
+                best = longest(best, current);
+                i = skipQuantifier(regex, skipGroup(regex, i));
+                continue;
+            } else if (ZERO_WIDTH_OR_ANY.indexOf(c) >= 0 || QUANTIFIERS.indexOf(c) >= 0) {
+                best = longest(best, current);
+                i = skipQuantifier(regex, i + 1);
+                continue;
+            } else {
+                literal = c;
+                next = i + 1;
+            }
+
+            char quantifier = next < length ? regex.charAt(next) : 0;
+
+            if (quantifier == '+') {
+                current.append(literal);
+                best = longest(best, current);
+                i = skipQuantifier(regex, next);
+            } else if (QUANTIFIERS.indexOf(quantifier) >= 0) {
+                best = longest(best, current);
+                i = skipQuantifier(regex, next);
+            } else {
+                current.append(literal);
+                i = next;
+            }
+        }
+
+        best = longest(best, current);
+
+        return best.isEmpty() ? null : best;
+    }
+
+    /**
+     * @param regex the regex source
+     * @return the text the whole regex matches if it is a pure literal (plain or escaped chars, quoted section), else null
+     */
+    public static String literalOf(String regex) {
+
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+
+            if (c != '\\') {
+                if (METACHARACTERS.indexOf(c) >= 0) {
+                    return null;
+                }
+
+                literal.append(c);
+                i++;
+                continue;
+            }
+
+            if (i + 1 >= regex.length()) {
+                return null;
+            }
+
+            char escaped = regex.charAt(i + 1);
+            if (escaped == 'Q') {
+                int end = regex.indexOf("\\E", i + 2);
+                literal.append(end < 0 ? regex.substring(i + 2) : regex.substring(i + 2, end));
+                i = end < 0 ? regex.length() : end + 2;
+            } else if (Character.isLetterOrDigit(escaped)) {
+                return null;
+            } else {
+                literal.append(escaped);
+                i += 2;
+            }
+        }
+
+        return literal.toString();
+    }
+
+    /**
+     * @param regex the regex source
+     * @return the literals of a group made only of literal alternatives, like (a|b) or (?:a|b), else null
+     */
+    public static List<String> literalAlternatives(String regex) {
+
+        int start;
+        if (regex.startsWith("(?:")) {
+            start = 3;
+        } else if (regex.startsWith("(") && !regex.startsWith("(?")) {
+            start = 1;
+        } else {
+            return null;
+        }
+
+        if (skipGroup(regex, 0) != regex.length() || !regex.endsWith(")")) {
+            return null;
+        }
+
+        List<String> alternatives = new ArrayList<>();
+        String inner = regex.substring(start, regex.length() - 1);
+        int alternativeStart = 0;
+
+        for (int i = 0; i <= inner.length(); i++) {
+            boolean separator = i == inner.length() || (inner.charAt(i) == '|' && !isEscaped(inner, i));
+
+            if (separator) {
+                String literal = literalOf(inner.substring(alternativeStart, i));
+                if (isNull(literal)) {
+                    return null;
+                }
+
+                alternatives.add(literal);
+                alternativeStart = i + 1;
+            }
+        }
+
+        return alternatives;
+    }
+
+    /**
+     * @param regex the regex source
+     * @param index the position of a char
+     * @return true if the char is preceded by an odd number of backslashes
+     */
+    public static boolean isEscaped(String regex, int index) {
+
+        int backslashes = 0;
+        for (int i = index - 1; i >= 0 && regex.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+
+        return backslashes % 2 == 1;
+    }
+
+    private static String longest(String best, StringBuilder current) {
+
+        String candidate = current.toString();
+        current.setLength(0);
+
+        return candidate.length() > best.length() ? candidate : best;
+    }
+
+    private static boolean hasTopLevelAlternation(String regex) {
+
+        int depth = 0;
+        int i = 0;
+
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+
+            if (c == '[') {
+                i = skipCharacterClass(regex, i);
+                continue;
+            }
+
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+
+            i++;
+        }
+
+        return false;
+    }
+
+    private static int skipCharacterClass(String regex, int start) {
+
+        int depth = 0;
+        int i = start;
+
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+
+            if (c == '[') {
+                depth++;
+                i++;
+
+                // a closing bracket right after the opening one (or after ^) is a literal
+                if (i < regex.length() && regex.charAt(i) == '^') {
+                    i++;
+                }
+                if (i < regex.length() && regex.charAt(i) == ']') {
+                    i++;
+                }
+                continue;
+            }
+
+            if (c == ']' && --depth == 0) {
+                return i + 1;
+            }
+
+            i++;
+        }
+
+        return regex.length();
+    }
+
+    private static int skipGroup(String regex, int start) {
+
+        int depth = 0;
+        int i = start;
+
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+
+            if (c == '[') {
+                i = skipCharacterClass(regex, i);
+                continue;
+            }
+
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+
+            i++;
+        }
+
+        return regex.length();
+    }
+
+    /**
+     * @return the position after the escape starting at the backslash, with its payload: hex or unicode digits, octal digits,
+     * control char, group name, property or back reference digits, never to be read as literal text
+     */
+    private static int skipEscape(String regex, int start) {
+
+        char escaped = regex.charAt(start + 1);
+        int i = start + 2;
+
+        switch (escaped) {
+            case 'x':
+                return i < regex.length() && regex.charAt(i) == '{' ? closing(regex, i, '}') : Math.min(i + 2, regex.length());
+            case 'u':
+                return Math.min(i + 4, regex.length());
+            case 'c':
+                return Math.min(i + 1, regex.length());
+            case 'k':
+                return i < regex.length() && regex.charAt(i) == '<' ? closing(regex, i, '>') : i;
+            case 'p':
+            case 'P':
+            case 'N':
+                return i < regex.length() && regex.charAt(i) == '{' ? closing(regex, i, '}') : Math.min(i + 1, regex.length());
+            case '0':
+                // up to 3 octal digits
+                int end = Math.min(i + 3, regex.length());
+                while (i < end && regex.charAt(i) >= '0' && regex.charAt(i) <= '7') {
+                    i++;
+                }
+                return i;
+            default:
+                // a back reference takes every following digit it can
+                while (Character.isDigit(escaped) && i < regex.length() && Character.isDigit(regex.charAt(i))) {
+                    i++;
+                }
+                return i;
+        }
+    }
+
+    private static int closing(String regex, int start, char closing) {
+
+        int end = regex.indexOf(closing, start);
+        return end < 0 ? regex.length() : end + 1;
+    }
+
+    private static int skipQuantifier(String regex, int start) {
+
+        int i = start;
+
+        if (i >= regex.length()) {
+            return i;
+        }
+
+        char c = regex.charAt(i);
+
+        if (c == '*' || c == '+' || c == '?') {
+            i++;
+        } else if (c == '{') {
+            int end = regex.indexOf('}', i);
+            i = end < 0 ? regex.length() : end + 1;
+        } else {
+            return i;
+        }
+
+        // lazy or possessive modifier
+        if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+            i++;
+        }
+
+        return i;
+    }
+}
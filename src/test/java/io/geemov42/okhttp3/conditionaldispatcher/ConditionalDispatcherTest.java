@@ -2,26 +2,43 @@ package io.geemov42.okhttp3.conditionaldispatcher;
 
 import com.google.gson.Gson;
 import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import io.geemov42.okhttp3.conditionaldispatcher.response.KeyPart;
+import io.geemov42.okhttp3.conditionaldispatcher.response.KeyedConditionalMockResponse;
+import okhttp3.Headers;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.COMMON;
 import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.GET;
-import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.conditionalMockResponse;
-import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.param;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.POST;
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatchers.exact;
+import static io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatchers.oneOf;
+import static io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatchers.prefix;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.*;
 
 class ConditionalDispatcherTest {
 
@@ -161,6 +178,162 @@ class ConditionalDispatcherTest {
         Assertions.assertSame(0, getMockResponse.get("get_hasConsent").getFetchCounter());
     }
 
+    @Test
+    void shouldMatchHeaderAndBody_whenBodyIsLongerThanItsSummary() throws InterruptedException {
+
+        String body = "{\"padding\":\"" + "x".repeat(200) + "\",\"personIdentifier\":\"85047\"}";
+
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher();
+        conditionalDispatcher.addResponseForMethod(POST, List.of(
+                conditionalMockResponse("post_consent", "\\/consent", new MockResponse().setResponseCode(201))
+                        .addConditions(header("x-tenant", "^acme$"), body("\"personIdentifier\":\"85047\""))
+        ));
+
+        MockResponse mockResponse = conditionalDispatcher.dispatch(recordedRequest(
+                "POST", "/consent", Headers.of("X-Tenant", "acme"), new Buffer().writeUtf8(body)
+        ));
+
+        Assertions.assertEquals("HTTP/1.1 201 OK", mockResponse.getStatus());
+        Assertions.assertSame(1, conditionalDispatcher.getConditionalMockResponseMapForMethod(POST).get("post_consent").getFetchCounter());
+    }
+
+    @Test
+    void shouldServeResponseOfTheKey_whenKeyedResponseHasManyKeys() throws InterruptedException {
+
+        KeyedConditionalMockResponse keyedMockResponse = keyedMockResponse("get_hasConsent", "^/hasConsent", KeyPart.param("personIdentifier"), KeyPart.header("X-Tenant"));
+        for (int ssin = 0; ssin < 50_000; ssin++) {
+            keyedMockResponse.putResponse(new MockResponse().setBody(String.valueOf(ssin)), String.valueOf(ssin), "acme");
+        }
+
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher();
+        conditionalDispatcher.addResponseForMethod(GET, List.of(keyedMockResponse))
+                .addResponse(List.of(conditionalMockResponse("common_hasConsent", "^/hasConsent", new MockResponse().setBody("common"))));
+
+        Headers headers = Headers.of("X-Tenant", "acme");
+        Assertions.assertEquals("12345", this.dispatchBody(conditionalDispatcher, "/hasConsent?personIdentifier=12345", headers));
+        Assertions.assertEquals("12345", this.dispatchBody(conditionalDispatcher, "/hasConsent?personIdentifier=12345", headers));
+        Assertions.assertEquals("12", this.dispatchBody(conditionalDispatcher, "/hasConsent?personIdentifier=12", headers));
+        Assertions.assertEquals("common", this.dispatchBody(conditionalDispatcher, "/hasConsent?personIdentifier=99989845", headers));
+        Assertions.assertEquals("common", this.dispatchBody(conditionalDispatcher, "/hasConsent?personIdentifier=12345", Headers.of()));
+
+        Assertions.assertEquals(2, keyedMockResponse.getFetchCounter("12345", "acme"));
+        Assertions.assertEquals(Map.of(List.of("12345", "acme"), 2, List.of("12", "acme"), 1), keyedMockResponse.getFetchCountersByKey());
+        Assertions.assertSame(3, conditionalDispatcher.getConditionalMockResponseMapForMethod(GET).get("get_hasConsent").getFetchCounter());
+    }
+
+    @Test
+    void shouldCountEveryFetch_whenDispatchingConcurrentlyWhileAddingResponses() throws Exception {
+
+        String ssin = "85047";
+        int threads = 8;
+        int requestsPerThread = 2_000;
+
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher();
+        conditionalDispatcher.addResponseForMethod(GET, List.of(
+                this.createConditionalMockResponse("get_hasConsent", ssin, ssin)
+        ));
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int thread = 0; thread < threads; thread++) {
+                futures.add(executorService.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < requestsPerThread; i++) {
+                        conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent?personIdentifier=" + ssin));
+                    }
+                    return null;
+                }));
+            }
+
+            futures.add(executorService.submit(() -> {
+                start.await();
+                for (int i = 0; i < 500; i++) {
+                    conditionalDispatcher.addResponseForMethod(GET, List.of(
+                            this.createConditionalMockResponse("get_other_" + i, ssin, "99989845")
+                    ));
+                }
+                return null;
+            }));
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        Map<String, ConditionalMockResponse> getMockResponse = conditionalDispatcher.getConditionalMockResponseMapForMethod(GET);
+        Assertions.assertEquals(501, getMockResponse.size());
+        Assertions.assertEquals(threads * requestsPerThread, getMockResponse.get("get_hasConsent").getFetchCounter());
+    }
+
+    @Test
+    void shouldServeCommonResponse_whenMethodIsNotAKnownHttpMethod() throws InterruptedException {
+
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher();
+        conditionalDispatcher.addResponseForMethod(GET, List.of(conditionalMockResponse("get_files", "^/files", new MockResponse().setBody("get"))))
+                .addResponse(List.of(conditionalMockResponse("common_files", "^/files", new MockResponse().setBody("common"))));
+
+        Assertions.assertEquals("common", Objects.requireNonNull(conditionalDispatcher.dispatch(recordedRequest("PROPFIND", "/files")).getBody()).readUtf8());
+        Assertions.assertEquals("get", Objects.requireNonNull(conditionalDispatcher.dispatch(recordedRequest("get", "/files")).getBody()).readUtf8());
+    }
+
+    @Test
+    void shouldNotAllocate_whenDispatchingToAMatchingResponse() throws InterruptedException {
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled());
+
+        List<ConditionalMockResponse> conditionalMockResponses = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            conditionalMockResponses.add(conditionalMockResponse("post_resource_" + i, prefix("/api/resources/" + i + "?"), new MockResponse())
+                    .addConditions(param("personIdentifier", exact("85047")), header("X-Tenant", oneOf("acme", "globex")), bodyContains("\"consent\":true")));
+        }
+
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher();
+        conditionalDispatcher.addResponseForMethod(POST, conditionalMockResponses)
+                .addResponse(List.of(conditionalMockResponse("common_resource", "^/api/resources/", new MockResponse())));
+
+        Headers headers = Headers.of("Content-Type", "application/json", "X-Tenant", "acme");
+        RecordedRequest methodRequest = recordedRequest("POST", "/api/resources/150?personIdentifier=85047", headers, new Buffer().writeUtf8("{\"consent\":true}"));
+        RecordedRequest commonRequest = recordedRequest("PROPFIND", "/api/resources/150", headers, new Buffer());
+
+        for (int i = 0; i < 20_000; i++) {
+            conditionalDispatcher.dispatch(methodRequest);
+            conditionalDispatcher.dispatch(commonRequest);
+        }
+
+        int dispatches = 10_000;
+        long threadId = Thread.currentThread().getId();
+        long allocatedBytes = Long.MAX_VALUE;
+
+        // the best of a few rounds, a one off allocation of the jvm, like a recompilation, is not a dispatch allocation
+        for (int round = 0; round < 3; round++) {
+            long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+
+            for (int i = 0; i < dispatches; i++) {
+                conditionalDispatcher.dispatch(methodRequest);
+                conditionalDispatcher.dispatch(commonRequest);
+            }
+
+            allocatedBytes = Math.min(allocatedBytes, threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore);
+        }
+
+        // a few bytes are tolerated for the measure itself, not one byte per dispatch
+        Assertions.assertTrue(allocatedBytes < dispatches, "Allocated " + allocatedBytes + " bytes for " + 2 * dispatches + " dispatches");
+        Assertions.assertEquals(50_000, conditionalDispatcher.getConditionalMockResponseMapForMethod(POST).get("post_resource_150").getFetchCounter());
+        Assertions.assertEquals(50_000, conditionalDispatcher.getConditionalMockResponseMapForMethod(COMMON).get("common_resource").getFetchCounter());
+    }
+
+    private String dispatchBody(ConditionalDispatcher conditionalDispatcher, String path, Headers headers) throws InterruptedException {
+
+        return Objects.requireNonNull(conditionalDispatcher.dispatch(recordedRequest("GET", path, headers, new Buffer())).getBody()).readUtf8();
+    }
+
     private ConditionalMockResponse createConditionalMockResponse(String uniqueId, String ssin, String paramRegex) {
 
         MockResponse mockedResponse = new MockResponse()
@@ -0,0 +1,90 @@
+package io.geemov42.okhttp3.conditionaldispatcher.body;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+import okio.BufferedSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.chunkedMockResponse;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.streamedMockResponse;
+
+class GeneratedResponseBodyTest {
+
+    @Test
+    void shouldGenerateDeterministicBodies_whenSourcesAreOpenedAgain() throws IOException {
+
+        ResponseBodySource random = ResponseBodySources.random(20_003, 42);
+        Assertions.assertEquals(random.open().readByteString(), random.open().readByteString());
+        Assertions.assertNotEquals(random.open().readByteString(), ResponseBodySources.random(20_003, 43).open().readByteString());
+        Assertions.assertEquals(20_003, random.open().size());
+
+        Assertions.assertEquals("abcabcab", ResponseBodySources.pattern("abc", 8).open().readUtf8());
+        Assertions.assertEquals(10_000_000, ResponseBodySources.pattern("0123456789", 10_000_000).open().size());
+
+        Assertions.assertEquals("{\"id\":0}\n{\"id\":1}\n{\"id\":2}\n", ResponseBodySources.ndjson(3, index -> "{\"id\":" + index + "}").open().readUtf8());
+    }
+
+    @Test
+    void shouldSendChunkedBody_whenChunkSizeIsSet() throws InterruptedException {
+
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addResponse(List.of(chunkedMockResponse("common_records", "^/records", new MockResponse(), ResponseBodySources.pattern("x", 10), 4)));
+
+        MockResponse mockResponse = conditionalDispatcher.dispatch(recordedRequest("GET", "/records"));
+
+        Assertions.assertEquals("chunked", mockResponse.getHeaders().get("Transfer-encoding"));
+        Assertions.assertEquals("4\r\nxxxx\r\n4\r\nxxxx\r\n2\r\nxx\r\n0\r\n", Objects.requireNonNull(mockResponse.getBody()).readUtf8());
+    }
+
+    @Test
+    void shouldStreamGeneratedBody_whenServerServesHttp2() throws IOException {
+
+        long size = 32L * 1024 * 1024 + 5;
+        ResponseBodySource random = ResponseBodySources.random(size, 7);
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addResponse(List.of(
+                        streamedMockResponse("common_download", "^/download", new MockResponse(), random, 16 * 1024),
+                        streamedMockResponse("common_slow", "^/slow", new MockResponse().throttleBody(1024, 20, TimeUnit.MILLISECONDS), ResponseBodySources.pattern("s", 4096), 0)
+                ));
+
+        try (MockWebServer mockWebServer = new MockWebServer()) {
+            mockWebServer.setProtocols(List.of(Protocol.H2_PRIOR_KNOWLEDGE));
+            mockWebServer.setDispatcher(conditionalDispatcher);
+            OkHttpClient okHttpClient = new OkHttpClient.Builder().protocols(List.of(Protocol.H2_PRIOR_KNOWLEDGE)).build();
+
+            try (Response response = okHttpClient.newCall(new Request.Builder().url(mockWebServer.url("/download")).build()).execute()) {
+                BufferedSource received = Objects.requireNonNull(response.body()).source();
+                Buffer expected = random.open();
+
+                // compared piece by piece, the client does not hold the whole body either
+                long receivedSize = 0;
+                Buffer piece = new Buffer();
+                for (long read = received.read(piece, 64 * 1024); read != -1; read = received.read(piece, 64 * 1024)) {
+                    Assertions.assertEquals(expected.readByteString(read), piece.readByteString());
+                    receivedSize += read;
+                }
+
+                Assertions.assertEquals(size, receivedSize);
+            }
+
+            long start = System.nanoTime();
+            try (Response response = okHttpClient.newCall(new Request.Builder().url(mockWebServer.url("/slow")).build()).execute()) {
+                Assertions.assertEquals(4096, Objects.requireNonNull(response.body()).bytes().length);
+            }
+            Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(60));
+        }
+    }
+}
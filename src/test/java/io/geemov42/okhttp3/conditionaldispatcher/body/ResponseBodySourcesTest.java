@@ -0,0 +1,82 @@
+package io.geemov42.okhttp3.conditionaldispatcher.body;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+import okio.GzipSource;
+import okio.Okio;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.*;
+
+class ResponseBodySourcesTest {
+
+    @TempDir
+    Path temporaryDirectory;
+
+    @Test
+    void shouldReadFileWhenServed_whenBodyIsAFile() throws IOException, InterruptedException {
+
+        Path fixture = this.temporaryDirectory.resolve("download.bin");
+        byte[] content = new byte[3 * 1024 * 1024 + 17];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Files.write(fixture, content);
+
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addResponse(List.of(conditionalMockResponse("common_download", "^/download", new MockResponse().setHeader("Content-Type", "application/octet-stream"), fileBody(fixture))));
+
+        MockResponse mockResponse = conditionalDispatcher.dispatch(recordedRequest("GET", "/download"));
+
+        Assertions.assertArrayEquals(content, Objects.requireNonNull(mockResponse.getBody()).readByteArray());
+        Assertions.assertEquals(String.valueOf(content.length), mockResponse.getHeaders().get("Content-Length"));
+        Assertions.assertEquals("application/octet-stream", mockResponse.getHeaders().get("Content-Type"));
+
+        Files.writeString(fixture, "updated");
+        Assertions.assertEquals("updated", Objects.requireNonNull(conditionalDispatcher.dispatch(recordedRequest("GET", "/download")).getBody()).readUtf8());
+    }
+
+    @Test
+    void shouldServeSameBytesToEveryResponse_whenBodyIsShared() throws InterruptedException {
+
+        ResponseBodySource sharedBody = sharedBody("{\"consent\":true}");
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addResponse(List.of(
+                        conditionalMockResponse("common_consent", "^/consent", new MockResponse(), sharedBody),
+                        conditionalMockResponse("common_hasConsent", "^/hasConsent", new MockResponse(), sharedBody)
+                ));
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals("{\"consent\":true}", Objects.requireNonNull(conditionalDispatcher.dispatch(recordedRequest("GET", "/consent")).getBody()).readUtf8());
+            Assertions.assertEquals("{\"consent\":true}", Objects.requireNonNull(conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent")).getBody()).readUtf8());
+        }
+
+        Assertions.assertEquals(16, sharedBody.size());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> conditionalMockResponse("common_both", "^/both", new MockResponse().setBody("body"), sharedBody));
+    }
+
+    @Test
+    void shouldServeCompressedBodyWithEncodingHeader_whenBodyIsPreEncoded() throws IOException, InterruptedException {
+
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addResponse(List.of(conditionalMockResponse("common_report", "^/report", new MockResponse(), gzipBody(sharedBody("report ".repeat(1000))))));
+
+        MockResponse mockResponse = conditionalDispatcher.dispatch(recordedRequest("GET", "/report"));
+        Buffer compressed = Objects.requireNonNull(mockResponse.getBody());
+
+        Assertions.assertEquals("gzip", mockResponse.getHeaders().get("Content-Encoding"));
+        Assertions.assertTrue(compressed.size() < 1000);
+        Assertions.assertEquals("report ".repeat(1000), Okio.buffer(new GzipSource(compressed)).readUtf8());
+    }
+}
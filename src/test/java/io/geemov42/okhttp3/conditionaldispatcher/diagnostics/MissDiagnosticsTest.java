@@ -0,0 +1,79 @@
+package io.geemov42.okhttp3.conditionaldispatcher.diagnostics;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.MissReasonEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.GET;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.POST;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.conditionalMockResponse;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.header;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.param;
+
+class MissDiagnosticsTest {
+
+    @Test
+    void shouldExplainNearestResponses_whenRequestMatchesNoResponse() throws InterruptedException {
+
+        List<MissReport> calledBack = new ArrayList<>();
+        MissDiagnostics missDiagnostics = MissDiagnostics.builder().capacity(2).nearMissCount(3).callback(calledBack::add).build();
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addResponseForMethod(GET, List.of(
+                        conditionalMockResponse("get_persons", "^/persons", new MockResponse().setBody("persons"))
+                                .addConditions(param("tenant", "^acme$"), header("X-Version", "^2$")),
+                        conditionalMockResponse("get_person", "^/person/42$", new MockResponse().setBody("person")),
+                        conditionalMockResponse("get_orders", "^/orders", new MockResponse().setBody("orders"))
+                ))
+                .addResponseForMethod(POST, List.of(conditionalMockResponse("post_persons", "^/persons", new MockResponse().setBody("created"))))
+                .setQueueFailFast(new MockResponse().setBody("queue"))
+                .setMissDiagnostics(missDiagnostics);
+
+        Assertions.assertEquals("persons", this.get(conditionalDispatcher, "/persons?tenant=acme", Headers.of("X-Version", "2")));
+        Assertions.assertEquals(0, missDiagnostics.getMissCount());
+
+        Assertions.assertEquals("queue", this.get(conditionalDispatcher, "/persons?tenant=other", Headers.of("X-Version", "1")));
+
+        MissReport missReport = missDiagnostics.getReports().get(0);
+        Assertions.assertEquals(List.of(missReport), calledBack);
+        Assertions.assertEquals("GET", missReport.getMethod());
+        Assertions.assertEquals(4, missReport.getEvaluatedResponses());
+        Assertions.assertEquals(List.of("get_persons", "post_persons", "get_person"),
+                missReport.getNearMisses().stream().map(NearMiss::getId).collect(Collectors.toList()));
+
+        NearMiss nearMiss = missReport.getNearMisses().get(0);
+        Assertions.assertEquals(MissReasonEnum.CONDITION, nearMiss.getReason());
+        Assertions.assertEquals(List.of(
+                new ConditionMismatch(RequestPartToTestEnum.PARAMETER, "tenant", "EXACT(^\\Qacme\\E$)", "other"),
+                new ConditionMismatch(RequestPartToTestEnum.HEADER, "X-Version", "EXACT(^\\Q2\\E$)", "1")
+        ), nearMiss.getConditionMismatches());
+        // the exact path with the wrong method comes before a same method response with another path
+        Assertions.assertEquals(MissReasonEnum.METHOD, missReport.getNearMisses().get(1).getReason());
+        Assertions.assertEquals(0, missReport.getNearMisses().get(1).getPathDistance());
+        Assertions.assertEquals(MissReasonEnum.PATH, missReport.getNearMisses().get(2).getReason());
+        Assertions.assertTrue(missReport.getNearMisses().get(2).getPathDistance() > 0);
+
+        // the buffer keeps the latest reports only
+        this.get(conditionalDispatcher, "/unknown", Headers.of());
+        this.get(conditionalDispatcher, "/persons", Headers.of());
+        Assertions.assertEquals(3, missDiagnostics.getMissCount());
+        Assertions.assertEquals(List.of("/unknown", "/persons"), missDiagnostics.getReports().stream().map(MissReport::getPath).collect(Collectors.toList()));
+
+        conditionalDispatcher.setMissDiagnostics(null);
+        this.get(conditionalDispatcher, "/unknown", Headers.of());
+        Assertions.assertEquals(3, missDiagnostics.getMissCount());
+    }
+
+    private String get(ConditionalDispatcher conditionalDispatcher, String path, Headers headers) throws InterruptedException {
+        return conditionalDispatcher.dispatch(recordedRequest("GET", path, headers, new Buffer())).getBody().readUtf8();
+    }
+}
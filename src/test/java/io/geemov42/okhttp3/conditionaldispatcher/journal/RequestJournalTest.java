@@ -0,0 +1,128 @@
+package io.geemov42.okhttp3.conditionaldispatcher.journal;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import okhttp3.Headers;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.GET;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.conditionalMockResponse;
+
+class RequestJournalTest {
+
+    @Test
+    void shouldKeepLastEntriesWithTheirOutcome_whenJournalIsFull() throws InterruptedException {
+
+        RequestJournal requestJournal = RequestJournal.builder().capacity(4).recordedHeaders(List.of("X-Tenant")).bodyPrefixLength(8).build();
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addDispatchListener(requestJournal)
+                .setQueueFailFast(new MockResponse().setResponseCode(404))
+                .addResponseInQueue(new MockResponse())
+                .addResponseForMethod(GET, List.of(conditionalMockResponse("get_hasConsent", "^/hasConsent", new MockResponse())));
+
+        for (int i = 0; i < 4; i++) {
+            conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent?i=" + i, Headers.of("X-Tenant", "acme"), new Buffer().writeUtf8("0123456789")));
+        }
+        conditionalDispatcher.dispatch(recordedRequest("GET", "/other"));
+        conditionalDispatcher.dispatch(recordedRequest("GET", "/other"));
+
+        List<JournalEntry> journalEntries = requestJournal.getEntries();
+        Assertions.assertEquals(List.of(2L, 3L, 4L, 5L), journalEntries.stream().map(JournalEntry::getSequence).collect(Collectors.toList()));
+        Assertions.assertEquals(6, requestJournal.getRecordedCount());
+
+        JournalEntry hit = requestJournal.findByOutcome("get_hasConsent").get(0);
+        Assertions.assertEquals("/hasConsent?i=2", hit.getPath());
+        Assertions.assertEquals("acme", hit.getHeaders().get("X-Tenant"));
+        Assertions.assertEquals("01234567", hit.getBodyPrefix());
+        Assertions.assertEquals(10, hit.getBodySize());
+
+        Assertions.assertEquals(
+                List.of(RequestJournal.QUEUE_OUTCOME, RequestJournal.MISS_OUTCOME),
+                requestJournal.findByPath("/other").stream().map(JournalEntry::getOutcome).collect(Collectors.toList())
+        );
+    }
+
+    @Test
+    void shouldReadConsistentEntries_whenThreadsDispatchConcurrently() throws Exception {
+
+        RequestJournal requestJournal = RequestJournal.builder().capacity(64).recordedHeaders(List.of("X-Number")).build();
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addDispatchListener(requestJournal)
+                .addResponseForMethod(GET, List.of(conditionalMockResponse("get_hasConsent", "^/hasConsent", new MockResponse())));
+
+        int threads = 4;
+        int requestsPerThread = 10_000;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int thread = 0; thread < threads; thread++) {
+                futures.add(executorService.submit(() -> {
+                    for (int i = 0; i < requestsPerThread; i++) {
+                        conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent?n=" + i, Headers.of("X-Number", String.valueOf(i)), new Buffer()));
+                    }
+                    return null;
+                }));
+            }
+
+            while (running.get()) {
+                for (JournalEntry journalEntry : requestJournal.getEntries()) {
+                    Assertions.assertEquals("/hasConsent?n=" + journalEntry.getHeaders().get("X-Number"), journalEntry.getPath());
+                }
+                running.set(futures.stream().anyMatch(future -> !future.isDone()));
+            }
+
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        Assertions.assertEquals(threads * requestsPerThread, requestJournal.getRecordedCount());
+        Assertions.assertEquals(64, requestJournal.getEntries().size());
+    }
+
+    @Test
+    void shouldNotKeepRecordedRequests_whenDispatcherDiscardsThem() throws IOException, InterruptedException {
+
+        RequestJournal requestJournal = new RequestJournal(null, null, null);
+
+        try (MockWebServer mockWebServer = new MockWebServer()) {
+            mockWebServer.setDispatcher(new ConditionalDispatcher()
+                    .discardRecordedRequestsOf(mockWebServer::takeRequest)
+                    .addDispatchListener(requestJournal)
+                    .addResponseForMethod(GET, List.of(conditionalMockResponse("get_hasConsent", "^/hasConsent", new MockResponse()))));
+            mockWebServer.start();
+
+            OkHttpClient okHttpClient = new OkHttpClient();
+            for (int i = 0; i < 3; i++) {
+                try (Response response = okHttpClient.newCall(new Request.Builder().url(mockWebServer.url("/hasConsent")).build()).execute()) {
+                    Assertions.assertEquals(200, response.code());
+                }
+            }
+
+            Assertions.assertEquals(3, mockWebServer.getRequestCount());
+            Assertions.assertNull(mockWebServer.takeRequest(100, TimeUnit.MILLISECONDS));
+            Assertions.assertEquals(3, requestJournal.findByOutcome("get_hasConsent").size());
+        }
+    }
+}
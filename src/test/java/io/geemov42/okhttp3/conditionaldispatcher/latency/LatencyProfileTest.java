@@ -0,0 +1,105 @@
+package io.geemov42.okhttp3.conditionaldispatcher.latency;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.GET;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.conditionalMockResponse;
+
+class LatencyProfileTest {
+
+    @Test
+    void shouldDrawReproducibleDelaysFollowingPercentiles_whenSeeded() {
+
+        Map<Double, Duration> percentiles = Map.of(0.0, Duration.ofMillis(5), 50.0, Duration.ofMillis(20), 99.0, Duration.ofMillis(250), 100.0, Duration.ofSeconds(1));
+        LatencyProfile latencyProfile = LatencyProfile.builder().percentiles(percentiles).seed(42).build();
+        LatencyProfile sameSeedLatencyProfile = LatencyProfile.builder().percentiles(percentiles).seed(42).build();
+
+        long[] delays = new long[100_000];
+        for (int i = 0; i < delays.length; i++) {
+            delays[i] = latencyProfile.nextDelayNanos();
+            Assertions.assertEquals(delays[i], sameSeedLatencyProfile.nextDelayNanos());
+        }
+
+        Arrays.sort(delays);
+        Assertions.assertTrue(delays[0] >= Duration.ofMillis(5).toNanos());
+        Assertions.assertEquals(Duration.ofMillis(20).toNanos(), delays[50_000], Duration.ofMillis(1).toNanos());
+        Assertions.assertEquals(Duration.ofMillis(250).toNanos(), delays[99_000], Duration.ofMillis(10).toNanos());
+        Assertions.assertTrue(delays[delays.length - 1] <= Duration.ofSeconds(1).toNanos());
+
+        // 9 samples out of 10 up to 10 ms, the slow tail up to 100 ms
+        LatencyProfile histogramLatencyProfile = LatencyProfile.builder()
+                .histogram(Map.of(Duration.ofMillis(10), 9L, Duration.ofMillis(100), 1L))
+                .jitter(Duration.ofMillis(1))
+                .seed(7)
+                .build();
+        int slow = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long delay = histogramLatencyProfile.nextDelayNanos();
+            Assertions.assertTrue(delay >= 0 && delay <= Duration.ofMillis(101).toNanos());
+            slow += delay > Duration.ofMillis(11).toNanos() ? 1 : 0;
+        }
+        Assertions.assertEquals(1_000, slow, 100);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> LatencyProfile.builder().build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> LatencyProfile.builder()
+                .percentiles(Map.of(50.0, Duration.ofMillis(20), 99.0, Duration.ofMillis(10))).build());
+    }
+
+    @Test
+    void shouldDelayServedResponses_whenProfileIsSetOnRuleOrMethodList() throws Exception {
+
+        LatencyProfile slowLatencyProfile = LatencyProfile.builder().percentiles(Map.of(0.0, Duration.ofMillis(300), 100.0, Duration.ofMillis(300))).build();
+        LatencyProfile fastLatencyProfile = LatencyProfile.builder().percentiles(Map.of(100.0, Duration.ofMillis(5))).bytesPerSecond(1024 * 1024).build();
+
+        ConditionalMockResponse slowConditionalMockResponse = conditionalMockResponse("get_slow", "^/slow", new MockResponse().setBody("slow"));
+        slowConditionalMockResponse.setLatencyProfile(slowLatencyProfile);
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addResponseForMethod(GET, List.of(slowConditionalMockResponse, conditionalMockResponse("get_fast", "^/fast", new MockResponse().setBody("fast"))))
+                .setLatencyProfile(GET, fastLatencyProfile);
+
+        MockResponse fastMockResponse = conditionalDispatcher.dispatch(recordedRequest("GET", "/fast"));
+        Assertions.assertTrue(fastMockResponse.getHeadersDelay(TimeUnit.MILLISECONDS) <= 5);
+        Assertions.assertEquals(1024 * 1024 / 10, fastMockResponse.getThrottleBytesPerPeriod());
+        Assertions.assertEquals(0, conditionalDispatcher.getConditionalMockResponseMapForMethod(GET).get("get_fast").getMockResponse().getHeadersDelay(TimeUnit.MILLISECONDS));
+
+        MockWebServer mockWebServer = new MockWebServer();
+        mockWebServer.setDispatcher(conditionalDispatcher);
+        OkHttpClient okHttpClient = new OkHttpClient.Builder().readTimeout(Duration.ofMillis(100)).build();
+
+        try {
+            // the tail latency of the rule trips the client timeout, the method list profile does not
+            Assertions.assertThrows(SocketTimeoutException.class, () -> this.call(okHttpClient, mockWebServer, "/slow"));
+            Assertions.assertEquals("fast", this.call(okHttpClient, mockWebServer, "/fast"));
+        } finally {
+            mockWebServer.shutdown();
+        }
+
+        Assertions.assertEquals(1, slowLatencyProfile.getAppliedDelays().getCount());
+        Assertions.assertTrue(slowLatencyProfile.getAppliedDelays().getMax() >= Duration.ofMillis(300).toNanos());
+        Assertions.assertEquals(2, fastLatencyProfile.getAppliedDelays().getCount());
+    }
+
+    private String call(OkHttpClient okHttpClient, MockWebServer mockWebServer, String path) throws IOException {
+
+        try (Response response = okHttpClient.newCall(new Request.Builder().url(mockWebServer.url(path)).build()).execute()) {
+            return response.body().string();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package io.geemov42.okhttp3.conditionaldispatcher.loader;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.RegexValueMatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.COMMON;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.GET;
+
+class RuleFileLoaderTest {
+
+    private static final String RULES = "{\"rules\": ["
+            + "{\"id\": \"get_hasConsent\", \"method\": \"GET\", \"path\": \"^/hasConsent\\\\?.*\", \"limitFetch\": 2,"
+            + " \"conditions\": [{\"part\": \"PARAMETER\", \"field\": \"personIdentifier\", \"regex\": \"^8[0-9]+$\"}],"
+            + " \"response\": {\"status\": 200, \"headers\": {\"Content-Type\": \"application/json\"}, \"body\": \"{\\\"consent\\\":true}\"}},"
+            + "{\"id\": \"get_download\", \"method\": \"GET\", \"path\": \"^/download\", \"response\": {\"bodyFile\": \"bodies/download.txt\"}},"
+            + "{\"id\": \"get_mirror\", \"method\": \"GET\", \"path\": \"^/mirror\", \"response\": {\"bodyFile\": \"bodies/download.txt\"}},"
+            + "{\"id\": \"post_person\", \"method\": \"POST\", \"path\": \"^/persons/(\\\\d+)\","
+            + " \"conditions\": [{\"part\": \"HEADER\", \"field\": \"X-Tenant\", \"literal\": \"acme\"}],"
+            + " \"response\": {\"status\": 201, \"bodyTemplate\": \"{\\\"id\\\":\\\"{{path.1}}\\\"}\"}},"
+            + "{\"id\": \"common_unused\", \"path\": \"^/unused/[a-z]+$\", \"response\": {\"status\": 404}}"
+            + "]}";
+
+    @TempDir
+    Path temporaryDirectory;
+
+    @Test
+    void shouldServeRulesOfTheFile_whenFileIsLoaded() throws IOException, InterruptedException {
+
+        Path ruleFile = this.writeRuleFile("rules.json", RULES);
+        Files.createDirectories(this.temporaryDirectory.resolve("bodies"));
+        Files.writeString(this.temporaryDirectory.resolve("bodies/download.txt"), "downloaded");
+
+        Map<HttpMethodEnum, List<ConditionalMockResponse>> conditionalMockResponsesByMethod = RuleFileLoader.load(ruleFile);
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .setQueueFailFast(new MockResponse().setResponseCode(418));
+        conditionalMockResponsesByMethod.forEach(conditionalDispatcher::addResponseForMethod);
+
+        Assertions.assertEquals("{\"consent\":true}", this.dispatchBody(conditionalDispatcher, "GET", "/hasConsent?personIdentifier=85047", Headers.of()));
+        Assertions.assertTrue(conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent?personIdentifier=95047")).getStatus().startsWith("HTTP/1.1 418"));
+        Assertions.assertEquals("downloaded", this.dispatchBody(conditionalDispatcher, "GET", "/download", Headers.of()));
+        Assertions.assertEquals("{\"id\":\"85047\"}", this.dispatchBody(conditionalDispatcher, "POST", "/persons/85047", Headers.of("X-Tenant", "acme")));
+
+        Map<String, ConditionalMockResponse> getResponses = conditionalDispatcher.getConditionalMockResponseMapForMethod(GET);
+        Assertions.assertEquals(2, getResponses.get("get_hasConsent").getLimitFetch());
+        Assertions.assertSame(getResponses.get("get_download").getResponseBodySource(), getResponses.get("get_mirror").getResponseBodySource());
+
+        // never tested, never compiled
+        ConditionalMockResponse unused = conditionalDispatcher.getConditionalMockResponseMapForMethod(COMMON).get("common_unused");
+        Assertions.assertFalse(((RegexValueMatcher) unused.getPathMatcher()).isCompiled());
+    }
+
+    @Test
+    void shouldReportLocation_whenRuleIsInvalid() throws IOException {
+
+        Path ruleFile = this.writeRuleFile("invalid.json", "{\"rules\": [{\"id\": \"get_a\", \"path\": \"^/a\"}, {\"id\": \"get_b\", \"path\": \"^/b\", \"method\": \"FETCH\"}]}");
+
+        IllegalArgumentException exception = Assertions.assertThrows(IllegalArgumentException.class, () -> RuleFileLoader.load(ruleFile));
+        Assertions.assertTrue(exception.getMessage().contains("$.rules[1].method"), exception.getMessage());
+    }
+
+    @Test
+    void shouldSwapRules_whenWatchedFileChanges() throws Exception {
+
+        Path ruleFile = this.writeRuleFile("watched.json", this.singleRule("version 1"));
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .setQueueFailFast(new MockResponse().setResponseCode(418));
+
+        try (RuleFileWatcher ruleFileWatcher = RuleFileWatcher.watch(conditionalDispatcher, ruleFile)) {
+            Assertions.assertEquals("version 1", this.dispatchBody(conditionalDispatcher, "GET", "/version", Headers.of()));
+
+            this.writeRuleFile("watched.json", this.singleRule("version 2"));
+            this.awaitReloads(ruleFileWatcher, 2);
+            Assertions.assertEquals("version 2", this.dispatchBody(conditionalDispatcher, "GET", "/version", Headers.of()));
+            Assertions.assertEquals(2, conditionalDispatcher.getLayerFetchCounter("common_version"));
+
+            this.writeRuleFile("watched.json", "{\"rules\": [");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+            while (Objects.isNull(ruleFileWatcher.getLastFailure()) && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+
+            Assertions.assertNotNull(ruleFileWatcher.getLastFailure());
+            Assertions.assertEquals("version 2", this.dispatchBody(conditionalDispatcher, "GET", "/version", Headers.of()));
+        }
+
+        // a file that does not load a first time leaves no layer behind
+        int layerDepth = conditionalDispatcher.getLayerDepth();
+        Path brokenRuleFile = this.writeRuleFile("broken.json", "{\"rules\": [");
+        Assertions.assertThrows(Exception.class, () -> RuleFileWatcher.watch(conditionalDispatcher, brokenRuleFile));
+        Assertions.assertEquals(layerDepth, conditionalDispatcher.getLayerDepth());
+    }
+
+    private void awaitReloads(RuleFileWatcher ruleFileWatcher, long reloadCount) throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (ruleFileWatcher.getReloadCount() < reloadCount && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+
+        Assertions.assertTrue(ruleFileWatcher.getReloadCount() >= reloadCount, "The rule file was not reloaded");
+    }
+
+    private String singleRule(String body) {
+        return "{\"rules\": [{\"id\": \"common_version\", \"path\": \"^/version\", \"response\": {\"body\": \"" + body + "\"}}]}";
+    }
+
+    private Path writeRuleFile(String name, String content) throws IOException {
+        return Files.writeString(this.temporaryDirectory.resolve(name), content);
+    }
+
+    private String dispatchBody(ConditionalDispatcher conditionalDispatcher, String method, String path, Headers headers) throws InterruptedException {
+        return Objects.requireNonNull(conditionalDispatcher.dispatch(recordedRequest(method, path, headers, new Buffer())).getBody()).readUtf8();
+    }
+}
@@ -0,0 +1,62 @@
+package io.geemov42.okhttp3.conditionaldispatcher.matcher;
+
+import io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.response.MatchingCondition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.MatcherKindEnum.*;
+
+class ValueMatchersTest {
+
+    private static final List<String> VALUES = List.of(
+            "", "85047", "850470", "185047", "85047\n", "85047\r\n", "85047\n\n", "abc", "ABC", "aBc\n", "/hasConsent?personIdentifier=85047"
+    );
+
+    @Test
+    void shouldDowngradeLiteralRegex_whenRegexIsALiteral() {
+
+        Assertions.assertEquals(CONTAINS, ValueMatchers.regex("85047").getKind());
+        Assertions.assertEquals(CONTAINS, ValueMatchers.regex("\\/hasConsent").getKind());
+        Assertions.assertEquals(EXACT, ValueMatchers.regex("^85047$").getKind());
+        Assertions.assertEquals(PREFIX, ValueMatchers.regex("^/hasConsent").getKind());
+        Assertions.assertEquals(SUFFIX, ValueMatchers.regex("85047$").getKind());
+        Assertions.assertEquals(EQUALS_IGNORE_CASE, ValueMatchers.regex("(?i)^abc$").getKind());
+        Assertions.assertEquals(ONE_OF, ValueMatchers.regex("^(85047|abc)$").getKind());
+        Assertions.assertEquals(REGEX, ValueMatchers.regex("^\\d+$").getKind());
+        Assertions.assertEquals(REGEX, ValueMatchers.regex("(?i)abc").getKind());
+        Assertions.assertEquals(REGEX, ValueMatchers.regex("^(85047|\\d)$").getKind());
+        Assertions.assertEquals(EXACT, new MatchingCondition(RequestPartToTestEnum.HEADER, "X-Id", "^85047$").getValueMatcher().getKind());
+        Assertions.assertEquals(REGEX, ValueMatchers.regex("\\Q85047$\\E$").getKind());
+    }
+
+    @Test
+    void shouldGiveTheRegexResult_whenRegexIsDowngraded() {
+
+        for (String regex : List.of("85047", "^85047$", "^85047", "85047$", "(?i)^abc$", "^(85047|abc)$", "^(?:abc|85047)$", "^$", "$", "\\$", "\\Q85047$\\E$")) {
+            ValueMatcher valueMatcher = ValueMatchers.regex(regex);
+            Pattern pattern = Pattern.compile(regex);
+
+            for (String value : VALUES) {
+                Assertions.assertEquals(pattern.matcher(value).find(), valueMatcher.matches(value), regex + " on " + value);
+                Assertions.assertEquals(valueMatcher.matches(value), valueMatcher.getPattern().matcher(value).find(), regex + " pattern on " + value);
+            }
+        }
+    }
+
+    @Test
+    void shouldMatchLiterals_whenMatchersAreExplicit() {
+
+        Assertions.assertTrue(ValueMatchers.exact("85047").matches("85047"));
+        Assertions.assertFalse(ValueMatchers.exact("85047").matches("85047\n"));
+        Assertions.assertTrue(ValueMatchers.prefix("/has").matches("/hasConsent"));
+        Assertions.assertTrue(ValueMatchers.suffix("Consent").matches("/hasConsent"));
+        Assertions.assertTrue(ValueMatchers.contains("sCon").matches("/hasConsent"));
+        Assertions.assertTrue(ValueMatchers.equalsIgnoreCase("\u00e9t\u00e9").matches("\u00c9T\u00c9"));
+        Assertions.assertTrue(ValueMatchers.oneOf("1", "2", "85047").matches("85047"));
+        Assertions.assertFalse(ValueMatchers.oneOf("1", "2", "85047").matches(null));
+    }
+}
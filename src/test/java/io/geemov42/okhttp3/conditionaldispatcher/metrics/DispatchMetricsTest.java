@@ -0,0 +1,95 @@
+package io.geemov42.okhttp3.conditionaldispatcher.metrics;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.GET;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum.HEADER;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum.PARAMETER;
+import static io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatchers.exact;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.*;
+
+class DispatchMetricsTest {
+
+    @Test
+    void shouldCountHitsFailuresAndMisses_whenDispatching() throws InterruptedException {
+
+        DispatchMetrics dispatchMetrics = new DispatchMetrics();
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addDispatchListener(dispatchMetrics)
+                .setQueueFailFast(new MockResponse().setResponseCode(404));
+
+        conditionalDispatcher.addResponseForMethod(GET, List.of(
+                conditionalMockResponse("get_hasConsent", "^/hasConsent", new MockResponse())
+                        .addConditions(param("personIdentifier", exact("85047")), header("X-Tenant", exact("acme")))
+        )).addResponse(List.of(conditionalMockResponse("common_hasConsent", "^/hasConsent", new MockResponse(), 1)));
+
+        conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent?personIdentifier=85047", Headers.of("X-Tenant", "acme"), new Buffer()));
+        conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent?personIdentifier=1"));
+        conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent?personIdentifier=85047"));
+        conditionalDispatcher.dispatch(recordedRequest("GET", "/other"));
+
+        DispatchMetricsSnapshot snapshot = dispatchMetrics.snapshot();
+        Assertions.assertEquals(3, snapshot.getHits());
+        Assertions.assertEquals(1, snapshot.getMisses());
+        Assertions.assertEquals(1, snapshot.getQueueFallbacks());
+
+        RuleMetricsSnapshot getMetrics = snapshot.getRules().get("get_hasConsent");
+        Assertions.assertEquals(1, getMetrics.getHits());
+        Assertions.assertEquals(3, getMetrics.getCandidateEvaluations());
+        Assertions.assertEquals(Map.of(PARAMETER, 1L, HEADER, 1L), getMetrics.getConditionFailures());
+
+        RuleMetricsSnapshot commonMetrics = snapshot.getRules().get("common_hasConsent");
+        Assertions.assertEquals(2, commonMetrics.getHits());
+        Assertions.assertEquals(1, commonMetrics.getBeyondLimitHits());
+        Assertions.assertEquals(2, commonMetrics.getMatchTime().getCount());
+    }
+
+    @Test
+    void shouldStopNotifying_whenListenerIsRemoved() throws InterruptedException {
+
+        DispatchMetrics kept = new DispatchMetrics();
+        DispatchMetrics removed = new DispatchMetrics();
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addDispatchListener(kept)
+                .addDispatchListener(removed)
+                .addResponse(List.of(conditionalMockResponse("common_hasConsent", "^/hasConsent", new MockResponse())));
+
+        conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent"));
+        conditionalDispatcher.removeDispatchListener(removed);
+        conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent"));
+
+        Assertions.assertEquals(2, kept.snapshot().getHits());
+        Assertions.assertEquals(1, removed.snapshot().getHits());
+    }
+
+    @Test
+    void shouldReportPercentilesWithinBucketPrecision_whenValuesAreRecorded() {
+
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            latencyHistogram.record(nanos);
+        }
+
+        HistogramSnapshot snapshot = latencyHistogram.snapshot();
+        Assertions.assertEquals(100_000, snapshot.getCount());
+        Assertions.assertEquals(100_000, snapshot.getMax());
+        Assertions.assertEquals(50_000.5, snapshot.getMean(), 0.001);
+        Assertions.assertTrue(snapshot.getP50() >= 50_000 && snapshot.getP50() <= 50_000 * 1.125, "p50 " + snapshot.getP50());
+        Assertions.assertTrue(snapshot.getP99() >= 99_000 && snapshot.getP99() <= 100_000, "p99 " + snapshot.getP99());
+
+        for (long value = 0; value < 1_000_000; value += 7) {
+            int bucketIndex = LatencyHistogram.bucketIndex(value);
+            Assertions.assertTrue(value <= LatencyHistogram.highestValueOf(bucketIndex));
+            Assertions.assertTrue(bucketIndex == 0 || value > LatencyHistogram.highestValueOf(bucketIndex - 1));
+        }
+    }
+}
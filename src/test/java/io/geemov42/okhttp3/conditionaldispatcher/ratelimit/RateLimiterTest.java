@@ -0,0 +1,138 @@
+package io.geemov42.okhttp3.conditionaldispatcher.ratelimit;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.latency.LatencyProfile;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import io.geemov42.okhttp3.conditionaldispatcher.response.KeyPart;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.GET;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.conditionalMockResponse;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.fileBody;
+
+class RateLimiterTest {
+
+    @Test
+    void shouldRejectWithRetryAfter_whenBucketOfKeyIsEmpty() throws InterruptedException {
+
+        ConditionalMockResponse conditionalMockResponse = conditionalMockResponse("get_hasConsent", "^/hasConsent", new MockResponse().setBody("consent"));
+        conditionalMockResponse.setRateLimiter(RateLimiter.builder()
+                .permits(60)
+                .period(Duration.ofMinutes(1))
+                .burst(2)
+                .keyPart(KeyPart.header("X-Api-Key"))
+                .build());
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher().addResponseForMethod(GET, List.of(conditionalMockResponse));
+
+        Assertions.assertEquals("consent", this.dispatch(conditionalDispatcher, "client-1").getBody().readUtf8());
+        Assertions.assertEquals("consent", this.dispatch(conditionalDispatcher, "client-1").getBody().readUtf8());
+
+        MockResponse rejection = this.dispatch(conditionalDispatcher, "client-1");
+        Assertions.assertTrue(rejection.getStatus().startsWith("HTTP/1.1 429"));
+        Assertions.assertEquals("1", rejection.getHeaders().get("Retry-After"));
+
+        // each key has its own bucket
+        Assertions.assertEquals("consent", this.dispatch(conditionalDispatcher, "client-2").getBody().readUtf8());
+
+        RateLimiterStats rateLimiterStats = conditionalDispatcher.getRateLimiterStats().get("get_hasConsent");
+        Assertions.assertEquals(new RateLimiterStats(3, 1, 0, 2, 0), rateLimiterStats);
+        Assertions.assertEquals(3, conditionalDispatcher.getLayerFetchCounter("get_hasConsent"));
+
+        ConditionalMockResponse degradedConditionalMockResponse = conditionalMockResponse("get_degraded", "^/degraded", new MockResponse().setBody("fresh"));
+        degradedConditionalMockResponse.setRateLimiter(RateLimiter.builder()
+                .permits(1)
+                .period(Duration.ofHours(1))
+                .rejectionResponse(new MockResponse().setResponseCode(503).setHeader("Retry-After", "120"))
+                .build());
+        conditionalDispatcher.addResponseForMethod(GET, List.of(degradedConditionalMockResponse));
+
+        Assertions.assertEquals("fresh", conditionalDispatcher.dispatch(recordedRequest("GET", "/degraded")).getBody().readUtf8());
+        MockResponse unavailable = conditionalDispatcher.dispatch(recordedRequest("GET", "/degraded"));
+        Assertions.assertTrue(unavailable.getStatus().startsWith("HTTP/1.1 503"));
+        Assertions.assertEquals("120", unavailable.getHeaders().get("Retry-After"));
+    }
+
+    @Test
+    void shouldReleaseConcurrencySlot_whenResponseFails(@TempDir Path tempDir) throws Exception {
+
+        Path file = Files.writeString(tempDir.resolve("consent.json"), "{}");
+        ConditionalMockResponse conditionalMockResponse = conditionalMockResponse("get_hasConsent", "^/hasConsent", new MockResponse(), fileBody(file));
+        conditionalMockResponse.setRateLimiter(RateLimiter.builder().maxConcurrent(1).build());
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher().addResponseForMethod(GET, List.of(conditionalMockResponse));
+
+        Files.delete(file);
+        Assertions.assertThrows(UncheckedIOException.class, () -> conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent")));
+        Assertions.assertEquals(0, conditionalDispatcher.getRateLimiterStats().get("get_hasConsent").getInFlight());
+
+        Files.writeString(file, "{}");
+        Assertions.assertEquals("{}", conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent")).getBody().readUtf8());
+    }
+
+    @Test
+    void shouldAdmitExactlyTheBurstAndTheConcurrency_whenRequestsRace() throws Exception {
+
+        RateLimiter rateLimiter = RateLimiter.builder().permits(100).period(Duration.ofHours(1)).build();
+        ConditionalMockResponse conditionalMockResponse = conditionalMockResponse("get_hasConsent", "^/hasConsent", new MockResponse().setBody("consent"));
+        conditionalMockResponse.setRateLimiter(rateLimiter);
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher().addResponseForMethod(GET, List.of(conditionalMockResponse));
+
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<MockResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                futures.add(executorService.submit(() -> {
+                    start.await();
+                    return conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent"));
+                }));
+            }
+            start.countDown();
+
+            int admitted = 0;
+            for (Future<MockResponse> future : futures) {
+                admitted += future.get().getStatus().startsWith("HTTP/1.1 200") ? 1 : 0;
+            }
+
+            Assertions.assertEquals(100, admitted);
+            Assertions.assertEquals(300, rateLimiter.getStats().getRateLimited());
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        // a slot is held while the response waits its delay
+        ConditionalMockResponse cappedConditionalMockResponse = conditionalMockResponse("get_capped", "^/capped", new MockResponse().setBody("capped"));
+        cappedConditionalMockResponse.setRateLimiter(RateLimiter.builder().maxConcurrent(3).build());
+        cappedConditionalMockResponse.setLatencyProfile(LatencyProfile.builder().percentiles(Map.of(0.0, Duration.ofSeconds(30), 100.0, Duration.ofSeconds(30))).build());
+        conditionalDispatcher.addResponseForMethod(GET, List.of(cappedConditionalMockResponse));
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(conditionalDispatcher.dispatch(recordedRequest("GET", "/capped")).getStatus().startsWith("HTTP/1.1 200"));
+        }
+        MockResponse rejection = conditionalDispatcher.dispatch(recordedRequest("GET", "/capped"));
+        Assertions.assertTrue(rejection.getStatus().startsWith("HTTP/1.1 429"));
+        Assertions.assertEquals(30, Long.parseLong(rejection.getHeaders().get("Retry-After")), 1);
+        Assertions.assertEquals(new RateLimiterStats(3, 0, 1, 1, 3), conditionalDispatcher.getRateLimiterStats().get("get_capped"));
+    }
+
+    private MockResponse dispatch(ConditionalDispatcher conditionalDispatcher, String apiKey) throws InterruptedException {
+        return conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent", Headers.of("X-Api-Key", apiKey), new Buffer()));
+    }
+}
@@ -0,0 +1,144 @@
+package io.geemov42.okhttp3.conditionaldispatcher.recording;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.journal.RequestJournal;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.ByteString;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.GET;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.conditionalMockResponse;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.replayMockResponse;
+
+class RecordingDispatcherTest {
+
+    @TempDir
+    Path temporaryDirectory;
+
+    @Test
+    void shouldReplayRecordedExchanges_whenUnmatchedRequestsWereForwardedToUpstream() throws Exception {
+
+        Path captureFile = this.temporaryDirectory.resolve("capture.bin");
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        MockWebServer upstream = new MockWebServer();
+        upstream.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest recordedRequest) {
+                return new MockResponse()
+                        .setResponseCode(201)
+                        .setHeader("X-Call", upstreamCalls.incrementAndGet())
+                        .setBody(recordedRequest.getMethod() + " " + recordedRequest.getPath() + " " + recordedRequest.getBody().readUtf8());
+            }
+        });
+
+        MockWebServer front = new MockWebServer();
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addResponseForMethod(GET, List.of(conditionalMockResponse("get_hasConsent", "^/hasConsent", new MockResponse().setBody("consent"))));
+        RequestJournal requestJournal = RequestJournal.builder().build();
+        conditionalDispatcher.addDispatchListener(requestJournal);
+        front.setDispatcher(conditionalDispatcher);
+
+        OkHttpClient okHttpClient = new OkHttpClient();
+        try (RecordingDispatcher recordingDispatcher = new RecordingDispatcher(upstream.url("/"), captureFile)) {
+            conditionalDispatcher.setMissDispatcher(recordingDispatcher);
+
+            Assertions.assertEquals("consent", this.call(okHttpClient, front, "/hasConsent", null));
+            Assertions.assertEquals("GET /persons?b=2&a=1 ", this.call(okHttpClient, front, "/persons?b=2&a=1", null));
+            Assertions.assertEquals("POST /persons {\"name\":\"zoe\"}", this.call(okHttpClient, front, "/persons", "{\"name\":\"zoe\"}"));
+            Assertions.assertEquals("POST /persons {\"name\":\"zoe\"}", this.call(okHttpClient, front, "/persons", "{\"name\":\"zoe\"}"));
+
+            Assertions.assertEquals(3, recordingDispatcher.getRecordCount());
+            Assertions.assertEquals(3, requestJournal.findByOutcome(RequestJournal.FALLBACK_OUTCOME).size());
+        } finally {
+            front.shutdown();
+            upstream.shutdown();
+        }
+
+        CaptureIndex captureIndex = CaptureIndex.open(captureFile);
+        Assertions.assertEquals(3, captureIndex.getRecordCount());
+        Assertions.assertEquals(2, captureIndex.getKeyCount());
+
+        ConditionalDispatcher replayDispatcher = new ConditionalDispatcher()
+                .addResponse(List.of(replayMockResponse("replay", captureIndex)))
+                .setQueueFailFast(new MockResponse().setResponseCode(404));
+
+        // the query is normalized, so the order of the parameters does not matter
+        MockResponse replayed = replayDispatcher.dispatch(recordedRequest("GET", "/persons?a=1&b=2"));
+        Assertions.assertTrue(replayed.getStatus().startsWith("HTTP/1.1 201"));
+        Assertions.assertEquals("GET /persons?b=2&a=1 ", replayed.getBody().readUtf8());
+        Assertions.assertEquals("1", replayed.getHeaders().get("X-Call"));
+
+        // the responses of a key are served in recording order, then the last one is repeated
+        Assertions.assertEquals("2", this.replayPost(replayDispatcher, "{\"name\":\"zoe\"}").getHeaders().get("X-Call"));
+        Assertions.assertEquals("3", this.replayPost(replayDispatcher, "{\"name\":\"zoe\"}").getHeaders().get("X-Call"));
+        Assertions.assertEquals("3", this.replayPost(replayDispatcher, "{\"name\":\"zoe\"}").getHeaders().get("X-Call"));
+
+        Assertions.assertTrue(this.replayPost(replayDispatcher, "{\"name\":\"max\"}").getStatus().startsWith("HTTP/1.1 404"));
+        Assertions.assertTrue(replayDispatcher.dispatch(recordedRequest("GET", "/persons?a=1")).getStatus().startsWith("HTTP/1.1 404"));
+        Assertions.assertEquals(4, replayDispatcher.getLayerFetchCounter("replay"));
+    }
+
+    @Test
+    void shouldIgnoreIncompleteLastRecord_whenRecordingWasInterrupted() throws IOException {
+
+        Path captureFile = this.temporaryDirectory.resolve("interrupted.bin");
+
+        try (CaptureWriter captureWriter = CaptureWriter.open(captureFile)) {
+            captureWriter.append("GET", "/persons", 0, 200, Headers.of("Content-Type", "text/plain"), ByteString.encodeUtf8("persons"));
+        }
+
+        // appending to an existing capture keeps its records
+        try (CaptureWriter captureWriter = CaptureWriter.open(captureFile)) {
+            captureWriter.append("GET", "/hasConsent", 0, 200, Headers.of(), ByteString.encodeUtf8("consent"));
+        }
+
+        long completeSize = Files.size(captureFile);
+        Files.write(captureFile, new Buffer().writeInt(1000).writeUtf8("GET").readByteArray(), StandardOpenOption.APPEND);
+
+        CaptureIndex captureIndex = CaptureIndex.open(captureFile);
+        Assertions.assertEquals(2, captureIndex.getRecordCount());
+        Assertions.assertTrue(Files.size(captureFile) > completeSize);
+
+        Path notCaptureFile = this.temporaryDirectory.resolve("rules.json");
+        Files.writeString(notCaptureFile, "{\"rules\":[]}");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CaptureIndex.open(notCaptureFile));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CaptureWriter.open(notCaptureFile));
+    }
+
+    private MockResponse replayPost(ConditionalDispatcher replayDispatcher, String body) throws InterruptedException {
+        return replayDispatcher.dispatch(recordedRequest("POST", "/persons", Headers.of("Content-Type", "application/json"), new Buffer().writeUtf8(body)));
+    }
+
+    private String call(OkHttpClient okHttpClient, MockWebServer mockWebServer, String path, String jsonBody) throws IOException {
+
+        Request.Builder request = new Request.Builder().url(mockWebServer.url(path));
+        if (jsonBody != null) {
+            request.post(RequestBody.create(jsonBody, MediaType.get("application/json")));
+        }
+
+        try (Response response = okHttpClient.newCall(request.build()).execute()) {
+            return response.body().string();
+        }
+    }
+}
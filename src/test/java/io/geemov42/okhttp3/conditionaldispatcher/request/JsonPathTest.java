@@ -0,0 +1,98 @@
+package io.geemov42.okhttp3.conditionaldispatcher.request;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatchers;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.POST;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.conditionalMockResponse;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.jsonPath;
+
+class JsonPathTest {
+
+    private static final String JSON = "{\"skipped\":{\"person\":{\"id\":\"wrong\"},\"list\":[1,\"]\",{}]}, \"person\" : {\"id\":\"85047\",\"age\":42,"
+            + "\"consent\":true,\"name\":\"Zo\\u00eb \\\"Z\\\"\",\"identifiers\":[{\"value\":\"a\"},{\"value\":\"b\"}],\"nothing\":null}}";
+
+    @Test
+    void shouldExtractValue_whenPathIsInDocument() {
+
+        Assertions.assertEquals("85047", JsonPath.compile("person.id").extract(JSON));
+        Assertions.assertEquals("42", JsonPath.compile("person.age").extract(JSON));
+        Assertions.assertEquals("true", JsonPath.compile("person.consent").extract(JSON));
+        Assertions.assertEquals("Zo\u00eb \"Z\"", JsonPath.compile("person.name").extract(JSON));
+        Assertions.assertEquals("b", JsonPath.compile("person.identifiers[1].value").extract(JSON));
+        Assertions.assertEquals("{\"value\":\"a\"}", JsonPath.compile("person.identifiers[0]").extract(JSON));
+        Assertions.assertEquals("]", JsonPath.compile("skipped.list[1]").extract(JSON));
+    }
+
+    @Test
+    void shouldReturnNull_whenValueIsAbsentNullOrDocumentIsMalformed() {
+
+        Assertions.assertNull(JsonPath.compile("person.nothing").extract(JSON));
+        Assertions.assertNull(JsonPath.compile("person.unknown").extract(JSON));
+        Assertions.assertNull(JsonPath.compile("person.identifiers[2]").extract(JSON));
+        Assertions.assertNull(JsonPath.compile("person.id.value").extract(JSON));
+        Assertions.assertNull(JsonPath.compile("person.id").extract("{\"person\":{\"id\""));
+        Assertions.assertNull(JsonPath.compile("person.id").extract("not json"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> JsonPath.compile("person..id"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> JsonPath.compile("person[x]"));
+    }
+
+    @Test
+    void shouldExtractEveryPathInOnePass_whenPathsShareTheDocument() {
+
+        JsonPath[] jsonPaths = {
+                JsonPath.compile("$.person.id"),
+                JsonPath.compile("person.identifiers[1].value"),
+                JsonPath.compile("person"),
+                JsonPath.compile("person.unknown"),
+                JsonPath.compile("skipped.person.id")
+        };
+        String[] values = new String[jsonPaths.length];
+
+        JsonPath.extractAll(JSON, jsonPaths, values);
+
+        Assertions.assertEquals("85047", values[0]);
+        Assertions.assertEquals("b", values[1]);
+        Assertions.assertTrue(values[2].startsWith("{\"id\":\"85047\""));
+        Assertions.assertNull(values[3]);
+        Assertions.assertEquals("wrong", values[4]);
+
+        // the walk stops once every path is found: what follows is never read
+        JsonPath[] firstOnly = {JsonPath.compile("a.b")};
+        JsonPath.extractAll("{\"a\":{\"b\":1},\"c\":[[[not json", firstOnly, values);
+        Assertions.assertEquals("1", values[0]);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> JsonPath.compile("$"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> JsonPath.extractAll(JSON, jsonPaths, new String[1]));
+    }
+
+    @Test
+    void shouldMatchJsonPathConditions_whateverTheFieldOrderOrWhitespace() throws InterruptedException {
+
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher().addResponseForMethod(POST, List.of(
+                conditionalMockResponse("post_known", "^/orders", new MockResponse().setBody("known"))
+                        .addCondition(jsonPath("$.customer.id", "85047"))
+                        .addCondition(jsonPath("$.items[0].sku", ValueMatchers.prefix("SKU-"))),
+                conditionalMockResponse("post_vip", "^/orders", new MockResponse().setBody("vip"))
+                        .addCondition(jsonPath("$.customer.tier", "gold"))
+        )).setQueueFailFast(new MockResponse().setBody("queue"));
+
+        Assertions.assertEquals("known", this.post(conditionalDispatcher, "{\"customer\":{\"id\":\"85047\"},\"items\":[{\"sku\":\"SKU-1\"}]}"));
+        Assertions.assertEquals("known", this.post(conditionalDispatcher, "{ \"items\" : [ { \"sku\" : \"SKU-1\" } ],\n  \"customer\" : { \"tier\" : \"gold\", \"id\" : \"85047\" } }"));
+        Assertions.assertEquals("vip", this.post(conditionalDispatcher, "{\"customer\":{\"id\":\"1\",\"tier\":\"gold\"}}"));
+        // a value elsewhere in the body does not match
+        Assertions.assertEquals("queue", this.post(conditionalDispatcher, "{\"referrer\":{\"id\":\"85047\"},\"items\":[{\"sku\":\"SKU-1\"}]}"));
+    }
+
+    private String post(ConditionalDispatcher conditionalDispatcher, String json) throws InterruptedException {
+        return conditionalDispatcher.dispatch(recordedRequest("POST", "/orders", Headers.of(), new Buffer().writeUtf8(json))).getBody().readUtf8();
+    }
+}
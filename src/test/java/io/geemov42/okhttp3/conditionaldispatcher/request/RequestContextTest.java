@@ -0,0 +1,67 @@
+package io.geemov42.okhttp3.conditionaldispatcher.request;
+
+import okhttp3.Headers;
+import okio.Buffer;
+import okio.ByteString;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Pattern;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+
+class RequestContextTest {
+
+    private static final int LARGE_BODY_SIZE = 3 * 1024 * 1024;
+
+    @Test
+    void shouldFindLiteralAndRegex_whenTheyAreAtTheEndOfALargeBody() {
+
+        RequestContext requestContext = new RequestContext(recordedRequest("POST", "/upload", Headers.of(), this.largeBody("\"personIdentifier\":\"85047\"")));
+
+        Assertions.assertTrue(requestContext.bodyContains(ByteString.encodeUtf8("\"personIdentifier\":\"85047\"")));
+        Assertions.assertFalse(requestContext.bodyContains(ByteString.encodeUtf8("\"personIdentifier\":\"99989845\"")));
+        Assertions.assertTrue(Pattern.compile("\"personIdentifier\":\"\\d+\"}$").matcher(requestContext.getBodyCharSequence()).find());
+        Assertions.assertInstanceOf(BufferCharSequence.class, requestContext.getBodyCharSequence());
+    }
+
+    @Test
+    void shouldIgnoreBytesBeyondTheScanLimit_whenLimitIsSet() {
+
+        RequestContext requestContext = new RequestContext(recordedRequest("POST", "/upload", Headers.of(), this.largeBody("needle")), 1024);
+
+        Assertions.assertFalse(requestContext.bodyContains(ByteString.encodeUtf8("needle")));
+        Assertions.assertFalse(Pattern.compile("needle").matcher(requestContext.getBodyCharSequence()).find());
+        Assertions.assertEquals(1024, requestContext.getBodyCharSequence().length());
+    }
+
+    @Test
+    void shouldDecodeBody_whenBodyIsNotAscii() {
+
+        RequestContext requestContext = new RequestContext(recordedRequest("POST", "/upload", Headers.of(), new Buffer().writeUtf8("{\"name\":\"Zo\u00eb\"}")));
+
+        Assertions.assertTrue(Pattern.compile("\"name\":\"Zo.\"").matcher(requestContext.getBodyCharSequence()).find());
+        Assertions.assertTrue(requestContext.bodyContains(ByteString.encodeUtf8("Zo\u00eb")));
+    }
+
+    @Test
+    void shouldKeepRecordedBodyUnread_whenConditionsScanIt() {
+
+        Buffer body = new Buffer().writeUtf8("{\"personIdentifier\":\"85047\"}");
+        RequestContext requestContext = new RequestContext(recordedRequest("POST", "/upload", Headers.of(), body));
+
+        Assertions.assertTrue(Pattern.compile("85047").matcher(requestContext.getBodyCharSequence()).find());
+        Assertions.assertTrue(requestContext.bodyContains(ByteString.encodeUtf8("85047")));
+        Assertions.assertEquals("{\"personIdentifier\":\"85047\"}", body.readUtf8());
+    }
+
+    private Buffer largeBody(String suffix) {
+
+        Buffer body = new Buffer().writeUtf8("{\"padding\":\"");
+        while (body.size() < LARGE_BODY_SIZE) {
+            body.writeUtf8("abcdefghijklmnopqrstuvwxyz");
+        }
+
+        return body.writeUtf8("\",").writeUtf8(suffix).writeUtf8("}");
+    }
+}
@@ -0,0 +1,122 @@
+package io.geemov42.okhttp3.conditionaldispatcher.routing;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import io.geemov42.okhttp3.conditionaldispatcher.response.MatchingCondition;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.GET;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.POST;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.body;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.conditionalMockResponse;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.param;
+
+class AdaptiveOrderingTest {
+
+    @Test
+    void shouldEvaluateSelectiveConditionFirst_whenItRejectsMostRequests() throws InterruptedException {
+
+        MatchingCondition bodyCondition = body("\"query\"\\s*:\\s*\"[a-z]+\"");
+        MatchingCondition tenantCondition = param("tenant", "^acme$");
+        ConditionalMockResponse conditionalMockResponse = conditionalMockResponse("post_search", "^/search", new MockResponse().setBody("acme results"))
+                .addConditions(bodyCondition, tenantCondition);
+
+        AdaptiveOrdering adaptiveOrdering = AdaptiveOrdering.builder().interval(Long.MAX_VALUE).minEvaluations(50).build();
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addResponseForMethod(POST, List.of(conditionalMockResponse))
+                .setQueueFailFast(new MockResponse().setBody("queue"))
+                .setAdaptiveOrdering(adaptiveOrdering);
+
+        for (int i = 0; i < 400; i++) {
+            Assertions.assertEquals("queue", this.search(conditionalDispatcher, "other"));
+        }
+        Assertions.assertEquals(400, tenantCondition.getStats().getRejected());
+        Assertions.assertEquals(0, bodyCondition.getStats().getRejected());
+
+        conditionalDispatcher.reorderNow();
+
+        Assertions.assertEquals(List.of(tenantCondition, bodyCondition), conditionalMockResponse.getEvaluationOrder());
+        Assertions.assertEquals(List.of(bodyCondition, tenantCondition), conditionalMockResponse.getMatchingConditions());
+        Assertions.assertEquals(1, adaptiveOrdering.getReorderedResponseCount());
+        Assertions.assertEquals("acme results", this.search(conditionalDispatcher, "acme"));
+        Assertions.assertEquals("queue", this.search(conditionalDispatcher, "other"));
+
+        // a stable order is not published again
+        conditionalDispatcher.reorderNow();
+        Assertions.assertEquals(1, adaptiveOrdering.getReorderedResponseCount());
+
+        conditionalDispatcher.setAdaptiveOrdering(null);
+        Assertions.assertEquals(List.of(bodyCondition, tenantCondition), conditionalMockResponse.getEvaluationOrder());
+    }
+
+    @Test
+    void shouldHoistHotResponseOnlyPastDisjointResponses_whenPassIsDue() throws InterruptedException {
+
+        AdaptiveOrdering adaptiveOrdering = AdaptiveOrdering.builder().interval(260).minEvaluations(20).executor(Runnable::run).build();
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addResponseForMethod(GET, List.of(
+                        conditionalMockResponse("get_persons", "^/persons", new MockResponse().setBody("persons")),
+                        conditionalMockResponse("get_orders_vip", "^/orders/vip", new MockResponse().setBody("vip orders")),
+                        conditionalMockResponse("get_orders", "^/orders", new MockResponse().setBody("orders")),
+                        conditionalMockResponse("get_hot", "^/hot", new MockResponse().setBody("hot"))
+                ))
+                .setAdaptiveOrdering(adaptiveOrdering);
+
+        for (int i = 0; i < 200; i++) {
+            this.get(conditionalDispatcher, "/hot");
+        }
+        for (int i = 0; i < 10; i++) {
+            this.get(conditionalDispatcher, "/orders/vip");
+        }
+        Assertions.assertEquals(List.of("get_persons", "get_orders_vip", "get_orders", "get_hot"), this.evaluationOrder(conditionalDispatcher));
+
+        // the 260th dispatch runs the pass, inline with this executor: /orders is hit more than /orders/vip, but both can match /orders/vip
+        for (int i = 0; i < 50; i++) {
+            this.get(conditionalDispatcher, "/orders");
+        }
+
+        Assertions.assertEquals(List.of("get_hot", "get_persons", "get_orders_vip", "get_orders"), this.evaluationOrder(conditionalDispatcher));
+        Assertions.assertEquals(3, adaptiveOrdering.getHoistedResponseCount());
+        Assertions.assertEquals("vip orders", this.get(conditionalDispatcher, "/orders/vip"));
+        Assertions.assertEquals("orders", this.get(conditionalDispatcher, "/orders/42"));
+        Assertions.assertEquals(List.of("get_persons", "get_orders_vip", "get_orders", "get_hot"),
+                conditionalDispatcher.toRuleSet().getRuleLayer().getRuleTable().get(GET).getConditionalMockResponses().stream()
+                        .map(ConditionalMockResponse::getId).collect(Collectors.toList()));
+
+        conditionalDispatcher.setAdaptiveOrdering(null);
+        Assertions.assertEquals(List.of("get_persons", "get_orders_vip", "get_orders", "get_hot"), this.evaluationOrder(conditionalDispatcher));
+
+        // rules with literal conditions on the same parameter are disjoint too
+        Assertions.assertTrue(Disjointness.disjoint(
+                conditionalMockResponse("get_a", "^/items", new MockResponse()).addCondition(param("type", "^(book|film)$")),
+                conditionalMockResponse("get_b", "^/items", new MockResponse()).addCondition(param("type", "^music$"))));
+        Assertions.assertFalse(Disjointness.disjoint(
+                conditionalMockResponse("get_a", "^/items", new MockResponse()).addCondition(param("type", "^(book|film)$")),
+                conditionalMockResponse("get_b", "^/items", new MockResponse()).addCondition(param("type", "o"))));
+    }
+
+    private String search(ConditionalDispatcher conditionalDispatcher, String tenant) throws InterruptedException {
+
+        Buffer body = new Buffer().writeUtf8("{\"query\": \"books\"}");
+        return conditionalDispatcher.dispatch(recordedRequest("POST", "/search?tenant=" + tenant, Headers.of(), body)).getBody().readUtf8();
+    }
+
+    private String get(ConditionalDispatcher conditionalDispatcher, String path) throws InterruptedException {
+        return conditionalDispatcher.dispatch(recordedRequest("GET", path)).getBody().readUtf8();
+    }
+
+    private List<String> evaluationOrder(ConditionalDispatcher conditionalDispatcher) {
+
+        return conditionalDispatcher.toRuleSet().getRuleLayer().getRuleTable().get(GET).getEvaluationOrder().stream()
+                .map(ConditionalMockResponse::getId)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,141 @@
+package io.geemov42.okhttp3.conditionaldispatcher.routing;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Objects;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.GET;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.POST;
+import static io.geemov42.okhttp3.conditionaldispatcher.matcher.ValueMatchers.exact;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.*;
+
+class DecisionCacheTest {
+
+    @Test
+    void shouldServeCachedDecision_whenSameRequestIsRepeated() throws InterruptedException {
+
+        ConditionalMockResponse acme = conditionalMockResponse("get_acme", "^/hasConsent", new MockResponse().setBody("acme"))
+                .addCondition(header("X-Tenant", exact("acme")));
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .enableDecisionCache(100)
+                .addResponseForMethod(GET, List.of(acme, conditionalMockResponse("get_other", "^/hasConsent", new MockResponse().setBody("other"))));
+
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals("acme", this.dispatchBody(conditionalDispatcher, "GET", "/hasConsent", Headers.of("X-Tenant", "acme"), ""));
+            Assertions.assertEquals("other", this.dispatchBody(conditionalDispatcher, "GET", "/hasConsent", Headers.of("X-Tenant", "globex"), ""));
+        }
+
+        DecisionCacheStats decisionCacheStats = conditionalDispatcher.getDecisionCacheStats();
+        Assertions.assertEquals(18, decisionCacheStats.getHits());
+        Assertions.assertEquals(2, decisionCacheStats.getMisses());
+        Assertions.assertEquals(2, decisionCacheStats.getSize());
+        Assertions.assertEquals(0.9, decisionCacheStats.getHitRate(), 0.0001);
+        Assertions.assertEquals(10, acme.getFetchCounter());
+    }
+
+    @Test
+    void shouldNotCacheDecision_whenABodyConditionWasEvaluated() throws InterruptedException {
+
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .enableDecisionCache(100)
+                .addResponseForMethod(POST, List.of(
+                        conditionalMockResponse("post_consent_85047", "^/consent", new MockResponse().setBody("85047")).addCondition(bodyContains("85047")),
+                        conditionalMockResponse("post_consent", "^/consent", new MockResponse().setBody("any"))
+                ));
+
+        Assertions.assertEquals("any", this.dispatchBody(conditionalDispatcher, "POST", "/consent", Headers.of(), "{\"personIdentifier\":\"1\"}"));
+        Assertions.assertEquals("85047", this.dispatchBody(conditionalDispatcher, "POST", "/consent", Headers.of(), "{\"personIdentifier\":\"85047\"}"));
+        Assertions.assertEquals(2, conditionalDispatcher.getDecisionCacheStats().getUncacheable());
+        Assertions.assertEquals(0, conditionalDispatcher.getDecisionCacheStats().getSize());
+    }
+
+    @Test
+    void shouldInvalidateCachedQueueFallback_whenAResponseIsAdded() throws InterruptedException {
+
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .enableDecisionCache(100)
+                .setQueueFailFast(new MockResponse().setBody("queue"))
+                .addResponseForMethod(GET, List.of(conditionalMockResponse("get_hasConsent", "^/hasConsent", new MockResponse())));
+
+        Assertions.assertEquals("queue", this.dispatchBody(conditionalDispatcher, "GET", "/other", Headers.of(), ""));
+        Assertions.assertEquals("queue", this.dispatchBody(conditionalDispatcher, "GET", "/other", Headers.of(), ""));
+
+        conditionalDispatcher.addResponse(List.of(conditionalMockResponse("common_other", "^/other", new MockResponse().setBody("other"))));
+
+        Assertions.assertEquals("other", this.dispatchBody(conditionalDispatcher, "GET", "/other", Headers.of(), ""));
+        Assertions.assertEquals(1, conditionalDispatcher.getDecisionCacheStats().getHits());
+    }
+
+    @Test
+    void shouldInvalidateCachedDecision_whenConditionIsAddedAfterRegistration() throws InterruptedException {
+
+        ConditionalMockResponse acme = conditionalMockResponse("get_acme", "^/hasConsent", new MockResponse().setBody("acme"));
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .enableDecisionCache(100)
+                .addResponseForMethod(GET, List.of(acme, conditionalMockResponse("get_other", "^/hasConsent", new MockResponse().setBody("other"))));
+
+        Assertions.assertEquals("acme", this.dispatchBody(conditionalDispatcher, "GET", "/hasConsent", Headers.of("X-Tenant", "globex"), ""));
+        Assertions.assertEquals("acme", this.dispatchBody(conditionalDispatcher, "GET", "/hasConsent", Headers.of("X-Tenant", "globex"), ""));
+
+        // the new condition references a header the cache did not key on
+        acme.addCondition(header("X-Tenant", exact("acme")));
+
+        Assertions.assertEquals("other", this.dispatchBody(conditionalDispatcher, "GET", "/hasConsent", Headers.of("X-Tenant", "globex"), ""));
+        Assertions.assertEquals("acme", this.dispatchBody(conditionalDispatcher, "GET", "/hasConsent", Headers.of("X-Tenant", "acme"), ""));
+
+        // the conditions can still be changed through their list
+        acme.getMatchingConditions().remove(0);
+        Assertions.assertTrue(acme.getMatchingConditions().isEmpty());
+        Assertions.assertEquals("acme", this.dispatchBody(conditionalDispatcher, "GET", "/hasConsent", Headers.of("X-Tenant", "globex"), ""));
+
+        acme.getMatchingConditions().add(header("X-Tenant", exact("acme")));
+        Assertions.assertEquals("other", this.dispatchBody(conditionalDispatcher, "GET", "/hasConsent", Headers.of("X-Tenant", "globex"), ""));
+    }
+
+    @Test
+    void shouldKeepCachedDecisions_whenConditionChangesInAnotherDispatcher() throws InterruptedException {
+
+        ConditionalMockResponse other = conditionalMockResponse("get_other", "^/other", new MockResponse().setBody("other"));
+        new ConditionalDispatcher().addResponseForMethod(GET, List.of(other));
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .enableDecisionCache(100)
+                .addResponseForMethod(GET, List.of(conditionalMockResponse("get_acme", "^/hasConsent", new MockResponse().setBody("acme"))));
+
+        this.dispatchBody(conditionalDispatcher, "GET", "/hasConsent", Headers.of(), "");
+        other.addCondition(header("X-Tenant", exact("acme")));
+        this.dispatchBody(conditionalDispatcher, "GET", "/hasConsent", Headers.of(), "");
+
+        Assertions.assertEquals(1, conditionalDispatcher.getDecisionCacheStats().getHits());
+    }
+
+    @Test
+    void shouldStayBounded_whenManyDistinctRequestsAreDispatched() throws InterruptedException {
+
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .enableDecisionCache(8)
+                .addResponseForMethod(GET, List.of(conditionalMockResponse("get_hasConsent", "^/hasConsent", new MockResponse())));
+
+        // a hot url keeps its reference bit and survives the sweeps
+        for (int i = 0; i < 100; i++) {
+            conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent?personIdentifier=hot"));
+            conditionalDispatcher.dispatch(recordedRequest("GET", "/hasConsent?personIdentifier=" + i));
+        }
+
+        DecisionCacheStats decisionCacheStats = conditionalDispatcher.getDecisionCacheStats();
+        Assertions.assertEquals(8, decisionCacheStats.getSize());
+        Assertions.assertEquals(99, decisionCacheStats.getHits());
+    }
+
+    private String dispatchBody(ConditionalDispatcher conditionalDispatcher, String method, String path, Headers headers, String body) throws InterruptedException {
+
+        return Objects.requireNonNull(conditionalDispatcher.dispatch(recordedRequest(method, path, headers, new Buffer().writeUtf8(body))).getBody()).readUtf8();
+    }
+}
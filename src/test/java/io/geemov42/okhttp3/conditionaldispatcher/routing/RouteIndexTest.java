@@ -0,0 +1,119 @@
+package io.geemov42.okhttp3.conditionaldispatcher.routing;
+
+import io.geemov42.okhttp3.conditionaldispatcher.request.RequestContext;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import io.geemov42.okhttp3.conditionaldispatcher.utils.RegexUtils;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.conditionalMockResponse;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.header;
+
+class RouteIndexTest {
+
+    @Test
+    void shouldExtractRequiredLiteral_whenRegexContainsLiteralRuns() {
+
+        Assertions.assertEquals("/hasConsent", RegexUtils.requiredLiteral("\\/hasConsent"));
+        Assertions.assertEquals("/api/persons/", RegexUtils.requiredLiteral("^/api/persons/\\d+$"));
+        Assertions.assertEquals("/order", RegexUtils.requiredLiteral("/v[0-9]+/orders?"));
+        Assertions.assertEquals("/files/", RegexUtils.requiredLiteral("(/api)?/files/.*"));
+        Assertions.assertEquals("a.b", RegexUtils.requiredLiteral("\\Qa.b\\E"));
+        Assertions.assertNull(RegexUtils.requiredLiteral("/a|/b"));
+        Assertions.assertNull(RegexUtils.requiredLiteral("(?i)/hasConsent"));
+        Assertions.assertNull(RegexUtils.requiredLiteral(".*"));
+    }
+
+    @Test
+    void shouldReturnFirstRegisteredResponse_whenSeveralBucketsMatch() {
+
+        RouteIndex routeIndex = RouteIndex.EMPTY
+                .withAdded(List.of(
+                        this.createConditionalMockResponse("other", "/other"),
+                        this.createConditionalMockResponse("any", "/(has|get)Consent").addCondition(header("X-Any", "1"))
+                ))
+                .withAdded(List.of(
+                        this.createConditionalMockResponse("exact", "^/hasConsent$"),
+                        this.createConditionalMockResponse("contains", "Consent")
+                ));
+
+        Assertions.assertEquals("any", routeIndex.findFirst(this.requestContext("/hasConsent", Headers.of("X-Any", "1"))).getId());
+        Assertions.assertEquals("exact", routeIndex.findFirst(this.requestContext("/hasConsent", Headers.of())).getId());
+        Assertions.assertEquals("contains", routeIndex.findFirst(this.requestContext("/hasConsent?x=1", Headers.of())).getId());
+        Assertions.assertNull(routeIndex.findFirst(this.requestContext("/nothing", Headers.of("X-Any", "1"))));
+    }
+
+    @Test
+    void shouldIndexUnderLiteralOnly_whenRegexContainsEscapesWithPayload() {
+
+        Assertions.assertEquals("users", RegexUtils.requiredLiteral("/api\\x2Fusers"));
+        Assertions.assertEquals("users", RegexUtils.requiredLiteral("/api\\u002Fusers"));
+        Assertions.assertEquals("users", RegexUtils.requiredLiteral("/api\\x{2F}users"));
+        Assertions.assertEquals("/api", RegexUtils.requiredLiteral("/api\\0571"));
+        Assertions.assertEquals("/api", RegexUtils.requiredLiteral("(x)/api\\k<x>1"));
+
+        RouteIndex routeIndex = RouteIndex.EMPTY.withAdded(List.of(
+                this.createConditionalMockResponse("hex", "/api\\x2Fusers"),
+                this.createConditionalMockResponse("unicode", "/api\\u002Forders")
+        ));
+
+        Assertions.assertEquals("hex", routeIndex.findFirst(this.requestContext("/api/users", Headers.of())).getId());
+        Assertions.assertEquals("unicode", routeIndex.findFirst(this.requestContext("/api/orders", Headers.of())).getId());
+    }
+
+    @Test
+    void shouldKeepEachIndexUnchanged_whenResponsesAreAddedOneAtATime() {
+
+        RouteIndex routeIndex = RouteIndex.EMPTY;
+        List<RouteIndex> routeIndexes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            routeIndexes.add(routeIndex);
+            routeIndex = routeIndex.withAdded(List.of(this.createConditionalMockResponse("person_" + i, "^/persons/" + i + "$")));
+        }
+
+        Assertions.assertEquals(200, routeIndex.getConditionalMockResponses().size());
+        Assertions.assertEquals("person_199", routeIndex.findFirst(this.requestContext("/persons/199", Headers.of())).getId());
+        Assertions.assertEquals("person_3", routeIndex.findFirst(this.requestContext("/persons/3", Headers.of())).getId());
+
+        // an older index does not see the responses appended after it
+        RouteIndex older = routeIndexes.get(50);
+        Assertions.assertEquals(50, older.getConditionalMockResponses().size());
+        Assertions.assertNull(older.findFirst(this.requestContext("/persons/120", Headers.of())));
+        Assertions.assertEquals("person_49", older.findFirst(this.requestContext("/persons/49", Headers.of())).getId());
+
+        // appending to it again forks without changing the latest index
+        RouteIndex forked = older.withAdded(List.of(this.createConditionalMockResponse("forked", "^/persons/120$")));
+        Assertions.assertEquals("forked", forked.findFirst(this.requestContext("/persons/120", Headers.of())).getId());
+        Assertions.assertEquals("person_120", routeIndex.findFirst(this.requestContext("/persons/120", Headers.of())).getId());
+        Assertions.assertEquals(51, forked.getConditionalMockResponses().size());
+        Assertions.assertEquals("forked", forked.getConditionalMockResponses().get(50).getId());
+        Assertions.assertEquals("person_50", routeIndex.getConditionalMockResponses().get(50).getId());
+
+        // a reordered index is appended to like any other
+        List<ConditionalMockResponse> reversed = new ArrayList<>(forked.getEvaluationOrder());
+        Collections.reverse(reversed);
+        RouteIndex reordered = forked.withEvaluationOrder(reversed).withAdded(List.of(this.createConditionalMockResponse("last", "^/persons")));
+        Assertions.assertEquals("forked", reordered.findFirst(this.requestContext("/persons/120", Headers.of())).getId());
+        Assertions.assertEquals("last", reordered.findFirst(this.requestContext("/persons/999", Headers.of())).getId());
+        Assertions.assertEquals("person_0", reordered.getConditionalMockResponses().get(0).getId());
+        Assertions.assertEquals("last", reordered.getEvaluationOrder().get(51).getId());
+    }
+
+    private RequestContext requestContext(String path, Headers headers) {
+
+        return new RequestContext(recordedRequest("GET", path, headers, new Buffer()));
+    }
+
+    private ConditionalMockResponse createConditionalMockResponse(String uniqueId, String pathRegex) {
+
+        return conditionalMockResponse(uniqueId, pathRegex, new MockResponse());
+    }
+}
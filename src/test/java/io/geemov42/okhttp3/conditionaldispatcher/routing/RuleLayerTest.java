@@ -0,0 +1,134 @@
+package io.geemov42.okhttp3.conditionaldispatcher.routing;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.metrics.DispatchListener;
+import io.geemov42.okhttp3.conditionaldispatcher.request.JsonPath;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import okhttp3.mockwebserver.MockResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.GET;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.POST;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.conditionalMockResponse;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.jsonPath;
+
+class RuleLayerTest {
+
+    private static final RuleSet BASE_RULE_SET = new ConditionalDispatcher()
+            .addResponseForMethod(GET, List.of(
+                    conditionalMockResponse("get_hasConsent", "^/hasConsent", new MockResponse().setBody("base consent")),
+                    conditionalMockResponse("get_person", "^/person", new MockResponse().setBody("base person"))
+            ))
+            .addResponse(List.of(conditionalMockResponse("common_any", "^/", new MockResponse().setBody("base any"))))
+            .toRuleSet();
+
+    @Test
+    void shouldCheckOverlayFirst_whenResponsesAreAddedOverriddenOrRemoved() throws InterruptedException {
+
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher(BASE_RULE_SET)
+                .setQueueFailFast(new MockResponse().setBody("queue"))
+                .addResponse(List.of(conditionalMockResponse("common_person", "^/person", new MockResponse().setBody("overlay person"))))
+                .overrideResponseForMethod(GET, conditionalMockResponse("get_hasConsent", "^/hasConsent", new MockResponse().setBody("overlay consent")))
+                .removeResponse("common_any");
+
+        Assertions.assertEquals("overlay person", this.dispatchBody(conditionalDispatcher, "/person"));
+        Assertions.assertEquals("overlay consent", this.dispatchBody(conditionalDispatcher, "/hasConsent"));
+        Assertions.assertEquals("queue", this.dispatchBody(conditionalDispatcher, "/other"));
+        Assertions.assertEquals("overlay consent", conditionalDispatcher.getConditionalMockResponseMapForMethod(GET).get("get_hasConsent").getMockResponse().getBody().readUtf8());
+
+        // the shared rule set is left untouched
+        ConditionalDispatcher otherDispatcher = new ConditionalDispatcher(BASE_RULE_SET);
+        Assertions.assertEquals("base person", this.dispatchBody(otherDispatcher, "/person"));
+        Assertions.assertEquals("base consent", this.dispatchBody(otherDispatcher, "/hasConsent"));
+        Assertions.assertEquals("base any", this.dispatchBody(otherDispatcher, "/other"));
+    }
+
+    @Test
+    void shouldDiscardLayerAndItsCounters_whenLayerIsPopped() throws InterruptedException {
+
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher(BASE_RULE_SET);
+        this.dispatchBody(conditionalDispatcher, "/hasConsent");
+
+        conditionalDispatcher.pushLayer()
+                .removeResponse("get_hasConsent")
+                .addResponseForMethod(GET, List.of(conditionalMockResponse("get_test", "^/test", new MockResponse().setBody("test"))));
+
+        Assertions.assertEquals("test", this.dispatchBody(conditionalDispatcher, "/test"));
+        Assertions.assertEquals("base any", this.dispatchBody(conditionalDispatcher, "/hasConsent"));
+        Assertions.assertEquals(1, conditionalDispatcher.getLayerFetchCounter("get_test"));
+        Assertions.assertEquals(0, conditionalDispatcher.getLayerFetchCounter("get_hasConsent"));
+
+        conditionalDispatcher.popLayer();
+
+        Assertions.assertEquals("base any", this.dispatchBody(conditionalDispatcher, "/test"));
+        Assertions.assertEquals("base consent", this.dispatchBody(conditionalDispatcher, "/hasConsent"));
+        Assertions.assertEquals(2, conditionalDispatcher.getLayerFetchCounter("get_hasConsent"));
+        Assertions.assertThrows(IllegalStateException.class, conditionalDispatcher::popLayer);
+    }
+
+    @Test
+    void shouldCheckLimitAgainstLayerFetches_whenResponseIsServedByOtherLayers() throws InterruptedException {
+
+        List<String> beyondLimit = new ArrayList<>();
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addResponseForMethod(GET, List.of(conditionalMockResponse("get_limited", "^/limited", new MockResponse().setBody("limited"), 1)))
+                .addDispatchListener(new DispatchListener() {
+                    @Override
+                    public void onBeyondLimit(ConditionalMockResponse conditionalMockResponse) {
+                        beyondLimit.add(conditionalMockResponse.getId());
+                    }
+                });
+
+        this.dispatchBody(conditionalDispatcher, "/limited");
+        this.dispatchBody(conditionalDispatcher, "/limited");
+        Assertions.assertEquals(List.of("get_limited"), beyondLimit);
+
+        // a new layer, like a new test, starts with its own fetches
+        conditionalDispatcher.pushLayer();
+        this.dispatchBody(conditionalDispatcher, "/limited");
+        Assertions.assertEquals(List.of("get_limited"), beyondLimit);
+        this.dispatchBody(conditionalDispatcher, "/limited");
+        Assertions.assertEquals(List.of("get_limited", "get_limited"), beyondLimit);
+    }
+
+    @Test
+    void shouldCarryJsonPathsForward_whenResponsesAreAdded() {
+
+        RuleLayer ruleLayer = RuleLayer.root().withAdded(GET, List.of(conditionalMockResponse("get_person", "^/person", new MockResponse())));
+        Assertions.assertSame(RuleLayer.root().getJsonPaths(), ruleLayer.getJsonPaths());
+
+        ruleLayer = ruleLayer.withAdded(POST, List.of(conditionalMockResponse("post_order", "^/orders", new MockResponse())
+                .addConditions(jsonPath("$.customer.id", "85047"), jsonPath("$.items[0].sku", "SKU-1"))));
+        JsonPath[] jsonPaths = ruleLayer.getJsonPaths();
+
+        RuleLayer pushedRuleLayer = ruleLayer.push()
+                .withAdded(GET, List.of(conditionalMockResponse("get_order", "^/orders", new MockResponse())))
+                .withAdded(POST, List.of(conditionalMockResponse("post_other", "^/other", new MockResponse())
+                        .addConditions(jsonPath("$.customer.id", "1"), jsonPath("$.total", "2"))));
+
+        // no new path keeps the array, and new ones are appended after the paths of the layers below
+        Assertions.assertSame(jsonPaths, ruleLayer.withRemoved("get_person").getJsonPaths());
+        Assertions.assertEquals(List.of("$.customer.id", "$.items[0].sku", "$.total"), this.expressions(pushedRuleLayer));
+
+        // a replaced table gives the paths of its responses, to the layers above too
+        Assertions.assertEquals(List.of("$.customer.id", "$.total"), this.expressions(pushedRuleLayer.withRuleTableAt(0, RuleTable.EMPTY)));
+        Assertions.assertEquals(List.of("$.customer.id", "$.items[0].sku"), this.expressions(pushedRuleLayer.withRuleTableAt(1, RuleTable.EMPTY)));
+    }
+
+    private List<String> expressions(RuleLayer ruleLayer) {
+        return Arrays.stream(ruleLayer.getJsonPaths()).map(JsonPath::getExpression).collect(Collectors.toList());
+    }
+
+    private String dispatchBody(ConditionalDispatcher conditionalDispatcher, String path) throws InterruptedException {
+
+        return Objects.requireNonNull(conditionalDispatcher.dispatch(recordedRequest("GET", path)).getBody()).readUtf8();
+    }
+}
@@ -0,0 +1,50 @@
+package io.geemov42.okhttp3.conditionaldispatcher.template;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Objects;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.POST;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.templatedMockResponse;
+
+class ResponseTemplateTest {
+
+    @Test
+    void shouldEchoRequestParts_whenOneTemplatedResponseServesEveryIdentifier() throws InterruptedException {
+
+        ConditionalDispatcher conditionalDispatcher = new ConditionalDispatcher()
+                .addResponseForMethod(POST, List.of(templatedMockResponse("post_consent", "^/persons/(\\d+)/(?<scope>\\w+)",
+                        new MockResponse().setHeader("Content-Type", "application/json"),
+                        "{\"id\":\"{{path.1}}\",\"scope\":\"{{ path.scope }}\",\"channel\":\"{{query.channel}}\","
+                                + "\"tenant\":\"{{header.X-Tenant}}\",\"name\":\"{{body.person.name}}\",\"missing\":\"{{query.missing}}\"}")));
+
+        for (String identifier : List.of("85047", "99989845")) {
+            MockResponse mockResponse = conditionalDispatcher.dispatch(recordedRequest("POST", "/persons/" + identifier + "/consent?channel=web",
+                    Headers.of("X-Tenant", "acme"), new Buffer().writeUtf8("{\"person\":{\"name\":\"Zo\u00eb\"}}")));
+
+            Assertions.assertEquals("{\"id\":\"" + identifier + "\",\"scope\":\"consent\",\"channel\":\"web\",\"tenant\":\"acme\",\"name\":\"Zo\u00eb\",\"missing\":\"\"}",
+                    Objects.requireNonNull(mockResponse.getBody()).readUtf8());
+            Assertions.assertEquals("application/json", mockResponse.getHeaders().get("Content-Type"));
+        }
+
+        Assertions.assertEquals(2, conditionalDispatcher.getConditionalMockResponseMapForMethod(POST).get("post_consent").getFetchCounter());
+    }
+
+    @Test
+    void shouldRejectTemplate_whenPlaceholderIsInvalid() {
+
+        MockResponse mockResponse = new MockResponse();
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> templatedMockResponse("get_person", "^/persons/(\\d+)", mockResponse, "{{path.2}}"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> templatedMockResponse("get_person", "^/persons/(\\d+)", mockResponse, "{{path.name}}"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> templatedMockResponse("get_person", "^/persons/(\\d+)", mockResponse, "{{cookie.name}}"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> templatedMockResponse("get_person", "^/persons/(\\d+)", mockResponse, "{{query.name"));
+    }
+}
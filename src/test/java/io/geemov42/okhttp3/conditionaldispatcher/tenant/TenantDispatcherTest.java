@@ -0,0 +1,137 @@
+package io.geemov42.okhttp3.conditionaldispatcher.tenant;
+
+import io.geemov42.okhttp3.conditionaldispatcher.ConditionalDispatcher;
+import io.geemov42.okhttp3.conditionaldispatcher.enums.RequestPartToTestEnum;
+import io.geemov42.okhttp3.conditionaldispatcher.metrics.DispatchListener;
+import io.geemov42.okhttp3.conditionaldispatcher.response.ConditionalMockResponse;
+import io.geemov42.okhttp3.conditionaldispatcher.response.MatchingCondition;
+import io.geemov42.okhttp3.conditionaldispatcher.routing.RuleSet;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.geemov42.okhttp3.conditionaldispatcher.RecordedRequestFactory.recordedRequest;
+import static io.geemov42.okhttp3.conditionaldispatcher.enums.HttpMethodEnum.GET;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.conditionalMockResponse;
+import static io.geemov42.okhttp3.conditionaldispatcher.utils.ConditionalMockResponseHelper.param;
+
+class TenantDispatcherTest {
+
+    private static final RuleSet SHARED_RULE_SET = new ConditionalDispatcher()
+            .addResponseForMethod(GET, List.of(conditionalMockResponse("get_hasConsent", "^/hasConsent", new MockResponse().setBody("shared consent"))))
+            .toRuleSet();
+
+    @Test
+    void shouldIsolateRulesQueuesAndCounters_whenTenantIsReadFromHeader() throws InterruptedException {
+
+        TenantDispatcher tenantDispatcher = new TenantDispatcher(TenantDiscriminator.header("X-Test-Id"), SHARED_RULE_SET);
+        tenantDispatcher.getDefaultPartition().setQueueFailFast(new MockResponse().setBody("default queue"));
+
+        tenantDispatcher.partition("worker-1")
+                .overrideResponseForMethod(GET, conditionalMockResponse("get_hasConsent", "^/hasConsent", new MockResponse().setBody("worker-1 consent")));
+        tenantDispatcher.partition("worker-2")
+                .addResponseInQueue(new MockResponse().setBody("worker-2 queue"));
+
+        Assertions.assertEquals("worker-1 consent", this.dispatchBody(tenantDispatcher, "/hasConsent", "worker-1"));
+        Assertions.assertEquals("shared consent", this.dispatchBody(tenantDispatcher, "/hasConsent", "worker-2"));
+        Assertions.assertEquals("worker-2 queue", this.dispatchBody(tenantDispatcher, "/other", "worker-2"));
+        Assertions.assertEquals("default queue", this.dispatchBody(tenantDispatcher, "/other", "worker-3"));
+        Assertions.assertEquals("default queue", this.dispatchBody(tenantDispatcher, "/other", null));
+
+        Assertions.assertEquals(1, tenantDispatcher.partition("worker-1").getLayerFetchCounter("get_hasConsent"));
+        Assertions.assertEquals(1, tenantDispatcher.partition("worker-2").getLayerFetchCounter("get_hasConsent"));
+
+        // a limit of the shared rule set is checked per partition
+        List<String> beyondLimit = new ArrayList<>();
+        TenantDispatcher limitedTenantDispatcher = new TenantDispatcher(TenantDiscriminator.header("X-Test-Id"), new ConditionalDispatcher()
+                .addResponseForMethod(GET, List.of(conditionalMockResponse("get_limited", "^/limited", new MockResponse().setBody("limited"), 1)))
+                .toRuleSet());
+        for (String tenant : List.of("worker-1", "worker-2")) {
+            limitedTenantDispatcher.partition(tenant).addDispatchListener(new DispatchListener() {
+                @Override
+                public void onBeyondLimit(ConditionalMockResponse conditionalMockResponse) {
+                    beyondLimit.add(tenant);
+                }
+            });
+        }
+        this.dispatchBody(limitedTenantDispatcher, "/limited", "worker-1");
+        this.dispatchBody(limitedTenantDispatcher, "/limited", "worker-2");
+        Assertions.assertEquals(List.of(), beyondLimit);
+        this.dispatchBody(limitedTenantDispatcher, "/limited", "worker-2");
+        Assertions.assertEquals(List.of("worker-2"), beyondLimit);
+
+        Assertions.assertNotNull(tenantDispatcher.removePartition("worker-1"));
+        Assertions.assertEquals("shared consent", this.dispatchBody(tenantDispatcher, "/hasConsent", "worker-1"));
+    }
+
+    @Test
+    void shouldMatchPathWithoutPrefix_whenTenantIsReadFromPathPrefix() throws InterruptedException {
+
+        TenantDispatcher tenantDispatcher = new TenantDispatcher(TenantDiscriminator.pathPrefix(), SHARED_RULE_SET);
+        tenantDispatcher.getDefaultPartition().setQueueFailFast(new MockResponse().setBody("default queue"));
+        tenantDispatcher.partition("worker-1")
+                .addResponseForMethod(GET, List.of(conditionalMockResponse("get_person", "^/person\\?id=1$", new MockResponse().setBody("person"))
+                        .addConditions(param("id", "^1$"), MatchingCondition.builder().requestPartToTest(RequestPartToTestEnum.PATH).valueRegex("^/person$").build())))
+                .addResponse(List.of(conditionalMockResponse("common_root", "^/$", new MockResponse().setBody("root"))));
+
+        Assertions.assertEquals("person", this.dispatchBody(tenantDispatcher, "/worker-1/person?id=1", null));
+        Assertions.assertEquals("shared consent", this.dispatchBody(tenantDispatcher, "/worker-1/hasConsent", null));
+        Assertions.assertEquals("root", this.dispatchBody(tenantDispatcher, "/worker-1", null));
+        Assertions.assertEquals("default queue", this.dispatchBody(tenantDispatcher, "/worker-1x/person?id=1", null));
+        Assertions.assertEquals("shared consent", this.dispatchBody(tenantDispatcher, "/hasConsent", null));
+    }
+
+    @Test
+    void shouldKeepDispatching_whenPartitionsAreCreatedAndRemovedConcurrently() throws Exception {
+
+        TenantDispatcher tenantDispatcher = new TenantDispatcher(TenantDiscriminator.header("X-Test-Id"), SHARED_RULE_SET);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int worker = 0; worker < 8; worker++) {
+                String tenant = "worker-" + worker;
+
+                futures.add(executorService.submit(() -> {
+                    for (int round = 0; round < 200; round++) {
+                        ConditionalDispatcher partition = tenantDispatcher.partition(tenant)
+                                .addResponse(List.of(conditionalMockResponse("common_round", "^/round", new MockResponse().setBody(tenant + " " + round))));
+
+                        Assertions.assertEquals(tenant + " " + round, this.dispatchBody(tenantDispatcher, "/round", tenant));
+                        Assertions.assertEquals("shared consent", this.dispatchBody(tenantDispatcher, "/hasConsent", tenant));
+                        Assertions.assertEquals(1, partition.getLayerFetchCounter("common_round"));
+                        Assertions.assertSame(partition, tenantDispatcher.removePartition(tenant));
+                    }
+
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        Assertions.assertTrue(tenantDispatcher.getTenants().isEmpty());
+    }
+
+    private String dispatchBody(TenantDispatcher tenantDispatcher, String path, String tenant) throws InterruptedException {
+
+        Headers headers = Objects.isNull(tenant) ? Headers.of() : Headers.of("X-Test-Id", tenant);
+        RecordedRequest recordedRequest = recordedRequest("GET", path, headers, new Buffer());
+
+        return Objects.requireNonNull(tenantDispatcher.dispatch(recordedRequest).getBody()).readUtf8();
+    }
+}